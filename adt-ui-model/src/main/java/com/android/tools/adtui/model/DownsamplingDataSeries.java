@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link DataSeries} that caches the samples of another, typically expensive to query, series and keeps a pyramid of min/max
+ * downsampled versions of them. Level i of the pyramid holds, for every {@link #BRANCHING_FACTOR}^i consecutive samples, the sample with
+ * the smallest and the one with the largest value, so a chart showing more samples than it has pixels can draw the same envelope from a
+ * coarser level, at a cost that depends on its width rather than on the number of samples in range.
+ *
+ * The source is only queried for the samples newer than the last one cached, so it must return its samples in x order and never add
+ * samples before ones it has already returned, as is the case for the samples streamed by the profilers. The pyramid is updated as the
+ * samples arrive, in O(number of levels) per sample.
+ */
+public class DownsamplingDataSeries implements PrimitiveLongDataSeries {
+  /**
+   * Number of buckets of a level that are aggregated into one bucket of the next level.
+   */
+  @VisibleForTesting
+  static final int BRANCHING_FACTOR = 4;
+
+  @NotNull private final DataSeries<Long> mySource;
+
+  /**
+   * Level 0 of the pyramid: the raw samples.
+   */
+  @NotNull private final LongDataSeries myRawData = new LongDataSeries();
+
+  /**
+   * Reused to read the samples of sources that implement {@link PrimitiveLongDataSeries} without boxing them.
+   */
+  @NotNull private final LongDataRange mySourceData = new LongDataRange();
+
+  /**
+   * Level i + 1 of the pyramid, which aggregates {@link #BRANCHING_FACTOR}^(i + 1) raw samples per bucket, is at index i.
+   */
+  @NotNull private final List<Level> myLevels = new ArrayList<>();
+
+  /**
+   * Samples of the last downsampled query, which the {@link LongDataRange} returned by it points to.
+   */
+  @NotNull private long[] myDownsampledX = new long[0];
+  @NotNull private long[] myDownsampledY = new long[0];
+
+  private boolean myHasFetched;
+  /**
+   * Start of the x range that has been fetched from the source. Everything after it has been fetched as well.
+   */
+  private long myFetchedMin;
+
+  public DownsamplingDataSeries(@NotNull DataSeries<Long> source) {
+    mySource = source;
+  }
+
+  @Override
+  public List<SeriesData<Long>> getDataForXRange(Range xRange) {
+    fetch(xRange);
+    List<SeriesData<Long>> data = new ArrayList<>();
+    if (myRawData.size() > 0 && !xRange.isEmpty()) {
+      for (int i = getFromIndex(xRange), toIndex = getToIndex(xRange); i < toIndex; i++) {
+        data.add(new SeriesData<>(myRawData.getX(i), myRawData.getY(i)));
+      }
+    }
+    return data;
+  }
+
+  @Override
+  public void getDataForXRange(@NotNull Range xRange, @NotNull LongDataRange range) {
+    getDataForXRange(xRange, Integer.MAX_VALUE, range);
+  }
+
+  @Override
+  public void getDataForXRange(@NotNull Range xRange, int maxSampleCount, @NotNull LongDataRange range) {
+    fetch(xRange);
+    if (myRawData.size() == 0 || xRange.isEmpty()) {
+      range.clear();
+      return;
+    }
+
+    int fromIndex = getFromIndex(xRange);
+    int toIndex = getToIndex(xRange);
+    // Each bucket results in up to two samples, so pick the finest level with at most maxSampleCount / 2 buckets in range, or the
+    // coarsest one.
+    int level = 0;
+    int bucketSize = 1;
+    while (level < myLevels.size() && 2 * getBucketCount(fromIndex, toIndex, bucketSize) > maxSampleCount) {
+      level++;
+      bucketSize *= BRANCHING_FACTOR;
+    }
+    if (level == 0) {
+      myRawData.getDataForIndexRange(fromIndex, toIndex, range);
+      return;
+    }
+
+    Level buckets = myLevels.get(level - 1);
+    int fromBucket = fromIndex / bucketSize;
+    int toBucket = (toIndex - 1) / bucketSize + 1;
+    int capacity = 2 * (toBucket - fromBucket);
+    if (myDownsampledX.length < capacity) {
+      myDownsampledX = new long[capacity];
+      myDownsampledY = new long[capacity];
+    }
+    int size = 0;
+    for (int i = fromBucket; i < toBucket; i++) {
+      // Emit the min and max samples of the bucket in x order, or only once if they are the same sample.
+      boolean minFirst = buckets.myMinX[i] <= buckets.myMaxX[i];
+      myDownsampledX[size] = minFirst ? buckets.myMinX[i] : buckets.myMaxX[i];
+      myDownsampledY[size++] = minFirst ? buckets.myMinY[i] : buckets.myMaxY[i];
+      if (buckets.myMinX[i] != buckets.myMaxX[i]) {
+        myDownsampledX[size] = minFirst ? buckets.myMaxX[i] : buckets.myMinX[i];
+        myDownsampledY[size++] = minFirst ? buckets.myMaxY[i] : buckets.myMinY[i];
+      }
+    }
+    range.set(myDownsampledX, myDownsampledY, 0, size);
+  }
+
+  /**
+   * @return the number of levels of the pyramid, including the raw samples.
+   */
+  @VisibleForTesting
+  int getLevelCount() {
+    return myLevels.size() + 1;
+  }
+
+  /**
+   * @return the index of the last cached sample at or before the start of {@code xRange}, or of the first one if there is none.
+   */
+  private int getFromIndex(@NotNull Range xRange) {
+    return myRawData.getNearestXIndex((long)xRange.getMin());
+  }
+
+  /**
+   * @return the index after the first cached sample at or after the end of {@code xRange}, or after the last one if there is none. Like
+   * the padding the profiler data series add to their queries, the samples around the edges of the range let the values at the edges
+   * be interpolated.
+   */
+  private int getToIndex(@NotNull Range xRange) {
+    double max = xRange.getMax();
+    int index = myRawData.getNearestXIndex((long)max);
+    if (myRawData.getX(index) < max && index + 1 < myRawData.size()) {
+      index++;
+    }
+    return index + 1;
+  }
+
+  private static int getBucketCount(int fromIndex, int toIndex, int bucketSize) {
+    return (toIndex - 1) / bucketSize - fromIndex / bucketSize + 1;
+  }
+
+  /**
+   * Makes sure all the source samples from the start of {@code xRange} on are cached.
+   */
+  private void fetch(@NotNull Range xRange) {
+    if (xRange.isEmpty()) {
+      return;
+    }
+    long min = (long)xRange.getMin();
+    long max = (long)xRange.getMax();
+    if (!myHasFetched || min < myFetchedMin) {
+      // The pyramid can only grow at its end, so rebuild it when the range extends before the cached data. Extend the fetched range by
+      // at least what was fetched before, so that zooming out smoothly only rebuilds a logarithmic number of times.
+      long fetchedMax = max;
+      if (myHasFetched) {
+        long lastX = myRawData.size() == 0 ? myFetchedMin : myRawData.getX(myRawData.size() - 1);
+        fetchedMax = Math.max(max, lastX);
+        min = Math.min(min, myFetchedMin - (lastX - myFetchedMin));
+      }
+      clear();
+      myHasFetched = true;
+      myFetchedMin = min;
+      fetchFromSource(new Range(min, fetchedMax));
+    }
+    else {
+      long lastX = myRawData.size() == 0 ? myFetchedMin : myRawData.getX(myRawData.size() - 1);
+      if (max >= lastX) {
+        fetchFromSource(new Range(lastX, max));
+      }
+    }
+  }
+
+  private void clear() {
+    myRawData.clear();
+    myLevels.clear();
+  }
+
+  private void fetchFromSource(@NotNull Range xRange) {
+    if (mySource instanceof PrimitiveLongDataSeries) {
+      ((PrimitiveLongDataSeries)mySource).getDataForXRange(xRange, mySourceData);
+      for (int i = 0; i < mySourceData.size(); i++) {
+        addIfNew(mySourceData.getX(i), mySourceData.getY(i));
+      }
+      return;
+    }
+
+    List<SeriesData<Long>> samples = mySource.getDataForXRange(xRange);
+    for (int i = 0; i < samples.size(); i++) {
+      SeriesData<Long> sample = samples.get(i);
+      addIfNew(sample.x, sample.value);
+    }
+  }
+
+  private void addIfNew(long x, long y) {
+    // The source may pad its result with samples that are already cached.
+    if (myRawData.size() == 0 || x > myRawData.getX(myRawData.size() - 1)) {
+      add(x, y);
+    }
+  }
+
+  private void add(long x, long y) {
+    int index = myRawData.size();
+    myRawData.add(x, y);
+    int bucketSize = 1;
+    for (int i = 0; i < myLevels.size(); i++) {
+      bucketSize *= BRANCHING_FACTOR;
+      myLevels.get(i).add(index / bucketSize, x, y);
+    }
+
+    // Add a coarser level once the coarsest one has more than one full bucket worth of buckets.
+    int coarsestSize = myLevels.isEmpty() ? myRawData.size() : myLevels.get(myLevels.size() - 1).mySize;
+    if (coarsestSize > BRANCHING_FACTOR) {
+      Level level = new Level();
+      if (myLevels.isEmpty()) {
+        for (int i = 0; i < myRawData.size(); i++) {
+          level.add(i / BRANCHING_FACTOR, myRawData.getX(i), myRawData.getY(i));
+        }
+      }
+      else {
+        Level finer = myLevels.get(myLevels.size() - 1);
+        for (int i = 0; i < finer.mySize; i++) {
+          level.add(i / BRANCHING_FACTOR, finer.myMinX[i], finer.myMinY[i]);
+          level.add(i / BRANCHING_FACTOR, finer.myMaxX[i], finer.myMaxY[i]);
+        }
+      }
+      myLevels.add(level);
+    }
+  }
+
+  /**
+   * The min and max samples of each bucket of a level, in parallel arrays.
+   */
+  private static final class Level {
+    private static final int INITIAL_CAPACITY = 16;
+
+    @NotNull private long[] myMinX = new long[INITIAL_CAPACITY];
+    @NotNull private long[] myMinY = new long[INITIAL_CAPACITY];
+    @NotNull private long[] myMaxX = new long[INITIAL_CAPACITY];
+    @NotNull private long[] myMaxY = new long[INITIAL_CAPACITY];
+    private int mySize;
+
+    /**
+     * Accounts for the sample (x, y) in the given bucket, which must either be the last one or the next one to be created.
+     */
+    void add(int bucket, long x, long y) {
+      assert bucket == mySize - 1 || bucket == mySize;
+      if (bucket == mySize) {
+        if (mySize == myMinX.length) {
+          int capacity = mySize * 2;
+          myMinX = Arrays.copyOf(myMinX, capacity);
+          myMinY = Arrays.copyOf(myMinY, capacity);
+          myMaxX = Arrays.copyOf(myMaxX, capacity);
+          myMaxY = Arrays.copyOf(myMaxY, capacity);
+        }
+        myMinX[bucket] = x;
+        myMinY[bucket] = y;
+        myMaxX[bucket] = x;
+        myMaxY[bucket] = y;
+        mySize++;
+        return;
+      }
+
+      if (y < myMinY[bucket]) {
+        myMinX[bucket] = x;
+        myMinY[bucket] = y;
+      }
+      if (y > myMaxY[bucket]) {
+        myMaxX[bucket] = x;
+        myMaxY[bucket] = y;
+      }
+    }
+  }
+}
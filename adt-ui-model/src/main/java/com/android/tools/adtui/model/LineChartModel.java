@@ -20,9 +20,7 @@ import com.android.tools.adtui.model.updater.Updater;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class LineChartModel extends AspectModel<LineChartModel.Aspect> implements Updatable {
 
@@ -30,6 +28,12 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
     LINE_CHART
   }
 
+  /**
+   * Number of samples read per series to find the max of its y range. Downsampled series keep the max sample of every bucket, so reading
+   * them at a coarse resolution still finds the same max, at a cost that does not depend on the length of the visible range.
+   */
+  private static final int MAX_SAMPLE_COUNT = 1024;
+
   @NotNull
   private final List<RangedContinuousSeries> mySeries = new ArrayList<>();
 
@@ -38,42 +42,45 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
    */
   private boolean myFirstUpdate = true;
 
+  @NotNull
+  private double[] mySeriesMax = new double[0];
+
   @Override
   public void update(long elapsedNs) {
-    Map<Range, Double> maxPerRangeObject = new HashMap<>();
+    // Max value of each series, reused across updates so that updating does not allocate once the number of series is stable.
+    if (mySeriesMax.length < mySeries.size()) {
+      mySeriesMax = new double[mySeries.size()];
+    }
+    for (int i = 0; i < mySeries.size(); i++) {
+      LongDataView data = mySeries.get(i).getLongSeries(MAX_SAMPLE_COUNT);
+      // Empty series stay at negative infinity, so they never raise a range.
+      double yMax = Double.NEGATIVE_INFINITY;
+      for (int j = 0; j < data.size(); j++) {
+        yMax = Math.max(yMax, data.getY(j));
+      }
+      mySeriesMax[i] = yMax;
+    }
 
+    boolean changed = myFirstUpdate; // Always fire aspect on first update.
     // TODO Handle stacked configs
-    for (RangedContinuousSeries ranged : mySeries) {
-      Range range = ranged.getYRange();
-      double yMax = -Double.MAX_VALUE;
-
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
-      if (seriesList.isEmpty()) {
+    for (int i = 0; i < mySeries.size(); i++) {
+      Range range = mySeries.get(i).getYRange();
+      // Each y range is only updated once, from the series that uses it first, with the max across all the series that share it.
+      if (isRangeHandledBefore(i, range)) {
         continue;
       }
-
-      for (SeriesData<Long> series : seriesList) {
-        double value = series.value;
-        if (yMax < value) {
-          yMax = value;
+      double rangeMax = Double.NEGATIVE_INFINITY;
+      for (int j = i; j < mySeries.size(); j++) {
+        if (mySeries.get(j).getYRange() == range) {
+          rangeMax = Math.max(rangeMax, mySeriesMax[j]);
         }
       }
-
-      Double rangeMax = maxPerRangeObject.get(range);
-      if (rangeMax == null || yMax > rangeMax) {
-        maxPerRangeObject.put(range, yMax);
-      }
-    }
-
-    boolean changed = myFirstUpdate; // Always fire aspect on first update.
-    for (Map.Entry<Range, Double> entry : maxPerRangeObject.entrySet()) {
-      Range range = entry.getKey();
       // Prevent the LineChart to update the range below its current max.
-      if (range.getMax() < entry.getValue()) {
+      if (range.getMax() < rangeMax) {
         double max = myFirstUpdate
-                     ? entry.getValue()
-                     : Updater.lerp(range.getMax(), entry.getValue(), Updater.DEFAULT_LERP_FRACTION, elapsedNs,
-                                    (float)(entry.getValue() * Updater.DEFAULT_LERP_THRESHOLD_PERCENTAGE));
+                     ? rangeMax
+                     : Updater.lerp(range.getMax(), rangeMax, Updater.DEFAULT_LERP_FRACTION, elapsedNs,
+                                    (float)(rangeMax * Updater.DEFAULT_LERP_THRESHOLD_PERCENTAGE));
         range.setMax(max);
         changed = true;
       }
@@ -86,6 +93,15 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
     }
   }
 
+  private boolean isRangeHandledBefore(int seriesIndex, @NotNull Range range) {
+    for (int i = 0; i < seriesIndex; i++) {
+      if (mySeries.get(i).getYRange() == range) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void addAll(@NotNull List<RangedContinuousSeries> series) {
     series.forEach(this::add);
   }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A growable {@link LongDataView} backed by parallel {@code long[]} arrays. It is meant to be kept around and {@link #clear() cleared}
+ * between uses, so that once it has grown to the working size, filling it does not allocate anymore.
+ */
+public final class LongDataBuffer implements LongDataView {
+  private static final int INITIAL_CAPACITY = 16;
+
+  @NotNull private long[] myX = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myY = new long[INITIAL_CAPACITY];
+  private int mySize;
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  @Override
+  public long getX(int index) {
+    assert index < mySize;
+    return myX[index];
+  }
+
+  @Override
+  public long getY(int index) {
+    assert index < mySize;
+    return myY[index];
+  }
+
+  public void setY(int index, long y) {
+    assert index < mySize;
+    myY[index] = y;
+  }
+
+  public void add(long x, long y) {
+    if (mySize == myX.length) {
+      int capacity = mySize * 2;
+      myX = Arrays.copyOf(myX, capacity);
+      myY = Arrays.copyOf(myY, capacity);
+    }
+    myX[mySize] = x;
+    myY[mySize] = y;
+    mySize++;
+  }
+
+  public void addAll(@NotNull LongDataView data) {
+    for (int i = 0; i < data.size(); i++) {
+      add(data.getX(i), data.getY(i));
+    }
+  }
+
+  /**
+   * Points {@code range} at the samples [fromIndex, toIndex), until the buffer is modified.
+   */
+  public void getDataForIndexRange(int fromIndex, int toIndex, @NotNull LongDataRange range) {
+    assert toIndex <= mySize;
+    range.set(myX, myY, fromIndex, toIndex);
+  }
+
+  public void removeLast() {
+    assert mySize > 0;
+    mySize--;
+  }
+
+  public void clear() {
+    mySize = 0;
+  }
+}
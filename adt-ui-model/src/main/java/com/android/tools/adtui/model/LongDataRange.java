@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link LongDataView} over the samples [from, to) of a pair of parallel {@code long[]} arrays owned by someone else, typically a
+ * {@link LongDataSeries}. Instances are reused: the owner of the arrays {@link #set(long[], long[], int, int) points} the range at its
+ * data, which stays valid until that data is modified.
+ */
+public final class LongDataRange implements LongDataView {
+  private static final long[] EMPTY = new long[0];
+
+  @NotNull private long[] myX = EMPTY;
+  @NotNull private long[] myY = EMPTY;
+  private int myFrom;
+  private int mySize;
+
+  public void set(@NotNull long[] x, @NotNull long[] y, int from, int to) {
+    assert from <= to && to <= x.length && to <= y.length;
+    myX = x;
+    myY = y;
+    myFrom = from;
+    mySize = to - from;
+  }
+
+  public void clear() {
+    set(EMPTY, EMPTY, 0, 0);
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  @Override
+  public long getX(int index) {
+    assert index < mySize;
+    return myX[myFrom + index];
+  }
+
+  @Override
+  public long getY(int index) {
+    assert index < mySize;
+    return myY[myFrom + index];
+  }
+}
@@ -15,22 +15,103 @@
  */
 package com.android.tools.adtui.model;
 
-import gnu.trove.TLongArrayList;
 import org.jetbrains.annotations.NotNull;
 
-public class LongDataSeries extends BaseDataSeries<Long> {
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link DataSeries} of longs stored in parallel primitive {@code long[]} arrays rather than in a list of boxed values, which can hand
+ * out ranges of its data as {@link LongDataRange} views without copying or allocating.
+ */
+public class LongDataSeries implements PrimitiveLongDataSeries, LongDataView {
+  private static final int INITIAL_CAPACITY = 16;
+
+  @NotNull private long[] myX = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myY = new long[INITIAL_CAPACITY];
+  private int mySize;
+
+  public void add(long x, long y) {
+    assert mySize == 0 || x >= myX[mySize - 1] : "Samples must be added in x order";
+    if (mySize == myX.length) {
+      int capacity = mySize * 2;
+      myX = Arrays.copyOf(myX, capacity);
+      myY = Arrays.copyOf(myY, capacity);
+    }
+    myX[mySize] = x;
+    myY[mySize] = y;
+    mySize++;
+  }
+
+  public void clear() {
+    mySize = 0;
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  @Override
+  public long getX(int index) {
+    return myX[index];
+  }
+
+  @Override
+  public long getY(int index) {
+    return myY[index];
+  }
+
+  /**
+   * Returns the index of the last sample at or before {@code x}, or of the first sample if there is none.
+   */
+  public int getNearestXIndex(long x) {
+    int index = Arrays.binarySearch(myX, 0, mySize, x);
+    if (index < 0) {
+      // No exact match, round down to the point to the left of the insertion point, like BaseDataSeries does.
+      index = -index - 2;
+    }
+    return Math.max(0, Math.min(index, mySize - 1));
+  }
 
   @NotNull
-  private final TLongArrayList mY = new TLongArrayList();
+  public List<SeriesData<Long>> getAllData() {
+    return getDataForIndexRange(0, mySize);
+  }
 
   @Override
-  public void add(long x, Long y) {
-    mX.add(x);
-    mY.add(y);
+  public List<SeriesData<Long>> getDataForXRange(Range xRange) {
+    if (mySize == 0 || xRange.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return getDataForIndexRange(getNearestXIndex((long)xRange.getMin()), getNearestXIndex((long)xRange.getMax()) + 1);
+  }
+
+  @NotNull
+  private List<SeriesData<Long>> getDataForIndexRange(int fromIndex, int toIndex) {
+    List<SeriesData<Long>> data = new ArrayList<>(toIndex - fromIndex);
+    for (int i = fromIndex; i < toIndex; i++) {
+      data.add(new SeriesData<>(myX[i], myY[i]));
+    }
+    return data;
+  }
+
+  /**
+   * Points {@code range} at the samples [fromIndex, toIndex).
+   */
+  public void getDataForIndexRange(int fromIndex, int toIndex, @NotNull LongDataRange range) {
+    range.set(myX, myY, fromIndex, toIndex);
   }
 
   @Override
-  public Long getY(int index) {
-    return mY.get(index);
+  public void getDataForXRange(@NotNull Range xRange, @NotNull LongDataRange range) {
+    if (mySize == 0 || xRange.isEmpty()) {
+      range.clear();
+      return;
+    }
+    int fromIndex = getNearestXIndex((long)xRange.getMin());
+    int toIndex = getNearestXIndex((long)xRange.getMax()) + 1;
+    range.set(myX, myY, fromIndex, toIndex);
   }
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+/**
+ * Read-only, index-based access to a sequence of (x, y) samples stored as primitive longs. This is the unboxed counterpart of a
+ * {@code List<SeriesData<Long>>}, used by the charts to walk their data every frame without allocating.
+ */
+public interface LongDataView {
+  int size();
+
+  long getX(int index);
+
+  long getY(int index);
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} of longs that can also expose the data of a range without boxing it. {@link RangedContinuousSeries} uses this to
+ * feed the line charts every frame without allocating.
+ */
+public interface PrimitiveLongDataSeries extends DataSeries<Long> {
+  /**
+   * Points {@code range} at the same samples {@link #getDataForXRange(Range)} would return. The range is only valid until the series
+   * is modified.
+   */
+  void getDataForXRange(@NotNull Range xRange, @NotNull LongDataRange range);
+
+  /**
+   * Like {@link #getDataForXRange(Range, LongDataRange)}, but lets series that keep downsampled versions of their data return about
+   * {@code maxSampleCount} samples instead of all of them, e.g. one min and one max sample per pixel of the chart. By default the full
+   * resolution data is returned.
+   */
+  default void getDataForXRange(@NotNull Range xRange, int maxSampleCount, @NotNull LongDataRange range) {
+    getDataForXRange(xRange, range);
+  }
+}
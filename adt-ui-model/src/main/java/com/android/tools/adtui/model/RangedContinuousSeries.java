@@ -18,6 +18,8 @@ package com.android.tools.adtui.model;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 /**
  * Represents a view into a continuous series, where the data in view is only
  * within given x and y ranged.
@@ -30,6 +32,13 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
   @NotNull
   private final Range mYRange;
 
+  // Reused by getLongSeries(), so that the charts can read the series every frame without allocating.
+  @NotNull
+  private final LongDataRange myRangeView = new LongDataRange();
+
+  @NotNull
+  private final LongDataBuffer myBuffer = new LongDataBuffer();
+
   public RangedContinuousSeries(@NotNull String name, @NotNull Range xRange, @NotNull Range yRange, @NotNull DataSeries<Long> series) {
     super(xRange, series);
     mYRange = yRange;
@@ -45,4 +54,34 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
   public String getName() {
     return myName;
   }
+
+  /**
+   * Primitive counterpart of {@link #getSeries()}. The returned view is owned by this series and is only valid until the next call.
+   * Data series implementing {@link PrimitiveLongDataSeries} are viewed in place; the data of other series is copied into a buffer that
+   * is reused across calls.
+   */
+  @NotNull
+  public LongDataView getLongSeries() {
+    return getLongSeries(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Same as {@link #getLongSeries()}, but lets the data series return a downsampled version of its data of about {@code maxSampleCount}
+   * samples, see {@link PrimitiveLongDataSeries#getDataForXRange(Range, int, LongDataRange)}.
+   */
+  @NotNull
+  public LongDataView getLongSeries(int maxSampleCount) {
+    if (mSeries instanceof PrimitiveLongDataSeries) {
+      ((PrimitiveLongDataSeries)mSeries).getDataForXRange(mXRange, maxSampleCount, myRangeView);
+      return myRangeView;
+    }
+
+    myBuffer.clear();
+    List<SeriesData<Long>> seriesList = mSeries.getDataForXRange(mXRange);
+    for (int i = 0; i < seriesList.size(); i++) {
+      SeriesData<Long> data = seriesList.get(i);
+      myBuffer.add(data.x, data.value);
+    }
+    return myBuffer;
+  }
 }
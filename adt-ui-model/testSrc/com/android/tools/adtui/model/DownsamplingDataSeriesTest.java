@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class DownsamplingDataSeriesTest {
+  private final CountingDataSeries mySource = new CountingDataSeries();
+  private final DownsamplingDataSeries mySeries = new DownsamplingDataSeries(mySource);
+
+  @Test
+  public void testFullResolutionMatchesSource() {
+    addSamples(0, 100);
+
+    LongDataRange range = new LongDataRange();
+    mySeries.getDataForXRange(new Range(15, 45), range);
+    List<SeriesData<Long>> data = mySeries.getDataForXRange(new Range(15, 45));
+    assertThat(range.size()).isEqualTo(data.size());
+    // The samples around the edges of the range are included, so the values at the edges can be interpolated.
+    assertThat(data.get(0).x).isEqualTo(15);
+    assertThat(data.get(data.size() - 1).x).isEqualTo(45);
+    for (int i = 0; i < data.size(); i++) {
+      assertThat(range.getX(i)).isEqualTo(data.get(i).x);
+      assertThat(range.getY(i)).isEqualTo(data.get(i).value);
+    }
+
+    // A point between two samples gets both of them.
+    assertThat(mySeries.getDataForXRange(new Range(20.5, 20.5))).hasSize(2);
+  }
+
+  @Test
+  public void testDownsamplingKeepsMinAndMax() {
+    int count = 10000;
+    for (long x = 0; x < count; x++) {
+      mySource.add(x, x == 5001 ? -1000L : x == 7003 ? 1000000L : x % 100);
+    }
+    Range xRange = new Range(0, count);
+    assertThat(mySeries.getDataForXRange(xRange)).hasSize(count);
+    assertThat(mySeries.getLevelCount()).isGreaterThan(1);
+
+    LongDataRange range = new LongDataRange();
+    mySeries.getDataForXRange(xRange, 200, range);
+    assertThat(range.size()).isAtMost(200);
+    assertThat(range.size()).isGreaterThan(200 / (2 * DownsamplingDataSeries.BRANCHING_FACTOR));
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < range.size(); i++) {
+      if (i > 0) {
+        assertThat(range.getX(i)).isGreaterThan(range.getX(i - 1));
+      }
+      min = Math.min(min, range.getY(i));
+      max = Math.max(max, range.getY(i));
+    }
+    assertThat(min).isEqualTo(-1000L);
+    assertThat(max).isEqualTo(1000000L);
+
+    // Ranges with few enough samples are returned at full resolution.
+    mySeries.getDataForXRange(new Range(100, 150), 200, range);
+    assertThat(range.size()).isEqualTo(51);
+  }
+
+  @Test
+  public void testOnlyNewSamplesAreQueried() {
+    addSamples(0, 10);
+    mySeries.getDataForXRange(new Range(0, 10));
+    assertThat(mySource.myQueries).hasSize(1);
+
+    addSamples(10, 20);
+    assertThat(mySeries.getDataForXRange(new Range(5, 20))).hasSize(15);
+    assertThat(mySource.myQueries).hasSize(2);
+    assertThat(mySource.myQueries.get(1).getMin()).isEqualTo(9.0);
+
+    // Querying before the cached data refetches it all.
+    assertThat(mySeries.getDataForXRange(new Range(-5, 20))).hasSize(20);
+    assertThat(mySource.myQueries).hasSize(3);
+    assertThat(mySource.myQueries.get(2).getMin()).isAtMost(-5.0);
+  }
+
+  @Test
+  public void testPrimitiveSourceIsReadWithoutBoxing() {
+    LongDataSeries samples = new LongDataSeries();
+    for (long x = 0; x < 20; x++) {
+      samples.add(x, x * 3);
+    }
+    DownsamplingDataSeries series = new DownsamplingDataSeries(new PrimitiveLongDataSeries() {
+      @Override
+      public List<SeriesData<Long>> getDataForXRange(Range xRange) {
+        throw new AssertionError("The boxed data should not be queried");
+      }
+
+      @Override
+      public void getDataForXRange(@NotNull Range xRange, @NotNull LongDataRange range) {
+        samples.getDataForXRange(xRange, range);
+      }
+    });
+
+    LongDataRange range = new LongDataRange();
+    series.getDataForXRange(new Range(5, 10), range);
+    assertThat(range.size()).isEqualTo(6);
+    assertThat(range.getX(0)).isEqualTo(5);
+    assertThat(range.getY(5)).isEqualTo(30);
+  }
+
+  private void addSamples(long fromX, long toX) {
+    for (long x = fromX; x < toX; x++) {
+      mySource.add(x, x % 100);
+    }
+  }
+
+  private static class CountingDataSeries extends DefaultDataSeries<Long> {
+    private final List<Range> myQueries = new ArrayList<>();
+
+    @Override
+    public List<SeriesData<Long>> getDataForXRange(Range xRange) {
+      myQueries.add(new Range(xRange));
+      return super.getDataForXRange(xRange);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LongDataSeriesTest {
+  @Test
+  public void testRangeViewMatchesBoxedData() {
+    LongDataSeries series = new LongDataSeries();
+    for (long x = 0; x < 100; x += 10) {
+      series.add(x, x * 2);
+    }
+
+    LongDataRange range = new LongDataRange();
+    for (Range xRange : new Range[]{new Range(15, 45), new Range(0, 90), new Range(-50, 5), new Range(95, 200)}) {
+      List<SeriesData<Long>> expected = series.getDataForXRange(xRange);
+      series.getDataForXRange(xRange, range);
+      assertSameData(range, expected);
+    }
+
+    series.getDataForXRange(new Range(), range);
+    assertThat(range.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testRangedContinuousSeriesReadsBothKindsOfSeries() {
+    Range xRange = new Range(15, 45);
+    LongDataSeries primitiveSeries = new LongDataSeries();
+    DefaultDataSeries<Long> boxedSeries = new DefaultDataSeries<>();
+    for (long x = 0; x < 100; x += 10) {
+      primitiveSeries.add(x, x * 2);
+      boxedSeries.add(x, x * 2);
+    }
+
+    RangedContinuousSeries primitive = new RangedContinuousSeries("primitive", xRange, new Range(), primitiveSeries);
+    RangedContinuousSeries boxed = new RangedContinuousSeries("boxed", xRange, new Range(), boxedSeries);
+    List<SeriesData<Long>> expected = boxed.getSeries();
+    assertSameData(primitive.getLongSeries(), expected);
+    assertSameData(boxed.getLongSeries(), expected);
+    // The view is reused across calls.
+    assertThat(boxed.getLongSeries()).isSameAs(boxed.getLongSeries());
+  }
+
+  @Test
+  public void testBufferGrows() {
+    LongDataBuffer buffer = new LongDataBuffer();
+    for (int i = 0; i < 100; i++) {
+      buffer.add(i, -i);
+    }
+    assertThat(buffer.size()).isEqualTo(100);
+    assertThat(buffer.getY(99)).isEqualTo(-99);
+    buffer.removeLast();
+    buffer.setY(0, 5);
+    assertThat(buffer.size()).isEqualTo(99);
+    assertThat(buffer.getY(0)).isEqualTo(5);
+    buffer.clear();
+    assertThat(buffer.size()).isEqualTo(0);
+  }
+
+  private static void assertSameData(LongDataView actual, List<SeriesData<Long>> expected) {
+    assertThat(actual.size()).isEqualTo(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.getX(i)).isEqualTo(expected.get(i).x);
+      assertThat(actual.getY(i)).isEqualTo(expected.get(i).value.longValue());
+    }
+  }
+}
@@ -27,6 +27,7 @@ import com.sun.tools.attach.AgentLoadException;
 import com.sun.tools.attach.AttachNotSupportedException;
 import com.sun.tools.attach.VirtualMachine;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
@@ -37,7 +38,19 @@ import java.nio.file.Paths;
 
 public class EnableSwingProfilerAction extends DumbAwareToggleAction {
   private static final Key<Object> SERVICE_KEY = Key.create("com.android.tools.swingp.server.StatsSerializer");
+  /**
+   * System property selecting the binary stats records of the profiler instead of the JSON call trees.
+   */
+  private static final String BINARY_PROPERTY = "swingp.binary";
+  /**
+   * System property naming a file to append the binary stats records to instead of serving them.
+   */
+  private static final String RECORD_FILE_PROPERTY = "swingp.record.file";
   private static boolean ourHasInstrumentedVm;
+  /**
+   * Whether the VM was instrumented for binary stats, which can't be changed once the agent is loaded.
+   */
+  private static boolean ourIsBinary;
 
   public EnableSwingProfilerAction() {
     super("Enable Swing Profiler");
@@ -60,14 +73,16 @@ public class EnableSwingProfilerAction extends DumbAwareToggleAction {
       try {
         Class<?> serializerClass = Class.forName("com.android.tools.swingp.server.StatsSerializer");
         Method start = serializerClass.getMethod("start");
-        Object serializerInstance = serializerClass.getConstructor().newInstance();
+        String recordPath = ourIsBinary ? System.getProperty(RECORD_FILE_PROPERTY) : null;
+        File recordFile = recordPath != null ? new File(recordPath) : null;
+        Object serializerInstance = serializerClass.getConstructor(boolean.class, File.class).newInstance(ourIsBinary, recordFile);
 
         if ((Boolean)start.invoke(serializerInstance)) {
           SERVICE_KEY.set(ApplicationManager.getApplication(), serializerInstance);
 
-          // Open up the HTML visualizer.
+          // Open up the HTML visualizer, which only reads the JSON stats.
           URL visualizerUrl = getClass().getResource("/swingp/Visualizer.html");
-          if (visualizerUrl != null) {
+          if (visualizerUrl != null && !ourIsBinary) {
             BrowserUtil.browse(visualizerUrl);
           }
         }
@@ -100,6 +115,7 @@ public class EnableSwingProfilerAction extends DumbAwareToggleAction {
       return true;
     }
 
+    boolean isBinary = Boolean.getBoolean(BINARY_PROPERTY);
     String vmName = ManagementFactory.getRuntimeMXBean().getName();
     String pid = vmName.substring(0, vmName.indexOf('@'));
 
@@ -108,7 +124,7 @@ public class EnableSwingProfilerAction extends DumbAwareToggleAction {
         Paths.get(PathManager.getHomePath(), "../../bazel-genfiles/tools/adt/idea/swingp/swing-instrumenter_deploy.jarjar.jar");
       VirtualMachine vm = VirtualMachine.attach(pid);
       // Only supports development mode, not release mode, therefore only look in the bazel-bin directory.
-      vm.loadAgent(jarPath.toString(), null);
+      vm.loadAgent(jarPath.toString(), isBinary ? "binary" : null);
     }
     catch (AttachNotSupportedException | IOException | AgentLoadException | AgentInitializationException e) {
       Logger.getInstance(EnableSwingProfilerAction.class).warn("Could not connect to the VM and start instrumentation agent.", e);
@@ -116,6 +132,7 @@ public class EnableSwingProfilerAction extends DumbAwareToggleAction {
     }
 
     ourHasInstrumentedVm = true;
+    ourIsBinary = isBinary;
     return true;
   }
 }
@@ -39,6 +39,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Queue;
 import javax.swing.AbstractAction;
 import javax.swing.KeyStroke;
@@ -238,7 +239,7 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
                                                                    Math.min(drawingArea.x + drawingArea.width, dim.width - PADDING) -
                                                                    Math.max(0, drawingArea.x),
                                                                    drawingArea.height);
-      myRenderer.render(g, node, drawingArea, clampedDrawingArea, node == myFocusedNode);
+      myRenderer.render(g, node, drawingArea, clampedDrawingArea, Objects.equals(node, myFocusedNode));
     }
 
     g.dispose();
@@ -375,7 +376,7 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
       @Override
       public void mouseMoved(MouseEvent e) {
         N node = getNodeAt(e.getPoint());
-        if (node != myFocusedNode) {
+        if (!Objects.equals(node, myFocusedNode)) {
           myDataUpdated = true;
           myFocusedNode = node;
           opaqueRepaint();
@@ -15,6 +15,8 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongDataBuffer;
+import com.android.tools.adtui.model.LongDataView;
 import com.android.tools.adtui.model.SeriesData;
 import org.jetbrains.annotations.NotNull;
 
@@ -32,7 +34,8 @@ class DefaultLineChartReducer implements LineChartReducer {
   private static int PATH_ITERATOR_COORDS_COUNT = 6;
 
   /**
-   * A simple reducer which reduces when,
+   * Same reduction as {@link LineChartReducer#reduceData(LongDataView, LineConfig, LongDataBuffer)}, which {@link LineChart} draws with, so
+   * that both kinds of data are reduced by a single implementation:
    * 1. When the data is for a stepped line and if two consecutive values are equal (except for the last two points),
    *    the later of them is unnecessary to represent the stepped line.
    *    For example, if it has data [(1, 2) (5, 2) (10, 5)] and the assumption of the stepped line is: values in range [1, 10) is 2,
@@ -41,27 +44,30 @@ class DefaultLineChartReducer implements LineChartReducer {
    */
   @Override
   public List<SeriesData<Long>> reduceData(@NotNull List<SeriesData<Long>> dataList, @NotNull LineConfig config) {
-    if (config.getDataBucketInterval() > 0) {
-      // If the line chart is showing bars, we don't want to reduce points - because repeating the
-      // same value multiple times in a row should generate new bars!
-      // TODO(b/73784793): Remove this code once we refactor a new BarChart class
+    LongDataView data = new LongDataView() {
+      @Override
+      public int size() {
+        return dataList.size();
+      }
+
+      @Override
+      public long getX(int index) {
+        return dataList.get(index).x;
+      }
+
+      @Override
+      public long getY(int index) {
+        return dataList.get(index).value;
+      }
+    };
+    LongDataView reducedData = reduceData(data, config, new LongDataBuffer());
+    if (reducedData == data) {
       return dataList;
     }
 
-    List<SeriesData<Long>> reduced = new ArrayList<>();
-    for (SeriesData<Long> data: dataList) {
-      while (reduced.size() >= 2) {
-        SeriesData<Long> preLast = reduced.get(reduced.size() - 2);
-        SeriesData<Long> last = reduced.get(reduced.size() - 1);
-
-        if (preLast.value.equals(last.value) &&
-            (config.isStepped() || last.value.equals(data.value))) {
-          reduced.remove(reduced.size() - 1);
-        } else {
-          break;
-        }
-      }
-      reduced.add(data);
+    List<SeriesData<Long>> reduced = new ArrayList<>(reducedData.size());
+    for (int i = 0; i < reducedData.size(); i++) {
+      reduced.add(new SeriesData<>(reducedData.getX(i), reducedData.getY(i)));
     }
     return reduced;
   }
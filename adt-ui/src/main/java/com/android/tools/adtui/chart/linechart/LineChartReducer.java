@@ -15,7 +15,10 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongDataBuffer;
+import com.android.tools.adtui.model.LongDataView;
 import com.android.tools.adtui.model.SeriesData;
+import org.jetbrains.annotations.NotNull;
 
 import java.awt.geom.Path2D;
 import java.util.List;
@@ -31,6 +34,40 @@ public interface LineChartReducer {
    */
   List<SeriesData<Long>> reduceData(List<SeriesData<Long>> data, LineConfig config);
 
+  /**
+   * Primitive counterpart of {@link #reduceData(List, LineConfig)}, which is what {@link LineChart} uses when drawing. Implementations
+   * either return {@code data} as is, or fill {@code reduced} (which the caller reuses across frames) and return it.
+   *
+   * The default implementation drops the points which don't change the looking of the line: when the line is stepped, a point with the
+   * same value as the previous one (except for the last point), otherwise the middle one of three consecutive points with the same value.
+   * It does not allocate once {@code reduced} has grown to the size of the data.
+   */
+  @NotNull
+  default LongDataView reduceData(@NotNull LongDataView data, @NotNull LineConfig config, @NotNull LongDataBuffer reduced) {
+    if (config.getDataBucketInterval() > 0) {
+      // Bars should not be reduced, repeating the same value multiple times in a row should generate new bars.
+      // TODO(b/73784793): Remove this code once we refactor a new BarChart class
+      return data;
+    }
+
+    reduced.clear();
+    for (int i = 0; i < data.size(); i++) {
+      long value = data.getY(i);
+      while (reduced.size() >= 2) {
+        long preLast = reduced.getY(reduced.size() - 2);
+        long last = reduced.getY(reduced.size() - 1);
+        if (preLast == last && (config.isStepped() || last == value)) {
+          reduced.removeLast();
+        }
+        else {
+          break;
+        }
+      }
+      reduced.add(data.getX(i), value);
+    }
+    return reduced;
+  }
+
   /**
    * Reduces the given path in a pixel level, i.e when dimensions are available.
    * The result shouldn't affect the looking of the line when it's drawn.
@@ -15,6 +15,8 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongDataBuffer;
+import com.android.tools.adtui.model.LongDataView;
 import com.android.tools.adtui.model.SeriesData;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
@@ -89,6 +91,29 @@ public class DefaultLineChartReducerTest {
     assertSeriesEquals(expected, result);
   }
 
+  @Test
+  public void reducePrimitiveDataMatchesListReduction() {
+    long[][] given = {{0, 10}, {1, 10}, {2, 13}, {3, 13}, {4, 13}, {5, 13}, {6, 5}, {7, 5}};
+    LongDataBuffer data = new LongDataBuffer();
+    List<SeriesData<Long>> dataList = new ArrayList<>();
+    for (long[] point : given) {
+      data.add(point[0], point[1]);
+      dataList.add(new SeriesData<>(point[0], point[1]));
+    }
+
+    LongDataBuffer reduced = new LongDataBuffer();
+    for (boolean stepped : new boolean[]{false, true}) {
+      myConfig.setStepped(stepped);
+      List<SeriesData<Long>> expected = myReducer.reduceData(dataList, myConfig);
+      LongDataView result = myReducer.reduceData(data, myConfig, reduced);
+      assertThat(result.size()).isEqualTo(expected.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(result.getX(i)).isEqualTo(expected.get(i).x);
+        assertThat(result.getY(i)).isEqualTo(expected.get(i).value);
+      }
+    }
+  }
+
   @Test
   public void simpleReducePath() {
     float[][] given = {{0, 0}, {0.1f, 1}, {0.2f, 6}, {0.3f, 4}, {1, 2}, {1.1f, 5}};
@@ -73,6 +73,12 @@ public class LineChartReducerVisualTest extends VisualTest {
         return data;
       }
 
+      @NotNull
+      @Override
+      public LongDataView reduceData(@NotNull LongDataView data, @NotNull LineConfig config, @NotNull LongDataBuffer reduced) {
+        return data;
+      }
+
       @Override
       public Path2D reducePath(Path2D path, LineConfig config) {
         return path;
@@ -169,6 +169,18 @@ public final class StudioFlags {
     false
   );
 
+  public static final Flag<Boolean> PROFILER_TIME_SERIES_STORE = Flag.create(
+    PROFILER, "datastore.timeseries", "Store profiler samples in a columnar time-series store",
+    "Keeps CPU, memory and network samples in primitive in-memory columns instead of SQLite tables, for faster range queries.",
+    false
+  );
+
+  public static final Flag<Boolean> PROFILER_SHARED_POLL_SCHEDULER = Flag.create(
+    PROFILER, "datastore.poll.scheduler", "Drive datastore pollers from a shared scheduler",
+    "Polls all device streams from one small thread pool with adaptive periods, instead of one mostly idle thread per poller.",
+    false
+  );
+
   private static final FlagGroup NELE = new FlagGroup(FLAGS, "nele", "Layout Editor");
   public static final Flag<Boolean> NELE_ANIMATIONS_PREVIEW = Flag.create(
     NELE, "animated.preview", "Show preview animations toolbar",
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.testing;
+
+import com.android.tools.perflogger.Benchmark;
+import com.android.tools.perflogger.Metric;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.logging.Logger;
+
+/**
+ * Helpers for the tests measuring a {@link Benchmark}: timing an operation once it is warmed up, and logging and committing the results.
+ */
+public final class Benchmarks {
+  private Benchmarks() {
+  }
+
+  /**
+   * Runs the operation {@code warmUpIterations} times and then {@code iterations} times, running {@code setUp} before each run outside of
+   * the measured time.
+   *
+   * @return the average time of the measured runs, in nanoseconds
+   */
+  public static long averageTimeNs(int warmUpIterations, int iterations, @NotNull Runnable setUp, @NotNull Runnable operation) {
+    for (int i = 0; i < warmUpIterations; i++) {
+      setUp.run();
+      operation.run();
+    }
+    long timeNs = 0;
+    for (int i = 0; i < iterations; i++) {
+      setUp.run();
+      long startTime = System.nanoTime();
+      operation.run();
+      timeNs += System.nanoTime() - startTime;
+    }
+    return timeNs / iterations;
+  }
+
+  /**
+   * Logs the value and commits it as a sample of the metric of the given name.
+   */
+  public static void report(@NotNull Benchmark benchmark, @NotNull String metricName, long value) {
+    Logger.getLogger(Benchmarks.class.getName()).info(metricName + ": " + value);
+
+    Metric metric = new Metric(metricName);
+    metric.addSamples(benchmark, new Metric.MetricSample(Instant.now().toEpochMilli(), value));
+    metric.commit();
+  }
+}
@@ -16,6 +16,8 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.tools.idea.actions.BrowserHelpAction;
 import com.android.tools.idea.ddms.DeviceContext;
 import com.android.tools.idea.ddms.actions.ScreenRecorderAction;
@@ -24,20 +26,52 @@ import com.android.tools.idea.ddms.actions.TerminateVMAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyConfigureLogcatHeaderAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyRestartAction;
 import com.intellij.diagnostic.logging.LogConsoleBase;
+import com.intellij.diagnostic.logging.LogFilter;
 import com.intellij.diagnostic.logging.LogFormatter;
 import com.intellij.execution.impl.ConsoleViewImpl;
 import com.intellij.execution.ui.ConsoleView;
+import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.actionSystem.Separator;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
 import com.intellij.psi.search.GlobalSearchScope;
+import net.jcip.annotations.GuardedBy;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class AndroidLogConsole extends LogConsoleBase {
   private final AndroidLogcatView myView;
   private final RegexFilterComponent myRegexFilterComponent = new RegexFilterComponent("LOG_FILTER_HISTORY", 5);
   private final AndroidLogcatPreferences myPreferences;
+  private final AndroidLogFilterModel myModel;
+
+  /**
+   * Number of times the buffered messages were filtered again. Only accessed on the UI thread.
+   */
+  private int myFilterCount;
+
+  private final Object myLock = new Object();
+
+  /**
+   * The filter count of the last messages collected from the buffer.
+   */
+  @GuardedBy("myLock")
+  private int myCollectedFilterCount;
+
+  /**
+   * Lines received after messages were collected from the buffer and before the console shows them, or null if no messages are on their
+   * way to the console.
+   */
+  @GuardedBy("myLock")
+  @Nullable
+  private List<String> myHeldBackLines;
 
   AndroidLogConsole(@NotNull Project project,
                     @NotNull AndroidLogFilterModel model,
@@ -65,6 +99,7 @@ public final class AndroidLogConsole extends LogConsoleBase {
     }
 
     myView = view;
+    myModel = model;
     myPreferences = AndroidLogcatPreferences.getInstance(project);
 
     myRegexFilterComponent.setFilter(myPreferences.TOOL_WINDOW_CUSTOM_FILTER);
@@ -106,9 +141,95 @@ public final class AndroidLogConsole extends LogConsoleBase {
   }
 
   public void addLogLine(@NotNull String line) {
+    synchronized (myLock) {
+      if (myHeldBackLines != null) {
+        myHeldBackLines.add(line);
+        return;
+      }
+    }
     super.addMessage(line);
   }
 
+  @Override
+  public void onFilterStateChange(LogFilter filter) {
+    filterBufferedMessages();
+  }
+
+  @Override
+  public void onTextFilterChange() {
+    filterBufferedMessages();
+  }
+
+  /**
+   * Replaces the contents of the console with the messages received so far from the device that pass the filters. Rather than
+   * replaying every line of the console through the filters on the UI thread, like {@link LogConsoleBase} does, the messages are
+   * looked up in the buffer of {@link AndroidLogcatService} and formatted on a pooled thread, and only the matching ones are printed,
+   * at once.
+   */
+  private void filterBufferedMessages() {
+    IDevice device = myView.getSelectedDevice();
+    if (device == null) {
+      super.onTextFilterChange();
+      return;
+    }
+
+    int filterCount = ++myFilterCount;
+    AndroidLogcatFilter filter = myModel.getConfiguredFilter();
+    LogLevel minLevel = myModel.getMinimumLevel();
+
+    Application application = ApplicationManager.getApplication();
+    application.executeOnPooledThread(() -> {
+      List<LogCatMessage> messages = AndroidLogcatService.getInstance().getMessages(device, filter, minLevel, () -> {
+        synchronized (myLock) {
+          // The lines held back for earlier messages are part of these ones
+          if (filterCount > myCollectedFilterCount) {
+            myCollectedFilterCount = filterCount;
+            myHeldBackLines = new ArrayList<>();
+          }
+        }
+      });
+
+      if (messages == null) {
+        application.invokeLater(() -> {
+          if (filterCount == myFilterCount && !myView.getProject().isDisposed()) {
+            super.onTextFilterChange();
+          }
+        });
+        return;
+      }
+
+      List<Pair<String, Key>> text = myModel.formatMessages(messages);
+      application.invokeLater(() -> printFilteredMessages(filterCount, text));
+    });
+  }
+
+  private void printFilteredMessages(int filterCount, @NotNull List<Pair<String, Key>> text) {
+    List<String> heldBackLines;
+    synchronized (myLock) {
+      // Messages collected later will replace these ones
+      if (filterCount != myCollectedFilterCount) {
+        return;
+      }
+      heldBackLines = myHeldBackLines;
+      myHeldBackLines = null;
+    }
+
+    ConsoleView console = getConsole();
+    if (console == null || myView.getProject().isDisposed()) {
+      return;
+    }
+
+    console.clear();
+    for (Pair<String, Key> lines : text) {
+      ConsoleViewContentType type = ConsoleViewContentType.getConsoleViewType(lines.getSecond());
+      console.print(lines.getFirst(), type != null ? type : ConsoleViewContentType.NORMAL_OUTPUT);
+    }
+
+    if (heldBackLines != null) {
+      heldBackLines.forEach(super::addMessage);
+    }
+  }
+
   /**
    * Clear the current logs and replay all old messages. This is useful to do if the display
    * format of the logs have changed, for example.
@@ -27,11 +27,13 @@ import com.intellij.diagnostic.logging.LogFilterModel;
 import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -52,7 +54,7 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   private final StringBuilder myMessageSoFar = new StringBuilder();
 
   @Nullable private LogCatHeader myPrevHeader;
-  @Nullable private LogCatHeader myRejectBeforeHeader;
+  @Nullable private volatile LogCatHeader myRejectBeforeHeader;
 
   /**
    * A regex which is tested against unprocessed log input. Contrast with
@@ -60,7 +62,7 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
    * it has been parsed and broken up into component parts.
    * This is normally set by the Android Monitor search bar.
    */
-  @Nullable private Pattern myCustomPattern;
+  @Nullable private volatile Pattern myCustomPattern;
   private boolean myCustomApplicable = false; // True if myCustomPattern matches this message
   private boolean myConfiguredApplicable = false;  // True if the active filter matches this message
 
@@ -169,6 +171,76 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
       .isApplicable(message, myPrevHeader.getTag(), myPrevHeader.getAppName(), myPrevHeader.getPid(), myPrevHeader.getLogLevel());
   }
 
+  /**
+   * Returns the configured filter, for {@link LogcatBuffer} to look up the messages it accepts.
+   */
+  @NotNull
+  final AndroidLogcatFilter getConfiguredFilter() {
+    AndroidLogcatFilter filter = myConfiguredFilter;
+    return filter != null ? filter : new MatchAllFilter("");
+  }
+
+  /**
+   * Returns the level of the selected log level filter, for {@link LogcatBuffer} to skip the messages below it.
+   */
+  @NotNull
+  final Log.LogLevel getMinimumLevel() {
+    LogFilter filter = getSelectedLogLevelFilter();
+    return filter != null ? ((AndroidLogLevelFilter)filter).myLogLevel : Log.LogLevel.VERBOSE;
+  }
+
+  /**
+   * Formats the lines of {@code messages} which {@link #processLine(String)} would accept, given that the messages already passed
+   * {@link #getConfiguredFilter()} and {@link #getMinimumLevel()}. Consecutive lines of the same output type are joined, so that a
+   * console can print them at once.
+   * <p/>
+   * This does not change the state used to process lines, so it can run on any thread, while new lines are being processed.
+   */
+  @NotNull
+  final List<Pair<String, Key>> formatMessages(@NotNull List<LogCatMessage> messages) {
+    Pattern customPattern = myCustomPattern;
+    LogCatHeader rejectBeforeHeader = myRejectBeforeHeader;
+
+    List<Pair<String, Key>> text = new ArrayList<>();
+    StringBuilder builder = new StringBuilder();
+    Key key = null;
+    List<String> lines = new ArrayList<>();
+    int start = 0;
+    while (start < messages.size()) {
+      // The lines of a multi-line message share their header
+      LogCatHeader header = messages.get(start).getHeader();
+      boolean isApplicable = false;
+      lines.clear();
+      int end = start;
+      for (; end < messages.size() && messages.get(end).getHeader() == header; end++) {
+        String message = messages.get(end).getMessage();
+        String line = end == start ? myFormatter.formatMessageFull(header, message) : AndroidLogcatFormatter.formatContinuation(message);
+        isApplicable = isApplicable || customPattern == null || customPattern.matcher(line).find();
+        lines.add(line);
+      }
+      start = end;
+
+      if (!isApplicable || (rejectBeforeHeader != null && header.isBefore(rejectBeforeHeader))) {
+        continue;
+      }
+
+      Key lineKey = AndroidLogcatUtils.getProcessOutputType(header.getLogLevel());
+      if (lineKey != key && builder.length() > 0) {
+        text.add(Pair.create(builder.toString(), key));
+        builder.setLength(0);
+      }
+      key = lineKey;
+      for (String line : lines) {
+        builder.append(myFormatter.formatMessage(line)).append('\n');
+      }
+    }
+
+    if (builder.length() > 0) {
+      text.add(Pair.create(builder.toString(), key));
+    }
+    return text;
+  }
+
   @Override
   public final List<? extends LogFilter> getLogFilters() {
     return myLogLevelFilters;
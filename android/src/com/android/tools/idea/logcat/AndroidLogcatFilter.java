@@ -34,4 +34,20 @@ public interface AndroidLogcatFilter {
    * Returns {@code true} if the current logcat message should be accepted, {@code false} otherwise.
    */
   boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel);
+
+  /**
+   * Returns the pid of the only process whose messages may be accepted, or -1 if messages of any process may be. This lets the
+   * messages kept by {@link LogcatBuffer} be looked up by pid rather than tested one by one.
+   */
+  default int getPid() {
+    return -1;
+  }
+
+  /**
+   * Returns {@code false} if no message with the given tag can be accepted. This lets the messages kept by {@link LogcatBuffer} be
+   * looked up by tag rather than tested one by one.
+   */
+  default boolean isApplicableTag(@NotNull String tag) {
+    return true;
+  }
 }
@@ -24,7 +24,6 @@ import com.android.tools.idea.run.LoggingReceiver;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.intellij.execution.impl.ConsoleBuffer;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
@@ -37,6 +36,7 @@ import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.android.util.AndroidBundle;
 import org.jetbrains.android.util.AndroidOutputReceiver;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.io.IOException;
@@ -59,26 +59,6 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
-  private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
-
-    public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
-      if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
-      }
-    }
-
-    @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
-    }
-  }
-
   public interface LogcatListener {
     default void onLogLineReceived(@NotNull LogCatMessage line) {
     }
@@ -149,7 +129,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
           LogcatBuffer buffer = myLogBuffers.get(device);
 
           if (buffer != null) {
-            buffer.addMessage(line);
+            buffer.add(line);
           }
         }
       }
@@ -295,6 +275,30 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     }
   }
 
+  /**
+   * Returns the messages received so far from {@code device} that are at least {@code minLevel} and that {@code filter} accepts, or
+   * {@code null} if its logs are not being received. This should be called off the UI thread.
+   * <p/>
+   * {@code onCollected} runs right after the messages are collected, while no new message can come in, so that a view refreshing its
+   * contents with them can hold back the messages its listener gets from then on until it has shown the returned ones.
+   */
+  @Nullable
+  public List<LogCatMessage> getMessages(@NotNull IDevice device,
+                                         @NotNull AndroidLogcatFilter filter,
+                                         @NotNull LogLevel minLevel,
+                                         @NotNull Runnable onCollected) {
+    synchronized (myLock) {
+      LogcatBuffer buffer = myLogBuffers.get(device);
+      if (buffer == null) {
+        return null;
+      }
+
+      List<LogCatMessage> messages = buffer.getMessages(filter, minLevel);
+      onCollected.run();
+      return messages;
+    }
+  }
+
   /**
    * @see #addListener(IDevice, LogcatListener, boolean)
    */
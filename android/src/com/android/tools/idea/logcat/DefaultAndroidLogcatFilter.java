@@ -123,6 +123,24 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
     return true;
   }
 
+  @Override
+  public int getPid() {
+    if (myPid == null || myPid.isEmpty()) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(myPid);
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public boolean isApplicableTag(@NotNull String tag) {
+    return myTagPattern == null || myTagPattern.matcher(tag).find();
+  }
+
   @Override
   @NotNull
   public String getName() {
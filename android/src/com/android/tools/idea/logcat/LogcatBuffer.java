@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.intellij.execution.impl.ConsoleBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The messages received from a device, kept so that they can be replayed to new listeners and filtered again when a filter changes.
+ * <p/>
+ * Messages are stored in a ring of columns: the offset and length of their text in a ring of chars, their level, pid and tag, plus their
+ * header, which the lines of a multi-line message share. Once the ring is full, adding a message drops the oldest ones. Every message
+ * gets an id, in the order they are added, which is used by an inverted index from pids and tags to the ids of their messages: filters
+ * that only accept one process, or some tags, only look at the messages they can accept, and test each tag once rather than once per
+ * message.
+ */
+final class LogcatBuffer {
+  private static final int INITIAL_TEXT_CAPACITY = 16 * 1024;
+  private static final int INITIAL_MESSAGE_CAPACITY = 256;
+  /**
+   * Rough length of a message, to size the message columns for the text that fits in the buffer.
+   */
+  private static final int AVERAGE_MESSAGE_LENGTH = 16;
+
+  private final int myMaxTextLength;
+  private final int myMaxMessageCount;
+
+  /**
+   * The text of the messages, each followed by a '\n'. The text of a message is never split: when it does not fit before the end, it
+   * goes at the start, and the end is dropped.
+   */
+  @NotNull private char[] myText;
+  private int myTextEnd;
+
+  // Columns of the messages, in a ring of mySize entries starting at myHead
+  @NotNull private int[] myTextOffsets;
+  @NotNull private int[] myTextLengths;
+  @NotNull private byte[] myPriorities;
+  @NotNull private int[] myPids;
+  @NotNull private int[] myTagIds;
+  @NotNull private LogCatHeader[] myHeaders;
+  private int myHead;
+  private int mySize;
+  /**
+   * Id of the message at myHead.
+   */
+  private long myFirstId;
+
+  private final Map<String, Integer> myTagIdsByTag = new HashMap<>();
+  private final List<String> myTags = new ArrayList<>();
+  private final List<IdList> myIdsByTag = new ArrayList<>();
+  private final Map<Integer, IdList> myIdsByPid = new HashMap<>();
+
+  /**
+   * Creates a buffer holding as much text as the console does, or everything if the console does not cycle its buffer.
+   */
+  LogcatBuffer() {
+    this(ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : Integer.MAX_VALUE);
+  }
+
+  LogcatBuffer(int maxTextLength) {
+    this(maxTextLength, maxTextLength == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(1, maxTextLength / AVERAGE_MESSAGE_LENGTH));
+  }
+
+  LogcatBuffer(int maxTextLength, int maxMessageCount) {
+    myMaxTextLength = Math.max(1, maxTextLength);
+    myMaxMessageCount = Math.max(1, maxMessageCount);
+    myText = new char[Math.min(myMaxTextLength, INITIAL_TEXT_CAPACITY)];
+    int capacity = Math.min(myMaxMessageCount, INITIAL_MESSAGE_CAPACITY);
+    myTextOffsets = new int[capacity];
+    myTextLengths = new int[capacity];
+    myPriorities = new byte[capacity];
+    myPids = new int[capacity];
+    myTagIds = new int[capacity];
+    myHeaders = new LogCatHeader[capacity];
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  /**
+   * @return the id of the oldest message in the buffer.
+   */
+  long getFirstId() {
+    return myFirstId;
+  }
+
+  void add(@NotNull LogCatMessage message) {
+    LogCatHeader header = message.getHeader();
+    String text = message.getMessage();
+    int textLength = Math.min(text.length(), myMaxTextLength - 1);
+    int offset = reserveText(textLength + 1);
+    text.getChars(0, textLength, myText, offset);
+    myText[offset + textLength] = '\n';
+
+    if (mySize == myMaxMessageCount) {
+      removeFirst();
+    }
+    else if (mySize == myTextOffsets.length) {
+      growColumns();
+    }
+
+    int index = (myHead + mySize) % myTextOffsets.length;
+    long id = myFirstId + mySize++;
+    int tagId = getTagId(header.getTag());
+    myTextOffsets[index] = offset;
+    myTextLengths[index] = textLength + 1;
+    myPriorities[index] = (byte)header.getLogLevel().getPriority();
+    myPids[index] = header.getPid();
+    myTagIds[index] = tagId;
+    myHeaders[index] = header;
+
+    myIdsByTag.get(tagId).add(id);
+    myIdsByPid.computeIfAbsent(header.getPid(), pid -> new IdList()).add(id);
+  }
+
+  @NotNull
+  LogCatMessage get(long id) {
+    return new LogCatMessage(getHeader(id), getMessage(id));
+  }
+
+  @NotNull
+  LogCatHeader getHeader(long id) {
+    return myHeaders[getIndex(id)];
+  }
+
+  @NotNull
+  String getMessage(long id) {
+    int index = getIndex(id);
+    return new String(myText, myTextOffsets[index], myTextLengths[index] - 1);
+  }
+
+  /**
+   * @return all the messages, oldest first.
+   */
+  @NotNull
+  List<LogCatMessage> getMessages() {
+    List<LogCatMessage> messages = new ArrayList<>(mySize);
+    for (long id = myFirstId, end = myFirstId + mySize; id < end; id++) {
+      messages.add(get(id));
+    }
+    return messages;
+  }
+
+  /**
+   * Returns the messages of at least {@code minLevel} that {@code filter} accepts, oldest first. The lines of a multi-line message are
+   * accepted as a whole if any of them is, like the console does.
+   */
+  @NotNull
+  List<LogCatMessage> getMessages(@NotNull AndroidLogcatFilter filter, @NotNull LogLevel minLevel) {
+    long[] ids = getCandidateIds(filter);
+    List<LogCatMessage> messages = new ArrayList<>();
+    int start = 0;
+    while (start < ids.length) {
+      int index = getIndex(ids[start]);
+      LogCatHeader header = myHeaders[index];
+      int end = start + 1;
+      while (end < ids.length && ids[end] == ids[end - 1] + 1 && getHeader(ids[end]) == header) {
+        end++;
+      }
+
+      if (myPriorities[index] >= minLevel.getPriority()) {
+        boolean accepted = false;
+        for (int i = start; i < end && !accepted; i++) {
+          accepted = filter.isApplicable(getMessage(ids[i]), header.getTag(), header.getAppName(), header.getPid(), header.getLogLevel());
+        }
+        if (accepted) {
+          for (int i = start; i < end; i++) {
+            messages.add(new LogCatMessage(header, getMessage(ids[i])));
+          }
+        }
+      }
+      start = end;
+    }
+    return messages;
+  }
+
+  /**
+   * @return the ids of the messages {@code filter} may accept, in order.
+   */
+  @NotNull
+  private long[] getCandidateIds(@NotNull AndroidLogcatFilter filter) {
+    int pid = filter.getPid();
+    if (pid >= 0) {
+      IdList ids = myIdsByPid.get(pid);
+      return ids == null ? new long[0] : ids.toArray();
+    }
+
+    List<IdList> lists = new ArrayList<>();
+    int count = 0;
+    for (int tagId = 0; tagId < myTags.size(); tagId++) {
+      IdList ids = myIdsByTag.get(tagId);
+      if (ids.size() > 0 && filter.isApplicableTag(myTags.get(tagId))) {
+        lists.add(ids);
+        count += ids.size();
+      }
+    }
+
+    long[] ids = new long[count];
+    if (count == mySize) {
+      for (int i = 0; i < count; i++) {
+        ids[i] = myFirstId + i;
+      }
+      return ids;
+    }
+
+    int offset = 0;
+    for (IdList list : lists) {
+      System.arraycopy(list.myIds, list.myStart, ids, offset, list.size());
+      offset += list.size();
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  private int getIndex(long id) {
+    assert id >= myFirstId && id < myFirstId + mySize;
+    return (int)((myHead + (id - myFirstId)) % myTextOffsets.length);
+  }
+
+  private int getTagId(@NotNull String tag) {
+    Integer tagId = myTagIdsByTag.get(tag);
+    if (tagId == null) {
+      tagId = myTags.size();
+      myTagIdsByTag.put(tag, tagId);
+      myTags.add(tag);
+      myIdsByTag.add(new IdList());
+    }
+    return tagId;
+  }
+
+  /**
+   * @return the offset at which {@code length} chars of text can be written, after dropping the messages whose text was there.
+   */
+  private int reserveText(int length) {
+    if (myTextEnd + length > myText.length && myText.length < myMaxTextLength) {
+      // The text only wraps around once it has reached its maximum length, so it is still in order here.
+      long capacity = Math.max(2L * myText.length, (long)myTextEnd + length);
+      myText = Arrays.copyOf(myText, (int)Math.min(myMaxTextLength, capacity));
+    }
+
+    int offset = myTextEnd + length <= myText.length ? myTextEnd : 0;
+    while (mySize > 0) {
+      int firstOffset = myTextOffsets[myHead];
+      boolean overwritten = firstOffset < offset + length && offset < firstOffset + myTextLengths[myHead];
+      // Wrapping around drops the end of the text, which only holds messages older than the ones at its start.
+      boolean dropped = offset != myTextEnd && firstOffset >= myTextEnd;
+      if (!overwritten && !dropped) {
+        break;
+      }
+      removeFirst();
+    }
+    myTextEnd = offset + length;
+    return offset;
+  }
+
+  private void removeFirst() {
+    myIdsByTag.get(myTagIds[myHead]).removeFirst(myFirstId);
+    IdList pidIds = myIdsByPid.get(myPids[myHead]);
+    pidIds.removeFirst(myFirstId);
+    if (pidIds.size() == 0) {
+      myIdsByPid.remove(myPids[myHead]);
+    }
+
+    myHeaders[myHead] = null;
+    myHead = (myHead + 1) % myTextOffsets.length;
+    mySize--;
+    myFirstId++;
+  }
+
+  private void growColumns() {
+    int capacity = (int)Math.min(myMaxMessageCount, 2L * myTextOffsets.length);
+    myTextOffsets = grow(myTextOffsets, capacity);
+    myTextLengths = grow(myTextLengths, capacity);
+    myPids = grow(myPids, capacity);
+    myTagIds = grow(myTagIds, capacity);
+
+    byte[] priorities = new byte[capacity];
+    LogCatHeader[] headers = new LogCatHeader[capacity];
+    for (int i = 0; i < mySize; i++) {
+      priorities[i] = myPriorities[(myHead + i) % myPriorities.length];
+      headers[i] = myHeaders[(myHead + i) % myHeaders.length];
+    }
+    myPriorities = priorities;
+    myHeaders = headers;
+    myHead = 0;
+  }
+
+  /**
+   * @return a copy of the ring {@code column}, unrolled to start at 0.
+   */
+  @NotNull
+  private int[] grow(@NotNull int[] column, int capacity) {
+    int[] grown = new int[capacity];
+    for (int i = 0; i < mySize; i++) {
+      grown[i] = column[(myHead + i) % column.length];
+    }
+    return grown;
+  }
+
+  /**
+   * Ids of the messages of a tag or pid, in order. Ids are removed from the start as the messages are dropped from the buffer.
+   */
+  private static final class IdList {
+    @NotNull private long[] myIds = new long[16];
+    private int myStart;
+    private int myEnd;
+
+    int size() {
+      return myEnd - myStart;
+    }
+
+    void add(long id) {
+      if (myEnd == myIds.length) {
+        // Reclaim the space of the removed ids if they take most of the array, or grow it
+        long[] ids = myStart > myIds.length / 2 ? myIds : new long[2 * myIds.length];
+        System.arraycopy(myIds, myStart, ids, 0, size());
+        myIds = ids;
+        myEnd -= myStart;
+        myStart = 0;
+      }
+      myIds[myEnd++] = id;
+    }
+
+    void removeFirst(long id) {
+      assert myIds[myStart] == id;
+      myStart++;
+    }
+
+    @NotNull
+    long[] toArray() {
+      return Arrays.copyOfRange(myIds, myStart, myEnd);
+    }
+  }
+}
@@ -21,6 +21,7 @@ import com.android.resources.ResourceType;
 import com.android.tools.idea.concurrent.FutureUtils;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.editors.theme.ThemeEditorUtils;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderProblem;
 import com.android.tools.idea.rendering.RenderService;
@@ -80,6 +81,7 @@ public class DrawableRenderer implements Disposable {
         RenderTask renderTask = service.taskBuilder(facet, configuration)
                                  .withLogger(logger)
                                  .withParserFactory(myParserFactory)
+                                 .withPriority(RenderExecutor.Priority.LOW)
                                  .build();
         assert renderTask != null;
         renderTask.getLayoutlibCallback().setLogger(logger);
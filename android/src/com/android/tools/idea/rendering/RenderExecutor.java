@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executor for the layoutlib render actions, see {@link RenderService#runRenderAction(Callable)}.
+ * <p/>
+ * Render actions run on {@link Lane}s, each backed by a single render thread. By default there is only one lane, so all the render
+ * actions in the IDE run one after the other. In the isolated multi-worker mode, enabled with the {@code layoutlib.render.parallel}
+ * system property, there is one lane per worker: every {@link RenderTask} is pinned to the least busy lane when it is created, so all
+ * the actions of a task still run in order on the same thread while independent tasks render concurrently. The number of workers is
+ * sized to the available cores and memory, and can be overridden with the {@code layoutlib.render.workers} system property.
+ * <p/>
+ * Within a lane, actions run by {@link Priority} and then in submission order.
+ */
+public class RenderExecutor {
+  /**
+   * Priority of render actions. Actions of the visible editor should go ahead of the ones rendering background thumbnails.
+   */
+  public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+  }
+
+  /** Number of ms that we will keep a render thread alive when idle */
+  private static final long RENDER_THREAD_IDLE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+  /** Approximate heap needed by a worker to hold a render session, with its view hierarchy and images */
+  private static final long MEMORY_PER_WORKER_BYTES = 256L * 1024 * 1024;
+  private static final int MAX_WORKERS = 8;
+
+  @NotNull private final Lane[] myLanes;
+
+  @VisibleForTesting
+  RenderExecutor(int laneCount, long idleTimeoutMs) {
+    myLanes = new Lane[Math.max(1, laneCount)];
+    for (int i = 0; i < myLanes.length; i++) {
+      myLanes[i] = new Lane(i == 0 ? "Layoutlib Render Thread" : "Layoutlib Render Thread #" + i, idleTimeoutMs);
+    }
+  }
+
+  /**
+   * Creates an executor with a single lane, or, in the isolated multi-worker mode, with as many lanes as workers.
+   */
+  @NotNull
+  static RenderExecutor create() {
+    int laneCount = Boolean.getBoolean("layoutlib.render.parallel")
+                    ? Integer.getInteger("layoutlib.render.workers", computeWorkerCount(Runtime.getRuntime()))
+                    : 1;
+    return new RenderExecutor(laneCount, RENDER_THREAD_IDLE_TIMEOUT_MS);
+  }
+
+  @VisibleForTesting
+  static int computeWorkerCount(@NotNull Runtime runtime) {
+    // Leave a core for the UI and the other IDE threads.
+    long byCores = runtime.availableProcessors() - 1;
+    long byMemory = runtime.maxMemory() / MEMORY_PER_WORKER_BYTES;
+    return (int)Math.max(1, Math.min(MAX_WORKERS, Math.min(byCores, byMemory)));
+  }
+
+  public int getLaneCount() {
+    return myLanes.length;
+  }
+
+  /**
+   * @return the lane used for render actions that are not bound to a {@link RenderTask}.
+   */
+  @NotNull
+  Lane getDefaultLane() {
+    return myLanes[0];
+  }
+
+  /**
+   * @return the least busy lane, to pin a new {@link RenderTask} to.
+   */
+  @NotNull
+  Lane assignLane() {
+    Lane best = myLanes[0];
+    int bestLoad = best.getLoad();
+    for (int i = 1; i < myLanes.length && bestLoad > 0; i++) {
+      int load = myLanes[i].getLoad();
+      if (load < bestLoad) {
+        best = myLanes[i];
+        bestLoad = load;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Cancels the pending actions of all the lanes and interrupts their threads.
+   */
+  void shutdownNow() {
+    for (Lane lane : myLanes) {
+      lane.shutdownNow();
+      Thread thread = lane.myThread.getAndSet(null);
+      if (thread != null) {
+        thread.interrupt();
+      }
+    }
+  }
+
+  /**
+   * Waits at most {@code timeoutSeconds} in total for the lanes to terminate.
+   */
+  void awaitTermination(long timeoutSeconds) throws InterruptedException {
+    long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+    for (Lane lane : myLanes) {
+      lane.awaitTermination(Math.max(0, deadlineNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * A single render thread running actions by priority and then in submission order.
+   */
+  static final class Lane extends ThreadPoolExecutor {
+    private final AtomicReference<Thread> myThread;
+    private final AtomicLong mySequence = new AtomicLong();
+    /** Number of consecutive render actions that timed out on this lane */
+    final AtomicInteger myTimeoutCount = new AtomicInteger();
+
+    private Lane(@NotNull String threadName, long idleTimeoutMs) {
+      this(threadName, idleTimeoutMs, new AtomicReference<>());
+    }
+
+    private Lane(@NotNull String threadName, long idleTimeoutMs, @NotNull AtomicReference<Thread> threadReference) {
+      super(0, 1, idleTimeoutMs, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), (Runnable r) -> {
+        Thread renderingThread = new Thread(null, r, threadName);
+        renderingThread.setDaemon(true);
+        threadReference.set(renderingThread);
+
+        return renderingThread;
+      });
+      myThread = threadReference;
+    }
+
+    @NotNull
+    <T> Future<T> submit(@NotNull Callable<T> callable, @NotNull Priority priority) {
+      FutureTask<T> future = new FutureTask<>(callable);
+      execute(future, priority);
+      return future;
+    }
+
+    void execute(@NotNull Runnable runnable, @NotNull Priority priority) {
+      super.execute(new PrioritizedRunnable(runnable, priority, mySequence.getAndIncrement()));
+    }
+
+    @Override
+    public void execute(@NotNull Runnable command) {
+      if (command instanceof PrioritizedRunnable) {
+        super.execute(command);
+      }
+      else {
+        execute(command, Priority.NORMAL);
+      }
+    }
+
+    /**
+     * @return the render thread of this lane, if it is running.
+     */
+    @Nullable
+    Thread getThread() {
+      return myThread.get();
+    }
+
+    private int getLoad() {
+      return getQueue().size() + getActiveCount();
+    }
+  }
+
+  private static final class PrioritizedRunnable implements Runnable, Comparable<PrioritizedRunnable> {
+    @NotNull private final Runnable myRunnable;
+    @NotNull private final Priority myPriority;
+    private final long mySequence;
+
+    private PrioritizedRunnable(@NotNull Runnable runnable, @NotNull Priority priority, long sequence) {
+      myRunnable = runnable;
+      myPriority = priority;
+      mySequence = sequence;
+    }
+
+    @Override
+    public void run() {
+      myRunnable.run();
+    }
+
+    @Override
+    public int compareTo(@NotNull PrioritizedRunnable other) {
+      int result = myPriority.compareTo(other.myPriority);
+      return result != 0 ? result : Long.compare(mySequence, other.mySequence);
+    }
+  }
+}
@@ -26,6 +26,8 @@ import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.Map;
 
@@ -69,6 +71,26 @@ public class RenderResult {
     myImage.dispose();
   }
 
+  /**
+   * Returns a copy of this result with its own copy of the image, which stays valid once this result is disposed. The copy isn't tied to
+   * the {@link RenderTask} of this result, which may be disposed by then.
+   */
+  @NotNull
+  public RenderResult createCopy(@NotNull ImagePool imagePool) {
+    ImagePool.Image image = getRenderedImage();
+    ImagePool.Image imageCopy = ImagePool.NULL_POOLED_IMAGE;
+    if (image != ImagePool.NULL_POOLED_IMAGE) {
+      imageCopy = imagePool.create(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+      imageCopy.paint(g -> {
+        // Pooled images may contain a previous image.
+        g.setComposite(AlphaComposite.Src);
+        image.drawImageTo(g, 0, 0, image.getWidth(), image.getHeight());
+      });
+    }
+    return new RenderResult(myFile, myModule, myLogger, null, myRenderResult, myRootViews, mySystemRootViews, imageCopy,
+                            myDefaultProperties, myDefaultStyles);
+  }
+
   /**
    * Creates a new {@link RenderResult} from a given RenderTask and RenderSession
    */
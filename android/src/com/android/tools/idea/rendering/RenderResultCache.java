@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.sdklib.devices.State;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.res.ResourceNotificationManager;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Bounded cache of successful {@link RenderResult}s, keyed by everything that affects a render: the file and its version, the
+ * resources and the configuration. Going back to a state that was rendered recently, like switching back to the previous device in the
+ * configuration toolbar, can then show the cached result instead of inflating and rendering the layout again.
+ * <p>
+ * The cache keeps its own copies of the results, made with an {@link ImagePool}, and evicts the least recently used ones once their
+ * images take more than a given number of bytes, counted the same way the image pool does. This class is thread-safe.
+ */
+public class RenderResultCache {
+  @NotNull private final ImagePool myImagePool;
+  private final long myMaxBytes;
+  @GuardedBy("this")
+  private final LinkedHashMap<Object, RenderResult> myResults = new LinkedHashMap<>(16, 0.75f, true);
+  @GuardedBy("this")
+  private long myBytes;
+
+  /**
+   * @param imagePool the pool to copy the images of the cached results with
+   * @param maxBytes the maximum size of the cached images, in bytes
+   */
+  public RenderResultCache(@NotNull ImagePool imagePool, long maxBytes) {
+    myImagePool = imagePool;
+    myMaxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the key of the result of rendering the given file in the given configuration.
+   *
+   * @param renderOptions other values affecting the render, like the render quality
+   */
+  @NotNull
+  public static Object createKey(@NotNull PsiFile file,
+                                 @NotNull Configuration configuration,
+                                 @NotNull ResourceNotificationManager.ResourceVersion resourceVersion,
+                                 @NotNull Object... renderOptions) {
+    Device device = configuration.getDevice();
+    State deviceState = configuration.getDeviceState();
+    IAndroidTarget target = configuration.getTarget();
+    List<Object> key = new ArrayList<>(8 + renderOptions.length);
+    key.add(file.getVirtualFile());
+    // Covers the version of the file and of the resources, and builds of custom views.
+    key.add(resourceVersion);
+    // Covers the locale, density, orientation, screen size, UI and night modes and API level.
+    key.add(configuration.getFullConfig().getQualifierString());
+    key.add(device != null ? device.getId() : "");
+    key.add(deviceState != null ? deviceState.getName() : "");
+    key.add(configuration.getTheme());
+    key.add(target != null ? target.hashString() : "");
+    key.add(configuration.getActivity());
+    key.addAll(Arrays.asList(renderOptions));
+    // Some of the values, like the activity, may be null.
+    return Collections.unmodifiableList(key);
+  }
+
+  /**
+   * Returns a copy of the result cached for the given key, which the caller owns and has to dispose, or null if there is none.
+   */
+  @Nullable
+  public synchronized RenderResult get(@NotNull Object key) {
+    RenderResult result = myResults.get(key);
+    return result != null ? result.createCopy(myImagePool) : null;
+  }
+
+  public synchronized boolean contains(@NotNull Object key) {
+    return myResults.containsKey(key);
+  }
+
+  /**
+   * Caches a copy of the given result, if it is a successful render small enough for the cache.
+   */
+  public synchronized void put(@NotNull Object key, @NotNull RenderResult result) {
+    long bytes = getSizeInBytes(result);
+    if (!result.getRenderResult().isSuccess() || !result.hasImage() || bytes > myMaxBytes) {
+      return;
+    }
+    remove(key);
+    myResults.put(key, result.createCopy(myImagePool));
+    myBytes += bytes;
+
+    Iterator<RenderResult> iterator = myResults.values().iterator();
+    while (myBytes > myMaxBytes && iterator.hasNext()) {
+      RenderResult leastRecentlyUsed = iterator.next();
+      iterator.remove();
+      myBytes -= getSizeInBytes(leastRecentlyUsed);
+      leastRecentlyUsed.dispose();
+    }
+  }
+
+  public synchronized void remove(@NotNull Object key) {
+    RenderResult result = myResults.remove(key);
+    if (result != null) {
+      myBytes -= getSizeInBytes(result);
+      result.dispose();
+    }
+  }
+
+  /**
+   * Drops and disposes the cached results of the given file.
+   */
+  public synchronized void removeAll(@NotNull PsiFile file) {
+    Iterator<RenderResult> iterator = myResults.values().iterator();
+    while (iterator.hasNext()) {
+      RenderResult result = iterator.next();
+      if (file.equals(result.getFile())) {
+        iterator.remove();
+        myBytes -= getSizeInBytes(result);
+        result.dispose();
+      }
+    }
+  }
+
+  /**
+   * Drops and disposes all the cached results.
+   */
+  public synchronized void clear() {
+    for (RenderResult result : myResults.values()) {
+      result.dispose();
+    }
+    myResults.clear();
+    myBytes = 0;
+  }
+
+  /**
+   * Returns the size of the cached images, in bytes.
+   */
+  public synchronized long getSizeInBytes() {
+    return myBytes;
+  }
+
+  public synchronized int size() {
+    return myResults.size();
+  }
+
+  private static long getSizeInBytes(@NotNull RenderResult result) {
+    ImagePool.Image image = result.getRenderedImage();
+    // Same estimate as the image pool, which allocates 4 bytes per pixel.
+    return (long)image.getWidth() * image.getHeight() * 4;
+  }
+}
@@ -62,8 +62,6 @@ import org.jetbrains.annotations.TestOnly;
 
 import java.io.IOException;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static com.android.SdkConstants.TAG_PREFERENCE_SCREEN;
 import static com.intellij.lang.annotation.HighlightSeverity.ERROR;
@@ -78,14 +76,10 @@ public class RenderService implements Disposable {
                                                                               ApplicationManager.getApplication().isUnitTestMode()
                                                                               ? 60
                                                                               : 6));
-  /** Number of ms that we will keep the render thread alive when idle */
-  private static final long RENDER_THREAD_IDLE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
 
   @VisibleForTesting
   public static long ourRenderThreadTimeoutMs = DEFAULT_RENDER_THREAD_TIMEOUT_MS;
-  private static final AtomicReference<Thread> ourRenderingThread = new AtomicReference<>();
-  private static ExecutorService ourRenderingExecutor;
-  private static final AtomicInteger ourTimeoutExceptionCounter = new AtomicInteger(0);
+  private static RenderExecutor ourRenderingExecutor;
 
   private static final Key<RenderService> KEY = Key.create(RenderService.class.getName());
   private static boolean isFirstCall = true;
@@ -99,17 +93,7 @@ public class RenderService implements Disposable {
   private final Project myProject;
 
   private static void innerInitializeRenderExecutor() {
-    ourRenderingExecutor = new ThreadPoolExecutor(0, 1,
-                             RENDER_THREAD_IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
-                             new LinkedBlockingQueue<>(),
-                             (Runnable r) -> {
-                               Thread renderingThread =
-                                 new Thread(null, r, "Layoutlib Render Thread");
-                               renderingThread.setDaemon(true);
-                               ourRenderingThread.set(renderingThread);
-
-                               return renderingThread;
-                             });
+    ourRenderingExecutor = RenderExecutor.create();
   }
 
   @TestOnly
@@ -121,10 +105,6 @@ public class RenderService implements Disposable {
 
   private static void shutdownRenderExecutor() {
     ourRenderingExecutor.shutdownNow();
-    Thread currentThread = ourRenderingThread.getAndSet(null);
-    if (currentThread != null) {
-      currentThread.interrupt();
-    }
   }
 
   /**
@@ -137,7 +117,7 @@ public class RenderService implements Disposable {
 
     if (timeoutSeconds > 0) {
       try {
-        ourRenderingExecutor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+        ourRenderingExecutor.awaitTermination(timeoutSeconds);
       }
       catch (InterruptedException ignored) {
         Logger.getInstance(RenderService.class).warn("The RenderExecutor does not shutdown after " + timeoutSeconds + " seconds");
@@ -153,6 +133,16 @@ public class RenderService implements Disposable {
 
   private final ImagePool myImagePool = ImagePoolFactory.createImagePool();
 
+  /**
+   * Maximum size of the images in {@link #myRenderResultCache}, in bytes, which is about a dozen renders of a large phone screen.
+   */
+  private static final long RENDER_RESULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * Renders of recent configurations, shared by all the layout editors of the project so that they have a single budget.
+   */
+  private final RenderResultCache myRenderResultCache = new RenderResultCache(myImagePool, RENDER_RESULT_CACHE_MAX_BYTES);
+
   /**
    * @return the {@linkplain RenderService} for the given facet.
    */
@@ -236,6 +226,7 @@ public class RenderService implements Disposable {
   @Override
   public void dispose() {
     myProject.putUserData(KEY, null);
+    myRenderResultCache.clear();
     myImagePool.dispose();
   }
 
@@ -284,11 +275,22 @@ public class RenderService implements Disposable {
    * method.
    */
   public static <T> T runRenderAction(@NotNull Callable<T> callable) throws Exception {
+    return runRenderAction(callable, ourRenderingExecutor.getDefaultLane(), RenderExecutor.Priority.NORMAL);
+  }
+
+  /**
+   * Runs a render action on the given lane of the render executor, see {@link #runRenderAction(Callable)}. The action times out after
+   * {@link #ourRenderThreadTimeoutMs}; if the lane already timed out several times in a row, the call fails right away unless the lane
+   * is free again.
+   */
+  static <T> T runRenderAction(@NotNull Callable<T> callable,
+                               @NotNull RenderExecutor.Lane lane,
+                               @NotNull RenderExecutor.Priority priority) throws Exception {
     try {
       // If the number of timeouts exceeds a certain threshold, stop waiting so the caller doesn't block. We try to submit a task that
       // clean-up the timeout counter instead. If it goes through, it means the queue is free.
-      if (ourTimeoutExceptionCounter.get() > 3) {
-        ourRenderingExecutor.submit(() -> ourTimeoutExceptionCounter.set(0)).get(50, TimeUnit.MILLISECONDS);
+      if (lane.myTimeoutCount.get() > 3) {
+        lane.submit(() -> lane.myTimeoutCount.set(0), priority).get(50, TimeUnit.MILLISECONDS);
       }
       long timeout = ourRenderThreadTimeoutMs;
       if (isFirstCall) {
@@ -297,16 +299,16 @@ public class RenderService implements Disposable {
         isFirstCall = false;
         timeout *= 2;
       }
-      T result = ourRenderingExecutor.submit(callable).get(timeout, TimeUnit.MILLISECONDS);
+      T result = lane.submit(callable, priority).get(timeout, TimeUnit.MILLISECONDS);
       // The executor seems to be taking tasks so reset the counter
-      ourTimeoutExceptionCounter.set(0);
+      lane.myTimeoutCount.set(0);
 
       return result;
     }
     catch (TimeoutException e) {
-      ourTimeoutExceptionCounter.incrementAndGet();
+      lane.myTimeoutCount.incrementAndGet();
 
-      Thread renderingThread = ourRenderingThread.get();
+      Thread renderingThread = lane.getThread();
       TimeoutException timeoutException = new TimeoutException("Preview timed out while rendering the layout.\n" +
                                                                "This typically happens when there is an infinite loop or unbounded recursion in one of the custom views.");
       if (renderingThread != null) {
@@ -325,8 +327,18 @@ public class RenderService implements Disposable {
    */
   @NotNull
   public static <T> ListenableFuture<T> runAsyncRenderAction(@NotNull Callable<T> callable) {
+    return runAsyncRenderAction(callable, ourRenderingExecutor.getDefaultLane(), RenderExecutor.Priority.NORMAL);
+  }
+
+  /**
+   * Runs a render action asynchronously on the given lane of the render executor, see {@link #runAsyncRenderAction(Callable)}.
+   */
+  @NotNull
+  static <T> ListenableFuture<T> runAsyncRenderAction(@NotNull Callable<T> callable,
+                                                      @NotNull RenderExecutor.Lane lane,
+                                                      @NotNull RenderExecutor.Priority priority) {
     ListenableFutureTask<T> future = ListenableFutureTask.create(callable);
-    ourRenderingExecutor.submit(future);
+    lane.execute(future, priority);
 
     return future;
   }
@@ -338,7 +350,25 @@ public class RenderService implements Disposable {
    * This method will run the passed action asynchronously
    */
   public static void runAsyncRenderAction(@NotNull Runnable runnable) {
-    ourRenderingExecutor.submit(runnable);
+    ourRenderingExecutor.getDefaultLane().execute(runnable);
+  }
+
+  /**
+   * Runs a render action asynchronously on the given lane of the render executor, see {@link #runAsyncRenderAction(Runnable)}.
+   */
+  static void runAsyncRenderAction(@NotNull Runnable runnable,
+                                   @NotNull RenderExecutor.Lane lane,
+                                   @NotNull RenderExecutor.Priority priority) {
+    lane.execute(runnable, priority);
+  }
+
+  /**
+   * @return the lane of the render executor a new {@link RenderTask} should run its actions on. All the actions of a task need to run on
+   * the same lane, so they run in order and on the same thread.
+   */
+  @NotNull
+  static RenderExecutor.Lane assignRenderLane() {
+    return ourRenderingExecutor.assignLane();
   }
 
 
@@ -413,6 +443,11 @@ public class RenderService implements Disposable {
     return myImagePool;
   }
 
+  @NotNull
+  public RenderResultCache getRenderResultCache() {
+    return myRenderResultCache;
+  }
+
   /** This is the View.MeasureSpec mode shift */
   private static final int MEASURE_SPEC_MODE_SHIFT = 30;
 
@@ -437,6 +472,7 @@ public class RenderService implements Disposable {
     private boolean isSecurityManagerEnabled = true;
     private float myDownscaleFactor = 1f;
     private boolean showDecorations = true;
+    @NotNull private RenderExecutor.Priority myPriority = RenderExecutor.Priority.NORMAL;
 
     private RenderTaskBuilder(@NotNull RenderService service,
                               @NotNull AndroidFacet facet,
@@ -506,6 +542,16 @@ public class RenderService implements Disposable {
       return this;
     }
 
+    /**
+     * Sets the priority of the render actions of the {@link RenderTask} over the ones of other tasks. Renders of the visible editor should
+     * use {@link RenderExecutor.Priority#HIGH} and background thumbnails {@link RenderExecutor.Priority#LOW}.
+     */
+    @NotNull
+    public RenderTaskBuilder withPriority(@NotNull RenderExecutor.Priority priority) {
+      this.myPriority = priority;
+      return this;
+    }
+
     /**
      * Disables the decorations (status and navigation bars) for the rendered image.
      */
@@ -588,7 +634,7 @@ public class RenderService implements Disposable {
         RenderTask task =
           new RenderTask(myFacet, myService, myConfiguration, myLogger, layoutLib,
                          device, myCredential, StudioCrashReporter.getInstance(), myImagePool,
-                         myParserFactory, isSecurityManagerEnabled, myDownscaleFactor);
+                         myParserFactory, isSecurityManagerEnabled, myDownscaleFactor, myPriority);
         if (myPsiFile instanceof XmlFile) {
           task.setXmlFile((XmlFile)myPsiFile);
         }
@@ -128,12 +128,16 @@ public class RenderTask {
   private final List<ListenableFuture<?>> myRunningFutures = new LinkedList<>();
   @NotNull private final AtomicBoolean isDisposed = new AtomicBoolean(false);
   @Nullable private XmlFile myXmlFile;
+  /** Lane of the render executor all the render actions of this task run on, so they run in order on the same thread */
+  @NotNull private final RenderExecutor.Lane myRenderLane;
+  @NotNull private final RenderExecutor.Priority myPriority;
 
   /**
    * Don't create this task directly; obtain via {@link RenderService}
    *
    * @param quality Factor from 0 to 1 used to downscale the rendered image. A lower value means smaller images used
    *                during rendering at the expense of quality. 1 means that downscaling is disabled.
+   * @param priority priority of the render actions of this task over the ones of other tasks.
    */
   RenderTask(@NotNull AndroidFacet facet,
              @NotNull RenderService renderService,
@@ -146,8 +150,11 @@ public class RenderTask {
              @NotNull ImagePool imagePool,
              @Nullable ILayoutPullParserFactory parserFactory,
              boolean isSecurityManagerEnabled,
-             float quality) {
+             float quality,
+             @NotNull RenderExecutor.Priority priority) {
     this.isSecurityManagerEnabled = isSecurityManagerEnabled;
+    myRenderLane = RenderService.assignRenderLane();
+    myPriority = priority;
 
     if (!isSecurityManagerEnabled) {
       LOG.debug("Security manager was disabled");
@@ -266,7 +273,7 @@ public class RenderTask {
       myLayoutlibCallback.setResourceResolver(null);
       if (myRenderSession != null) {
         try {
-          RenderService.runAsyncRenderAction(myRenderSession::dispose);
+          RenderService.runAsyncRenderAction(myRenderSession::dispose, myRenderLane, myPriority);
           myRenderSession = null;
         }
         catch (Exception ignored) {
@@ -584,6 +591,15 @@ public class RenderTask {
     return topParser;
   }
 
+  /**
+   * Runs a render action on the render thread this task is bound to and waits for its result. Actions that touch the views or the
+   * session of this task must use this method instead of {@link RenderService#runRenderAction(Callable)}, which runs on the default
+   * render thread.
+   */
+  public <V> V runRenderAction(@NotNull Callable<V> callable) throws Exception {
+    return RenderService.runRenderAction(callable, myRenderLane, myPriority);
+  }
+
   /**
    * Executes the passed {@link Callable} as an async render action and keeps track of it. If {@link #dispose()} is called, the call will
    * wait until all the async actions have finished running.
@@ -597,7 +613,7 @@ public class RenderTask {
     }
 
     synchronized (myRunningFutures) {
-      ListenableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable);
+      ListenableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable, myRenderLane, myPriority);
       Futures.addCallback(newFuture, new FutureCallback<V>() {
         @Override
         public void onSuccess(@Nullable V result) {
@@ -861,7 +877,7 @@ public class RenderTask {
     }
 
     try {
-      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params));
+      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params), myRenderLane, myPriority);
 
       if (result != null && result.isSuccess()) {
         Object data = result.getData();
@@ -922,7 +938,7 @@ public class RenderTask {
     Map<XmlTag, ViewInfo> map = new HashMap<>();
     RenderSession session = null;
     try {
-      session = RenderService.runRenderAction(() -> measure(modelParser));
+      session = RenderService.runRenderAction(() -> measure(modelParser), myRenderLane, myPriority);
     }
     catch (Exception ignored) {
     }
@@ -944,7 +960,7 @@ public class RenderTask {
 
         return map;
       } finally {
-        RenderService.runAsyncRenderAction(session::dispose);
+        RenderService.runAsyncRenderAction(session::dispose, myRenderLane, myPriority);
       }
     }
 
@@ -834,7 +834,7 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
   }
 
   @NotNull
-  private static String getAndroidPluginVersion() {
+  static String getAndroidPluginVersion() {
     IdeaPluginDescriptor plugin = PluginManager.getPlugin(PluginId.getId(ANDROID_PLUGIN_ID));
     if (plugin == null) {
       return "unknown";
@@ -849,19 +849,40 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     return exception;
   }
 
-  private static class CacheOutputStream extends ObjectOutputStream {
+  /**
+   * Output stream of a cache file. {@link ResourceFolderRepository} writes its own cache files by overriding the header.
+   */
+  static class CacheOutputStream extends ObjectOutputStream {
     CacheOutputStream(@NotNull File file) throws IOException {
       super(new BufferedOutputStream(new FileOutputStream(file)));
     }
 
+    /**
+     * Called from the constructor, so overrides cannot depend on the fields of a subclass.
+     */
+    @NotNull
+    protected String getHeader() {
+      return CACHE_FILE_HEADER;
+    }
+
+    /**
+     * Called from the constructor, so overrides cannot depend on the fields of a subclass.
+     */
+    @NotNull
+    protected String getFormatVersion() {
+      return CACHE_FILE_FORMAT_VERSION;
+    }
+
     @Override
     protected void writeStreamHeader() throws IOException {
-      for (int i = 0; i < CACHE_FILE_HEADER.length(); i++) {
-        writeByte(CACHE_FILE_HEADER.charAt(i));
+      String header = getHeader();
+      for (int i = 0; i < header.length(); i++) {
+        writeByte(header.charAt(i));
       }
       writeByte(' ');
-      for (int i = 0; i < CACHE_FILE_FORMAT_VERSION.length(); i++) {
-        writeByte(CACHE_FILE_FORMAT_VERSION.charAt(i));
+      String formatVersion = getFormatVersion();
+      for (int i = 0; i < formatVersion.length(); i++) {
+        writeByte(formatVersion.charAt(i));
       }
       writeByte(' ');
     }
@@ -879,7 +900,9 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
       if (node == null) {
         writeByte(0);
       } else {
-        synchronized (node.getOwnerDocument()) {
+        // Nodes read from a cache file have no owner document.
+        Document document = node.getOwnerDocument();
+        synchronized (document == null ? node : document) {
           short nodeType = node.getNodeType();
           writeByte(nodeType);
           if (nodeType == Node.ELEMENT_NODE) {
@@ -923,23 +946,44 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     }
   }
 
-  private static class CacheInputStream extends ObjectInputStream {
+  /**
+   * Input stream of a cache file. {@link ResourceFolderRepository} reads its own cache files by overriding the header.
+   */
+  static class CacheInputStream extends ObjectInputStream {
     CacheInputStream(@NotNull File file) throws IOException {
       super(new BufferedInputStream(new FileInputStream(file)));
     }
 
+    /**
+     * Called from the constructor, so overrides cannot depend on the fields of a subclass.
+     */
+    @NotNull
+    protected String getHeader() {
+      return CACHE_FILE_HEADER;
+    }
+
+    /**
+     * Called from the constructor, so overrides cannot depend on the fields of a subclass.
+     */
+    @NotNull
+    protected String getFormatVersion() {
+      return CACHE_FILE_FORMAT_VERSION;
+    }
+
     @Override
     protected void readStreamHeader() throws IOException {
-      for (int i = 0; i < CACHE_FILE_HEADER.length(); i++) {
-        if (readUnsignedByte() != CACHE_FILE_HEADER.charAt(i)) {
+      String header = getHeader();
+      for (int i = 0; i < header.length(); i++) {
+        if (readUnsignedByte() != header.charAt(i)) {
           throw new StreamCorruptedException();
         }
       }
       if (readUnsignedByte() != ' ') {
         throw new StreamCorruptedException();
       }
-      for (int i = 0; i < CACHE_FILE_FORMAT_VERSION.length(); i++) {
-        if (readUnsignedByte() != CACHE_FILE_FORMAT_VERSION.charAt(i)) {
+      String formatVersion = getFormatVersion();
+      for (int i = 0; i < formatVersion.length(); i++) {
+        if (readUnsignedByte() != formatVersion.charAt(i)) {
           throw new VersionMismatchException();
         }
       }
@@ -998,7 +1042,7 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     }
   }
 
-  private static class VersionMismatchException extends IOException {
+  static class VersionMismatchException extends IOException {
   }
 
   private static class FrameworkResourceSet extends ResourceSet {
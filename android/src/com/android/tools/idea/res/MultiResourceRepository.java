@@ -39,22 +39,31 @@ import java.util.*;
  * same resource type+name combination will replace/hide any previous definitions of the same resource.
  *
  * <p>In the resource repository hierarchy, the MultiResourceRepository is an internal node, never a leaf.
+ *
+ * <p>Rendering, code completion, lint and the R class generator all look resources up concurrently, so lookups don't take
+ * {@link #ITEM_MAP_LOCK} once the merged map they need exists. The children, the repositories by namespace and the merged maps are
+ * immutable snapshots, which are only replaced, under the lock, when the children or their resources change.
  */
 @SuppressWarnings("InstanceGuardedByStatic") // TODO: The whole locking scheme for resource repositories needs to be reworked.
 public abstract class MultiResourceRepository extends LocalResourceRepository {
-  @GuardedBy("ITEM_MAP_LOCK")
-  private List<? extends LocalResourceRepository> myChildren;
-  @GuardedBy("ITEM_MAP_LOCK")
-  private final Multimap<ResourceNamespace, LocalResourceRepository> myRepositoriesByNamespace = HashMultimap.create();
+  /** Replaced, never modified, under {@link #ITEM_MAP_LOCK}. */
+  @Nullable private volatile ImmutableList<LocalResourceRepository> myChildren;
+  /** Replaced, never modified, under {@link #ITEM_MAP_LOCK}. */
+  @NotNull private volatile ImmutableSetMultimap<ResourceNamespace, LocalResourceRepository> myRepositoriesByNamespace =
+    ImmutableSetMultimap.of();
 
   @GuardedBy("ITEM_MAP_LOCK")
   private long[] myModificationCounts;
 
-  @GuardedBy("ITEM_MAP_LOCK")
-  private ResourceTable myFullTable;
+  /** Set under {@link #ITEM_MAP_LOCK}, and read without it once set. */
+  @Nullable private volatile ResourceTable myFullTable;
 
-  @GuardedBy("ITEM_MAP_LOCK")
-  private final ResourceTable myCachedMaps = new ResourceTable();
+  /**
+   * The merged maps computed so far. The maps are not modified once merged, and the table is copied when a map is added or removed, under
+   * {@link #ITEM_MAP_LOCK}, so that lookups of merged maps don't need the lock.
+   */
+  @NotNull private volatile ImmutableTable<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> myCachedMaps =
+    ImmutableTable.of();
 
   @GuardedBy("ITEM_MAP_LOCK")
   private Map<String, DataBindingInfo> myDataBindingResourceFiles = new HashMap<>();
@@ -75,7 +84,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
         }
       }
       setModificationCount(ourModificationCounter.incrementAndGet());
-      myChildren = children;
+      myChildren = ImmutableList.copyOf(children);
       myModificationCounts = new long[children.size()];
       if (children.size() == 1) {
         // Make sure that the modification count of the child and the parent are same. This is
@@ -83,16 +92,17 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
         LocalResourceRepository child = children.get(0);
         child.setModificationCount(getModificationCount());
       }
-      for (int i = myChildren.size(); --i >= 0;) {
-        LocalResourceRepository resources = myChildren.get(i);
+      for (int i = children.size(); --i >= 0;) {
+        LocalResourceRepository resources = children.get(i);
         resources.addParent(this);
         myModificationCounts[i] = resources.getModificationCount();
       }
       myFullTable = null;
-      myCachedMaps.clear();
+      myCachedMaps = ImmutableTable.of();
 
-      myRepositoriesByNamespace.clear();
-      populateNamespaceMap(this, myRepositoriesByNamespace);
+      Multimap<ResourceNamespace, LocalResourceRepository> repositoriesByNamespace = LinkedHashMultimap.create();
+      populateNamespaceMap(this, repositoriesByNamespace);
+      myRepositoriesByNamespace = ImmutableSetMultimap.copyOf(repositoriesByNamespace);
     }
 
     invalidateParentCaches();
@@ -114,9 +124,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
 
   @NotNull
   public final List<LocalResourceRepository> getChildren() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myChildren == null ? Collections.emptyList() : ImmutableList.copyOf(myChildren);
-    }
+    List<LocalResourceRepository> children = myChildren;
+    return children == null ? Collections.emptyList() : children;
   }
 
   /**
@@ -130,9 +139,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
    */
   @NotNull
   public final List<LocalResourceRepository> getRepositoriesForNamespace(@NotNull ResourceNamespace namespace) {
-    synchronized (ITEM_MAP_LOCK) {
-      return ImmutableList.copyOf(myRepositoriesByNamespace.get(namespace));
-    }
+    return ImmutableList.copyOf(myRepositoriesByNamespace.get(namespace));
   }
 
   @Override
@@ -199,29 +206,35 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
   @Override
   @NotNull
   public Set<ResourceNamespace> getNamespaces() {
-    synchronized (ITEM_MAP_LOCK) {
-      return ImmutableSet.copyOf(myRepositoriesByNamespace.keySet());
-    }
+    return myRepositoriesByNamespace.keySet();
   }
 
   @NotNull
   @Override
   protected ResourceTable getFullTable() {
+    ResourceTable fullTable = myFullTable;
+    if (fullTable != null) {
+      return fullTable;
+    }
+
     synchronized (ITEM_MAP_LOCK) {
       if (myFullTable == null) {
-        if (myChildren.size() == 1) {
-          myFullTable = myChildren.get(0).getFullTablePackageAccessible();
+        List<LocalResourceRepository> children = getChildren();
+        if (children.size() == 1) {
+          myFullTable = children.get(0).getFullTablePackageAccessible();
         }
         else {
-          myFullTable = new ResourceTable();
+          fullTable = new ResourceTable();
           for (ResourceNamespace namespace : getNamespaces()) {
             for (ResourceType type : ResourceType.values()) {
               ListMultimap<String, ResourceItem> map = getMap(namespace, type, false);
               if (map != null) {
-                myFullTable.put(namespace, type, map);
+                fullTable.put(namespace, type, map);
               }
             }
           }
+          // Only published once complete, as it is read without the lock.
+          myFullTable = fullTable;
         }
       }
 
@@ -234,19 +247,30 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
   protected ListMultimap<String, ResourceItem> getMap(@NotNull ResourceNamespace namespace,
                                                       @NotNull ResourceType type,
                                                       boolean create) {
+    // Should I assert !create here? If we try to manipulate the cache it won't work right...
+    ListMultimap<String, ResourceItem> map = myCachedMaps.get(namespace, type);
+    if (map != null) {
+      return map;
+    }
+
+    List<LocalResourceRepository> children = getChildren();
+    if (children.size() == 1) {
+      LocalResourceRepository child = children.get(0);
+      if (child instanceof MultiResourceRepository) {
+        return ((MultiResourceRepository)child).getMap(namespace, type);
+      }
+    }
+
     synchronized (ITEM_MAP_LOCK) {
-      // Should I assert !create here? If we try to manipulate the cache it won't work right...
-      ListMultimap<String, ResourceItem> map = myCachedMaps.get(namespace, type);
-      if (map != null) {
-        return map;
+      children = getChildren();
+      if (children.size() == 1) {
+        return children.get(0).getFullTablePackageAccessible().get(namespace, type);
       }
 
-      if (myChildren.size() == 1) {
-        LocalResourceRepository child = myChildren.get(0);
-        if (child instanceof MultiResourceRepository) {
-          return ((MultiResourceRepository)child).getMap(namespace, type);
-        }
-        return child.getFullTablePackageAccessible().get(namespace, type);
+      // Another thread may have merged the map while this one was waiting for the lock.
+      map = myCachedMaps.get(namespace, type);
+      if (map != null) {
+        return map;
       }
 
       map = ArrayListMultimap.create();
@@ -255,7 +279,10 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
       // Merge all items of the given type.
       merge(visited, namespace, type, seenQualifiers, map);
 
-      myCachedMaps.put(namespace, type, map);
+      myCachedMaps = ImmutableTable.<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>builder()
+        .putAll(myCachedMaps)
+        .put(namespace, type, map)
+        .build();
 
       return map;
     }
@@ -267,39 +294,42 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
                          @NotNull ResourceType type,
                          @NotNull SetMultimap<String, String> seenQualifiers,
                          @NotNull ListMultimap<String, ResourceItem> result) {
-    synchronized (ITEM_MAP_LOCK) {
-      for (int i = myChildren.size(); --i >= 0;) {
-        myChildren.get(i).merge(visited, namespace, type, seenQualifiers, result);
-      }
+    List<LocalResourceRepository> children = getChildren();
+    for (int i = children.size(); --i >= 0;) {
+      children.get(i).merge(visited, namespace, type, seenQualifiers, result);
     }
   }
 
   @Override
   public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
-    synchronized (ITEM_MAP_LOCK) {
-      if (myChildren.size() == 1) {
-        return myChildren.get(0).hasResources(namespace, type);
-      }
+    List<LocalResourceRepository> children = getChildren();
+    if (children.size() == 1) {
+      return children.get(0).hasResources(namespace, type);
+    }
 
-      if (this instanceof SingleNamespaceResourceRepository) {
-        if (namespace.equals(((SingleNamespaceResourceRepository)this).getNamespace())) {
-          for (LocalResourceRepository child : myChildren) {
-            if (child.hasResources(namespace, type)) {
-              return true;
-            }
+    if (this instanceof SingleNamespaceResourceRepository) {
+      if (namespace.equals(((SingleNamespaceResourceRepository)this).getNamespace())) {
+        for (LocalResourceRepository child : children) {
+          if (child.hasResources(namespace, type)) {
+            return true;
           }
         }
-        return false;
       }
+      return false;
+    }
 
-      Collection<LocalResourceRepository> repositories = myRepositoriesByNamespace.get(namespace);
-      for (LocalResourceRepository repository : repositories) {
-        if (repository.hasResources(namespace, type)) {
-          return true;
-        }
+    ListMultimap<String, ResourceItem> map = myCachedMaps.get(namespace, type);
+    if (map != null) {
+      return !map.isEmpty();
+    }
+
+    Collection<LocalResourceRepository> repositories = myRepositoriesByNamespace.get(namespace);
+    for (LocalResourceRepository repository : repositories) {
+      if (repository.hasResources(namespace, type)) {
+        return true;
       }
-      return false;
     }
+    return false;
   }
 
   @Override
@@ -318,9 +348,9 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
    */
   public void invalidateCache(@NotNull LocalResourceRepository repository) {
     synchronized (ITEM_MAP_LOCK) {
-      assert myChildren.contains(repository) : repository;
+      assert getChildren().contains(repository) : repository;
 
-      myCachedMaps.clear();
+      myCachedMaps = ImmutableTable.of();
       myFullTable = null;
       setModificationCount(ourModificationCounter.incrementAndGet());
 
@@ -335,11 +365,16 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
   public void invalidateCache(@NotNull LocalResourceRepository repository, @NotNull ResourceNamespace namespace,
                               @NotNull ResourceType... types) {
     synchronized (ITEM_MAP_LOCK) {
-      assert myChildren.contains(repository) : repository;
+      assert getChildren().contains(repository) : repository;
 
-      for (ResourceType type : types) {
-        myCachedMaps.remove(namespace, type);
+      ImmutableTable.Builder<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> cachedMaps = ImmutableTable.builder();
+      List<ResourceType> invalidatedTypes = Arrays.asList(types);
+      for (Table.Cell<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> cell : myCachedMaps.cellSet()) {
+        if (!namespace.equals(cell.getRowKey()) || !invalidatedTypes.contains(cell.getColumnKey())) {
+          cachedMaps.put(cell);
+        }
       }
+      myCachedMaps = cachedMaps.build();
 
       myFullTable = null;
       setModificationCount(ourModificationCounter.incrementAndGet());
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.res;
 
+import com.android.annotations.concurrency.GuardedBy;
 import com.android.ide.common.rendering.api.ResourceNamespace;
 import com.android.ide.common.rendering.api.ResourceReference;
 import com.android.ide.common.rendering.api.ResourceValue;
@@ -23,12 +24,11 @@ import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.resources.ResourceType;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.ModificationTracker;
 import gnu.trove.TIntArrayList;
-import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.android.util.AndroidResourceUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -76,9 +76,13 @@ public class ResourceClassGenerator {
     int getOrGenerateId(@NotNull ResourceReference resourceReference);
   }
 
-  private Map<ResourceType, TObjectIntHashMap<String>> myCache;
-  /** For int[] in styleables. The ints in styleables are stored in {@link #myCache}. */
-  private Map<String, TIntArrayList> myStyleableCache;
+  /**
+   * Generated classes by internal class name. A class is reused as long as the repository hasn't changed, or if it has, as long as the
+   * fields and values of the class stay the same, so that an edit only causes the classes of the affected resource types to be emitted
+   * again.
+   */
+  @GuardedBy("this")
+  private final Map<String, GeneratedClass> myClassCache = new HashMap<>();
   @NotNull private final ResourceRepository myResources;
   @NotNull private final NumericIdProvider myIdProvider;
   @NotNull private final ResourceNamespace myNamespace;
@@ -105,59 +109,101 @@ public class ResourceClassGenerator {
    * @param fqcn Fully qualified class name (as accepted by ClassLoader, or as returned by Class.getName())
    */
   @Nullable
-  public byte[] generate(String fqcn) {
+  public synchronized byte[] generate(String fqcn) {
     String className = fqcn.replace('.', '/');
 
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("generate(%s)", anonymizeClassName(className)));
     }
-    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
-    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
 
+    ResourceType type = null;
     int index = className.lastIndexOf('$');
     if (index != -1) {
       String typeName = className.substring(index + 1);
-      ResourceType type = ResourceType.fromClassName(typeName);
+      type = ResourceType.fromClassName(typeName);
       if (type == null) {
         if (LOG.isDebugEnabled()) {
           LOG.debug(String.format("  type '%s' doesn't exist", typeName));
         }
         return null;
       }
+    }
 
-      cw.visitInnerClass(className, className.substring(0, index), typeName, ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
-      if (myCache == null) {
-        myCache = Maps.newHashMap();
+    long modificationCount = getModificationCount();
+    GeneratedClass cachedClass = myClassCache.get(className);
+    if (cachedClass != null && cachedClass.modificationCount == modificationCount) {
+      return cachedClass.bytecode;
+    }
+
+    ClassContents contents;
+    if (type == null) {
+      contents = collectInnerClasses();
+    }
+    else if (type == ResourceType.STYLEABLE) {
+      contents = collectStyleables(className);
+    }
+    else {
+      contents = collectValuesForType(type);
+    }
+
+    byte[] bytecode;
+    if (cachedClass != null && cachedClass.contents.equals(contents)) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("  reusing unchanged %s", anonymizeClassName(className)));
       }
-      if (type == ResourceType.STYLEABLE) {
-        if (myStyleableCache == null) {
-          myCache.put(ResourceType.STYLEABLE, new TObjectIntHashMap<>());
-          myStyleableCache = Maps.newHashMap();
-          generateStyleable(cw, className);
-        }
-        else {
-          TObjectIntHashMap<String> indexFieldsCache = myCache.get(ResourceType.STYLEABLE);
-          assert indexFieldsCache != null;
-          generateFields(cw, indexFieldsCache);
-          generateIntArraysFromCache(cw, className);
-        }
-      } else {
-        TObjectIntHashMap<String> typeCache = myCache.get(type);
-        if (typeCache == null) {
-          typeCache = new TObjectIntHashMap<>();
-          myCache.put(type, typeCache);
-          generateValuesForType(cw, type, typeCache);
-        }
-        else {
-          generateFields(cw, typeCache);
+      bytecode = cachedClass.bytecode;
+    }
+    else {
+      bytecode = generateClass(className, type, contents);
+    }
+    myClassCache.put(className, new GeneratedClass(modificationCount, contents, bytecode));
+    return bytecode;
+  }
+
+  /**
+   * Returns the modification count of the repository, or 0 if it doesn't keep track of its modifications and is therefore treated as
+   * never changing.
+   */
+  private long getModificationCount() {
+    return myResources instanceof ModificationTracker ? ((ModificationTracker)myResources).getModificationCount() : 0;
+  }
+
+  @NotNull
+  private static byte[] generateClass(@NotNull String className, @Nullable ResourceType type, @NotNull ClassContents contents) {
+    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
+    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
+
+    if (type == null) {
+      // Default R class.
+      for (String innerClassName : contents.fieldNames) {
+        cw.visitInnerClass(className + "$" + innerClassName, className, innerClassName, ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
+      }
+    }
+    else {
+      int index = className.lastIndexOf('$');
+      cw.visitInnerClass(className, className.substring(0, index), className.substring(index + 1), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
+      // Declare the arrays with their index fields following them, as in R classes generated by aapt.
+      int fieldIndex = 0;
+      for (int i = 0; i < contents.arrayNames.size(); i++) {
+        cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, contents.arrayNames.get(i), "[I", null, null);
+        for (int j = contents.arrayValues.get(i).size(); j > 0; j--, fieldIndex++) {
+          generateField(cw, contents.fieldNames.get(fieldIndex), contents.fieldValues.get(fieldIndex));
         }
       }
-    } else {
-      // Default R class.
-      for (ResourceType t : myResources.getResourceTypes(myNamespace)) {
-        if (t.getHasInnerClass()) {
-          cw.visitInnerClass(className + "$" + t.getName(), className, t.getName(), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
+      for (; fieldIndex < contents.fieldNames.size(); fieldIndex++) {
+        generateField(cw, contents.fieldNames.get(fieldIndex), contents.fieldValues.get(fieldIndex));
+      }
+
+      if (type == ResourceType.STYLEABLE) {
+        // Generate class initializer block to initialize the arrays declared above.
+        MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        for (int i = 0; i < contents.arrayNames.size(); i++) {
+          generateArrayInitialization(mv, className, contents.arrayNames.get(i), contents.arrayValues.get(i));
         }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(4, 0);
+        mv.visitEnd();
       }
     }
 
@@ -166,14 +212,28 @@ public class ResourceClassGenerator {
     return cw.toByteArray();
   }
 
-  private void generateValuesForType(@NotNull ClassWriter cw, @NotNull ResourceType resType, @NotNull TObjectIntHashMap<String> cache) {
+  @NotNull
+  private ClassContents collectInnerClasses() {
+    ClassContents contents = new ClassContents();
+    for (ResourceType t : myResources.getResourceTypes(myNamespace)) {
+      if (t.getHasInnerClass()) {
+        contents.fieldNames.add(t.getName());
+        contents.fieldValues.add(0);
+      }
+    }
+    return contents;
+  }
+
+  @NotNull
+  private ClassContents collectValuesForType(@NotNull ResourceType resType) {
+    ClassContents contents = new ClassContents();
     Collection<String> resourceNames = myResources.getResources(myNamespace, resType).keySet();
     for (String name : resourceNames) {
       int initialValue = myIdProvider.getOrGenerateId(new ResourceReference(myNamespace, resType, name));
-      name = AndroidResourceUtil.getFieldNameByResourceName(name);
-      generateField(cw, name, initialValue);
-      cache.put(name, initialValue);
+      contents.fieldNames.add(AndroidResourceUtil.getFieldNameByResourceName(name));
+      contents.fieldValues.add(initialValue);
     }
+    return contents;
   }
 
   /**
@@ -188,17 +248,17 @@ public class ResourceClassGenerator {
     return Lists.transform(dv.getAllAttributes(), ResourceValue::asReference);
   }
 
-  private void generateStyleable(@NotNull ClassWriter cw, String className) {
+  @NotNull
+  private ClassContents collectStyleables(String className) {
     if (LOG.isDebugEnabled()) {
-      LOG.debug(String.format("generateStyleable(%s)", anonymizeClassName(className)));
+      LOG.debug(String.format("collectStyleables(%s)", anonymizeClassName(className)));
     }
     boolean debug = LOG.isDebugEnabled() && isPublicClass(className);
 
-    TObjectIntHashMap<String> indexFieldsCache = myCache.get(ResourceType.STYLEABLE);
+    ClassContents contents = new ClassContents();
     Collection<String> styleableNames = myResources.getResources(myNamespace, ResourceType.STYLEABLE).keySet();
-    List<MergedStyleable> mergedStyleables = new ArrayList<>(styleableNames.size());
 
-    // Generate all declarations - both int[] and int for the indices into the array.
+    // Collect all declarations - both int[] and int for the indices into the array.
     for (String styleableName : styleableNames) {
       List<ResourceItem> items = myResources.getResources(myNamespace, ResourceType.STYLEABLE, styleableName);
       if (items.isEmpty()) {
@@ -208,7 +268,6 @@ public class ResourceClassGenerator {
         continue;
       }
       String fieldName = AndroidResourceUtil.getFieldNameByResourceName(styleableName);
-      cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, fieldName, "[I", null, null);
       if (debug) {
         LOG.debug("  Defined styleable " + fieldName);
       }
@@ -219,65 +278,27 @@ public class ResourceClassGenerator {
         mergedAttributes.addAll(getStyleableAttributes(item));
       }
 
-      mergedStyleables.add(new MergedStyleable(styleableName, mergedAttributes));
-
+      TIntArrayList values = new TIntArrayList(mergedAttributes.size());
       int idx = 0;
       for (ResourceReference attr : mergedAttributes) {
         String styleableEntryName = getResourceName(fieldName, attr);
-        int fieldValue = idx++;
-        cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, styleableEntryName, "I", null, fieldValue);
-        indexFieldsCache.put(styleableEntryName, fieldValue);
+        contents.fieldNames.add(styleableEntryName);
+        contents.fieldValues.add(idx++);
+        values.add(myIdProvider.getOrGenerateId(attr));
         if (debug) {
           LOG.debug("  Defined styleable " + styleableEntryName);
         }
       }
+      contents.arrayNames.add(fieldName);
+      contents.arrayValues.add(values);
     }
-
-    // Generate class initializer block to initialize the arrays declared above.
-    MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
-    mv.visitCode();
-    for (MergedStyleable mergedStyleable : mergedStyleables) {
-      String fieldName = AndroidResourceUtil.getFieldNameByResourceName(mergedStyleable.name);
-      TIntArrayList values = new TIntArrayList();
-      for (ResourceReference attr : mergedStyleable.attrs) {
-        values.add(myIdProvider.getOrGenerateId(attr));
-      }
-      myStyleableCache.put(fieldName, values);
-      generateArrayInitialization(mv, className, fieldName, values);
-    }
-    mv.visitInsn(RETURN);
-    mv.visitMaxs(4, 0);
-    mv.visitEnd();
-  }
-
-  private static void generateFields(@NotNull final ClassWriter cw, @NotNull TObjectIntHashMap<String> values) {
-    values.forEachEntry((name, value) -> {
-      generateField(cw, name, value);
-      return true;
-    });
+    return contents;
   }
 
   private static void generateField(@NotNull ClassWriter cw, String name, int value) {
     cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, name, "I", null, value).visitEnd();
   }
 
-  private void generateIntArraysFromCache(@NotNull ClassWriter cw, String className) {
-    // Generate the field declarations.
-    for (String name : myStyleableCache.keySet()) {
-      cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, name, "[I", null, null);
-    }
-
-    // Generate class initializer block to initialize the arrays declared above.
-    MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
-    mv.visitCode();
-    myStyleableCache.forEach((arrayName, values) -> {
-      generateArrayInitialization(mv, className, arrayName, values);
-    });
-    mv.visitInsn(RETURN);
-    mv.visitMaxs(4, 0);
-    mv.visitEnd();
-  }
-
   /**
    * Generates the instruction to push value into the stack. It will select the best opcode depending on the given value.
    */
@@ -351,13 +372,41 @@ public class ResourceClassGenerator {
     }
   }
 
-  private static class MergedStyleable {
-    @NotNull final String name;
-    @NotNull final LinkedHashSet<ResourceReference> attrs;
+  /**
+   * Fields of a generated class and their values, which tell whether the class needs to be generated again. The int fields of an R class
+   * come first in {@link #fieldNames}, one per element of each array, followed by the ones not related to arrays. The default R class
+   * lists the names of its inner classes as fields.
+   */
+  private static final class ClassContents {
+    @NotNull final List<String> fieldNames = new ArrayList<>();
+    @NotNull final TIntArrayList fieldValues = new TIntArrayList();
+    @NotNull final List<String> arrayNames = new ArrayList<>();
+    @NotNull final List<TIntArrayList> arrayValues = new ArrayList<>();
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof ClassContents)) return false;
+      ClassContents other = (ClassContents)obj;
+      return fieldNames.equals(other.fieldNames) && fieldValues.equals(other.fieldValues) &&
+             arrayNames.equals(other.arrayNames) && arrayValues.equals(other.arrayValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(fieldNames, fieldValues, arrayNames, arrayValues);
+    }
+  }
+
+  private static final class GeneratedClass {
+    final long modificationCount;
+    @NotNull final ClassContents contents;
+    @NotNull final byte[] bytecode;
 
-    private MergedStyleable(@NotNull String name, @NotNull LinkedHashSet<ResourceReference> attrs) {
-      this.name = name;
-      this.attrs = attrs;
+    private GeneratedClass(long modificationCount, @NotNull ClassContents contents, @NotNull byte[] bytecode) {
+      this.modificationCount = modificationCount;
+      this.contents = contents;
+      this.bytecode = bytecode;
     }
   }
 }
@@ -44,8 +44,8 @@ import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
@@ -54,6 +54,7 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.*;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.ObjectIntHashMap;
 import org.jetbrains.android.dom.manifest.AndroidManifestUtils;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.resourceManagers.ModuleResourceManagers;
@@ -62,10 +63,14 @@ import org.jetbrains.android.util.AndroidResourceUtil;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Node;
 
 import javax.annotation.concurrent.GuardedBy;
 import java.io.File;
 import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -95,6 +100,9 @@ import static com.android.tools.lint.detector.api.Lint.stripIdPrefix;
  */
 public final class ResourceFolderRepository extends LocalResourceRepository implements SingleNamespaceResourceRepository {
   private static final Logger LOG = Logger.getInstance(ResourceFolderRepository.class);
+  private static final String CACHE_FILE_NAME = "resources.bin";
+  private static final String CACHE_FILE_HEADER = "Resource folder cache";
+  private static final String CACHE_FILE_FORMAT_VERSION = "1";
 
   private final Module myModule;
   private final AndroidFacet myFacet;
@@ -134,8 +142,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     myResourceDir = resourceDir;
     myNamespace = namespace;
 
-    ResourceMerger merger = loadPreviousStateIfExists();
-    myInitialScanState = new InitialScanState(merger, VfsUtilCore.virtualToIoFile(myResourceDir));
+    loadFromPersistentCache();
+    myInitialScanState = new InitialScanState(createResourceMerger(), VfsUtilCore.virtualToIoFile(myResourceDir));
     scanRemainingFiles();
     Application app = ApplicationManager.getApplication();
 
@@ -181,114 +189,219 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   }
 
   /**
-   * Saves the non-Psi XML state as a single blob for faster loading the second time
-   * by {@link #loadPreviousStateIfExists}.
+   * Saves the items of the XML files parsed without PSI to a binary cache file, for faster loading the second time by
+   * {@link #loadFromPersistentCache}. The cache file has the following format:
+   * <ol>
+   *   <li>Header, as for the {@link FrameworkResourceRepository} cache, with {@link #CACHE_FILE_HEADER}</li>
+   *   <li>Absolute path of the resource directory (UTF-8 string)</li>
+   *   <li>Version of the Android plugin (UTF-8 string)</li>
+   *   <li>Number of folder configurations (unsigned short)</li>
+   *   <li>Qualifier strings of folder configurations (UTF-8 strings)</li>
+   *   <li>Number of file entries (int)</li>
+   *   <li>File entries (see below)</li>
+   * </ol>
+   *
+   * A file entry contains:
+   * <ol>
+   *   <li>Path of the file relative to the resource directory (UTF-8 string)</li>
+   *   <li>Last modification time of the file (long)</li>
+   *   <li>Length of the file (long)</li>
+   *   <li>Index of the folder configuration of the file (unsigned short)</li>
+   *   <li>Whether the file is a single file resource (boolean)</li>
+   *   <li>Number of resource items (unsigned short)</li>
+   *   <li>Resource item entries, each made of the ordinal of its {@link ResourceType} (unsigned byte), its name (UTF-8 string) and its
+   *       XML node entry, as in the {@link FrameworkResourceRepository} cache</li>
+   * </ol>
    */
   @VisibleForTesting
   void saveStateToFile() {
-    File blobRoot = ResourceFolderRepositoryFileCacheService.get().getResourceDir(myModule.getProject(), myResourceDir);
-    if (blobRoot == null) {
+    File cacheFile = getCacheFile();
+    if (cacheFile == null) {
       // The cache is invalid, do nothing.
       return;
     }
 
+    // Only files parsed without PSI can be loaded without PSI. Items marked as ignored are either derived from the file name or,
+    // for density-based resources, would lose their density if loaded from the cache.
+    Map<VirtualFile, ResourceFile> resourceFiles = new TreeMap<>(
+      Comparator.comparing((VirtualFile file) -> file.getParent().getName()).thenComparing(VirtualFile::getName));
+    for (Map.Entry<VirtualFile, ResourceItemSource<? extends ResourceItem>> entry : sources.entrySet()) {
+      VirtualFile file = entry.getKey();
+      ResourceItemSource<? extends ResourceItem> source = entry.getValue();
+      if (source instanceof ResourceFileAdapter && file.isValid() && file.getParent() != null) {
+        ResourceFile resourceFile = ((ResourceFileAdapter)source).getResourceFile();
+        Collection<ResourceMergerItem> items = resourceFile.getItems();
+        if (!items.isEmpty() && !ContainerUtil.exists(items, ResourceMergerItem::isIgnoredFromDiskMerge)) {
+          resourceFiles.put(file, resourceFile);
+        }
+      }
+    }
+
+    File cacheDir = cacheFile.getParentFile();
+    File tempFile;
     try {
-      ResourcePreprocessor preprocessor = NoOpResourcePreprocessor.INSTANCE;
-      File tempDirectory = FileUtil.createTempDirectory("resource", "tmp", false);
-      try {
-        MergeConsumer<ResourceMergerItem> consumer =
-            MergedResourceWriter.createWriterWithoutPngCruncher(blobRoot, null, null, preprocessor, tempDirectory);
-        myInitialScanState.myResourceMerger.writeBlobToWithTimestamps(blobRoot, consumer);
-      } finally {
-        FileUtil.delete(tempDirectory);
+      FileUtil.ensureExists(cacheDir);
+      // Write to a temporary file first, then rename to to the final name.
+      tempFile = FileUtilRt.createTempFile(cacheDir, cacheFile.getName(), ".tmp");
+    }
+    catch (IOException e) {
+      LOG.error("Unable to create a temporary file in " + cacheDir.getAbsolutePath(), e);
+      return;
+    }
+
+    try (CacheOutputStream out = new CacheOutputStream(tempFile)) {
+      out.writeUTF(VfsUtilCore.virtualToIoFile(myResourceDir).getAbsolutePath());
+      out.writeUTF(FrameworkResourceRepository.getAndroidPluginVersion());
+
+      List<FolderConfiguration> folderConfigurations = new ArrayList<>();
+      ObjectIntHashMap<FolderConfiguration> folderConfigurationIndexes = new ObjectIntHashMap<>();
+      for (ResourceFile resourceFile : resourceFiles.values()) {
+        FolderConfiguration folderConfiguration = resourceFile.getFolderConfiguration();
+        if (!folderConfigurationIndexes.containsKey(folderConfiguration)) {
+          folderConfigurationIndexes.put(folderConfiguration, folderConfigurations.size());
+          folderConfigurations.add(folderConfiguration);
+        }
+      }
+      if (folderConfigurations.size() > 0xFFFF) {
+        throw new IOException("Too many folder configurations: " + folderConfigurations.size());
+      }
+      out.writeShort(folderConfigurations.size());
+      for (FolderConfiguration folderConfiguration : folderConfigurations) {
+        out.writeUTF(folderConfiguration.getQualifierString());
+      }
+
+      out.writeInt(resourceFiles.size());
+      for (Map.Entry<VirtualFile, ResourceFile> entry : resourceFiles.entrySet()) {
+        VirtualFile file = entry.getKey();
+        ResourceFile resourceFile = entry.getValue();
+        File ioFile = VfsUtilCore.virtualToIoFile(file);
+        out.writeUTF(file.getParent().getName() + '/' + file.getName());
+        out.writeLong(ioFile.lastModified());
+        out.writeLong(ioFile.length());
+        out.writeShort(folderConfigurationIndexes.get(resourceFile.getFolderConfiguration()));
+        out.writeBoolean(resourceFile.getType() == DataFile.FileType.SINGLE_FILE);
+        Collection<ResourceMergerItem> items = resourceFile.getItems();
+        if (items.size() > 0xFFFF) {
+          throw new IOException("Too many resources in " + ioFile + ": " + items.size());
+        }
+        out.writeShort(items.size());
+        for (ResourceMergerItem item : items) {
+          out.writeResourceType(item.getType());
+          out.writeUTF(item.getName());
+          out.writeNode(item.getValue());
+        }
       }
     }
-    catch (MergingException | IOException e) {
-      LOG.error("Failed to saveStateToFile", e);
-      // Delete the blob root just in case it's in an inconsistent state.
-      FileUtil.delete(blobRoot);
+    catch (Throwable e) {
+      LOG.error("Unable to create cache file " + tempFile.getAbsolutePath(), e);
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+      return;
+    }
+
+    try {
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      LOG.error("Unable to create cache file " + cacheFile.getAbsolutePath(), e);
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
     }
   }
 
   /**
-   * Reloads ResourceFile and ResourceItems which have not changed since the last {@link #saveStateToFile}.
-   * Some Resource file and items may not be covered, so {@link #scanRemainingFiles} should be run
-   * to load the rest of the items.
-   *
-   * @return the loaded ResourceMerger -- this can be used to save state again, if the cache isn't fresh
+   * Loads the items of the XML files which have not changed since the last {@link #saveStateToFile}, without PSI. Files which are not in
+   * the cache or changed since are left to {@link #scanRemainingFiles}, which also loads all the other files.
    */
-  private ResourceMerger loadPreviousStateIfExists() {
+  private void loadFromPersistentCache() {
     if (namespacesUsed()) {
       // TODO(b/76409654): figure out how to store the state in namespaced projects.
-      return createFreshResourceMerger();
+      return;
     }
 
-    File blobRoot = ResourceFolderRepositoryFileCacheService.get().getResourceDir(myModule.getProject(), myResourceDir);
-    if (blobRoot == null || !blobRoot.exists()) {
-      return createFreshResourceMerger();
-    }
-    ResourceMerger merger = new ResourceMerger(0 /* minSdk */);
-    // This load may fail if the data is in an inconsistent state or the xml contains illegal
-    // resource names, which the Psi parser would otherwise allow, so load failures are not
-    // strictly an error.
-    // loadFromBlob will check timestamps for stale data and skip.
-    try {
-      if (!merger.loadFromBlob(blobRoot, false)) {
-        LOG.warn("failed to loadPreviousStateIfExists " + blobRoot);
-        return createFreshResourceMerger();
-      }
-    }
-    catch (MergingException e) {
-      LOG.warn("failed to loadPreviousStateIfExists " + blobRoot, e);
-      return createFreshResourceMerger();
-    }
-    // This temp resourceFiles set is just to avoid calling VfsUtil.findFileByIoFile repeatedly.
-    Set<ResourceFile> resourceFiles = new HashSet<>();
-    List<ResourceSet> resourceSets = merger.getDataSets();
-    if (resourceSets.size() != 1) {
-      LOG.error("Expecting exactly one resource set, but found " + resourceSets.size());
-      return createFreshResourceMerger();
-    }
-    ResourceSet dataSet = resourceSets.get(0);
-    List<File> sourceFiles = dataSet.getSourceFiles();
-    if (sourceFiles.size() != 1) {
-      LOG.error("Expecting exactly source files (res/ directories), but found " + sourceFiles.size());
-      return createFreshResourceMerger();
-    }
-    File myResourceDirFile = VfsUtilCore.virtualToIoFile(myResourceDir);
-    // Check that the dataSet we're loading actually corresponds to this resource directory.
-    // This could happen if there's a hash collision in naming the cache directory.
-    if (!FileUtil.filesEqual(sourceFiles.get(0), myResourceDirFile)) {
-      LOG.warn(String.format("source file %1$s, does not match resource dir %2$s", sourceFiles.get(0), myResourceDirFile));
-      return createFreshResourceMerger();
+    File cacheFile = getCacheFile();
+    if (cacheFile == null || !cacheFile.exists()) {
+      return;
     }
 
     // Items to be inserted into the repo, while holding ITEM_MAP_LOCK. The loop below does too much I/O to hold the lock the whole time.
     Map<ResourceType, ListMultimap<String, ResourceItem>> result = new HashMap<>();
+    Map<VirtualFile, ResourceItemSource<? extends ResourceItem>> loadedSources = new HashMap<>();
+    File resourceDir = VfsUtilCore.virtualToIoFile(myResourceDir);
+    try (CacheInputStream in = new CacheInputStream(cacheFile)) {
+      // The cache directory name is made of a hash code, so it may be the one of another resource directory.
+      if (!in.readUTF().equals(resourceDir.getAbsolutePath())) {
+        return;
+      }
+      if (!in.readUTF().equals(FrameworkResourceRepository.getAndroidPluginVersion())) {
+        // As for the framework cache, don't assume any compatibility between versions of the Android plugin.
+        return;
+      }
 
-    for (ResourceMergerItem item: dataSet.getDataMap().values()) {
-      ResourceFile file = item.getSourceFile();
-      if (file != null) {
-        if (!resourceFiles.contains(file)) {
-          VirtualFile vFile = VfsUtil.findFileByIoFile(file.getFile(), false);
-          if (vFile == null) {
-            // Cannot handle this item, mark it ignored so that it doesn't persist.
-            item.setIgnoredFromDiskMerge(true);
-            continue;
-          }
-          resourceFiles.add(file);
-          sources.put(vFile, new ResourceFileAdapter(file));
+      int numFolderConfigurations = in.readUnsignedShort();
+      FolderConfiguration[] folderConfigurations = new FolderConfiguration[numFolderConfigurations];
+      for (int i = 0; i < numFolderConfigurations; i++) {
+        String qualifiers = in.readUTF();
+        FolderConfiguration folderConfiguration = FolderConfiguration.getConfigForQualifierString(qualifiers);
+        if (folderConfiguration == null) {
+          throw new StreamCorruptedException("Invalid folder qualifiers: " + qualifiers);
+        }
+        folderConfigurations[i] = folderConfiguration;
+      }
+
+      int numFiles = in.readInt();
+      for (int i = 0; i < numFiles; i++) {
+        String path = in.readUTF();
+        long lastModified = in.readLong();
+        long length = in.readLong();
+        FolderConfiguration folderConfiguration = folderConfigurations[in.readUnsignedShort()];
+        boolean isSingleFile = in.readBoolean();
+        int numItems = in.readUnsignedShort();
+        List<ResourceMergerItem> items = new ArrayList<>(numItems);
+        for (int j = 0; j < numItems; j++) {
+          ResourceType type = in.readResourceType();
+          String name = in.readUTF();
+          Node node = in.readNode();
+          items.add(new ResourceMergerItem(name, myNamespace, type, node, getLibraryName()));
+        }
+
+        // Files that changed since the cache was written are parsed again by scanRemainingFiles.
+        File file = new File(resourceDir, path);
+        if (file.lastModified() != lastModified || file.length() != length) {
+          continue;
+        }
+        VirtualFile virtualFile = myResourceDir.findFileByRelativePath(path);
+        if (virtualFile == null || items.isEmpty()) {
+          continue;
+        }
+        ResourceFile resourceFile = isSingleFile && items.size() == 1
+                                    ? new ResourceFile(file, items.get(0), folderConfiguration)
+                                    : new ResourceFile(file, items, folderConfiguration);
+        loadedSources.put(virtualFile, new ResourceFileAdapter(resourceFile));
+        for (ResourceMergerItem item : items) {
+          addToResult(result, item);
         }
-        addToResult(result, item);
-      } else {
-        // Cannot handle this item, mark it ignored to that it doesn't persist.
-        item.setIgnoredFromDiskMerge(true);
       }
     }
+    catch (FrameworkResourceRepository.VersionMismatchException e) {
+      return; // Cache file format does not match.
+    }
+    catch (Throwable e) {
+      LOG.warn("Unable to load from cache file " + cacheFile.getAbsolutePath(), e);
+      return;
+    }
 
+    sources.putAll(loadedSources);
     commitToRepository(result);
+  }
 
-    return merger;
+  /**
+   * Returns the cache file of this repository, or null if the cache is invalid.
+   */
+  @Nullable
+  private File getCacheFile() {
+    File cacheDir = ResourceFolderRepositoryFileCacheService.get().getResourceDir(myModule.getProject(), myResourceDir);
+    return cacheDir == null ? null : new File(cacheDir, CACHE_FILE_NAME);
   }
 
   private boolean namespacesUsed() {
@@ -311,7 +424,10 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     }
   }
 
-  private ResourceMerger createFreshResourceMerger() {
+  /**
+   * Creates the resource merger used by {@link InitialScanState} to parse the files not loaded from the cache without PSI.
+   */
+  private ResourceMerger createResourceMerger() {
     ResourceMerger merger = new ResourceMerger(0 /* minSdk */);
     ResourceSet myData = new ResourceSet(myResourceDir.getName(), myNamespace, getLibraryName(), false /* validateEnabled */);
     File resourceDir = VfsUtilCore.virtualToIoFile(myResourceDir);
@@ -332,7 +448,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   }
 
   /**
-   * Tracks state used by the initial scan, which may be used to save the state to a cache.
+   * Tracks state used by the initial scan of the files which were not loaded from the cache file.
    *
    * This also tracks how fresh the repo file-cache is by tracking how many xml file were reparsed during scan.
    * The file cache omits non-XML single-file items, since those are easily derived from the file path.
@@ -596,9 +712,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         }
         for (ResourceMergerItem item : resourceFile.getItems()) {
           addToResult(result, item);
-          // It's not yet safe to serialize density-based resources items to blob files.
+          // It's not yet safe to serialize density-based resources items to the cache file.
           // The ResourceValue should be an instance of DensityBasedResourceValue, but no flags are
-          // serialized to the blob to indicate that.
+          // serialized to the cache file to indicate that.
           if (isDensityBasedResource) {
             item.setIgnoredFromDiskMerge(true);
           }
@@ -613,7 +729,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     }
     else {
       // We create the items without adding it to the resource set / resource merger.
-      // No need to write these out to blob files, as the item is easily reconstructed from the filename.
+      // No need to write these out to the cache file, as the item is easily reconstructed from the filename.
       String name = ResourceHelper.getResourceName(file);
       ResourceMergerItem item = new ResourceMergerItem(name, myNamespace, type, null, getLibraryName());
       addToResult(result, item);
@@ -2589,4 +2705,40 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     // Only compare the keys.
     return myDataBindingResourceFiles.keySet().equals(other.myDataBindingResourceFiles.keySet());
   }
+
+  private static class CacheOutputStream extends FrameworkResourceRepository.CacheOutputStream {
+    CacheOutputStream(@NotNull File file) throws IOException {
+      super(file);
+    }
+
+    @Override
+    @NotNull
+    protected String getHeader() {
+      return CACHE_FILE_HEADER;
+    }
+
+    @Override
+    @NotNull
+    protected String getFormatVersion() {
+      return CACHE_FILE_FORMAT_VERSION;
+    }
+  }
+
+  private static class CacheInputStream extends FrameworkResourceRepository.CacheInputStream {
+    CacheInputStream(@NotNull File file) throws IOException {
+      super(file);
+    }
+
+    @Override
+    @NotNull
+    protected String getHeader() {
+      return CACHE_FILE_HEADER;
+    }
+
+    @Override
+    @NotNull
+    protected String getFormatVersion() {
+      return CACHE_FILE_FORMAT_VERSION;
+    }
+  }
 }
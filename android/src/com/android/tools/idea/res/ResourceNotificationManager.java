@@ -17,6 +17,7 @@ package com.android.tools.idea.res;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.android.annotations.concurrency.GuardedBy;
 import com.android.resources.ResourceUrl;
 import com.android.resources.ResourceFolderType;
 import com.android.tools.idea.AndroidPsiUtils;
@@ -24,10 +25,12 @@ import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
 import com.android.tools.idea.databinding.DataBindingUtil;
 import com.android.tools.idea.project.AndroidProjectBuildNotifications;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.ModificationTracker;
@@ -37,6 +40,7 @@ import com.intellij.openapi.vfs.newvfs.BulkFileListener;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import com.intellij.psi.*;
 import com.intellij.psi.xml.*;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.messages.MessageBusConnection;
 import org.intellij.images.fileTypes.ImageFileTypeManager;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -44,6 +48,8 @@ import org.jetbrains.android.facet.ResourceFolderManager;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.android.SdkConstants.ANDROID_PREFIX;
 import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
@@ -71,10 +77,20 @@ import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
  * <li>No locks are held when the listener are notified</li>
  * <li>All events are delivered on the event dispatch (UI) thread</li>
  * <li>Add listener or remove listener can be done from any thread</li>
+ * <li>Events arriving within {@link #BATCH_WINDOW_MS} of each other are delivered as a single notification, with their reasons
+ * merged, and a listener registered for several modules is notified once per batch</li>
  * </ul>
  */
 @SuppressWarnings({"SynchronizeOnThis", "UseOfSystemOutOrSystemErr"})
 public class ResourceNotificationManager {
+  private static final Logger LOG = Logger.getInstance(ResourceNotificationManager.class);
+
+  /**
+   * How long to keep collecting events after the first one before notifying the listeners. A refactoring or a VCS update touching many
+   * resource files fires PSI events for a while, and each notification may trigger a render in every listener.
+   */
+  private static final long BATCH_WINDOW_MS = 100;
+
   private final Project myProject;
 
   /**
@@ -111,8 +127,18 @@ public class ResourceNotificationManager {
   /**
    * Set of events we've observed since the last notification
    */
+  @GuardedBy("CHANGE_PENDING_LOCK")
   private EnumSet<Reason> myEvents = EnumSet.noneOf(Reason.class);
 
+  /**
+   * Number of events received, of batches delivered and of listener notifications made, which tell how much rendering was saved
+   */
+  private final AtomicLong myReceivedEventCount = new AtomicLong();
+  private final AtomicLong myDeliveredBatchCount = new AtomicLong();
+  private final AtomicLong myDeliveredNotificationCount = new AtomicLong();
+
+  private volatile long myBatchWindowMs = ApplicationManager.getApplication().isUnitTestMode() ? 0 : BATCH_WINDOW_MS;
+
   /**
    * Do not instantiate directly; this is a {@link ProjectComponent} and its lifecycle is managed by the IDE;
    * use {@link #getInstance(Project)} instead
@@ -259,16 +285,27 @@ public class ResourceNotificationManager {
   private final Object CHANGE_PENDING_LOCK = new Object();
 
   /**
-   * Something happened. Either schedule a notification or if one is already pending, do nothing.
+   * Something happened. Either schedule a notification or if one is already pending, add the reason to it.
    */
   private void notice(Reason reason) {
-    myEvents.add(reason);
+    myReceivedEventCount.incrementAndGet();
     synchronized (CHANGE_PENDING_LOCK) {
+      myEvents.add(reason);
       if (myPendingNotify) {
         return;
       }
       myPendingNotify = true;
     }
+    if (myBatchWindowMs > 0) {
+      // Let the events of a bulk change accumulate before notifying.
+      AppExecutorUtil.getAppScheduledExecutorService().schedule(this::scheduleNotification, myBatchWindowMs, TimeUnit.MILLISECONDS);
+    }
+    else {
+      scheduleNotification();
+    }
+  }
+
+  private void scheduleNotification() {
     ApplicationManager.getApplication().invokeLater(() -> {
       synchronized (CHANGE_PENDING_LOCK) {
         if (!myPendingNotify) {
@@ -285,21 +322,67 @@ public class ResourceNotificationManager {
       // invoke later and the second, it will schedule another complete notification
       // event.
       ApplicationManager.getApplication().invokeLater(() -> {
-        EnumSet<Reason> reason1 = myEvents;
-        myEvents = EnumSet.noneOf(Reason.class);
-        notifyListeners(reason1);
-        myEvents.clear();
-      });
-    });
+        EnumSet<Reason> reason;
+        synchronized (CHANGE_PENDING_LOCK) {
+          reason = myEvents;
+          myEvents = EnumSet.noneOf(Reason.class);
+        }
+        if (!reason.isEmpty()) {
+          notifyListeners(reason);
+        }
+      }, myProject.getDisposed());
+    }, myProject.getDisposed());
   }
 
   private void notifyListeners(@NonNull EnumSet<Reason> reason) {
     ApplicationManager.getApplication().assertIsDispatchThread();
 
-    for (ModuleEventObserver moduleEventObserver : myModuleToObserverMap.values()) {
+    // A listener may observe several modules; collect them first so that it is told only once.
+    Set<ResourceChangeListener> listeners = new LinkedHashSet<>();
+    List<ModuleEventObserver> moduleEventObservers;
+    synchronized (this) {
+      moduleEventObservers = new ArrayList<>(myModuleToObserverMap.values());
+    }
+    for (ModuleEventObserver moduleEventObserver : moduleEventObservers) {
       // Not every module may have pending changes; each one will check
-      moduleEventObserver.notifyListeners(reason);
+      moduleEventObserver.collectListenersToNotify(reason, listeners);
+    }
+
+    myDeliveredBatchCount.incrementAndGet();
+    myDeliveredNotificationCount.addAndGet(listeners.size());
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("Notifying %d listeners of %s; %d events received, %d notifications delivered so far", listeners.size(),
+                              reason, getReceivedEventCount(), getDeliveredNotificationCount()));
     }
+    for (ResourceChangeListener listener : listeners) {
+      listener.resourcesChanged(reason);
+    }
+  }
+
+  /**
+   * Returns the number of resource related events received so far, each of which used to cause a notification of every listener.
+   */
+  public long getReceivedEventCount() {
+    return myReceivedEventCount.get();
+  }
+
+  /**
+   * Returns the number of batches of events delivered to the listeners so far.
+   */
+  public long getDeliveredBatchCount() {
+    return myDeliveredBatchCount.get();
+  }
+
+  /**
+   * Returns the number of times a listener was notified so far.
+   */
+  public long getDeliveredNotificationCount() {
+    return myDeliveredNotificationCount.get();
+  }
+
+  @VisibleForTesting
+  void setBatchWindowMs(long batchWindowMs) {
+    myBatchWindowMs = batchWindowMs;
   }
 
   /**
@@ -353,7 +436,10 @@ public class ResourceNotificationManager {
       }
     }
 
-    private void notifyListeners(@NonNull EnumSet<Reason> reason) {
+    /**
+     * Adds the listeners of this module to {@code listeners} unless the module is not affected by the change.
+     */
+    private void collectListenersToNotify(@NonNull EnumSet<Reason> reason, @NonNull Set<ResourceChangeListener> listeners) {
       if (myFacet.isDisposed()) {
         return;
       }
@@ -366,13 +452,8 @@ public class ResourceNotificationManager {
       }
 
       myGeneration = generation;
-      ApplicationManager.getApplication().assertIsDispatchThread();
-      List<ResourceChangeListener> listeners;
-      synchronized (this) {
-        listeners = Lists.newArrayList(myListeners);
-      }
-      for (ResourceChangeListener listener : listeners) {
-        listener.resourcesChanged(reason);
+      synchronized (ResourceNotificationManager.this) {
+        listeners.addAll(myListeners);
       }
     }
 
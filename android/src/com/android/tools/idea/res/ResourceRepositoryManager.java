@@ -92,6 +92,10 @@ public class ResourceRepositoryManager implements Disposable {
   @GuardedBy("myLibraryLock")
   private Map<ExternalLibrary, AarSourceResourceRepository> myLibraryResourceMap;
 
+  /** Releases the shared library repositories of {@link #myLibraryResourceMap} when disposed. */
+  @GuardedBy("myLibraryLock")
+  private Disposable myLibraryResourcesDisposable;
+
   private final Object myLibraryLock = new Object();
 
   @NotNull
@@ -426,6 +430,10 @@ public class ResourceRepositoryManager implements Disposable {
   private void resetLibraries() {
     synchronized (myLibraryLock) {
       myLibraryResourceMap = null;
+      if (myLibraryResourcesDisposable != null) {
+        Disposer.dispose(myLibraryResourcesDisposable);
+        myLibraryResourcesDisposable = null;
+      }
     }
   }
 
@@ -552,14 +560,19 @@ public class ResourceRepositoryManager implements Disposable {
   private Map<ExternalLibrary, AarSourceResourceRepository> getLibraryResourceMap() {
     synchronized (myLibraryLock) {
       if (myLibraryResourceMap == null) {
-        myLibraryResourceMap = computeLibraryResourceMap();
+        if (myLibraryResourcesDisposable != null) {
+          Disposer.dispose(myLibraryResourcesDisposable);
+        }
+        myLibraryResourcesDisposable = Disposer.newDisposable();
+        Disposer.register(this, myLibraryResourcesDisposable);
+        myLibraryResourceMap = computeLibraryResourceMap(myLibraryResourcesDisposable);
       }
       return myLibraryResourceMap;
     }
   }
 
   @NotNull
-  private Map<ExternalLibrary, AarSourceResourceRepository> computeLibraryResourceMap() {
+  private Map<ExternalLibrary, AarSourceResourceRepository> computeLibraryResourceMap(@NotNull Disposable owner) {
     Collection<ExternalLibrary> libraries = AndroidProjectModelUtils.findDependenciesWithResources(myFacet.getModule()).values();
     Map<ExternalLibrary, AarSourceResourceRepository> result = new LinkedHashMap<>(libraries.size());
     for (ExternalLibrary library: libraries) {
@@ -573,7 +586,7 @@ public class ResourceRepositoryManager implements Disposable {
           LOG.warn("Cannot find res folder for " + library.getAddress());
           continue;
         }
-        aarRepository = AarResourceRepositoryCache.getInstance().getSourceRepository(resFolder, library.getAddress());
+        aarRepository = AarResourceRepositoryCache.getInstance().getSourceRepository(resFolder, library.getAddress(), owner);
       } else {
         PathString resApkPath = library.getResApkFile();
         if (resApkPath == null) {
@@ -587,7 +600,7 @@ public class ResourceRepositoryManager implements Disposable {
           continue;
         }
 
-        aarRepository = AarResourceRepositoryCache.getInstance().getProtoRepository(resApkFile, library.getAddress());
+        aarRepository = AarResourceRepositoryCache.getInstance().getProtoRepository(resApkFile, library.getAddress(), owner);
       }
       result.put(library, aarRepository);
     }
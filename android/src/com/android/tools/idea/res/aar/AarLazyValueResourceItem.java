@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res.aar;
+
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.resources.ResourceType;
+import com.android.resources.ResourceVisibility;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Resource item whose value is decoded from the memory-mapped resource table of its {@link AarProtoResourceRepository} the first time
+ * it is needed. Used for styles, styleables, arrays and plurals, which are the bulk of the values of an AAR and most of which are never
+ * looked at.
+ */
+final class AarLazyValueResourceItem extends AbstractAarValueResourceItem {
+  @NotNull private final ResourceType myResourceType;
+  /** Position of the serialized value message in the resource table. */
+  private final int myValueOffset;
+  private final int myValueLength;
+  @Nullable private volatile ResourceValue myResourceValue;
+
+  /**
+   * Initializes the resource.
+   *
+   * @param type the type of the resource
+   * @param name the name of the resource
+   * @param configuration the configuration the resource belongs to
+   * @param visibility the visibility of the resource
+   * @param valueOffset the offset of the value message in the resource table
+   * @param valueLength the length of the value message
+   */
+  public AarLazyValueResourceItem(@NotNull ResourceType type,
+                                  @NotNull String name,
+                                  @NotNull AarConfiguration configuration,
+                                  @NotNull ResourceVisibility visibility,
+                                  int valueOffset,
+                                  int valueLength) {
+    super(name, configuration, visibility);
+    myResourceType = type;
+    myValueOffset = valueOffset;
+    myValueLength = valueLength;
+  }
+
+  @Override
+  @NotNull
+  public ResourceType getResourceType() {
+    return myResourceType;
+  }
+
+  @Override
+  @NotNull
+  public ResourceValue getResourceValue() {
+    ResourceValue resourceValue = myResourceValue;
+    if (resourceValue == null) {
+      // Concurrent callers may both decode the value, which is harmless.
+      resourceValue = getRepository().decodeValue(myResourceType, getName(), getAarConfiguration(), getVisibility(), myValueOffset,
+                                                  myValueLength);
+      if (resourceValue == null) {
+        resourceValue = this;
+      }
+      myResourceValue = resourceValue;
+    }
+    return resourceValue;
+  }
+
+  @Override
+  @Nullable
+  public String getValue() {
+    ResourceValue resourceValue = getResourceValue();
+    return resourceValue == this ? null : resourceValue.getValue();
+  }
+}
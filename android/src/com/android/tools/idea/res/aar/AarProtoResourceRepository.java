@@ -16,6 +16,7 @@
 package com.android.tools.idea.res.aar;
 
 import com.android.SdkConstants;
+import com.android.annotations.VisibleForTesting;
 import com.android.aapt.ConfigurationOuterClass.Configuration;
 import com.android.aapt.Resources;
 import com.android.ide.common.rendering.api.*;
@@ -31,7 +32,16 @@ import com.android.utils.XmlUtils;
 import com.google.common.base.CharMatcher;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.util.BitUtil;
 import com.intellij.util.io.URLUtil;
 import org.jetbrains.android.dom.manifest.AndroidManifestUtils;
@@ -39,6 +49,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -47,11 +61,19 @@ import java.util.zip.ZipFile;
  * Repository of resources defined in an AAR file where resources are stored in protocol buffer format.
  * See https://developer.android.com/studio/projects/android-library.html.
  * See https://android.googlesource.com/platform/frameworks/base/+/master/tools/aapt2/Resources.proto
+ *
+ * <p>The resource table is memory-mapped rather than read into the heap. Only the names, configurations and visibilities of resources
+ * are read when the repository is loaded, together with the values of simple resources. Styles, styleables, arrays and plurals are
+ * represented by {@link AarLazyValueResourceItem}s, which decode their values from the mapped table when first needed. The table is
+ * copied to a file under {@link #CACHE_DIRECTORY}, extracting it when it is inside a res.apk file, and the copy is mapped, so that
+ * Gradle can still replace or delete the files of the AAR.
  */
 public class AarProtoResourceRepository extends AarSourceResourceRepository {
   private static final Logger LOG = Logger.getInstance(AarProtoResourceRepository.class);
   /** The name of the res.apk ZIP entry containing value resources. */
   private static final String RESOURCE_TABLE_ENTRY = "resources.pb";
+  /** The directory, relative to the IDE system directory, of the copies of the resource tables of AARs. */
+  private static final String CACHE_DIRECTORY = "caches/aar_resources";
 
   // The following constants represent the complex dimension encoding defined in
   // https://android.googlesource.com/platform/frameworks/base/+/master/libs/androidfw/include/androidfw/ResourceTypes.h
@@ -81,7 +103,12 @@ public class AarProtoResourceRepository extends AarSourceResourceRepository {
    * the {@link AarFileResourceItem#getValue()} method.
    */
   private String myResourceUrlPrefix;
-  private ResourceUrlParser myUrlParser;
+  /**
+   * The resource table the values of {@link AarLazyValueResourceItem}s are decoded from. Set while the repository is loaded.
+   */
+  private ByteBuffer myResourceTable;
+  /** Parser used for decoding values, also used as the lock serializing decoding. */
+  @NotNull private final ResourceUrlParser myUrlParser = new ResourceUrlParser();
 
   private AarProtoResourceRepository(@NotNull File apkFileOrFolder, @NotNull ResourceNamespace namespace, @Nullable String libraryName) {
     super(apkFileOrFolder.getParentFile(), namespace, libraryName);
@@ -110,13 +137,29 @@ public class AarProtoResourceRepository extends AarSourceResourceRepository {
     return repository;
   }
 
+  /**
+   * Returns the file under {@link #CACHE_DIRECTORY} holding the copy of the resource table of the given res.apk file or folder.
+   */
+  @VisibleForTesting
+  @NotNull
+  static File getCachedResourceTableFile(@NotNull File resApkFileOrFolder) {
+    String pathHash = Hashing.md5().hashUnencodedChars(resApkFileOrFolder.getAbsolutePath()).toString();
+    return new File(new File(PathManager.getSystemPath(), CACHE_DIRECTORY), pathHash + ".pb");
+  }
+
   @NotNull
   private static ResourceNamespace getNamespace(@Nullable String packageName) {
     return packageName == null ? ResourceNamespace.RES_AUTO : ResourceNamespace.fromPackageName(packageName);
   }
 
   private void load(@NotNull DataLoader loader) {
-    loadResourceTable(loader.resourceTableMsg);
+    myResourceTable = loader.resourceTable;
+    try {
+      loadResourceTable(loader.resourceTable);
+    } catch (IOException e) {
+      LOG.error("Unable to load resource table of " + myResApkFileOrFolder, e);
+      getFullTable().clear(); // Leave the repository empty.
+    }
     if (loader.loadedFromResApk) {
       myFilesystemProtocol = "apk";
       myResourcePathPrefix = myResApkFileOrFolder.getPath() + URLUtil.JAR_SEPARATOR;
@@ -127,35 +170,191 @@ public class AarProtoResourceRepository extends AarSourceResourceRepository {
     myResourceUrlPrefix = myFilesystemProtocol + "://" + myResourcePathPrefix;
   }
 
-  private void loadResourceTable(@NotNull Resources.ResourceTable resourceTableMsg) {
+  /**
+   * Walks the resource table message by message without decoding it as a whole, so that the values of {@link AarLazyValueResourceItem}s
+   * can be left in the table.
+   */
+  private void loadResourceTable(@NotNull ByteBuffer resourceTable) throws IOException {
     Map<Configuration, AarConfiguration> configCache = new HashMap<>();
-    myUrlParser = new ResourceUrlParser();
-    try  {
-      for (Resources.Package packageMsg : resourceTableMsg.getPackageList()) {
-        for (Resources.Type typeMsg : packageMsg.getTypeList()) {
-          ResourceType resourceType = ResourceType.fromClassName(typeMsg.getName());
-          if (resourceType == null) {
-            LOG.warn("Unexpected resource type: " + typeMsg.getName());
-            continue;
-          }
-          for (Resources.Entry entryMsg : typeMsg.getEntryList()) {
-            String resourceName = entryMsg.getName();
-            Resources.Visibility visibilityMsg = entryMsg.getVisibility();
-            ResourceVisibility visibility = computeVisibility(visibilityMsg);
-            for (Resources.ConfigValue configValueMsg : entryMsg.getConfigValueList()) {
-              AarConfiguration configuration = getConfiguration(configValueMsg.getConfig(), configCache);
-              Resources.Value valueMsg = configValueMsg.getValue();
-              ResourceItem item = createResourceItem(valueMsg, resourceType, resourceName, configuration, visibility);
-              if (item != null) {
-                addResourceItem(item);
-              }
-            }
+    CodedInputStream in = CodedInputStream.newInstance(resourceTable.duplicate());
+    int tag;
+    while ((tag = in.readTag()) != 0) {
+      if (isMessageField(tag, Resources.ResourceTable.PACKAGE_FIELD_NUMBER)) {
+        int length = in.readRawVarint32();
+        loadPackage(in.getTotalBytesRead(), length, configCache);
+        in.skipRawBytes(length);
+      } else {
+        in.skipField(tag);
+      }
+    }
+  }
+
+  private void loadPackage(int offset, int length, @NotNull Map<Configuration, AarConfiguration> configCache) throws IOException {
+    CodedInputStream in = CodedInputStream.newInstance(slice(offset, length));
+    int tag;
+    while ((tag = in.readTag()) != 0) {
+      if (isMessageField(tag, Resources.Package.TYPE_FIELD_NUMBER)) {
+        int typeLength = in.readRawVarint32();
+        loadType(offset + in.getTotalBytesRead(), typeLength, configCache);
+        in.skipRawBytes(typeLength);
+      } else {
+        in.skipField(tag);
+      }
+    }
+  }
+
+  private void loadType(int offset, int length, @NotNull Map<Configuration, AarConfiguration> configCache) throws IOException {
+    // The name of the type is needed before its entries, so look for it first.
+    CodedInputStream in = CodedInputStream.newInstance(slice(offset, length));
+    String typeName = "";
+    int tag;
+    while ((tag = in.readTag()) != 0) {
+      if (isMessageField(tag, Resources.Type.NAME_FIELD_NUMBER)) {
+        typeName = in.readString();
+      } else {
+        in.skipField(tag);
+      }
+    }
+    ResourceType resourceType = ResourceType.fromClassName(typeName);
+    if (resourceType == null) {
+      LOG.warn("Unexpected resource type: " + typeName);
+      return;
+    }
+
+    in = CodedInputStream.newInstance(slice(offset, length));
+    while ((tag = in.readTag()) != 0) {
+      if (isMessageField(tag, Resources.Type.ENTRY_FIELD_NUMBER)) {
+        int entryLength = in.readRawVarint32();
+        int limit = in.pushLimit(entryLength);
+        loadEntry(in, offset, resourceType, configCache);
+        in.popLimit(limit);
+      } else {
+        in.skipField(tag);
+      }
+    }
+  }
+
+  /**
+   * Loads the items of an entry message, which ends at the current limit of {@code in}.
+   *
+   * @param base the offset in the resource table of the stream
+   */
+  private void loadEntry(@NotNull CodedInputStream in, int base, @NotNull ResourceType resourceType,
+                         @NotNull Map<Configuration, AarConfiguration> configCache) throws IOException {
+    String resourceName = "";
+    ResourceVisibility visibility = computeVisibility(Resources.Visibility.getDefaultInstance());
+    List<AarConfiguration> configurations = new ArrayList<>();
+    List<Integer> valueOffsets = new ArrayList<>();
+    List<Integer> valueLengths = new ArrayList<>();
+    int tag;
+    while ((tag = in.readTag()) != 0) {
+      if (isMessageField(tag, Resources.Entry.NAME_FIELD_NUMBER)) {
+        resourceName = in.readString();
+      } else if (isMessageField(tag, Resources.Entry.VISIBILITY_FIELD_NUMBER)) {
+        visibility = computeVisibility(in.readMessage(Resources.Visibility.parser(), ExtensionRegistryLite.getEmptyRegistry()));
+      } else if (isMessageField(tag, Resources.Entry.CONFIG_VALUE_FIELD_NUMBER)) {
+        int limit = in.pushLimit(in.readRawVarint32());
+        Configuration configMsg = Configuration.getDefaultInstance();
+        int valueOffset = -1;
+        int valueLength = 0;
+        int configValueTag;
+        while ((configValueTag = in.readTag()) != 0) {
+          if (isMessageField(configValueTag, Resources.ConfigValue.CONFIG_FIELD_NUMBER)) {
+            configMsg = in.readMessage(Configuration.parser(), ExtensionRegistryLite.getEmptyRegistry());
+          } else if (isMessageField(configValueTag, Resources.ConfigValue.VALUE_FIELD_NUMBER)) {
+            valueLength = in.readRawVarint32();
+            valueOffset = base + in.getTotalBytesRead();
+            in.skipRawBytes(valueLength);
+          } else {
+            in.skipField(configValueTag);
           }
         }
+        in.popLimit(limit);
+        configurations.add(getConfiguration(configMsg, configCache));
+        valueOffsets.add(valueOffset);
+        valueLengths.add(valueLength);
+      } else {
+        in.skipField(tag);
+      }
+    }
+
+    for (int i = 0; i < configurations.size(); i++) {
+      AarConfiguration configuration = configurations.get(i);
+      int valueOffset = valueOffsets.get(i);
+      int valueLength = valueLengths.get(i);
+      ResourceItem item;
+      if (valueOffset < 0) {
+        item = decodeValue(Resources.Value.getDefaultInstance(), resourceType, resourceName, configuration, visibility);
+      } else if (isDecodedLazily(valueOffset, valueLength)) {
+        item = new AarLazyValueResourceItem(resourceType, resourceName, configuration, visibility, valueOffset, valueLength);
+      } else {
+        item = decodeValue(resourceType, resourceName, configuration, visibility, valueOffset, valueLength);
+      }
+      if (item != null) {
+        addResourceItem(item);
+      }
+    }
+  }
+
+  /**
+   * Checks if the value message at the given position of the resource table is one of the compound values that
+   * {@link AarLazyValueResourceItem} decodes on demand. Attributes are decoded right away since some of them don't produce a resource item.
+   */
+  private boolean isDecodedLazily(int valueOffset, int valueLength) throws IOException {
+    CodedInputStream in = CodedInputStream.newInstance(slice(valueOffset, valueLength));
+    int tag;
+    while ((tag = in.readTag()) != 0) {
+      if (isMessageField(tag, Resources.Value.COMPOUND_VALUE_FIELD_NUMBER)) {
+        in.pushLimit(in.readRawVarint32());
+        int compoundValueTag = in.readTag();
+        int fieldNumber = WireFormat.getTagFieldNumber(compoundValueTag);
+        return fieldNumber == Resources.CompoundValue.STYLE_FIELD_NUMBER ||
+               fieldNumber == Resources.CompoundValue.STYLEABLE_FIELD_NUMBER ||
+               fieldNumber == Resources.CompoundValue.ARRAY_FIELD_NUMBER ||
+               fieldNumber == Resources.CompoundValue.PLURAL_FIELD_NUMBER;
       }
-    } finally {
-      myUrlParser = null; // Not needed anymore.
+      in.skipField(tag);
     }
+    return false;
+  }
+
+  /**
+   * Decodes the value message at the given position of the resource table into a resource item.
+   *
+   * @return the resource item, or null if the value does not define a resource
+   */
+  @Nullable
+  AarResourceItem decodeValue(@NotNull ResourceType resourceType, @NotNull String resourceName, @NotNull AarConfiguration configuration,
+                              @NotNull ResourceVisibility visibility, int valueOffset, int valueLength) {
+    Resources.Value valueMsg;
+    try {
+      valueMsg = Resources.Value.parseFrom(CodedInputStream.newInstance(slice(valueOffset, valueLength)));
+    } catch (IOException e) {
+      LOG.error("Unable to decode " + resourceType.getName() + '/' + resourceName + " in " + myResApkFileOrFolder, e);
+      return null;
+    }
+    return decodeValue(valueMsg, resourceType, resourceName, configuration, visibility);
+  }
+
+  @Nullable
+  private AarResourceItem decodeValue(@NotNull Resources.Value valueMsg, @NotNull ResourceType resourceType,
+                                      @NotNull String resourceName, @NotNull AarConfiguration configuration,
+                                      @NotNull ResourceVisibility visibility) {
+    synchronized (myUrlParser) {
+      return createResourceItem(valueMsg, resourceType, resourceName, configuration, visibility);
+    }
+  }
+
+  @NotNull
+  private ByteBuffer slice(int offset, int length) {
+    ByteBuffer buffer = myResourceTable.duplicate();
+    buffer.position(offset);
+    buffer.limit(offset + length);
+    return buffer.slice();
+  }
+
+  private static boolean isMessageField(int tag, int fieldNumber) {
+    return WireFormat.getTagFieldNumber(tag) == fieldNumber && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
   }
 
   @Nullable
@@ -663,7 +862,7 @@ public class AarProtoResourceRepository extends AarSourceResourceRepository {
 
   private static class DataLoader {
     private final File resApkFileOrFolder;
-    Resources.ResourceTable resourceTableMsg;
+    ByteBuffer resourceTable;
     String packageName;
     boolean loadedFromResApk;
 
@@ -672,13 +871,15 @@ public class AarProtoResourceRepository extends AarSourceResourceRepository {
     }
 
     void load() throws IOException {
-      try {
-        resourceTableMsg = readResourceTableFromResourcesPbFile();
+      File resourceTableFile = new File(resApkFileOrFolder, RESOURCE_TABLE_ENTRY);
+      if (resourceTableFile.isFile()) {
+        resourceTable = mapCachedCopy(resourceTableFile.getPath(), resourceTableFile.lastModified(), resourceTableFile.length(),
+                                      () -> new FileInputStream(resourceTableFile));
         packageName = AndroidManifestUtils
           .getPackageNameFromManifestFile(new PathString(new File(resApkFileOrFolder, SdkConstants.FN_ANDROID_MANIFEST_XML)));
-      } catch (FileNotFoundException e) {
+      } else {
         try (ZipFile zipFile = new ZipFile(resApkFileOrFolder)) {
-          resourceTableMsg = readResourceTableFromResApk(zipFile);
+          resourceTable = readResourceTableFromResApk(zipFile);
           packageName = AndroidManifestUtils.getPackageNameFromResApk(zipFile);
         }
         loadedFromResApk = true;
@@ -686,32 +887,74 @@ public class AarProtoResourceRepository extends AarSourceResourceRepository {
     }
 
     /**
-     * Loads resource table from resources.pb file under the AAR directory.
+     * Maps the resource table extracted from the res.apk file.
      *
-     * @return the resource table proto message, or null if the resources.pb file does not exist
+     * @return the resource table
      */
-    @Nullable
-    private Resources.ResourceTable readResourceTableFromResourcesPbFile() throws IOException {
-      File file = new File(resApkFileOrFolder, RESOURCE_TABLE_ENTRY);
-      try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
-        return Resources.ResourceTable.parseFrom(stream);
+    @NotNull
+    private ByteBuffer readResourceTableFromResApk(@NotNull ZipFile resApk) throws IOException {
+      ZipEntry zipEntry = resApk.getEntry(RESOURCE_TABLE_ENTRY);
+      if (zipEntry == null) {
+        throw new IOException("\"" + RESOURCE_TABLE_ENTRY + "\" not found in " + resApk.getName());
       }
+      return mapCachedCopy(resApk.getName(), resApkFileOrFolder.lastModified(), zipEntry.getSize(), () -> resApk.getInputStream(zipEntry));
     }
 
     /**
-     * Loads resource table from res.apk file.
+     * Maps the copy of the resource table under {@link #CACHE_DIRECTORY}, copying it first if the copy doesn't exist or is out of date.
+     * Falls back to reading the resource table into the heap if it cannot be copied.
      *
-     * @return the resource table proto message
+     * @param sourceName the name of the file the resource table is read from, for logging
+     * @param stamp the modification time of that file
+     * @param size the size of the resource table
+     * @param source opens the resource table
+     * @return the resource table
      */
     @NotNull
-    private static Resources.ResourceTable readResourceTableFromResApk(@NotNull ZipFile resApk) throws IOException {
-      ZipEntry zipEntry = resApk.getEntry(RESOURCE_TABLE_ENTRY);
-      if (zipEntry == null) {
-        throw new IOException("\"" + RESOURCE_TABLE_ENTRY + "\" not found in " + resApk.getName());
+    private ByteBuffer mapCachedCopy(@NotNull String sourceName, long stamp, long size,
+                                     @NotNull ThrowableComputable<InputStream, IOException> source) throws IOException {
+      File cacheFile = getCachedResourceTableFile(resApkFileOrFolder);
+      if (cacheFile.lastModified() != stamp || cacheFile.length() != size) {
+        try {
+          copyResourceTable(source, cacheFile, stamp);
+        } catch (IOException e) {
+          LOG.warn("Unable to copy " + RESOURCE_TABLE_ENTRY + " from " + sourceName + " to " + cacheFile, e);
+          try (InputStream stream = source.compute()) {
+            return ByteBuffer.wrap(ByteStreams.toByteArray(stream));
+          }
+        }
       }
+      return mapFile(cacheFile);
+    }
 
-      try (InputStream stream = new BufferedInputStream(resApk.getInputStream(zipEntry))) {
-        return Resources.ResourceTable.parseFrom(stream);
+    private static void copyResourceTable(@NotNull ThrowableComputable<InputStream, IOException> source, @NotNull File cacheFile,
+                                          long stamp) throws IOException {
+      File cacheDir = cacheFile.getParentFile();
+      FileUtil.ensureExists(cacheDir);
+      // Write to a temporary file first, then rename to to the final name, since other projects may be mapping the file.
+      File tempFile = FileUtilRt.createTempFile(cacheDir, cacheFile.getName(), ".tmp");
+      try {
+        try (InputStream stream = source.compute()) {
+          Files.copy(stream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!tempFile.setLastModified(stamp)) {
+          throw new IOException("Unable to set the modification time of " + tempFile);
+        }
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.delete();
+      }
+    }
+
+    /**
+     * Maps the given file into memory read-only.
+     */
+    @NotNull
+    private static ByteBuffer mapFile(@NotNull File file) throws IOException {
+      try (FileInputStream stream = new FileInputStream(file)) {
+        FileChannel channel = stream.getChannel();
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
       }
     }
   }
@@ -15,24 +15,30 @@
  */
 package com.android.tools.idea.res.aar;
 
-import com.android.utils.concurrency.CacheUtils;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.lang.ref.SoftReference;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 
 /**
- * Cache of AAR resource repositories. This class is thread-safe.
+ * Cache of AAR resource repositories, shared by all open projects. This class is thread-safe.
+ *
+ * <p>Repositories are reference counted. A repository obtained with an owner {@link Disposable} stays in the cache until all its owners
+ * are disposed, and {@link #remove} and {@link #clear} leave it alone meanwhile, so that projects using the same AAR keep sharing a single
+ * copy of its resources. Repositories without owners are only softly reachable from the cache.
  */
 public final class AarResourceRepositoryCache {
-  private final Cache<File, AarProtoResourceRepository> myProtoRepositories = CacheBuilder.newBuilder().softValues().build();
-  private final Cache<File, AarSourceResourceRepository> mySourceRepositories = CacheBuilder.newBuilder().softValues().build();
+  private final ConcurrentMap<File, Entry<AarProtoResourceRepository>> myProtoRepositories = new ConcurrentHashMap<>();
+  private final ConcurrentMap<File, Entry<AarSourceResourceRepository>> mySourceRepositories = new ConcurrentHashMap<>();
 
   /**
    * Returns the cache.
@@ -53,7 +59,26 @@ public final class AarResourceRepositoryCache {
     return getRepository(aarDirectory,
                          libraryName,
                          mySourceRepositories,
-                         () -> AarSourceResourceRepository.create(aarDirectory, libraryName));
+                         () -> AarSourceResourceRepository.create(aarDirectory, libraryName),
+                         null);
+  }
+
+  /**
+   * Returns a cached or a newly created source resource repository, which stays cached at least until {@code owner} is disposed.
+   *
+   * @param aarDirectory the directory containing unpacked contents of an AAR
+   * @param libraryName the name of the library
+   * @param owner the disposable releasing the repository when disposed
+   * @return the resource repository
+   */
+  @NotNull
+  public AarSourceResourceRepository getSourceRepository(@NotNull File aarDirectory, @Nullable String libraryName,
+                                                         @NotNull Disposable owner) {
+    return getRepository(aarDirectory,
+                         libraryName,
+                         mySourceRepositories,
+                         () -> AarSourceResourceRepository.create(aarDirectory, libraryName),
+                         owner);
   }
 
   /**
@@ -68,15 +93,56 @@ public final class AarResourceRepositoryCache {
     return getRepository(resApkFile,
                          libraryName,
                          myProtoRepositories,
-                         () -> AarProtoResourceRepository.createProtoRepository(resApkFile, libraryName));
+                         () -> AarProtoResourceRepository.createProtoRepository(resApkFile, libraryName),
+                         null);
+  }
+
+  /**
+   * Returns a cached or a newly created proto resource repository, which stays cached at least until {@code owner} is disposed.
+   *
+   * @param resApkFile the aapt static library file
+   * @param libraryName the name of the library
+   * @param owner the disposable releasing the repository when disposed
+   * @return the resource repository
+   */
+  @NotNull
+  public AarProtoResourceRepository getProtoRepository(@NotNull File resApkFile, @Nullable String libraryName,
+                                                       @NotNull Disposable owner) {
+    return getRepository(resApkFile,
+                         libraryName,
+                         myProtoRepositories,
+                         () -> AarProtoResourceRepository.createProtoRepository(resApkFile, libraryName),
+                         owner);
   }
 
   @NotNull
   private static <T extends AarSourceResourceRepository> T getRepository(@NotNull File file,
                                                                          @Nullable String libraryName,
-                                                                         @NotNull Cache<File, T> cache,
-                                                                         @NotNull Supplier<T> factory) {
-    T aarRepository = CacheUtils.getAndUnwrap(cache, file, factory::get);
+                                                                         @NotNull ConcurrentMap<File, Entry<T>> cache,
+                                                                         @NotNull Supplier<T> factory,
+                                                                         @Nullable Disposable owner) {
+    long stamp = file.lastModified();
+    Object[] result = new Object[1];
+    // The repository is created, if needed, while holding the lock of the map entry, so that it is created only once.
+    Entry<T> entry = cache.compute(file, (f, oldEntry) -> {
+      T repository = oldEntry == null || oldEntry.myStamp != stamp ? null : oldEntry.getRepository();
+      // A repository whose file changed is replaced, but its current owners keep using it until they release it.
+      Entry<T> newEntry = oldEntry;
+      if (repository == null) {
+        repository = factory.get();
+        newEntry = new Entry<>(repository, stamp);
+      }
+      if (owner != null) {
+        newEntry.acquire(repository);
+      }
+      result[0] = repository;
+      return newEntry;
+    });
+    @SuppressWarnings("unchecked") T aarRepository = (T)result[0];
+
+    if (owner != null) {
+      Disposer.register(owner, () -> release(file, entry, cache));
+    }
 
     if (!Objects.equals(libraryName, aarRepository.getLibraryName())) {
       assert false : "Library name mismatch: " + libraryName + " vs " + aarRepository.getLibraryName();
@@ -87,15 +153,66 @@ public final class AarResourceRepositoryCache {
     return aarRepository;
   }
 
+  private static <T extends AarSourceResourceRepository> void release(@NotNull File file, @NotNull Entry<T> entry,
+                                                                      @NotNull ConcurrentMap<File, Entry<T>> cache) {
+    // An entry that was replaced or removed while in use is simply forgotten here.
+    cache.computeIfPresent(file, (f, currentEntry) -> {
+      entry.release();
+      return currentEntry;
+    });
+  }
+
+  /**
+   * Drops the repositories of the given file which are not in use.
+   */
   public void remove(@NotNull File aarDirectory) {
-    myProtoRepositories.invalidate(aarDirectory);
-    mySourceRepositories.invalidate(aarDirectory);
+    myProtoRepositories.computeIfPresent(aarDirectory, (f, entry) -> entry.isReferenced() ? entry : null);
+    mySourceRepositories.computeIfPresent(aarDirectory, (f, entry) -> entry.isReferenced() ? entry : null);
   }
 
+  /**
+   * Drops the repositories which are not in use. The ones in use stay cached, only softly once released.
+   */
   public void clear() {
-    myProtoRepositories.invalidateAll();
-    mySourceRepositories.invalidateAll();
+    myProtoRepositories.values().removeIf(entry -> !entry.isReferenced());
+    mySourceRepositories.values().removeIf(entry -> !entry.isReferenced());
   }
 
   private AarResourceRepositoryCache() {}
+
+  /**
+   * Cached repository with its reference count. The repository is held strongly while referenced, and softly otherwise.
+   * Guarded by the lock of its map entry.
+   */
+  private static final class Entry<T> {
+    private final long myStamp;
+    @NotNull private final SoftReference<T> mySoftReference;
+    @Nullable private T myRepository;
+    private int myReferenceCount;
+
+    Entry(@NotNull T repository, long stamp) {
+      myStamp = stamp;
+      mySoftReference = new SoftReference<>(repository);
+    }
+
+    @Nullable
+    T getRepository() {
+      return myRepository != null ? myRepository : mySoftReference.get();
+    }
+
+    void acquire(@NotNull T repository) {
+      myReferenceCount++;
+      myRepository = repository;
+    }
+
+    void release() {
+      if (--myReferenceCount == 0) {
+        myRepository = null;
+      }
+    }
+
+    boolean isReferenced() {
+      return myReferenceCount > 0;
+    }
+  }
 }
@@ -85,7 +85,7 @@ abstract class AbstractAarResourceItem implements AarResourceItem, ResourceValue
 
   @Override
   @NotNull
-  public final ResourceValue getResourceValue() {
+  public ResourceValue getResourceValue() {
     return this;
   }
 
@@ -111,6 +111,11 @@ abstract class AbstractAarResourceItem implements AarResourceItem, ResourceValue
     return myConfiguration.getRepository();
   }
 
+  @NotNull
+  protected final AarConfiguration getAarConfiguration() {
+    return myConfiguration;
+  }
+
   @Override
   @NotNull
   public final String getKey() {
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LogcatBufferTest {
+  @Test
+  public void testOldestMessagesAreDroppedWhenTextIsFull() {
+    // Each message takes its length plus one for the line separator
+    LogcatBuffer buffer = new LogcatBuffer(20, 100);
+    LogCatHeader header = createHeader(LogLevel.INFO, 1, "Tag");
+    for (int i = 0; i < 10; i++) {
+      buffer.add(new LogCatMessage(header, "message " + i));
+    }
+
+    assertThat(getText(buffer.getMessages())).containsExactly("message 8", "message 9").inOrder();
+    assertThat(buffer.getFirstId()).isEqualTo(8);
+    assertThat(buffer.get(9).getMessage()).isEqualTo("message 9");
+
+    // Long messages are truncated to fit
+    buffer.add(new LogCatMessage(header, "a message longer than the buffer"));
+    assertThat(getText(buffer.getMessages())).containsExactly("a message longer th");
+  }
+
+  @Test
+  public void testOldestMessagesAreDroppedWhenColumnsAreFull() {
+    LogcatBuffer buffer = new LogcatBuffer(1000, 3);
+    LogCatHeader header = createHeader(LogLevel.INFO, 1, "Tag");
+    for (int i = 0; i < 5; i++) {
+      buffer.add(new LogCatMessage(header, Integer.toString(i)));
+    }
+
+    assertThat(buffer.size()).isEqualTo(3);
+    assertThat(getText(buffer.getMessages())).containsExactly("2", "3", "4").inOrder();
+  }
+
+  @Test
+  public void testFilterLooksUpMessagesByPidAndTag() {
+    LogcatBuffer buffer = new LogcatBuffer(10000);
+    for (int i = 0; i < 100; i++) {
+      buffer.add(new LogCatMessage(createHeader(LogLevel.INFO, i % 3, "Tag" + i % 5), Integer.toString(i)));
+    }
+
+    List<LogCatMessage> messages = buffer.getMessages(new SelectedProcessFilter(1), LogLevel.VERBOSE);
+    assertThat(messages).hasSize(33);
+    messages.forEach(message -> assertThat(message.getPid()).isEqualTo(1));
+
+    PersistentAndroidLogFilters.FilterData filterData = new PersistentAndroidLogFilters.FilterData();
+    filterData.setLogTagPattern("Tag[23]");
+    messages = buffer.getMessages(DefaultAndroidLogcatFilter.compile(filterData, "Tags"), LogLevel.VERBOSE);
+    assertThat(messages).hasSize(40);
+    for (int i = 1; i < messages.size(); i++) {
+      // The messages of both tags are merged back in order
+      assertThat(Integer.parseInt(messages.get(i).getMessage())).isGreaterThan(Integer.parseInt(messages.get(i - 1).getMessage()));
+    }
+  }
+
+  @Test
+  public void testFilterAcceptsMultiLineMessagesAsAWhole() {
+    LogcatBuffer buffer = new LogcatBuffer(10000);
+    LogCatHeader header = createHeader(LogLevel.WARN, 1, "Tag");
+    buffer.add(new LogCatMessage(header, "line 1"));
+    buffer.add(new LogCatMessage(header, "line 2"));
+    buffer.add(new LogCatMessage(createHeader(LogLevel.WARN, 1, "Tag"), "line 1"));
+    buffer.add(new LogCatMessage(createHeader(LogLevel.DEBUG, 1, "Tag"), "line 2"));
+
+    PersistentAndroidLogFilters.FilterData filterData = new PersistentAndroidLogFilters.FilterData();
+    filterData.setLogMessagePattern("line 2");
+    List<LogCatMessage> messages = buffer.getMessages(DefaultAndroidLogcatFilter.compile(filterData, "Line 2"), LogLevel.INFO);
+    assertThat(getText(messages)).containsExactly("line 1", "line 2").inOrder();
+    assertThat(messages.get(0).getHeader()).isSameAs(header);
+    assertThat(messages.get(1).getHeader()).isSameAs(header);
+  }
+
+  @NotNull
+  private static LogCatHeader createHeader(@NotNull LogLevel level, int pid, @NotNull String tag) {
+    return new LogCatHeader(level, pid, pid, "com.example.app", tag, Instant.ofEpochSecond(1000));
+  }
+
+  @NotNull
+  private static List<String> getText(@NotNull List<LogCatMessage> messages) {
+    return messages.stream().map(LogCatMessage::getMessage).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RenderExecutorTest {
+  private RenderExecutor myExecutor;
+
+  @After
+  public void tearDown() {
+    if (myExecutor != null) {
+      myExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testActionsRunByPriorityThenInSubmissionOrder() throws Exception {
+    myExecutor = new RenderExecutor(1, 1000);
+    RenderExecutor.Lane lane = myExecutor.getDefaultLane();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    lane.submit(() -> {
+      started.countDown();
+      release.await();
+      return null;
+    }, RenderExecutor.Priority.NORMAL);
+    started.await();
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    lane.submit(() -> order.add("low"), RenderExecutor.Priority.LOW);
+    lane.submit(() -> order.add("normal 1"), RenderExecutor.Priority.NORMAL);
+    lane.submit(() -> order.add("high"), RenderExecutor.Priority.HIGH);
+    Future<Boolean> last = lane.submit(() -> order.add("normal 2"));
+    Future<Boolean> lowest = lane.submit(() -> order.add("low 2"), RenderExecutor.Priority.LOW);
+    release.countDown();
+    last.get();
+    lowest.get();
+
+    assertThat(order).containsExactly("high", "normal 1", "normal 2", "low", "low 2").inOrder();
+  }
+
+  @Test
+  public void testNewTasksGoToTheLeastBusyLane() throws Exception {
+    myExecutor = new RenderExecutor(2, 1000);
+    assertThat(myExecutor.getLaneCount()).isEqualTo(2);
+    RenderExecutor.Lane first = myExecutor.assignLane();
+    assertThat(first).isSameAs(myExecutor.getDefaultLane());
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<Object> blocking = first.submit(() -> {
+      started.countDown();
+      release.await();
+      return null;
+    }, RenderExecutor.Priority.NORMAL);
+    started.await();
+
+    RenderExecutor.Lane second = myExecutor.assignLane();
+    assertThat(second).isNotSameAs(first);
+    // The other lane keeps running actions while the first one is busy.
+    assertThat(second.submit(() -> Thread.currentThread().getName(), RenderExecutor.Priority.NORMAL).get())
+      .isEqualTo("Layoutlib Render Thread #1");
+
+    release.countDown();
+    blocking.get();
+  }
+
+  @Test
+  public void testWorkerCountIsBounded() {
+    assertThat(RenderExecutor.computeWorkerCount(Runtime.getRuntime())).isAtLeast(1);
+    assertThat(RenderExecutor.computeWorkerCount(Runtime.getRuntime())).isAtMost(8);
+  }
+}
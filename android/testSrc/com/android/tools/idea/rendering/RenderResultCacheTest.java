@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.ide.common.rendering.api.Result;
+import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.rendering.imagepool.ImagePoolFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class RenderResultCacheTest extends AndroidTestCase {
+  private static final int IMAGE_BYTES = 10 * 10 * 4;
+
+  private final ImagePool myImagePool = ImagePoolFactory.getNonPooledPool();
+  private PsiFile myFile;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myFile = myFixture.addFileToProject("res/layout/layout.xml", "<LinearLayout/>");
+  }
+
+  public void testCachedResultIsACopy() {
+    RenderResultCache cache = new RenderResultCache(myImagePool, 10 * IMAGE_BYTES);
+    RenderResult result = createResult(Result.Status.SUCCESS, Color.RED);
+    cache.put("key", result);
+    result.dispose();
+
+    RenderResult cached = cache.get("key");
+    assertNotNull(cached);
+    assertTrue(cached.hasImage());
+    BufferedImage image = cached.getRenderedImage().getCopy();
+    assertNotNull(image);
+    assertEquals(Color.RED.getRGB(), image.getRGB(5, 5));
+    assertNull(cached.getRenderTask());
+
+    // The caller owns the result it gets.
+    cached.dispose();
+    RenderResult cachedAgain = cache.get("key");
+    assertNotNull(cachedAgain);
+    assertTrue(cachedAgain.hasImage());
+    assertNull(cache.get("other key"));
+  }
+
+  public void testFailedRendersAreNotCached() {
+    RenderResultCache cache = new RenderResultCache(myImagePool, 10 * IMAGE_BYTES);
+    cache.put("key", createResult(Result.Status.ERROR_INFLATION, Color.RED));
+    assertFalse(cache.contains("key"));
+    assertEquals(0, cache.getSizeInBytes());
+  }
+
+  public void testLeastRecentlyUsedResultsAreEvicted() {
+    RenderResultCache cache = new RenderResultCache(myImagePool, 2 * IMAGE_BYTES);
+    cache.put("a", createResult(Result.Status.SUCCESS, Color.RED));
+    cache.put("b", createResult(Result.Status.SUCCESS, Color.GREEN));
+    assertEquals(2 * IMAGE_BYTES, cache.getSizeInBytes());
+
+    // Using "a" makes "b" the least recently used one.
+    assertNotNull(cache.get("a"));
+    cache.put("c", createResult(Result.Status.SUCCESS, Color.BLUE));
+    assertTrue(cache.contains("a"));
+    assertFalse(cache.contains("b"));
+    assertTrue(cache.contains("c"));
+    assertEquals(2 * IMAGE_BYTES, cache.getSizeInBytes());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getSizeInBytes());
+  }
+
+  public void testRemoveAllDropsResultsOfFile() {
+    PsiFile otherFile = myFixture.addFileToProject("res/layout/other.xml", "<FrameLayout/>");
+    RenderResultCache cache = new RenderResultCache(myImagePool, 10 * IMAGE_BYTES);
+    cache.put("a", createResult(Result.Status.SUCCESS, Color.RED));
+    cache.put("b", createResult(otherFile, Result.Status.SUCCESS, Color.GREEN));
+    cache.put("c", createResult(Result.Status.SUCCESS, Color.BLUE));
+
+    cache.removeAll(myFile);
+    assertFalse(cache.contains("a"));
+    assertTrue(cache.contains("b"));
+    assertFalse(cache.contains("c"));
+    assertEquals(IMAGE_BYTES, cache.getSizeInBytes());
+  }
+
+  @NotNull
+  private RenderResult createResult(@NotNull Result.Status status, @NotNull Color color) {
+    return createResult(myFile, status, color);
+  }
+
+  @NotNull
+  private RenderResult createResult(@NotNull PsiFile file, @NotNull Result.Status status, @NotNull Color color) {
+    ImagePool.Image image = myImagePool.create(10, 10, BufferedImage.TYPE_INT_ARGB);
+    image.paint(g -> {
+      g.setColor(color);
+      g.fillRect(0, 0, 10, 10);
+    });
+    return new RenderResult(file, myModule, new RenderLogger(null, myModule), null, status.createResult(), ImmutableList.of(),
+                            ImmutableList.of(), image, ImmutableMap.of(), ImmutableMap.of());
+  }
+}
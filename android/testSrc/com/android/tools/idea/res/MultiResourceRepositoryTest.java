@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceMergerItem;
+import com.android.resources.ResourceType;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MultiResourceRepositoryTest {
+  @Test
+  public void mergedMapIsReusedUntilInvalidated() {
+    TestSingleNamespaceResourceRepository library1 = createLibrary("a", "b");
+    TestSingleNamespaceResourceRepository library2 = createLibrary("b", "c");
+    MultiResourceRepository repository = new TestMultiResourceRepository(ImmutableList.of(library1, library2));
+
+    ListMultimap<String, ResourceItem> strings = repository.getMap(RES_AUTO, ResourceType.STRING, false);
+    assertEquals(4, strings.size());
+    assertEquals(2, strings.get("b").size());
+    assertSame(strings, repository.getMap(RES_AUTO, ResourceType.STRING, false));
+
+    // Invalidating another type keeps the merged map.
+    library1.invalidateResources(ResourceType.COLOR);
+    assertSame(strings, repository.getMap(RES_AUTO, ResourceType.STRING, false));
+
+    addString(library1, "d");
+    library1.invalidateResources(ResourceType.STRING);
+    ListMultimap<String, ResourceItem> newStrings = repository.getMap(RES_AUTO, ResourceType.STRING, false);
+    assertNotSame(strings, newStrings);
+    assertEquals(5, newStrings.size());
+    assertTrue(newStrings.containsKey("d"));
+    // The map returned before the edit is not modified by the new merge.
+    assertEquals(4, strings.size());
+    assertFalse(strings.containsKey("d"));
+  }
+
+  @Test
+  public void lookupsAfterSetChildrenUseNewChildren() {
+    TestSingleNamespaceResourceRepository library1 = createLibrary("a");
+    TestSingleNamespaceResourceRepository library2 = createLibrary("b");
+    TestMultiResourceRepository repository = new TestMultiResourceRepository(ImmutableList.of(library1, library2));
+    assertFalse(repository.getResources(RES_AUTO, ResourceType.STRING, "a").isEmpty());
+    assertEquals(ImmutableList.of(library1, library2), repository.getRepositoriesForNamespace(RES_AUTO));
+
+    TestSingleNamespaceResourceRepository library3 = createLibrary("c");
+    repository.setChildren(ImmutableList.of(library2, library3));
+    assertTrue(repository.getResources(RES_AUTO, ResourceType.STRING, "a").isEmpty());
+    assertFalse(repository.getResources(RES_AUTO, ResourceType.STRING, "c").isEmpty());
+    assertEquals(ImmutableList.of(library2, library3), repository.getRepositoriesForNamespace(RES_AUTO));
+  }
+
+  @Test
+  public void hasResourcesWithoutMergedMap() {
+    MultiResourceRepository repository = new TestMultiResourceRepository(ImmutableList.of(createLibrary(), createLibrary("a")));
+    assertTrue(repository.hasResources(RES_AUTO, ResourceType.STRING));
+    assertFalse(repository.hasResources(RES_AUTO, ResourceType.COLOR));
+  }
+
+  @NotNull
+  private static TestSingleNamespaceResourceRepository createLibrary(@NotNull String... strings) {
+    TestSingleNamespaceResourceRepository repository = new TestSingleNamespaceResourceRepository(RES_AUTO);
+    for (String name : strings) {
+      addString(repository, name);
+    }
+    return repository;
+  }
+
+  private static void addString(@NotNull TestLocalResourceRepository repository, @NotNull String name) {
+    ListMultimap<String, ResourceItem> items = repository.getMap(RES_AUTO, ResourceType.STRING, true);
+    items.put(name, new ResourceMergerItem(name, RES_AUTO, ResourceType.STRING, null, null));
+  }
+}
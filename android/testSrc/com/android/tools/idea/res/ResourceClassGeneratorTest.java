@@ -278,6 +278,36 @@ public class ResourceClassGeneratorTest extends AndroidTestCase {
     return ResourceClassGenerator.create(ResourceIdManager.get(myModule), appResources, RES_AUTO);
   }
 
+  public void testOnlyChangedClassesAreRegenerated() throws Exception {
+    TestResourceRepository repository = resourceFixture.createTestResources(RES_AUTO, new Object[] {
+      "values/values.xml", "" +
+                           "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                           "<resources>\n" +
+                           "    <declare-styleable name=\"AppStyleable\">\n" +
+                           "        <attr name=\"some_attr\" format=\"integer\" />\n" +
+                           "    </declare-styleable>\n" +
+                           "    <string name=\"app_name\">App</string>\n" +
+                           "</resources>\n"});
+    LocalResourceRepositoryDelegate resources = new LocalResourceRepositoryDelegate("resources", repository);
+    ResourceClassGenerator generator = ResourceClassGenerator.create(ResourceIdManager.get(myModule), resources, RES_AUTO);
+
+    byte[] stringClass = generator.generate("my.test.pkg.R$string");
+    byte[] styleableClass = generator.generate("my.test.pkg.R$styleable");
+    assertSame(stringClass, generator.generate("my.test.pkg.R$string"));
+
+    ListMultimap<String, ResourceItem> strings = repository.getFullTable().get(RES_AUTO, ResourceType.STRING);
+    assertNotNull(strings);
+    strings.put("new_string", new ResourceMergerItem("new_string", RES_AUTO, ResourceType.STRING, null, null));
+    resources.setModificationCount(resources.getModificationCount() + 1);
+
+    assertSame(styleableClass, generator.generate("my.test.pkg.R$styleable"));
+    assertNotSame(stringClass, generator.generate("my.test.pkg.R$string"));
+    Class<?> clz = generateClass(generator, "my.test.pkg.R$string");
+    assertNotNull(clz);
+    assertNotNull(clz.getField("app_name"));
+    assertNotNull(clz.getField("new_string"));
+  }
+
   public void testIndexOverflow() throws Exception {
     StringBuilder attributes = new StringBuilder();
     for (int i = 0; i < 1000; i++) {
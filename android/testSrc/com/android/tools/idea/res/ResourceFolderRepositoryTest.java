@@ -3694,6 +3694,34 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertTrue(fromBlob.hasResources(RES_AUTO, ResourceType.STRING, "hello_there"));
   }
 
+  public void testSerializationEditOneXmlFileReparsesOnlyThatFile() throws Exception {
+    VirtualFile file1 = myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    File file1AsFile = VfsUtilCore.virtualToIoFile(file1);
+    myFixture.copyFileToProject(VALUES1, "res/values/myvalues.xml");
+    myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
+    final ResourceFolderRepository resources = createRepository();
+    assertNotNull(resources);
+    resources.saveStateToFile();
+    myRegistry.reset();
+
+    String oldFileContent = FileUtilRt.loadFile(file1AsFile);
+    FileUtil.writeToFile(file1AsFile, oldFileContent.replace("hello_world", "hello_there"));
+    if (!file1AsFile.setLastModified(file1AsFile.lastModified() + 2000)) {
+      // Not supported on this platform?
+      return;
+    }
+
+    final ResourceFolderRepository fromBlob = createRepository();
+    assertNotNull(fromBlob);
+    assertEquals(3, fromBlob.myInitialScanState.numXml);
+    assertEquals(1, fromBlob.myInitialScanState.numXmlReparsed);
+
+    assertTrue(fromBlob.hasResources(RES_AUTO, ResourceType.STRING, "hello_there"));
+    assertFalse(fromBlob.hasResources(RES_AUTO, ResourceType.STRING, "hello_world"));
+    assertTrue(fromBlob.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout"));
+    assertTrue(fromBlob.hasResources(RES_AUTO, ResourceType.ID, "noteArea"));
+  }
+
   public void testSerializationAddXmlFileAndLoad() {
     myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
     final ResourceFolderRepository resources = createRepository();
@@ -37,9 +37,12 @@ import org.jetbrains.android.util.AndroidResourceUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class ResourceNotificationManagerTest extends AndroidTestCase {
   public void test() {
@@ -218,6 +221,48 @@ public class ResourceNotificationManagerTest extends AndroidTestCase {
     // TODO: Test that remove and replace editing also works as expected
   }
 
+  public void testEditsWithinBatchWindowAreCoalesced() throws Exception {
+    @Language("XML") String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                                  "<FrameLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                  "    android:layout_width=\"match_parent\"\n" +
+                                  "    android:layout_height=\"match_parent\" />\n";
+    XmlFile layout = (XmlFile)myFixture.addFileToProject("res/layout/my_layout.xml", xml);
+    ResourceNotificationManager manager = ResourceNotificationManager.getInstance(getProject());
+    manager.setBatchWindowMs(TimeUnit.SECONDS.toMillis(1));
+    try {
+      List<Set<Reason>> notifications = new ArrayList<>();
+      ResourceChangeListener listener = notifications::add;
+      manager.addListener(listener, myFacet, layout.getVirtualFile(), null);
+      // The same listener registered twice for the module is still notified once.
+      manager.addListener(listener, myFacet, null, null);
+      UIUtil.dispatchAllInvocationEvents();
+      notifications.clear();
+
+      long receivedEventCount = manager.getReceivedEventCount();
+      long deliveredBatchCount = manager.getDeliveredBatchCount();
+      replaceText(layout, "layout_width=\"^match_parent", "match_parent".length(), "wrap_content");
+      UIUtil.dispatchAllInvocationEvents();
+      replaceText(layout, "layout_height=\"^match_parent", "match_parent".length(), "wrap_content");
+      UIUtil.dispatchAllInvocationEvents();
+      assertTrue(notifications.isEmpty());
+
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+      while (notifications.isEmpty() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+        UIUtil.dispatchAllInvocationEvents();
+      }
+      assertEquals(Collections.singletonList(EnumSet.of(Reason.EDIT)), notifications);
+      assertTrue(manager.getReceivedEventCount() - receivedEventCount >= 2);
+      assertEquals(deliveredBatchCount + 1, manager.getDeliveredBatchCount());
+
+      manager.removeListener(listener, myFacet, null, null);
+      manager.removeListener(listener, myFacet, layout.getVirtualFile(), null);
+    }
+    finally {
+      manager.setBatchWindowMs(0);
+    }
+  }
+
   private static void ensureCalled(final Ref<Boolean> called1,
                                    final Ref<Set<Reason>> calledValue1,
                                    final Ref<Boolean> called2,
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.resources.SingleNamespaceResourceRepository;
+import com.android.resources.ResourceType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link TestLocalResourceRepository} of a single namespace, such as the repository of a library, which its parents look up by namespace.
+ */
+public class TestSingleNamespaceResourceRepository extends TestLocalResourceRepository implements SingleNamespaceResourceRepository {
+  @NotNull private final ResourceNamespace myNamespace;
+
+  public TestSingleNamespaceResourceRepository(@NotNull ResourceNamespace namespace) {
+    myNamespace = namespace;
+  }
+
+  @Override
+  @NotNull
+  public ResourceNamespace getNamespace() {
+    return myNamespace;
+  }
+
+  @Override
+  @Nullable
+  public String getPackageName() {
+    return myNamespace.getPackageName();
+  }
+
+  /**
+   * Notifies the parents that the resources of the given types changed, as an edit would.
+   */
+  public void invalidateResources(@NotNull ResourceType... types) {
+    invalidateParentCaches(myNamespace, types);
+  }
+}
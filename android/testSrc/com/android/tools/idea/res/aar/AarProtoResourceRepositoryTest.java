@@ -16,6 +16,8 @@
 package com.android.tools.idea.res.aar;
 
 import com.android.SdkConstants;
+import com.android.aapt.ConfigurationOuterClass.Configuration;
+import com.android.aapt.Resources;
 import com.android.ide.common.rendering.api.*;
 import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceItemWithVisibility;
@@ -30,6 +32,7 @@ import com.android.resources.ResourceVisibility;
 import com.android.testutils.TestUtils;
 import com.android.utils.XmlUtils;
 import com.google.common.base.Splitter;
+import com.intellij.openapi.util.io.FileUtil;
 import org.jetbrains.android.AndroidTestCase;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -38,7 +41,10 @@ import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -53,6 +59,7 @@ public class AarProtoResourceRepositoryTest extends AndroidTestCase {
   private static final String LIBRARY_NAME = "design-27.0.2";
   private static final String LIBRARY_PACKAGE = "android.support.design";
   private static final ResourceNamespace LIBRARY_NAMESPACE = ResourceNamespace.fromPackageName(LIBRARY_PACKAGE);
+  private static final ResourceNamespace TEST_NAMESPACE = ResourceNamespace.fromPackageName("com.example.lib");
 
   private static final String TAG_ATTR = "attr";
   private static final String TAG_ENUM = "enum";
@@ -601,4 +608,176 @@ public class AarProtoResourceRepositoryTest extends AndroidTestCase {
                          + " sec, from res.apk: " + loadTimeFromResApk / (count * 1000.) + " sec");
     }
   }
+
+  public void testLazyValuesMatchSources() throws Exception {
+    myEnumMap = loadEnumMap();
+    AarSourceResourceRepository fromSources =
+      AarSourceResourceRepository.createForTest(new File(myAarFolder, SdkConstants.FD_RES), LIBRARY_NAMESPACE, LIBRARY_NAME);
+    updateEnumMap(fromSources);
+    AarProtoResourceRepository fromResApk =
+      AarProtoResourceRepository.createProtoRepository(new File(myAarFolder, SdkConstants.FN_RESOURCE_STATIC_LIBRARY), LIBRARY_NAME);
+
+    for (ResourceType type : new ResourceType[]{ResourceType.STYLE, ResourceType.STYLEABLE}) {
+      Collection<ResourceItem> items = fromResApk.getResources(LIBRARY_NAMESPACE, type).values();
+      assertFalse(items.isEmpty());
+      for (ResourceItem item : items) {
+        assertTrue(item instanceof AarLazyValueResourceItem);
+        ResourceValue value = item.getResourceValue();
+        assertNotSame(item, value);
+        assertSame(value, item.getResourceValue());
+        boolean matched = false;
+        for (ResourceItem sourceItem : fromSources.getResources(LIBRARY_NAMESPACE, type, item.getName())) {
+          matched |= areEquivalentResourceValues(sourceItem.getResourceValue(), value);
+        }
+        assertTrue("No equivalent source value for " + type.getName() + '/' + item.getName(), matched);
+      }
+    }
+  }
+
+  public void testResourceTableWalker() throws Exception {
+    AarProtoResourceRepository repository = AarProtoResourceRepository.createProtoRepository(createExplodedAar(), null);
+
+    List<ResourceItem> strings = repository.getResources(TEST_NAMESPACE, ResourceType.STRING, "greeting");
+    assertEquals(2, strings.size());
+    for (ResourceItem item : strings) {
+      assertFalse(item instanceof AarLazyValueResourceItem);
+      assertEquals(item.getConfiguration().getScreenOrientationQualifier() == null ? "hello" : "hello sideways",
+                   item.getResourceValue().getValue());
+    }
+    assertEquals(ResourceVisibility.PUBLIC, ((ResourceItemWithVisibility)strings.get(0)).getVisibility());
+    for (ResourceType type : new ResourceType[]{ResourceType.ARRAY, ResourceType.PLURALS, ResourceType.STYLE, ResourceType.STYLEABLE}) {
+      List<ResourceItem> items = new ArrayList<>(repository.getResources(TEST_NAMESPACE, type).values());
+      assertEquals(type.getName(), 1, items.size());
+      assertTrue(type.getName(), items.get(0) instanceof AarLazyValueResourceItem);
+      assertEquals(ResourceVisibility.PRIVATE_XML_ONLY, ((ResourceItemWithVisibility)items.get(0)).getVisibility());
+    }
+  }
+
+  public void testLazyValues() throws Exception {
+    AarProtoResourceRepository repository = AarProtoResourceRepository.createProtoRepository(createExplodedAar(), null);
+    checkLazyValues(repository);
+  }
+
+  public void testExplodedAarIsMappedFromCopy() throws Exception {
+    File aarFolder = createExplodedAar();
+    File resourceTableFile = new File(aarFolder, "resources.pb");
+    AarProtoResourceRepository repository = AarProtoResourceRepository.createProtoRepository(aarFolder, null);
+
+    File copy = AarProtoResourceRepository.getCachedResourceTableFile(aarFolder);
+    assertTrue(copy.isFile());
+    assertEquals(resourceTableFile.length(), copy.length());
+    // Overwrite the original table, as a Gradle build could. The values not decoded yet must still come from the copy.
+    try (RandomAccessFile file = new RandomAccessFile(resourceTableFile, "rw")) {
+      file.write(new byte[(int)file.length()]);
+    }
+    checkLazyValues(repository);
+  }
+
+  private static void checkLazyValues(@NotNull AarProtoResourceRepository repository) {
+    ResourceValue array = getOnlyValue(repository, ResourceType.ARRAY, "colors");
+    assertTrue(array instanceof ArrayResourceValue);
+    assertEquals(2, ((ArrayResourceValue)array).getElementCount());
+    assertEquals("red", ((ArrayResourceValue)array).getElement(0));
+    assertEquals("@color/green", ((ArrayResourceValue)array).getElement(1));
+
+    ResourceValue plurals = getOnlyValue(repository, ResourceType.PLURALS, "items");
+    assertTrue(plurals instanceof PluralsResourceValue);
+    assertEquals(2, ((PluralsResourceValue)plurals).getPluralsCount());
+    assertEquals("one", ((PluralsResourceValue)plurals).getQuantity(0));
+    assertEquals("%d item", ((PluralsResourceValue)plurals).getValue(0));
+    assertEquals("other", ((PluralsResourceValue)plurals).getQuantity(1));
+    assertEquals("%d items", ((PluralsResourceValue)plurals).getValue(1));
+
+    ResourceValue style = getOnlyValue(repository, ResourceType.STYLE, "Greeting");
+    assertTrue(style instanceof StyleResourceValue);
+    Collection<StyleItemResourceValue> styleItems = ((StyleResourceValue)style).getDefinedItems();
+    assertEquals(1, styleItems.size());
+    StyleItemResourceValue styleItem = styleItems.iterator().next();
+    assertEquals("textColor", styleItem.getAttrName());
+    assertEquals("@color/green", styleItem.getValue());
+
+    ResourceValue styleable = getOnlyValue(repository, ResourceType.STYLEABLE, "GreetingView");
+    assertTrue(styleable instanceof StyleableResourceValue);
+    List<AttrResourceValue> attributes = ((StyleableResourceValue)styleable).getAllAttributes();
+    assertEquals(1, attributes.size());
+    assertEquals("textColor", attributes.get(0).getName());
+  }
+
+  @NotNull
+  private static ResourceValue getOnlyValue(@NotNull AarProtoResourceRepository repository, @NotNull ResourceType type,
+                                            @NotNull String name) {
+    List<ResourceItem> items = repository.getResources(TEST_NAMESPACE, type, name);
+    assertEquals(1, items.size());
+    return items.get(0).getResourceValue();
+  }
+
+  /**
+   * Creates a folder with the unzipped contents of a res.apk file defining a string in two configurations, and one resource of each of
+   * the types {@link AarLazyValueResourceItem} decodes on demand.
+   */
+  @NotNull
+  private static File createExplodedAar() throws Exception {
+    Resources.Reference green = Resources.Reference.newBuilder().setName("color/green").build();
+    Resources.Reference textColor = Resources.Reference.newBuilder().setName("attr/textColor").build();
+    Resources.Type strings = Resources.Type.newBuilder()
+      .setName("string")
+      .addEntry(Resources.Entry.newBuilder()
+                  .setName("greeting")
+                  .setVisibility(Resources.Visibility.newBuilder().setLevel(Resources.Visibility.Level.PUBLIC))
+                  .addConfigValue(Resources.ConfigValue.newBuilder().setValue(createStringValue("hello")))
+                  .addConfigValue(Resources.ConfigValue.newBuilder()
+                                    .setConfig(Configuration.newBuilder().setOrientation(Configuration.Orientation.ORIENTATION_LAND))
+                                    .setValue(createStringValue("hello sideways"))))
+      .build();
+    Resources.Type arrays = createCompoundValueType("array", "colors", Resources.CompoundValue.newBuilder().setArray(
+      Resources.Array.newBuilder()
+        .addElement(Resources.Array.Element.newBuilder().setItem(createString("red")))
+        .addElement(Resources.Array.Element.newBuilder().setItem(Resources.Item.newBuilder().setRef(green)))));
+    Resources.Type plurals = createCompoundValueType("plurals", "items", Resources.CompoundValue.newBuilder().setPlural(
+      Resources.Plural.newBuilder()
+        .addEntry(Resources.Plural.Entry.newBuilder().setArity(Resources.Plural.Arity.ONE).setItem(createString("%d item")))
+        .addEntry(Resources.Plural.Entry.newBuilder().setArity(Resources.Plural.Arity.OTHER).setItem(createString("%d items")))));
+    Resources.Type styles = createCompoundValueType("style", "Greeting", Resources.CompoundValue.newBuilder().setStyle(
+      Resources.Style.newBuilder()
+        .addEntry(Resources.Style.Entry.newBuilder().setKey(textColor).setItem(Resources.Item.newBuilder().setRef(green)))));
+    Resources.Type styleables = createCompoundValueType("styleable", "GreetingView", Resources.CompoundValue.newBuilder().setStyleable(
+      Resources.Styleable.newBuilder().addEntry(Resources.Styleable.Entry.newBuilder().setAttr(textColor))));
+    Resources.ResourceTable table = Resources.ResourceTable.newBuilder()
+      .addPackage(Resources.Package.newBuilder()
+                    .setPackageName(TEST_NAMESPACE.getPackageName())
+                    .addType(strings)
+                    .addType(arrays)
+                    .addType(plurals)
+                    .addType(styles)
+                    .addType(styleables))
+      .build();
+
+    File aarFolder = FileUtil.createTempDirectory("aar", "_exploded");
+    Files.write(new File(aarFolder, "resources.pb").toPath(), table.toByteArray());
+    Files.write(new File(aarFolder, SdkConstants.FN_ANDROID_MANIFEST_XML).toPath(),
+                ("<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\" package=\"" + TEST_NAMESPACE.getPackageName() +
+                 "\"/>").getBytes(StandardCharsets.UTF_8));
+    return aarFolder;
+  }
+
+  @NotNull
+  private static Resources.Type createCompoundValueType(@NotNull String typeName, @NotNull String resourceName,
+                                                        @NotNull Resources.CompoundValue.Builder compoundValue) {
+    return Resources.Type.newBuilder()
+      .setName(typeName)
+      .addEntry(Resources.Entry.newBuilder()
+                  .setName(resourceName)
+                  .addConfigValue(Resources.ConfigValue.newBuilder().setValue(Resources.Value.newBuilder().setCompoundValue(compoundValue))))
+      .build();
+  }
+
+  @NotNull
+  private static Resources.Value.Builder createStringValue(@NotNull String value) {
+    return Resources.Value.newBuilder().setItem(createString(value));
+  }
+
+  @NotNull
+  private static Resources.Item.Builder createString(@NotNull String value) {
+    return Resources.Item.newBuilder().setStr(Resources.String.newBuilder().setValue(value));
+  }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res.aar;
+
+import com.android.SdkConstants;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+/**
+ * Tests for {@link AarResourceRepositoryCache}.
+ */
+public class AarResourceRepositoryCacheTest extends AndroidTestCase {
+  private static final String LIBRARY_NAME = "design-27.0.2";
+
+  private AarResourceRepositoryCache myCache;
+  private File myResApk;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCache = AarResourceRepositoryCache.getInstance();
+    // A copy of its own, so that the test can change its modification time.
+    myResApk = new File(FileUtil.createTempDirectory("aar", null), SdkConstants.FN_RESOURCE_STATIC_LIBRARY);
+    FileUtil.copy(new File(myFixture.getTestDataPath(), "design_aar/" + SdkConstants.FN_RESOURCE_STATIC_LIBRARY), myResApk);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myCache.remove(myResApk);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testRepositoryIsSharedByOwners() {
+    AarProtoResourceRepository repository = myCache.getProtoRepository(myResApk, LIBRARY_NAME, createOwner());
+    assertSame(repository, myCache.getProtoRepository(myResApk, LIBRARY_NAME, createOwner()));
+    assertSame(repository, myCache.getProtoRepository(myResApk, LIBRARY_NAME));
+  }
+
+  public void testClearAndRemoveKeepRepositoryInUse() {
+    Disposable owner1 = createOwner();
+    Disposable owner2 = createOwner();
+    AarProtoResourceRepository repository = myCache.getProtoRepository(myResApk, LIBRARY_NAME, owner1);
+    myCache.getProtoRepository(myResApk, LIBRARY_NAME, owner2);
+
+    myCache.clear();
+    assertSame(repository, myCache.getProtoRepository(myResApk, LIBRARY_NAME));
+    myCache.remove(myResApk);
+    assertSame(repository, myCache.getProtoRepository(myResApk, LIBRARY_NAME));
+
+    // Still referenced by the second owner.
+    Disposer.dispose(owner1);
+    myCache.clear();
+    assertSame(repository, myCache.getProtoRepository(myResApk, LIBRARY_NAME));
+  }
+
+  public void testReleasedRepositoryIsDropped() {
+    Disposable owner = createOwner();
+    AarProtoResourceRepository repository = myCache.getProtoRepository(myResApk, LIBRARY_NAME, owner);
+    Disposer.dispose(owner);
+    myCache.clear();
+    Disposable newOwner = createOwner();
+    AarProtoResourceRepository newRepository = myCache.getProtoRepository(myResApk, LIBRARY_NAME, newOwner);
+    assertNotSame(repository, newRepository);
+
+    // The same with remove.
+    Disposer.dispose(newOwner);
+    myCache.remove(myResApk);
+    assertNotSame(newRepository, myCache.getProtoRepository(myResApk, LIBRARY_NAME));
+  }
+
+  public void testRepositoryIsReplacedWhenFileChanges() {
+    Disposable oldOwner = createOwner();
+    AarProtoResourceRepository oldRepository = myCache.getProtoRepository(myResApk, LIBRARY_NAME, oldOwner);
+
+    assertTrue(myResApk.setLastModified(myResApk.lastModified() + 10000));
+    Disposable newOwner = createOwner();
+    AarProtoResourceRepository newRepository = myCache.getProtoRepository(myResApk, LIBRARY_NAME, newOwner);
+    assertNotSame(oldRepository, newRepository);
+
+    // Releasing the replaced repository doesn't release the new one.
+    Disposer.dispose(oldOwner);
+    myCache.clear();
+    assertSame(newRepository, myCache.getProtoRepository(myResApk, LIBRARY_NAME));
+
+    Disposer.dispose(newOwner);
+    myCache.clear();
+    assertNotSame(newRepository, myCache.getProtoRepository(myResApk, LIBRARY_NAME));
+  }
+
+  @NotNull
+  private Disposable createOwner() {
+    Disposable owner = Disposer.newDisposable();
+    Disposer.register(getTestRootDisposable(), owner);
+    return owner;
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.perf.idea.res;
+
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceMergerItem;
+import com.android.resources.ResourceType;
+import com.android.tools.idea.res.MultiResourceRepository;
+import com.android.tools.idea.res.TestMultiResourceRepository;
+import com.android.tools.idea.res.TestSingleNamespaceResourceRepository;
+import com.android.tools.idea.testing.Benchmarks;
+import com.android.tools.perflogger.Benchmark;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures how much resource lookups made by rendering and by code completion, on different threads, block each other on a
+ * {@link MultiResourceRepository} with as many children as a project with {@link #LIBRARY_COUNT} library AARs, while a third thread keeps
+ * invalidating the resources of one of the libraries as edits would.
+ */
+public class MultiResourceRepositoryContentionPerformanceTest {
+  private static final int LIBRARY_COUNT = 120;
+  private static final int RESOURCES_PER_TYPE = 100;
+  private static final ResourceType[] TYPES = {ResourceType.STRING, ResourceType.COLOR, ResourceType.DIMEN, ResourceType.ID};
+  private static final long DURATION_MS = TimeUnit.SECONDS.toMillis(5);
+  private static final Benchmark BENCHMARK = new Benchmark.Builder("MultiResourceRepository Contention").setProject("Android Studio").build();
+
+  @Test
+  public void renderingAndCompletionDoNotBlockEachOther() throws Exception {
+    List<TestSingleNamespaceResourceRepository> libraries = new ArrayList<>();
+    for (int library = 0; library < LIBRARY_COUNT; library++) {
+      libraries.add(createLibrary(library));
+    }
+    MultiResourceRepository repository = new TestMultiResourceRepository(libraries);
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadContentionMonitoringSupported());
+    boolean wasContentionMonitoringEnabled = threads.isThreadContentionMonitoringEnabled();
+    threads.setThreadContentionMonitoringEnabled(true);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      AtomicBoolean done = new AtomicBoolean();
+      CountDownLatch start = new CountDownLatch(3);
+      Future<Lookups> rendering = executor.submit(new Lookups("Rendering", start, done, () -> {
+        // Layoutlib resolves the values of a layout one by one.
+        for (ResourceType type : TYPES) {
+          assertFalse(repository.getResources(RES_AUTO, type, "resource_7_" + type.getName()).isEmpty());
+        }
+      }));
+      Future<Lookups> completion = executor.submit(new Lookups("Completion", start, done, () -> {
+        // Completion lists all the resources of a type.
+        for (ResourceType type : TYPES) {
+          assertTrue(repository.hasResources(RES_AUTO, type));
+          assertFalse(repository.getResources(RES_AUTO, type).isEmpty());
+        }
+      }));
+      Future<?> edits = executor.submit(() -> {
+        start.countDown();
+        start.await();
+        int edit = 0;
+        while (!done.get()) {
+          libraries.get(edit++ % LIBRARY_COUNT).invalidateResources(TYPES[edit % TYPES.length]);
+          Thread.sleep(50);
+        }
+        return null;
+      });
+
+      Thread.sleep(DURATION_MS);
+      done.set(true);
+      // Rethrows the failures of the threads.
+      Lookups renderingLookups = rendering.get();
+      Lookups completionLookups = completion.get();
+      edits.get();
+
+      renderingLookups.report();
+      completionLookups.report();
+      assertTrue(renderingLookups.myLookupCount > 0);
+      assertTrue(completionLookups.myLookupCount > 0);
+      // Lookups only take the lock to merge a map invalidated by an edit.
+      assertTrue(renderingLookups.myBlockedTimeMs < DURATION_MS / 10);
+      assertTrue(completionLookups.myBlockedTimeMs < DURATION_MS / 10);
+    }
+    finally {
+      executor.shutdownNow();
+      threads.setThreadContentionMonitoringEnabled(wasContentionMonitoringEnabled);
+    }
+  }
+
+  @NotNull
+  private static TestSingleNamespaceResourceRepository createLibrary(int library) {
+    TestSingleNamespaceResourceRepository repository = new TestSingleNamespaceResourceRepository(RES_AUTO);
+    for (ResourceType type : TYPES) {
+      ListMultimap<String, ResourceItem> items = ArrayListMultimap.create();
+      for (int i = 0; i < RESOURCES_PER_TYPE; i++) {
+        // Libraries share some resource names, as with overridden resources.
+        String name = "resource_" + (i % 10 == 0 ? i : library * RESOURCES_PER_TYPE + i) + "_" + type.getName();
+        items.put(name, new ResourceMergerItem(name, RES_AUTO, type, null, null));
+      }
+      repository.getFullTable().put(RES_AUTO, type, items);
+    }
+    return repository;
+  }
+
+  /**
+   * Repeats a lookup until done, recording how long each took and how long the thread was blocked.
+   */
+  private static final class Lookups implements Callable<Lookups> {
+    @NotNull private final String myName;
+    @NotNull private final CountDownLatch myStart;
+    @NotNull private final AtomicBoolean myDone;
+    @NotNull private final Runnable myLookup;
+    private long myLookupCount;
+    private long myMaxLookupTimeNs;
+    private long myTotalLookupTimeNs;
+    private long myBlockedTimeMs;
+
+    private Lookups(@NotNull String name, @NotNull CountDownLatch start, @NotNull AtomicBoolean done, @NotNull Runnable lookup) {
+      myName = name;
+      myStart = start;
+      myDone = done;
+      myLookup = lookup;
+    }
+
+    @Override
+    public Lookups call() throws InterruptedException {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      long threadId = Thread.currentThread().getId();
+      long initialBlockedTimeMs = threads.getThreadInfo(threadId).getBlockedTime();
+      myStart.countDown();
+      myStart.await();
+      while (!myDone.get()) {
+        long startTime = System.nanoTime();
+        myLookup.run();
+        long lookupTimeNs = System.nanoTime() - startTime;
+        myLookupCount++;
+        myTotalLookupTimeNs += lookupTimeNs;
+        myMaxLookupTimeNs = Math.max(myMaxLookupTimeNs, lookupTimeNs);
+      }
+      myBlockedTimeMs = threads.getThreadInfo(threadId).getBlockedTime() - initialBlockedTimeMs;
+      return this;
+    }
+
+    private void report() {
+      long averageLookupTimeNs = myLookupCount == 0 ? 0 : myTotalLookupTimeNs / myLookupCount;
+      Logger.getLogger(MultiResourceRepositoryContentionPerformanceTest.class.getName()).info(String.format(
+        "%s: %d lookups, %d ns on average, %d ns at most", myName, myLookupCount, averageLookupTimeNs, myMaxLookupTimeNs));
+
+      Benchmarks.report(BENCHMARK, myName + " Lookup Time (ns)", averageLookupTimeNs);
+      Benchmarks.report(BENCHMARK, myName + " Blocked Time (ms)", myBlockedTimeMs);
+    }
+  }
+}
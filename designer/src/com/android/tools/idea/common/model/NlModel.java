@@ -37,6 +37,8 @@ import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationManager;
 import com.android.tools.idea.naveditor.model.NavComponentHelper;
 import com.android.tools.idea.rendering.RefreshRenderAction;
+import com.android.tools.idea.rendering.RenderService;
+import com.android.tools.idea.rendering.RenderTask;
 import com.android.tools.idea.rendering.parsers.TagSnapshot;
 import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ResourceHelper;
@@ -80,6 +82,8 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -109,6 +113,7 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
   private final NlLayoutType myType;
   private long myConfigurationModificationCount;
   private ThreeState myUsingMaterial2Theme = ThreeState.UNSURE;
+  @Nullable private volatile RenderTask myRenderTask;
 
   // Variable to track what triggered the latest render (if known)
   private ChangeType myModificationTrigger;
@@ -274,6 +279,29 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
     // updated by a single repaint
   }
 
+  /**
+   * Sets the {@link RenderTask} that produced the views currently attached to the components of this model, or null if there is none.
+   */
+  public void setRenderTask(@Nullable RenderTask renderTask) {
+    myRenderTask = renderTask;
+  }
+
+  /**
+   * Runs a render action that touches the views of this model. The action runs on the render thread of the {@link RenderTask} that
+   * created the views, or on the default render thread if the model has not been rendered.
+   */
+  public void runRenderAction(@NotNull Runnable runnable) throws Exception {
+    runRenderAction(Executors.callable(runnable));
+  }
+
+  /**
+   * Runs a render action that touches the views of this model and returns its result, see {@link #runRenderAction(Runnable)}.
+   */
+  public <T> T runRenderAction(@NotNull Callable<T> callable) throws Exception {
+    RenderTask renderTask = myRenderTask;
+    return renderTask != null ? renderTask.runRenderAction(callable) : RenderService.runRenderAction(callable);
+  }
+
   @NotNull
   public Set<String> getPendingIds() {
     return myPendingIds;
@@ -15,26 +15,69 @@
  */
 package com.android.tools.idea.common.scene;
 
+import com.android.tools.adtui.common.SwingCoordinate;
 import com.android.tools.idea.common.scene.draw.DisplayList;
 import com.android.tools.idea.common.surface.DesignSurface;
+import com.android.tools.idea.rendering.RenderService;
+import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.uibuilder.handlers.constraint.drawing.ColorSet;
+import com.google.common.annotations.VisibleForTesting;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 
 /**
  * Display a layout Scene
+ * <p>
+ * The display list is rebuilt only when the scene changes, and is painted directly right after. When it is painted again unchanged, for
+ * instance because another layer or another part of the surface changed, it is painted once into an image of the bounds it is drawn in,
+ * from the shared {@link ImagePool}, which is then drawn instead of the commands until the scene or the way it is painted change.
+ * Display lists that animate or follow the mouse are always painted directly.
  */
 public class Display {
   private long mTime;
   private DisplayList myDisplayList = new DisplayList();
   private long myDisplayListVersion = 0;
   double myScale = 0;
+  /**
+   * Whether the display list was painted since it was built and only depended on its commands, in which case it is worth keeping in an
+   * image.
+   */
+  private boolean myIsStatic;
+  @Nullable private ImagePool.Image myImage;
+  @SwingCoordinate private final Rectangle myImageBounds = new Rectangle();
+  private final AffineTransform myImageTransform = new AffineTransform();
+  @Nullable private ColorSet myImageColorSet;
+  /**
+   * The pool of the image of the display list, or null to use the shared pool of the project of the surface.
+   */
+  @Nullable private final ImagePool myImagePool;
+
+  public Display() {
+    this(null);
+  }
+
+  @VisibleForTesting
+  Display(@Nullable ImagePool imagePool) {
+    myImagePool = imagePool;
+  }
 
   public void reLayout() {
     myDisplayListVersion = 0;
   }
 
-  public void draw(@NotNull SceneContext sceneContext, @NotNull Graphics2D g, @NotNull Scene scene) {
+  /**
+   * Draws the scene, rebuilding its display list if it changed.
+   *
+   * @param bounds the area the display list is drawn in, which its image covers
+   */
+  public void draw(@NotNull SceneContext sceneContext,
+                   @NotNull Graphics2D g,
+                   @NotNull Scene scene,
+                   @SwingCoordinate @NotNull Rectangle bounds) {
     mTime = System.currentTimeMillis();
     boolean needsRebuild = false;
     if (scene.getDisplayListVersion() > myDisplayListVersion) {
@@ -53,8 +96,10 @@ public class Display {
       if (needsRebuild) {
         scene.needsRebuildList();
       }
+      myIsStatic = false;
+      releaseImage();
     }
-    draw(sceneContext, g, myDisplayList);
+    paint(sceneContext, g, bounds);
 
     if (needsRebuild) {
       DesignSurface designSurface = sceneContext.getSurface();
@@ -68,4 +113,109 @@ public class Display {
     sceneContext.setTime(System.currentTimeMillis());
     list.paint(g, sceneContext);
   }
+
+  /**
+   * Releases the image of the display list.
+   */
+  public void dispose() {
+    releaseImage();
+  }
+
+  /**
+   * Paints the current display list, from its image if it has one for the given bounds.
+   */
+  private void paint(@NotNull SceneContext sceneContext, @NotNull Graphics2D g, @SwingCoordinate @NotNull Rectangle bounds) {
+    AffineTransform transform = g.getTransform();
+    ImagePool.Image image = myImage;
+    if (image != null && isImageValid(sceneContext, bounds, transform)) {
+      drawImage(g, image);
+      return;
+    }
+    releaseImage();
+
+    ImagePool imagePool = getImagePool(sceneContext);
+    int liveStateUseCount = sceneContext.getLiveStateUseCount();
+    if (!myIsStatic || imagePool == null || bounds.isEmpty() || !isScaleAndTranslation(transform)) {
+      draw(sceneContext, g, myDisplayList);
+      myIsStatic = sceneContext.getLiveStateUseCount() == liveStateUseCount;
+      return;
+    }
+
+    image = paintImage(imagePool, sceneContext, g, bounds, transform);
+    myImageBounds.setBounds(bounds);
+    drawImage(g, image);
+    if (sceneContext.getLiveStateUseCount() == liveStateUseCount) {
+      myImage = image;
+      myImageTransform.setTransform(transform);
+      myImageColorSet = sceneContext.getColorSet();
+    }
+    else {
+      // The display list animates or follows the mouse.
+      image.dispose();
+      myIsStatic = false;
+    }
+  }
+
+  @Nullable
+  private ImagePool getImagePool(@NotNull SceneContext sceneContext) {
+    if (myImagePool != null) {
+      return myImagePool;
+    }
+    DesignSurface surface = sceneContext.getSurface();
+    return surface != null ? RenderService.getInstance(surface.getProject()).getSharedImagePool() : null;
+  }
+
+  /**
+   * Paints the display list into a new image that covers the given bounds in the resolution of the given transform.
+   */
+  @NotNull
+  private ImagePool.Image paintImage(@NotNull ImagePool imagePool,
+                                     @NotNull SceneContext sceneContext,
+                                     @NotNull Graphics2D g,
+                                     @SwingCoordinate @NotNull Rectangle bounds,
+                                     @NotNull AffineTransform transform) {
+    int width = (int)Math.ceil(bounds.width * transform.getScaleX());
+    int height = (int)Math.ceil(bounds.height * transform.getScaleY());
+    ImagePool.Image image = imagePool.create(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_ARGB);
+    image.paint(imageGraphics -> {
+      imageGraphics.setRenderingHints(g.getRenderingHints());
+      imageGraphics.setFont(g.getFont());
+      imageGraphics.setColor(g.getColor());
+      imageGraphics.setStroke(g.getStroke());
+      imageGraphics.scale(transform.getScaleX(), transform.getScaleY());
+      imageGraphics.translate(-bounds.x, -bounds.y);
+      imageGraphics.clipRect(bounds.x, bounds.y, bounds.width, bounds.height);
+      draw(sceneContext, imageGraphics, myDisplayList);
+    });
+    return image;
+  }
+
+  private void drawImage(@NotNull Graphics2D g, @NotNull ImagePool.Image image) {
+    Rectangle bounds = myImageBounds;
+    image.drawImageTo(g, bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height, 0, 0, image.getWidth(), image.getHeight());
+  }
+
+  /**
+   * Returns whether the image of the display list covers the given bounds and was painted the way the display list would be painted now.
+   */
+  private boolean isImageValid(@NotNull SceneContext sceneContext,
+                               @SwingCoordinate @NotNull Rectangle bounds,
+                               @NotNull AffineTransform transform) {
+    return myImageBounds.equals(bounds) && myImageTransform.equals(transform) && myImageColorSet == sceneContext.getColorSet();
+  }
+
+  private void releaseImage() {
+    if (myImage != null) {
+      myImage.dispose();
+      myImage = null;
+    }
+  }
+
+  /**
+   * Returns whether the transform only scales and translates, so that an image painted with it can be drawn back pixel for pixel.
+   */
+  private static boolean isScaleAndTranslation(@NotNull AffineTransform transform) {
+    int otherTypes = ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE | AffineTransform.TYPE_GENERAL_SCALE);
+    return (transform.getType() & otherTypes) == 0 && transform.getScaleX() > 0 && transform.getScaleY() > 0;
+  }
 }
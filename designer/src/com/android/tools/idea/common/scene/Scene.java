@@ -93,6 +93,7 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  private long myLayoutCount = 0;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -128,10 +129,10 @@ public class Scene implements SelectionListener, Disposable {
     mySceneManager = sceneManager;
 
     SelectionModel selectionModel = myDesignSurface.getSelectionModel();
-    myHoverListener = new SceneHitListener(selectionModel);
-    myHitListener = new SceneHitListener(selectionModel);
-    myFindListener = new SceneHitListener(selectionModel);
-    mySnapListener = new SceneHitListener(selectionModel);
+    myHoverListener = new SceneHitListener(selectionModel, true);
+    myHitListener = new SceneHitListener(selectionModel, false);
+    myFindListener = new SceneHitListener(selectionModel, false);
+    mySnapListener = new SceneHitListener(selectionModel, true);
     selectionModel.addListener(this);
 
     myIsLiveRenderingEnabled = renderSettings.getUseLiveRendering();
@@ -403,6 +404,7 @@ public class Scene implements SelectionListener, Disposable {
    * @return true if we need to repaint the screen
    */
   public boolean layout(long time, SceneContext sceneContext) {
+    myLayoutCount++;
     boolean needsToRebuildDisplayList = false;
     if (myRoot != null) {
       needsToRebuildDisplayList = myRoot.layout(sceneContext, time);
@@ -602,6 +604,9 @@ public class Scene implements SelectionListener, Disposable {
     myLastMouseX = x;
     myLastMouseY = y;
     myFilterType = FilterType.NONE;
+    // Clicks change the state of targets, like whether they can be hit, without always changing the display list version.
+    myHoverListener.clearShapes();
+    mySnapListener.clearShapes();
     if (myRoot == null) {
       return;
     }
@@ -702,6 +707,8 @@ public class Scene implements SelectionListener, Disposable {
       }
     }
     myFilterType = FilterType.NONE;
+    myHoverListener.clearShapes();
+    mySnapListener.clearShapes();
     myNewSelectedComponentsOnRelease.clear();
     if (myHitComponent != null && closestComponent == myHitComponent) {
       myNewSelectedComponentsOnRelease.add(myHitComponent);
@@ -761,6 +768,14 @@ public class Scene implements SelectionListener, Disposable {
     return myDisplayListVersion;
   }
 
+  /**
+   * Returns the number of times the components and their targets were laid out, which can move them without changing the
+   * {@link #getDisplayListVersion() display list version}.
+   */
+  public long getLayoutCount() {
+    return myLayoutCount;
+  }
+
   // TODO: reduce visibility? Probably the modified SceneComponents should do this rather than
   // requiring it to be done explicitly by the code that's modifying them.
   public void needsRebuildList() {
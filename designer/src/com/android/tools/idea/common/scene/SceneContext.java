@@ -38,6 +38,7 @@ public class SceneContext {
   Long myTime;
   @SwingCoordinate int myMouseX = -1, myMouseY = -1;
   private boolean myShowOnlySelection = false;
+  private int myLiveStateUseCount;
 
   private SceneContext() {
     myTime = System.currentTimeMillis();
@@ -67,6 +68,7 @@ public class SceneContext {
    */
   @SwingCoordinate
   public int getMouseX() {
+    myLiveStateUseCount++;
     return myMouseX;
   }
 
@@ -77,6 +79,7 @@ public class SceneContext {
    */
   @SwingCoordinate
   public int getMouseY() {
+    myLiveStateUseCount++;
     return myMouseY;
   }
 
@@ -84,7 +87,15 @@ public class SceneContext {
    * Used to request Repaint
    */
   public void repaint() {
+    myLiveStateUseCount++;
+  }
 
+  /**
+   * Returns how many times a repaint was requested or the mouse location was read. Draw commands that animate or follow the mouse do
+   * either while they paint, so a change of this count during a paint tells that what was painted depends on more than the display list.
+   */
+  public int getLiveStateUseCount() {
+    return myLiveStateUseCount;
   }
 
   @SwingCoordinate
@@ -238,6 +249,7 @@ public class SceneContext {
 
     @Override
     public void repaint() {
+      super.repaint();
       mySceneView.getSurface().needsRepaint();
     }
 
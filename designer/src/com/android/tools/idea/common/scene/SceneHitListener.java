@@ -23,6 +23,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -31,14 +32,25 @@ import java.util.List;
 class SceneHitListener implements ScenePicker.HitElementListener {
   @NotNull private SelectionModel mySelectionModel;
   private ScenePicker myPicker = new ScenePicker();
+  private final boolean myReusesShapes;
+  /**
+   * State of the scene the shapes in {@link #myPicker} were added for, or null if they have to be added again by the next search
+   */
+  @Nullable private List<Object> myPickerState;
   double myClosestComponentDistance = Double.MAX_VALUE;
   double myClosestTargetDistance = Double.MAX_VALUE;
   ArrayList<SceneComponent> myHitComponents = new ArrayList<>();
   @NotNull final ArrayList<Target> myHitTargets = new ArrayList<>();
   Target mySkipTarget = null;
 
-  SceneHitListener(@NotNull SelectionModel selectionModel) {
+  /**
+   * @param reusesShapes whether the shapes of the scene are only added again when it changes, instead of for each search. This makes
+   *                     repeated searches, like the ones made while the mouse moves, faster, but relies on the changes being tracked by
+   *                     {@link #getPickerState}.
+   */
+  SceneHitListener(@NotNull SelectionModel selectionModel, boolean reusesShapes) {
     mySelectionModel = selectionModel;
+    myReusesShapes = reusesShapes;
     myPicker.setSelectListener(this);
   }
 
@@ -54,11 +66,34 @@ class SceneHitListener implements ScenePicker.HitElementListener {
     myHitTargets.clear();
     myClosestComponentDistance = Double.MAX_VALUE;
     myClosestTargetDistance = Double.MAX_VALUE;
-    myPicker.reset();
-    root.addHit(transform, myPicker);
+    List<Object> pickerState = myReusesShapes ? getPickerState(transform, root) : null;
+    if (pickerState == null || !pickerState.equals(myPickerState)) {
+      myPicker.reset();
+      root.addHit(transform, myPicker);
+      myPickerState = pickerState;
+    }
     myPicker.find(transform.getSwingXDip(x), transform.getSwingYDip(y));
   }
 
+  /**
+   * Makes the next search add the shapes of the scene again.
+   */
+  public void clearShapes() {
+    myPickerState = null;
+  }
+
+  /**
+   * Returns the state of the scene the shapes added by its components depend on: where the components and targets are, which ones can be
+   * hit and where the scene is shown.
+   */
+  @NotNull
+  private List<Object> getPickerState(@NotNull SceneContext transform, @NotNull SceneComponent root) {
+    Scene scene = root.getScene();
+    return Arrays.asList(transform, root, scene.getDisplayListVersion(), scene.getLayoutCount(), scene.getFilterType(),
+                         mySelectionModel.getSelection(), transform.getSwingXDip(0), transform.getSwingYDip(0),
+                         transform.getSwingXDip(1000), transform.getSwingYDip(1000));
+  }
+
   @SuppressWarnings("FloatingPointEquality")  // The values are directly assigned with no math, so this should be fine.
   @Override
   public void over(Object over, double dist) {
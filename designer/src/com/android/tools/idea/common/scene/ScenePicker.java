@@ -19,11 +19,25 @@ import java.util.Arrays;
 
 /**
  * This class provides efficient detection of many objects
+ * <p>
+ * When the same shapes are searched more than once, their bounding boxes are indexed by a uniform grid, so that {@link #find(int, int)}
+ * only tests the shapes whose boxes overlap the grid cell of the location, instead of all of them. Shapes added after a search are
+ * indexed by the next one. Boxes covering too many cells, like the ones of large components, are kept in a list which is always tested
+ * instead.
  */
 public class ScenePicker {
   private final static int MAX_DATA_SIZE = 10;
   private final static int INITAL_OBJECT_STORE = 30;
   private final static double EPSILON = 0.00001;
+  /**
+   * Size of the grid cells, as a power of two, in swing pixels
+   */
+  private final static int CELL_SHIFT = 6;
+  /**
+   * Number of the hash buckets the grid cells are spread over. Cells sharing a bucket only add candidates to test.
+   */
+  private final static int GRID_BUCKETS = 1024;
+  private final static int MAX_CELLS_PER_OBJECT = 16;
   private double[] mObjectData = new double[100];
   private int mObjectDataUsed = 0;
   private int[] mObjectOffset = new int[INITAL_OBJECT_STORE];
@@ -32,6 +46,17 @@ public class ScenePicker {
   private Object[] mObjects = new Object[INITAL_OBJECT_STORE];
   HitElementListener mHitElementListener;
 
+  private int mFindCount = 0;
+  private int mIndexedObjectCount = 0;
+  // The grid: each bucket is a linked list of (object, next entry) entries.
+  private final int[] mBucketHead = new int[GRID_BUCKETS];
+  private int[] mEntryObject = new int[INITAL_OBJECT_STORE * 2];
+  private int[] mEntryNext = new int[INITAL_OBJECT_STORE * 2];
+  private int mEntryCount = 0;
+  private int[] mLargeObjects = new int[INITAL_OBJECT_STORE];
+  private int mLargeObjectCount = 0;
+  private int[] mCandidates = new int[INITAL_OBJECT_STORE];
+
   private int mObjectCount = 0;
   private final static int OBJECT_LINE = 0;
   private final static int OBJECT_POINT = 1;
@@ -51,26 +76,112 @@ public class ScenePicker {
     myEngines[OBJECT_CURVE] = mCurve;
     myEngines[OBJECT_RECTANGLE] = mRectangle;
     myEngines[OBJECT_CIRCLE] = mCircle;
+    Arrays.fill(mBucketHead, -1);
   }
 
   /**
-   * Search through all the shapes added and find shapes in range
+   * Search through all the shapes added and find shapes in range.
+   * The listener is notified of the shapes in the order they were added.
    *
    * @param x location x
    * @param y location y
    */
   public void find(int x, int y) {
-    for (int i = 0; i < mObjectCount; i++) {
-      int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
+    if (mFindCount++ == 0) {
+      // Indexing the shapes takes longer than testing all of them once.
+      for (int i = 0; i < mObjectCount; i++) {
+        find(i, x, y);
+      }
+      return;
+    }
+
+    for (; mIndexedObjectCount < mObjectCount; mIndexedObjectCount++) {
+      int p = mIndexedObjectCount * 4;
+      addToGrid(mIndexedObjectCount, mRect[p], mRect[p + 1], mRect[p + 2], mRect[p + 3]);
+    }
+    int candidateCount = findCandidates(x, y);
+    for (int c = 0; c < candidateCount; c++) {
+      find(mCandidates[c], x, y);
+    }
+  }
+
+  private void find(int i, int x, int y) {
+    int p = i * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[i]];
+      if (selector.inRange(i, x, y)) {
+        mHitElementListener.over(mObjects[i], selector.distance());
+      }
+    }
+  }
+
+  /**
+   * Collects the objects whose bounding boxes may contain the given location into {@link #mCandidates}, sorted in the order they were
+   * added.
+   *
+   * @return the number of candidates
+   */
+  private int findCandidates(int x, int y) {
+    int count = 0;
+    for (int entry = mBucketHead[bucket(x >> CELL_SHIFT, y >> CELL_SHIFT)]; entry != -1; entry = mEntryNext[entry]) {
+      count = addCandidate(count, mEntryObject[entry]);
+    }
+    for (int i = 0; i < mLargeObjectCount; i++) {
+      count = addCandidate(count, mLargeObjects[i]);
+    }
+    Arrays.sort(mCandidates, 0, count);
+
+    // An object covering several cells of the same bucket is in its list once per cell.
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || mCandidates[unique - 1] != mCandidates[i]) {
+        mCandidates[unique++] = mCandidates[i];
+      }
+    }
+    return unique;
+  }
+
+  private int addCandidate(int count, int object) {
+    if (count == mCandidates.length) {
+      mCandidates = Arrays.copyOf(mCandidates, count * 2);
+    }
+    mCandidates[count] = object;
+    return count + 1;
+  }
+
+  private static int bucket(int cellX, int cellY) {
+    return (cellX * 31 + cellY) & (GRID_BUCKETS - 1);
+  }
+
+  /**
+   * Adds the given object to the grid cells its bounding box overlaps.
+   */
+  private void addToGrid(int object, int x1, int y1, int x2, int y2) {
+    int cellX1 = x1 >> CELL_SHIFT;
+    int cellY1 = y1 >> CELL_SHIFT;
+    int cellX2 = x2 >> CELL_SHIFT;
+    int cellY2 = y2 >> CELL_SHIFT;
+    if ((long)(cellX2 - cellX1 + 1) * (cellY2 - cellY1 + 1) > MAX_CELLS_PER_OBJECT) {
+      if (mLargeObjectCount == mLargeObjects.length) {
+        mLargeObjects = Arrays.copyOf(mLargeObjects, mLargeObjectCount * 2);
+      }
+      mLargeObjects[mLargeObjectCount++] = object;
+      return;
+    }
+    for (int cellX = cellX1; cellX <= cellX2; cellX++) {
+      for (int cellY = cellY1; cellY <= cellY2; cellY++) {
+        if (mEntryCount == mEntryObject.length) {
+          mEntryObject = Arrays.copyOf(mEntryObject, mEntryCount * 2);
+          mEntryNext = Arrays.copyOf(mEntryNext, mEntryCount * 2);
         }
+        int bucket = bucket(cellX, cellY);
+        mEntryObject[mEntryCount] = object;
+        mEntryNext[mEntryCount] = mBucketHead[bucket];
+        mBucketHead[bucket] = mEntryCount++;
       }
     }
   }
@@ -115,6 +226,11 @@ public class ScenePicker {
     mObjectCount = 0;
     mObjectDataUsed = 0;
     Arrays.fill(mObjects, null);// delete references
+    mFindCount = 0;
+    mIndexedObjectCount = 0;
+    Arrays.fill(mBucketHead, -1);
+    mEntryCount = 0;
+    mLargeObjectCount = 0;
   }
 
   /**
@@ -44,11 +44,19 @@ import java.util.function.Function;
 public class DisplayList {
   private final static boolean DEBUG = false;
   private ArrayList<DrawCommand> myCommands = new ArrayList<>();
+  /**
+   * The commands nested in their clips and sorted by level, kept from one paint to the next until the list changes.
+   */
+  @Nullable private CommandSet mySortedCommands;
 
   public void clear() {
     myCommands.clear();
+    mySortedCommands = null;
   }
 
+  /**
+   * Returns the commands in the order they were added. Use {@link #add} and {@link #clear} rather than modifying the returned list.
+   */
   public ArrayList<DrawCommand> getCommands() {
     return myCommands;
   }
@@ -312,6 +320,7 @@ public class DisplayList {
 
   public void add(DrawCommand cmd) {
     myCommands.add(cmd);
+    mySortedCommands = null;
   }
 
   public UNClip addClip(SceneContext context, @AndroidDpCoordinate Rectangle r) {
@@ -320,7 +329,7 @@ public class DisplayList {
     int w = context.getSwingDimensionDip(r.width);
     int h = context.getSwingDimensionDip(r.height);
     Clip c = new Clip(l, t, w, h);
-    myCommands.add(c);
+    add(c);
     return new UNClip(c);
   }
 
@@ -329,7 +338,7 @@ public class DisplayList {
     int t = context.getSwingYDip(r.y);
     int w = context.getSwingDimensionDip(r.width);
     int h = context.getSwingDimensionDip(r.height);
-    myCommands.add(new Rect(l, t, w, h, color));
+    add(new Rect(l, t, w, h, color));
   }
 
   public void addRect(SceneContext context,
@@ -509,9 +518,13 @@ public class DisplayList {
       System.out.println("<");
     }
     Graphics2D g = (Graphics2D)g2.create();
-    DrawCommand[] array = myCommands.toArray(new DrawCommand[0]);
-    CommandSet set = new CommandSet(array, 0, array.length - 1);
-    set.sort();
+    CommandSet set = mySortedCommands;
+    if (set == null) {
+      DrawCommand[] array = myCommands.toArray(new DrawCommand[0]);
+      set = new CommandSet(array, 0, array.length - 1);
+      set.sort();
+      mySortedCommands = set;
+    }
     if (DEBUG) {
       set.print(">");
       System.out.println("-end-");
@@ -30,11 +30,16 @@ import java.awt.geom.Rectangle2D;
  */
 public class SceneLayer extends Layer {
   public static final boolean SHOW_ON_HOVER = NELE_SHOW_ON_HOVER.get(); // enable or disable showing the layer only on hover
+  /**
+   * The margin around the scene view kept in the image of the display list, for the decorations drawn around the components at its edges.
+   */
+  @SwingCoordinate private static final int DISPLAY_MARGIN = 20;
 
   private final DesignSurface myDesignSurface;
   private final SceneView mySceneView;
   private final Dimension myScreenViewSize = new Dimension();
   private final Rectangle mySizeRectangle = new Rectangle();
+  private final Rectangle myDisplayBounds = new Rectangle();
   private final Display myDisplay = new Display();
   private boolean myShowOnHover = false;
   private boolean myShowAlways = false;
@@ -76,6 +81,7 @@ public class SceneLayer extends Layer {
       mySceneView.getSize(myScreenViewSize);
 
       mySizeRectangle.setBounds(mySceneView.getX(), mySceneView.getY(), myScreenViewSize.width, myScreenViewSize.height);
+      myDisplayBounds.setBounds(mySizeRectangle);
       Rectangle2D.intersect(mySizeRectangle, g.getClipBounds(), mySizeRectangle);
       if (mySizeRectangle.isEmpty()) {
         return;
@@ -85,14 +91,21 @@ public class SceneLayer extends Layer {
         paintBackground(g, sceneContext);
       }
 
-      // Draw the components
-      myDisplay.draw(sceneContext, g, mySceneView.getScene());
+      // Draw the components, in the visible part of the scene view so that partial repaints can reuse the image of the display list
+      myDisplayBounds.grow(DISPLAY_MARGIN, DISPLAY_MARGIN);
+      Rectangle2D.intersect(myDisplayBounds, myDesignSurface.getLayeredPane().getVisibleRect(), myDisplayBounds);
+      myDisplay.draw(sceneContext, g, mySceneView.getScene(), myDisplayBounds);
     }
     finally {
       g.dispose();
     }
   }
 
+  @Override
+  public void dispose() {
+    myDisplay.dispose();
+  }
+
   private void paintBackground(@NotNull Graphics2D g, @NotNull SceneContext sceneContext) {
     Shape shape = mySceneView.getScreenShape();
     if (shape == null) {
@@ -18,6 +18,7 @@ package com.android.tools.idea.naveditor.scene
 import com.android.annotations.VisibleForTesting
 import com.android.tools.adtui.ImageUtils
 import com.android.tools.idea.configurations.Configuration
+import com.android.tools.idea.rendering.RenderExecutor
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
@@ -242,6 +243,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
                                 renderService: RenderService): RenderTask? {
     val task = renderService.taskBuilder(facet, configuration)
       .withPsiFile(file)
+      .withPriority(RenderExecutor.Priority.LOW)
       .build()
     task?.setDecorations(false)
     return task
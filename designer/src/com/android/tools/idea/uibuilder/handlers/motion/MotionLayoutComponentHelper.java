@@ -18,7 +18,6 @@ package com.android.tools.idea.uibuilder.handlers.motion;
 import com.android.ide.common.rendering.api.ViewInfo;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.model.NlModel;
-import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
 import org.jetbrains.annotations.NotNull;
 
@@ -44,10 +43,12 @@ public class MotionLayoutComponentHelper {
   public static final int VERTICAL_PATH_X = 4;
   public static final int VERTICAL_PATH_Y = 5;
 
+  private final NlModel myModel;
   private final Object myDesignTool;
   private final NlComponent myMotionLayoutComponent;
 
   public MotionLayoutComponentHelper(@NotNull NlComponent component) {
+    myModel = component.getModel();
     ViewInfo info = NlComponentHelperKt.getViewInfo(component);
     if (info == null) {
       myDesignTool = null;
@@ -65,7 +66,7 @@ public class MotionLayoutComponentHelper {
       Method accessor = instance.getClass().getMethod("getDesignTool");
       if (accessor != null) {
         try {
-          designInstance = RenderService.runRenderAction(() -> accessor.invoke(instance));
+          designInstance = myModel.runRenderAction(() -> accessor.invoke(instance));
         }
         catch (Exception e) {
           e.printStackTrace();
@@ -95,7 +96,7 @@ public class MotionLayoutComponentHelper {
 
     if (myGetKeyframeAtLocationMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return myModel.runRenderAction(() -> {
           try {
             return myGetKeyframeAtLocationMethod.invoke(myDesignTool, view, x, y);
           }
@@ -131,7 +132,7 @@ public class MotionLayoutComponentHelper {
 
     if (myGetPositionKeyframeMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return myModel.runRenderAction(() -> {
           try {
             return myGetPositionKeyframeMethod.invoke(myDesignTool, keyframe, view, x, y, attributes, values);
           }
@@ -166,7 +167,7 @@ public class MotionLayoutComponentHelper {
 
     if (myGetKeyframeMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return myModel.runRenderAction(() -> {
           try {
             return myGetKeyframeMethod.invoke(myDesignTool, type, target, position);
           }
@@ -201,7 +202,7 @@ public class MotionLayoutComponentHelper {
 
     if (mySetKeyframeMethod != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        myModel.runRenderAction(() -> {
           try {
             mySetKeyframeMethod.invoke(myDesignTool, keyframe, tag, value);
           }
@@ -232,7 +233,7 @@ public class MotionLayoutComponentHelper {
     }
     if (mySetAttributesMethod != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        myModel.runRenderAction(() -> {
           try {
             mySetAttributesMethod.invoke(myDesignTool, dpiValue, constraintSetId, view, attributes);
           }
@@ -264,7 +265,7 @@ public class MotionLayoutComponentHelper {
     final boolean[] didUpdate = {false};
     if (mySetKeyframePositionMethod != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        myModel.runRenderAction(() -> {
           try {
             didUpdate[0] = (boolean)mySetKeyframePositionMethod.invoke(myDesignTool, view, Integer.valueOf(position),
                                                                        Integer.valueOf(type), Float.valueOf(x), Float.valueOf(y));
@@ -300,7 +301,7 @@ public class MotionLayoutComponentHelper {
     }
     if (myCallSetTransitionPosition != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        myModel.runRenderAction(() -> {
           try {
             myCallSetTransitionPosition.invoke(myDesignTool, Float.valueOf(position));
           }
@@ -347,7 +348,7 @@ public class MotionLayoutComponentHelper {
 
     if (myGetMaxTimeMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return myModel.runRenderAction(() -> {
           try {
             return (long)myGetMaxTimeMethod.invoke(myDesignTool);
           }
@@ -41,6 +41,11 @@ public class Display3D extends JPanel {
   Matrix myInvMatrix;
   boolean isImageInvalid = true;
   static final boolean mPerspective = false;
+  /**
+   * Whether to rasterize on several threads with {@link TiledRasterizer}, enabled with -Dlayout3d.tiled=true.
+   */
+  static final boolean mTiled = Boolean.getBoolean("layout3d.tiled");
+  private final TiledRasterizer myTiledRasterizer = new TiledRasterizer();
 
   Vector<ActionListener> myViewChangeListener = new Vector<>();
 
@@ -151,19 +156,32 @@ public class Display3D extends JPanel {
       Arrays.fill(myZBuffer, Float.MAX_VALUE);
       Arrays.fill(rgbData, 0xFF000000);
 
-      if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
-      }
-      else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
-      }
+      rasterize(rgbData, w, h);
 
       isImageInvalid = false;
     }
     return myImage;
   }
 
+  private void rasterize(int[] rgbData, int w, int h) {
+    if (mTriData.myTexture != null) {
+      if (mTiled) {
+        myTiledRasterizer.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
+                                  mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+      }
+      else {
+        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
+                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+      }
+    }
+    else if (mTiled) { // run a simple render if no myTexture
+      myTiledRasterizer.simple(myZBuffer, rgbData, w, h, myTransFormCache);
+    }
+    else {
+      Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
+    }
+  }
+
   public void setTriData(TriData data) {
     mTriData = data;
     setup();
@@ -215,13 +233,7 @@ public class Display3D extends JPanel {
       Arrays.fill(myZBuffer, Float.MAX_VALUE);
       Arrays.fill(rgbData, 0xFF000000);
 
-      if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
-      }
-      else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
-      }
+      rasterize(rgbData, w, h);
 
       isImageInvalid = false;
     }
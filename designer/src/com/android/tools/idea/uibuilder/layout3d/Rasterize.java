@@ -261,6 +261,23 @@ public class Rasterize {
    * Render a myTexture including use of zbuffer
    */
   public static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                              float fx1, float fy1, float fz1,
+                                              float fx2, float fy2, float fz2,
+                                              float fx3, float fy3, float fz3,
+                                              float tx1, float ty1,
+                                              float tx2, float ty2,
+                                              float tx3, float ty3,
+                                              int[] texture, int tWidth, int tHeight, double[] matrix) {
+    render_perspectiveAffine(zbuff, rgb, w, h, 0, 0, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, tx1, ty1, tx2, ty2, tx3, ty3,
+                             texture, tWidth, tHeight, matrix);
+  }
+
+  /**
+   * Render a myTexture including use of zbuffer, only writing the pixels from clipLeft to clipRight (exclusive) and from clipTop to
+   * clipBottom (exclusive)
+   */
+  public static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                              int clipLeft, int clipTop, int clipRight, int clipBottom,
                                               float fx1, float fy1, float fz1,
                                               float fx2, float fy2, float fz2,
                                               float fx3, float fy3, float fz3,
@@ -376,17 +393,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipTop) {
+      miny = clipTop;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipLeft) {
+      minx = clipLeft;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipRight) {
+      maxx = clipRight;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipBottom) {
+      maxy = clipBottom;
     }
     int off = miny * w;
 
@@ -825,6 +842,19 @@ public class Rasterize {
    * Render a myTexture including use of zbuffer
    */
   public static void flat(float[] zbuff, int[] rgb, int w, int h,
+                          float fx1, float fy1, float fz1,
+                          float fx2, float fy2, float fz2,
+                          float fx3, float fy3, float fz3,
+                          int color) {
+    flat(zbuff, rgb, w, h, 0, 0, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, color);
+  }
+
+  /**
+   * Render a flat color including use of zbuffer, only writing the pixels from clipLeft to clipRight (exclusive) and from clipTop to
+   * clipBottom (exclusive)
+   */
+  public static void flat(float[] zbuff, int[] rgb, int w, int h,
+                          int clipLeft, int clipTop, int clipRight, int clipBottom,
                           float fx1, float fy1, float fz1,
                           float fx2, float fy2, float fz2,
                           float fx3, float fy3, float fz3,
@@ -908,17 +938,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipTop) {
+      miny = clipTop;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipLeft) {
+      minx = clipLeft;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipRight) {
+      maxx = clipRight;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipBottom) {
+      maxy = clipBottom;
     }
     int off = miny * w;
 
@@ -1273,30 +1303,7 @@ public class Rasterize {
   public static void toZBuff(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
                              int tWidth, int tHeight, double[] matrix) {
     for (int i = 0; i < tri.myIndex.length; i += 3) {
-      int p1 = tri.myIndex[i];
-      int p2 = tri.myIndex[i + 1];
-      int p3 = tri.myIndex[i + 2];
-      int type = tri.mySurfaceType[i / 3];
-      if (type == 1) {
-        render_perspectiveAffine(zbuff, rgb, w, h,
-                                 tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
-                                 tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
-                                 tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
-                                 tri.myTexture_uv[p1], tri.myTexture_uv[p1 + 1],
-                                 tri.myTexture_uv[p2], tri.myTexture_uv[p2 + 1],
-                                 tri.myTexture_uv[p3], tri.myTexture_uv[p3 + 1],
-                                 texture, tWidth, tHeight, matrix
-        );
-      }
-      else {
-        flat(zbuff, rgb, w, h,
-             tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
-             tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
-             tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
-
-             (type == 0) ? BLUE : GRAY
-        );
-      }
+      drawTriangle(zbuff, rgb, w, h, 0, 0, w, h, tri, i, texture, tWidth, tHeight, matrix);
     }
   }
 
@@ -1310,13 +1317,49 @@ public class Rasterize {
    * @param tri   the data set it contains triangles indexes etc
    */
   public static void simple(float[] zbuff, int[] rgb, int w, int h, TriData tri) {
-
     for (int i = 0; i < tri.myIndex.length; i += 3) {
-      int p1 = tri.myIndex[i];
-      int p2 = tri.myIndex[i + 1];
-      int p3 = tri.myIndex[i + 2];
+      drawTriangle(zbuff, rgb, w, h, 0, 0, w, h, tri, i, null, 0, 0, null);
+    }
+  }
+
+  /**
+   * Draws one triangle of the tri data, only writing the pixels from clipLeft to clipRight (exclusive) and from clipTop to clipBottom
+   * (exclusive). Triangles are textured like {@link #toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])} does, or
+   * flat shaded like {@link #simple(float[], int[], int, int, TriData)} does if there is no texture.
+   *
+   * @param i the index of the first vertex index of the triangle in the tri data
+   */
+  static void drawTriangle(float[] zbuff, int[] rgb, int w, int h,
+                           int clipLeft, int clipTop, int clipRight, int clipBottom,
+                           TriData tri, int i, int[] texture, int tWidth, int tHeight, double[] matrix) {
+    int p1 = tri.myIndex[i];
+    int p2 = tri.myIndex[i + 1];
+    int p3 = tri.myIndex[i + 2];
+    if (texture == null) {
       int type = (tri.mySurfaceType != null) ? tri.mySurfaceType[i / 3] : 0;
-      flat(zbuff, rgb, w, h,
+      flat(zbuff, rgb, w, h, clipLeft, clipTop, clipRight, clipBottom,
+           tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+           tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+           tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+
+           (type == 0) ? BLUE : GRAY
+      );
+      return;
+    }
+    int type = tri.mySurfaceType[i / 3];
+    if (type == 1) {
+      render_perspectiveAffine(zbuff, rgb, w, h, clipLeft, clipTop, clipRight, clipBottom,
+                               tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+                               tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+                               tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+                               tri.myTexture_uv[p1], tri.myTexture_uv[p1 + 1],
+                               tri.myTexture_uv[p2], tri.myTexture_uv[p2 + 1],
+                               tri.myTexture_uv[p3], tri.myTexture_uv[p3 + 1],
+                               texture, tWidth, tHeight, matrix
+      );
+    }
+    else {
+      flat(zbuff, rgb, w, h, clipLeft, clipTop, clipRight, clipBottom,
            tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
            tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
            tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rasterizes tri data on several threads. The image is split into square tiles, each triangle is added to the bins of the tiles its
+ * bounding box overlaps, and the tiles are rasterized concurrently on a {@link ForkJoinPool}.
+ * <p>
+ * A tile only writes its own pixels of the z-buffer and of the image, and draws its triangles in their original order, so the result is
+ * the same as the one of the serial methods of {@link Rasterize}.
+ */
+public class TiledRasterizer {
+  /**
+   * The width and height of a tile, in pixels. The z-buffer and image of a tile then take 16KB each, so a thread can keep them in its
+   * cache while it draws all the triangles of the tile.
+   */
+  public static final int TILE_SIZE = 64;
+  private static final int TILE_SHIFT = 6;
+
+  private final ForkJoinPool myPool;
+
+  public TiledRasterizer() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public TiledRasterizer(ForkJoinPool pool) {
+    myPool = pool;
+  }
+
+  /**
+   * Tiled version of {@link Rasterize#toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])}
+   */
+  public void toZBuff(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix) {
+    rasterize(zbuff, rgb, w, h, tri, texture, tWidth, tHeight, matrix);
+  }
+
+  /**
+   * Tiled version of {@link Rasterize#simple(float[], int[], int, int, TriData)}
+   */
+  public void simple(float[] zbuff, int[] rgb, int w, int h, TriData tri) {
+    rasterize(zbuff, rgb, w, h, tri, null, 0, 0, null);
+  }
+
+  private void rasterize(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix) {
+    if (w <= 0 || h <= 0) {
+      return;
+    }
+    Bins bins = new Bins(w, h, tri);
+    RasterizeTiles task = new RasterizeTiles(zbuff, rgb, w, h, tri, texture, tWidth, tHeight, matrix, bins, 0, bins.myTileCount);
+    if (bins.myTileCount == 1 || myPool.getParallelism() == 1) {
+      // Forking outside of a pool would use the common pool.
+      for (int tile = 0; tile < bins.myTileCount; tile++) {
+        task.rasterizeTile(tile);
+      }
+    }
+    else {
+      myPool.invoke(task);
+    }
+  }
+
+  /**
+   * The triangles overlapping each tile, in their original order.
+   */
+  private static class Bins {
+    final int myTileColumns;
+    final int myTileCount;
+    /**
+     * The triangles of tile t are at the indexes from myStart[t] to myStart[t + 1] (exclusive) of {@link #myTriangles}.
+     */
+    final int[] myStart;
+    final int[] myTriangles;
+
+    Bins(int w, int h, TriData tri) {
+      myTileColumns = (w + TILE_SIZE - 1) >> TILE_SHIFT;
+      int tileRows = (h + TILE_SIZE - 1) >> TILE_SHIFT;
+      myTileCount = myTileColumns * tileRows;
+      int triangleCount = tri.myIndex.length / 3;
+
+      // The tiles covered by each triangle, or an empty range if the triangle is outside of the image.
+      int[] tileBounds = new int[triangleCount * 4];
+      int[] counts = new int[myTileCount + 1];
+      for (int t = 0; t < triangleCount; t++) {
+        int b = t * 4;
+        if (!pixelBounds(tri, t * 3, w, h, tileBounds, b)) {
+          tileBounds[b + 3] = -1;
+          continue;
+        }
+        tileBounds[b] >>= TILE_SHIFT;
+        tileBounds[b + 1] >>= TILE_SHIFT;
+        tileBounds[b + 2] = (tileBounds[b + 2] - 1) >> TILE_SHIFT;
+        tileBounds[b + 3] = (tileBounds[b + 3] - 1) >> TILE_SHIFT;
+        for (int row = tileBounds[b + 1]; row <= tileBounds[b + 3]; row++) {
+          for (int column = tileBounds[b]; column <= tileBounds[b + 2]; column++) {
+            counts[row * myTileColumns + column + 1]++;
+          }
+        }
+      }
+
+      myStart = new int[myTileCount + 1];
+      for (int tile = 0; tile < myTileCount; tile++) {
+        myStart[tile + 1] = myStart[tile] + counts[tile + 1];
+      }
+      myTriangles = new int[myStart[myTileCount]];
+      int[] next = counts;
+      System.arraycopy(myStart, 0, next, 0, myTileCount);
+      for (int t = 0; t < triangleCount; t++) {
+        int b = t * 4;
+        for (int row = tileBounds[b + 1]; row <= tileBounds[b + 3]; row++) {
+          for (int column = tileBounds[b]; column <= tileBounds[b + 2]; column++) {
+            myTriangles[next[row * myTileColumns + column]++] = t * 3;
+          }
+        }
+      }
+    }
+
+    /**
+     * Computes the pixels a triangle may cover the way the rasterizer does, with 28.4 fixed-point coordinates.
+     *
+     * @return false if the triangle doesn't cover any pixel of the image, otherwise the left, top, right and bottom bounds of the pixels,
+     * the right and bottom ones exclusive, are stored in the given array at the given offset
+     */
+    private static boolean pixelBounds(TriData tri, int i, int w, int h, int[] bounds, int offset) {
+      int p1 = tri.myIndex[i];
+      int p2 = tri.myIndex[i + 1];
+      int p3 = tri.myIndex[i + 2];
+      int x1 = (int)(16.0f * tri.myVert[p1] + .5f);
+      int x2 = (int)(16.0f * tri.myVert[p2] + .5f);
+      int x3 = (int)(16.0f * tri.myVert[p3] + .5f);
+      int y1 = (int)(16.0f * tri.myVert[p1 + 1] + .5f);
+      int y2 = (int)(16.0f * tri.myVert[p2 + 1] + .5f);
+      int y3 = (int)(16.0f * tri.myVert[p3 + 1] + .5f);
+      int minx = Math.max((Math.min(x1, Math.min(x2, x3)) + 0xF) >> 4, 0);
+      int maxx = Math.min((Math.max(x1, Math.max(x2, x3)) + 0xF) >> 4, w);
+      int miny = Math.max((Math.min(y1, Math.min(y2, y3)) + 0xF) >> 4, 0);
+      int maxy = Math.min((Math.max(y1, Math.max(y2, y3)) + 0xF) >> 4, h);
+      if (minx >= maxx || miny >= maxy) {
+        return false;
+      }
+      bounds[offset] = minx;
+      bounds[offset + 1] = miny;
+      bounds[offset + 2] = maxx;
+      bounds[offset + 3] = maxy;
+      return true;
+    }
+  }
+
+  /**
+   * Rasterizes a range of tiles, splitting it in halves until it only has one tile.
+   */
+  private static class RasterizeTiles extends RecursiveAction {
+    private final float[] myZBuffer;
+    private final int[] myRgb;
+    private final int myWidth;
+    private final int myHeight;
+    private final TriData myTriData;
+    private final int[] myTexture;
+    private final int myTextureWidth;
+    private final int myTextureHeight;
+    private final double[] myMatrix;
+    private final Bins myBins;
+    private final int myFirstTile;
+    private final int myEndTile;
+
+    RasterizeTiles(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix,
+                   Bins bins, int firstTile, int endTile) {
+      myZBuffer = zbuff;
+      myRgb = rgb;
+      myWidth = w;
+      myHeight = h;
+      myTriData = tri;
+      myTexture = texture;
+      myTextureWidth = tWidth;
+      myTextureHeight = tHeight;
+      myMatrix = matrix;
+      myBins = bins;
+      myFirstTile = firstTile;
+      myEndTile = endTile;
+    }
+
+    @Override
+    protected void compute() {
+      if (myEndTile - myFirstTile > 1) {
+        int middle = (myFirstTile + myEndTile) >>> 1;
+        invokeAll(split(myFirstTile, middle), split(middle, myEndTile));
+        return;
+      }
+      for (int tile = myFirstTile; tile < myEndTile; tile++) {
+        rasterizeTile(tile);
+      }
+    }
+
+    private RasterizeTiles split(int firstTile, int endTile) {
+      return new RasterizeTiles(myZBuffer, myRgb, myWidth, myHeight, myTriData, myTexture, myTextureWidth, myTextureHeight, myMatrix,
+                                myBins, firstTile, endTile);
+    }
+
+    private void rasterizeTile(int tile) {
+      int left = (tile % myBins.myTileColumns) << TILE_SHIFT;
+      int top = (tile / myBins.myTileColumns) << TILE_SHIFT;
+      int right = Math.min(left + TILE_SIZE, myWidth);
+      int bottom = Math.min(top + TILE_SIZE, myHeight);
+      for (int k = myBins.myStart[tile]; k < myBins.myStart[tile + 1]; k++) {
+        Rasterize.drawTriangle(myZBuffer, myRgb, myWidth, myHeight, left, top, right, bottom, myTriData, myBins.myTriangles[k],
+                               myTexture, myTextureWidth, myTextureHeight, myMatrix);
+      }
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import static com.android.SdkConstants.AAPT_URI;
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_LAYOUT_RESOURCE_PREFIX;
+import static com.android.SdkConstants.AUTO_URI;
+import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
+import static com.android.SdkConstants.PREFIX_THEME_REF;
+
+import android.view.View;
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.common.model.NlModel;
+import com.android.tools.idea.rendering.parsers.AttributeSnapshot;
+import com.android.tools.idea.rendering.parsers.TagSnapshot;
+import com.android.tools.idea.uibuilder.model.LayoutParamsManager;
+import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.xml.XmlTag;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Edit of a model that only changed layout params attributes, like {@code layout_width} or {@code layout_weight}, since the layout was
+ * last inflated. Such an edit can be applied to the views layoutlib already inflated, so that the next render only has to measure and
+ * draw them again instead of inflating the whole layout, and the components only need their bounds updated.
+ * <p>
+ * Any other kind of edit, like a changed tag, a new child or a changed view attribute, needs a full inflate.
+ */
+final class LayoutParamsUpdate {
+  @NotNull private final NlModel myModel;
+  @NotNull private final List<AttributeChange> myChanges;
+
+  private LayoutParamsUpdate(@NotNull NlModel model, @NotNull List<AttributeChange> changes) {
+    myModel = model;
+    myChanges = changes;
+  }
+
+  /**
+   * Compares the tags of the model with the snapshots they were last inflated from.
+   *
+   * @return the update, or null if the tags changed in any other way than layout params attributes, or didn't change at all
+   */
+  @Nullable
+  static LayoutParamsUpdate create(@NotNull NlModel model) {
+    return ApplicationManager.getApplication().runReadAction((Computable<LayoutParamsUpdate>)() -> {
+      List<AttributeChange> changes = new ArrayList<>();
+      for (NlComponent root : model.getComponents()) {
+        if (!collectChanges(root, changes)) {
+          return null;
+        }
+      }
+      return changes.isEmpty() ? null : new LayoutParamsUpdate(model, changes);
+    });
+  }
+
+  /**
+   * Adds the layout params attributes of the given component and its children that differ from their snapshots to the given list.
+   *
+   * @return false if anything else changed
+   */
+  private static boolean collectChanges(@NotNull NlComponent component, @NotNull List<AttributeChange> changes) {
+    TagSnapshot snapshot = component.getSnapshot();
+    XmlTag tag = component.getTag();
+    if (snapshot == null || snapshot.tag != tag || !tag.isValid() || !tag.getName().equals(snapshot.tagName)) {
+      return false;
+    }
+
+    Map<String, AttributeSnapshot> previousAttributes = new HashMap<>();
+    for (AttributeSnapshot attribute : snapshot.attributes) {
+      previousAttributes.put(attribute.namespace + ':' + attribute.name, attribute);
+    }
+    for (AttributeSnapshot attribute : AttributeSnapshot.createAttributesForTag(tag)) {
+      AttributeSnapshot previous = previousAttributes.remove(attribute.namespace + ':' + attribute.name);
+      if (previous == null || !Objects.equals(previous.value, attribute.value)) {
+        if (!isLayoutParamsAttribute(attribute.namespace, attribute.name, attribute.value)) {
+          return false;
+        }
+        changes.add(new AttributeChange(component, attribute.namespace, attribute.prefix, attribute.name, attribute.value));
+      }
+    }
+    for (AttributeSnapshot removed : previousAttributes.values()) {
+      if (!isLayoutParamsAttribute(removed.namespace, removed.name, null)) {
+        return false;
+      }
+      changes.add(new AttributeChange(component, removed.namespace, removed.prefix, removed.name, null));
+    }
+
+    List<NlComponent> children = component.getChildren();
+    XmlTag[] subTags = tag.getSubTags();
+    if (children.size() != subTags.length) {
+      return false;
+    }
+    for (int i = 0; i < subTags.length; i++) {
+      // aapt:attr tags are attributes of their parent.
+      if (AAPT_URI.equals(subTags[i].getNamespace()) || children.get(i).getTag() != subTags[i]) {
+        return false;
+      }
+      if (!collectChanges(children.get(i), changes)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the attribute can be set on the layout params of an inflated view. References are left to a full inflate, which
+   * resolves them.
+   */
+  private static boolean isLayoutParamsAttribute(@Nullable String namespace, @NotNull String name, @Nullable String value) {
+    return (ANDROID_URI.equals(namespace) || AUTO_URI.equals(namespace)) &&
+           name.startsWith(ATTR_LAYOUT_RESOURCE_PREFIX) &&
+           (value == null || !(value.startsWith(PREFIX_RESOURCE_REF) || value.startsWith(PREFIX_THEME_REF)));
+  }
+
+  /**
+   * Sets the changed attributes on the layout params of the views inflated for the components, requests a layout of these views and
+   * updates the snapshots of the components. Requesting a layout only invalidates the measurements of the views and of their parents, so
+   * the next render doesn't measure the unchanged parts of the hierarchy again.
+   *
+   * @return false if some of the attributes could not be set, in which case the layout has to be inflated again
+   */
+  boolean apply() {
+    Set<View> views = new LinkedHashSet<>();
+    for (AttributeChange change : myChanges) {
+      ViewInfo viewInfo = NlComponentHelperKt.getViewInfo(change.component);
+      Object view = viewInfo != null ? viewInfo.getViewObject() : null;
+      Object layoutParams = viewInfo != null ? viewInfo.getLayoutParamsObject() : null;
+      if (!(view instanceof View) || layoutParams == null) {
+        return false;
+      }
+      String attributeName = StringUtil.trimStart(change.name, ATTR_LAYOUT_RESOURCE_PREFIX);
+      if (!LayoutParamsManager.setAttribute(layoutParams, attributeName, change.value, myModel)) {
+        return false;
+      }
+      views.add((View)view);
+    }
+
+    try {
+      // The views are only touched by render actions on the thread of the task that inflated them, see AttributesTransaction.
+      myModel.runRenderAction(() -> {
+        for (View view : views) {
+          view.setLayoutParams(view.getLayoutParams());
+        }
+      });
+    }
+    catch (Exception e) {
+      return false;
+    }
+
+    for (AttributeChange change : myChanges) {
+      TagSnapshot snapshot = change.component.getSnapshot();
+      if (snapshot != null) {
+        snapshot.setAttribute(change.name, change.namespace, change.prefix, change.value);
+      }
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  @NotNull
+  List<String> getChangedAttributes() {
+    List<String> attributes = new ArrayList<>(myChanges.size());
+    for (AttributeChange change : myChanges) {
+      attributes.add(change.component.getTagName() + ' ' + change.name + '=' + change.value);
+    }
+    return attributes;
+  }
+
+  private static final class AttributeChange {
+    @NotNull final NlComponent component;
+    @Nullable final String namespace;
+    @Nullable final String prefix;
+    @NotNull final String name;
+    @Nullable final String value;
+
+    private AttributeChange(@NotNull NlComponent component,
+                            @Nullable String namespace,
+                            @Nullable String prefix,
+                            @NotNull String name,
+                            @Nullable String value) {
+      this.component = component;
+      this.namespace = namespace;
+      this.prefix = prefix;
+      this.name = name;
+      this.value = value;
+    }
+  }
+}
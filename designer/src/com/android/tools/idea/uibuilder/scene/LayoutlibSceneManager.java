@@ -45,7 +45,9 @@ import com.android.tools.idea.common.surface.SceneView;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
 import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderResult;
+import com.android.tools.idea.rendering.RenderResultCache;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderSettings;
 import com.android.tools.idea.rendering.RenderTask;
@@ -132,6 +134,12 @@ public class LayoutlibSceneManager extends SceneManager {
   // Protects all accesses to the myRenderTask reference. RenderTask calls to render and layout do not need to be protected
   // since RenderTask is able to handle those safely.
   private final Object myRenderingTaskLock = new Object();
+  /**
+   * Whether the views of {@link #myRenderTask} were updated in place by a {@link LayoutParamsUpdate} since it last rendered, in which case
+   * the components only need their bounds updated after the render.
+   */
+  @GuardedBy("myRenderingTaskLock")
+  private boolean myHasLayoutParamsUpdate;
   private ResourceNotificationManager.ResourceVersion myRenderedVersion;
   // Protects all read/write accesses to the myRenderResult reference
   private final ReentrantReadWriteLock myRenderResultLock = new ReentrantReadWriteLock();
@@ -139,6 +147,8 @@ public class LayoutlibSceneManager extends SceneManager {
   private RenderResult myRenderResult;
   @GuardedBy("myRenderResultLock")
   private RenderResult myLastSuccessfulRenderResult;
+  // Successful renders of recent configurations, shown again right away when going back to one of them. Shared by the project.
+  @NotNull private final RenderResultCache myRenderResultCache;
   // Variables to track previous values of the configuration bar for tracking purposes
   private String myPreviousDeviceName;
   private Locale myPreviousLocale;
@@ -192,6 +202,7 @@ public class LayoutlibSceneManager extends SceneManager {
     super(model, designSurface, settings);
     myRenderSettings = settings;
     myRenderTaskDisposerExecutor = renderTaskDisposerExecutor;
+    myRenderResultCache = RenderService.getInstance(model.getProject()).getRenderResultCache();
     createSceneView();
     updateTrackingConfiguration();
 
@@ -290,6 +301,7 @@ public class LayoutlibSceneManager extends SceneManager {
       finally {
         myRenderResultLock.writeLock().unlock();
       }
+      myRenderResultCache.removeAll(getModel().getFile());
     });
   }
 
@@ -739,9 +751,11 @@ public class LayoutlibSceneManager extends SceneManager {
       myUpdateHierarchyLock.acquire();
       try {
         if (result == null || !result.getRenderResult().isSuccess()) {
+          getModel().setRenderTask(null);
           updateHierarchy(Collections.emptyList(), getModel());
         }
         else {
+          getModel().setRenderTask(result.getRenderTask());
           updateHierarchy(getRootViews(result), getModel());
         }
       } finally {
@@ -753,6 +767,23 @@ public class LayoutlibSceneManager extends SceneManager {
     }
   }
 
+  /**
+   * Updates the bounds of the components from the given successful result, without syncing the component tree with the PSI first.
+   */
+  private void updateBounds(@NotNull RenderResult result) {
+    try {
+      myUpdateHierarchyLock.acquire();
+      try {
+        getModel().setRenderTask(result.getRenderTask());
+        updateBounds(getRootViews(result), getModel());
+      } finally {
+        myUpdateHierarchyLock.release();
+      }
+    }
+    catch (InterruptedException ignored) {
+    }
+  }
+
   @NotNull
   private List<ViewInfo> getRootViews(@NotNull RenderResult result) {
     return getModel().getType() == NlLayoutType.MENU ? result.getSystemRootViews() : result.getRootViews();
@@ -826,8 +857,10 @@ public class LayoutlibSceneManager extends SceneManager {
       }
 
       RenderService.RenderTaskBuilder renderTaskBuilder = renderService.taskBuilder(facet, configuration)
-                                                                       .withPsiFile(getModel().getFile());
+                                                                       .withPsiFile(getModel().getFile())
+                                                                       .withPriority(RenderExecutor.Priority.HIGH);
       myRenderTask = setupRenderTaskBuilder(renderTaskBuilder).build();
+      myHasLayoutParamsUpdate = false;
       if (myRenderTask != null) {
         myRenderTask.getLayoutlibCallback()
           .setAdaptiveIconMaskPath(getDesignSurface().getAdaptiveIconShape().getPathDescription());
@@ -901,10 +934,127 @@ public class LayoutlibSceneManager extends SceneManager {
    * {@link ModelListener#modelDerivedDataChanged(NlModel)}.
    */
   protected void updateModel() {
-    inflate(true);
+    if (isConfigurationSwitch(getModel().getLastChangeType()) && myRenderResultCache.contains(getRenderResultCacheKey())) {
+      // The render that follows the update will show the cached result, so inflating would be wasted. The render task is dropped
+      // since it was inflated for another configuration or version of the file.
+      synchronized (myRenderingTaskLock) {
+        if (myRenderTask != null) {
+          myRenderTask.dispose();
+          myRenderTask = null;
+        }
+      }
+    }
+    else if (!updateLayoutParams()) {
+      inflate(true);
+    }
     getModel().notifyListenersModelUpdateComplete();
   }
 
+  /**
+   * Applies an edit that only changed layout params attributes to the views that are already inflated, see {@link LayoutParamsUpdate}.
+   *
+   * @return whether the edit was applied, otherwise the layout has to be inflated again
+   */
+  private boolean updateLayoutParams() {
+    NlModel model = getModel();
+    if (model.getLastChangeType() != NlModel.ChangeType.EDIT) {
+      return false;
+    }
+    myRenderResultLock.readLock().lock();
+    try {
+      if (myRenderResult == null || !myRenderResult.getRenderResult().isSuccess()) {
+        return false;
+      }
+    }
+    finally {
+      myRenderResultLock.readLock().unlock();
+    }
+    LayoutParamsUpdate update = LayoutParamsUpdate.create(model);
+    if (update == null) {
+      return false;
+    }
+
+    RenderTask renderTask;
+    synchronized (myRenderingTaskLock) {
+      renderTask = myRenderTask;
+    }
+    // apply() waits for the render thread, so don't hold myRenderingTaskLock meanwhile or renders and disposal would block behind it.
+    if (renderTask == null || renderTask.isDisposed() || !update.apply()) {
+      return false;
+    }
+    synchronized (myRenderingTaskLock) {
+      if (myRenderTask != renderTask) {
+        // The task was replaced or disposed while the update was applied, so its views are gone.
+        return false;
+      }
+      myHasLayoutParamsUpdate = true;
+      // Record the version, as inflate does, so that activating the model again doesn't cause a new render.
+      myRenderedVersion = ResourceNotificationManager.getInstance(model.getProject())
+        .getCurrentVersion(model.getFacet(), model.getFile(), model.getConfiguration());
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the model changed to another configuration, like another device or theme. Only the renders of such changes are
+   * cached, since users often switch back and forth between configurations, while the results of edits, drags and animation frames are
+   * unlikely to be shown again.
+   */
+  private boolean isConfigurationSwitch(@Nullable NlModel.ChangeType changeType) {
+    return changeType == NlModel.ChangeType.CONFIGURATION_CHANGE && myElapsedFrameTimeMs == -1;
+  }
+
+  @NotNull
+  private Object getRenderResultCacheKey() {
+    NlModel model = getModel();
+    Configuration configuration = model.getConfiguration();
+    ResourceNotificationManager.ResourceVersion resourceVersion =
+      ResourceNotificationManager.getInstance(model.getProject()).getCurrentVersion(model.getFacet(), model.getFile(), null);
+    RenderSettings settings = myRenderSettings;
+    return RenderResultCache.createKey(model.getFile(), configuration, resourceVersion,
+                                       settings.getQuality(), settings.getShowDecorations(), getDesignSurface().getAdaptiveIconShape(),
+                                       myElapsedFrameTimeMs);
+  }
+
+  /**
+   * Shows the cached result of a previous render of the current state of the model, if there is one and the model hasn't been inflated
+   * since it last changed.
+   *
+   * @return whether a cached result was shown
+   */
+  private boolean showCachedRenderResult(@NotNull Object cacheKey) {
+    synchronized (myRenderingTaskLock) {
+      if (myRenderTask != null) {
+        return false;
+      }
+    }
+    RenderResult result = myRenderResultCache.get(cacheKey);
+    if (result == null) {
+      return false;
+    }
+
+    // Record the version, as inflate does, so that activating the model again doesn't cause a new render.
+    NlModel model = getModel();
+    myRenderedVersion = ResourceNotificationManager.getInstance(model.getProject())
+      .getCurrentVersion(model.getFacet(), model.getFile(), model.getConfiguration());
+    updateHierarchy(result);
+    myRenderResultLock.writeLock().lock();
+    try {
+      updateCachedRenderResult(result);
+    }
+    finally {
+      myRenderResultLock.writeLock().unlock();
+    }
+
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (!Disposer.isDisposed(this)) {
+        update();
+      }
+    });
+    fireRenderListeners();
+    return true;
+  }
+
   /**
    * Renders the current model synchronously. Once the render is complete, the render callbacks will be called.
    * <p/>
@@ -954,17 +1104,26 @@ public class LayoutlibSceneManager extends SceneManager {
       }
     }
 
+    boolean isConfigurationSwitch = isConfigurationSwitch(getModel().getLastChangeType());
     getModel().resetLastChange();
+    // The key is taken before rendering so that a result is never cached under the key of changes made during the render.
+    Object cacheKey = isConfigurationSwitch ? getRenderResultCacheKey() : null;
+    if (cacheKey != null && showCachedRenderResult(cacheKey)) {
+      return;
+    }
     long renderStartTimeMs = System.currentTimeMillis();
     boolean inflated = inflate(false);
     long elapsedFrameTimeMs = myElapsedFrameTimeMs;
 
     Future<RenderResult> futureResult;
+    boolean hasLayoutParamsUpdate;
     synchronized (myRenderingTaskLock) {
       if (myRenderTask == null) {
         getDesignSurface().updateErrorDisplay();
         return;
       }
+      hasLayoutParamsUpdate = myHasLayoutParamsUpdate;
+      myHasLayoutParamsUpdate = false;
       if (elapsedFrameTimeMs != -1) {
         myRenderTask.setElapsedFrameTimeNanos(TimeUnit.MILLISECONDS.toNanos(elapsedFrameTimeMs));
       }
@@ -974,7 +1133,16 @@ public class LayoutlibSceneManager extends SceneManager {
     RenderResult result = Futures.getUnchecked(futureResult);
     // When the layout was inflated in this same call, we do not have to update the hierarchy again
     if (result != null && !inflated) {
-      updateHierarchy(result);
+      if (hasLayoutParamsUpdate && result.getRenderResult().isSuccess()) {
+        // The components still match the views, only their bounds may have changed.
+        updateBounds(result);
+      }
+      else {
+        updateHierarchy(result);
+      }
+    }
+    if (result != null && cacheKey != null) {
+      myRenderResultCache.put(cacheKey, result);
     }
     myRenderResultLock.writeLock().lock();
     try {
@@ -31,6 +31,8 @@ import static com.android.testutils.TestUtils.getWorkspaceFile;
   DesignerTestSuite.class,
   NlDesignSurfaceTest.class, // Flaky
   com.android.tools.idea.uibuilder.property.NlXmlPropertyBuilderTest.class,  // b/110329807
+  com.android.tools.idea.uibuilder.layout3d.RasterizePerformanceTest.class, // Performance test only runs on perf buildbot
+  com.android.tools.idea.common.scene.ScenePickerPerformanceTest.class, // Performance test only runs on perf buildbot
 })
 public class DesignerTestSuite extends IdeaTestSuiteBase {
 
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.scene;
+
+import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DrawCommand;
+import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.rendering.imagepool.ImagePoolFactory;
+import com.android.tools.idea.uibuilder.handlers.constraint.drawing.AndroidColorSet;
+import com.android.tools.idea.uibuilder.handlers.constraint.drawing.ColorSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DisplayTest {
+  private static final Rectangle BOUNDS = new Rectangle(10, 20, 60, 40);
+  private static final Color COLOR = new Color(0x12, 0x34, 0x56);
+
+  private CountingImagePool myImagePool;
+  private Display myDisplay;
+  private Scene myScene;
+  private SceneContext mySceneContext;
+  private BufferedImage myTarget;
+  private long myDisplayListVersion = 1;
+  private boolean myFollowsMouse;
+  private int myPaintCount;
+
+  @Before
+  public void setUp() {
+    myImagePool = new CountingImagePool(ImagePoolFactory.createImagePool());
+    myDisplay = new Display(myImagePool);
+    myScene = mock(Scene.class);
+    when(myScene.getDisplayListVersion()).thenAnswer(invocation -> myDisplayListVersion);
+    doAnswer(invocation -> {
+      ((DisplayList)invocation.getArgument(0)).add(new FillCommand());
+      return null;
+    }).when(myScene).buildDisplayList(any(DisplayList.class), anyLong(), any(SceneContext.class));
+    mySceneContext = SceneContext.get();
+    myTarget = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+  }
+
+  @After
+  public void tearDown() {
+    myDisplay.dispose();
+    myImagePool.dispose();
+  }
+
+  @Test
+  public void unchangedDisplayListIsDrawnFromImage() {
+    draw(null, null);
+    assertEquals(1, myPaintCount);
+    assertEquals(0, myImagePool.myCreatedCount);
+
+    // The second paint shows that the display list doesn't animate, so it's kept in an image.
+    draw(null, null);
+    assertEquals(2, myPaintCount);
+    assertEquals(1, myImagePool.myCreatedCount);
+
+    myTarget = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+    draw(null, new Rectangle(30, 30, 10, 10));
+    assertEquals(2, myPaintCount);
+    assertEquals(1, myImagePool.myCreatedCount);
+    assertEquals(COLOR.getRGB(), myTarget.getRGB(35, 35));
+    assertEquals(0, myTarget.getRGB(25, 35));
+  }
+
+  @Test
+  public void newDisplayListVersionIsPaintedDirectly() {
+    draw(null, null);
+    draw(null, null);
+
+    myDisplayListVersion++;
+    draw(null, null);
+    assertEquals(3, myPaintCount);
+    assertEquals(1, myImagePool.myCreatedCount);
+  }
+
+  @Test
+  public void otherTransformIsNotDrawnFromImage() {
+    draw(null, null);
+    draw(null, null);
+
+    draw(AffineTransform.getTranslateInstance(5, 0), null);
+    assertEquals(3, myPaintCount);
+    assertEquals(2, myImagePool.myCreatedCount);
+
+    // A transform that the image can't be drawn back with is painted directly.
+    draw(AffineTransform.getRotateInstance(0.1), null);
+    assertEquals(4, myPaintCount);
+    assertEquals(2, myImagePool.myCreatedCount);
+  }
+
+  @Test
+  public void otherColorSetIsNotDrawnFromImage() {
+    draw(null, null);
+    draw(null, null);
+
+    ColorSet colorSet = mySceneContext.getColorSet();
+    mySceneContext.myColorSet = new AndroidColorSet();
+    try {
+      draw(null, null);
+    }
+    finally {
+      mySceneContext.myColorSet = colorSet;
+    }
+    assertEquals(3, myPaintCount);
+    assertEquals(2, myImagePool.myCreatedCount);
+  }
+
+  @Test
+  public void displayListFollowingTheMouseIsPaintedDirectly() {
+    myFollowsMouse = true;
+    for (int i = 1; i <= 3; i++) {
+      draw(null, null);
+      assertEquals(i, myPaintCount);
+    }
+    assertEquals(0, myImagePool.myCreatedCount);
+  }
+
+  private void draw(@Nullable AffineTransform transform, @Nullable Rectangle clip) {
+    Graphics2D g = myTarget.createGraphics();
+    try {
+      if (transform != null) {
+        g.transform(transform);
+      }
+      if (clip != null) {
+        g.clipRect(clip.x, clip.y, clip.width, clip.height);
+      }
+      myDisplay.draw(mySceneContext, g, myScene, BOUNDS);
+    }
+    finally {
+      g.dispose();
+    }
+  }
+
+  /**
+   * Fills the bounds, and reads the mouse position if the display list follows the mouse.
+   */
+  private class FillCommand implements DrawCommand {
+    @Override
+    public int getLevel() {
+      return COMPONENT_LEVEL;
+    }
+
+    @Override
+    public void paint(Graphics2D g, SceneContext sceneContext) {
+      myPaintCount++;
+      if (myFollowsMouse) {
+        sceneContext.getMouseX();
+      }
+      g.setColor(COLOR);
+      g.fillRect(BOUNDS.x + 10, BOUNDS.y + 10, BOUNDS.width - 20, BOUNDS.height - 20);
+    }
+
+    @Override
+    public String serialize() {
+      return "FillCommand";
+    }
+  }
+
+  private static class CountingImagePool implements ImagePool {
+    private final ImagePool myDelegate;
+    private int myCreatedCount;
+
+    private CountingImagePool(@NotNull ImagePool delegate) {
+      myDelegate = delegate;
+    }
+
+    @NotNull
+    @Override
+    public Image create(int w, int h, int type) {
+      myCreatedCount++;
+      return myDelegate.create(w, h, type);
+    }
+
+    @NotNull
+    @Override
+    public Image copyOf(@Nullable BufferedImage origin) {
+      return myDelegate.copyOf(origin);
+    }
+
+    @Nullable
+    @Override
+    public Stats getStats() {
+      return myDelegate.getStats();
+    }
+
+    @Override
+    public void dispose() {
+      myDelegate.dispose();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.scene;
+
+import com.android.tools.idea.testing.Benchmarks;
+import com.android.tools.perflogger.Benchmark;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how long {@link ScenePicker} takes to add the hit shapes of a ConstraintLayout scene and search them once, and then to find
+ * the shapes under the mouse as it moves over the same scene, for scenes of {@link #COMPONENT_COUNTS} components.
+ */
+public class ScenePickerPerformanceTest {
+  private static final int[] COMPONENT_COUNTS = {100, 300, 1000};
+  private static final int COLUMNS = 10;
+  private static final int COMPONENT_WIDTH = 200;
+  private static final int COMPONENT_HEIGHT = 60;
+  private static final int ANCHOR_SIZE = 8;
+  private static final int WARM_UP_ITERATIONS = 200;
+  private static final int ITERATIONS = 2000;
+  private static final int FINDS_PER_ITERATION = 10;
+  private static final Benchmark BENCHMARK = new Benchmark.Builder("ScenePicker Hit Testing").setProject("Android Studio").build();
+
+  @Test
+  public void pickingLatency() {
+    for (int componentCount : COMPONENT_COUNTS) {
+      ScenePicker picker = new ScenePicker();
+      int[] hits = new int[1];
+      picker.setSelectListener((over, distance) -> hits[0]++);
+      Random random = new Random(componentCount);
+      int width = COLUMNS * COMPONENT_WIDTH * 2;
+      int height = (componentCount / COLUMNS + 1) * COMPONENT_HEIGHT * 2;
+
+      for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+        addScene(picker, componentCount);
+        picker.find(random.nextInt(width), random.nextInt(height));
+      }
+
+      long updateTimeNs = 0;
+      long findTimeNs = 0;
+      for (int i = 0; i < ITERATIONS; i++) {
+        // The first search after the scene changed, which tests all the shapes.
+        long startTime = System.nanoTime();
+        addScene(picker, componentCount);
+        picker.find(random.nextInt(width), random.nextInt(height));
+        updateTimeNs += System.nanoTime() - startTime;
+
+        // The searches while the mouse moves over the same scene, which use the index.
+        startTime = System.nanoTime();
+        for (int j = 0; j < FINDS_PER_ITERATION; j++) {
+          picker.find(random.nextInt(width), random.nextInt(height));
+        }
+        findTimeNs += System.nanoTime() - startTime;
+      }
+      assertTrue(hits[0] > 0);
+
+      report(componentCount, updateTimeNs / ITERATIONS, findTimeNs / (ITERATIONS * FINDS_PER_ITERATION));
+    }
+  }
+
+  /**
+   * Registers the shapes a scene of the given number of components in a grid would, the way {@link SceneComponent#addHit} does: the
+   * component, its four anchors and four resize handles, and a connection to the previous component.
+   */
+  private static void addScene(@NotNull ScenePicker picker, int componentCount) {
+    picker.reset();
+    picker.addRect("root", 0, 0, 0, COLUMNS * COMPONENT_WIDTH * 2, (componentCount / COLUMNS + 1) * COMPONENT_HEIGHT * 2);
+    for (int i = 0; i < componentCount; i++) {
+      int left = (i % COLUMNS) * COMPONENT_WIDTH * 2;
+      int top = (i / COLUMNS) * COMPONENT_HEIGHT * 2;
+      int right = left + COMPONENT_WIDTH;
+      int bottom = top + COMPONENT_HEIGHT;
+      int centerX = (left + right) / 2;
+      int centerY = (top + bottom) / 2;
+      picker.addRect(i, 0, left, top, right, bottom);
+      addSquare(picker, i, centerX, top);
+      addSquare(picker, i, centerX, bottom);
+      addSquare(picker, i, left, centerY);
+      addSquare(picker, i, right, centerY);
+      addSquare(picker, i, left, top);
+      addSquare(picker, i, right, top);
+      addSquare(picker, i, left, bottom);
+      addSquare(picker, i, right, bottom);
+      if (i % COLUMNS != 0) {
+        int middle = left - COMPONENT_WIDTH / 2;
+        picker.addCurveTo(i, 4, left, centerY, middle, centerY, middle, centerY, left - COMPONENT_WIDTH, centerY, 1);
+      }
+    }
+  }
+
+  private static void addSquare(@NotNull ScenePicker picker, @NotNull Object target, int x, int y) {
+    picker.addRect(target, 0, x - ANCHOR_SIZE / 2, y - ANCHOR_SIZE / 2, x + ANCHOR_SIZE / 2, y + ANCHOR_SIZE / 2);
+  }
+
+  private static void report(int componentCount, long updateTimeNs, long findTimeNs) {
+    Benchmarks.report(BENCHMARK, componentCount + " Components Update Time (ns)", updateTimeNs);
+    Benchmarks.report(BENCHMARK, componentCount + " Components Find Time (ns)", findTimeNs);
+  }
+}
@@ -19,6 +19,10 @@ import junit.framework.TestCase;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Test ScenePicker
@@ -378,4 +382,63 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  public void testManyObjectsAreFoundInOrder() {
+    ScenePicker scenePicker = new ScenePicker();
+    scenePicker.reset();
+    // A grid of small rectangles overlapped by a large one, in several cells of the index and at negative coordinates.
+    for (int i = 0; i < 400; i++) {
+      int x = (i % 20) * 50 - 500;
+      int y = (i / 20) * 50 - 500;
+      scenePicker.addRect(i, 0, x, y, x + 40, y + 40);
+    }
+    scenePicker.addRect(400, 0, -1000, -1000, 1000, 1000);
+
+    List<Object> found = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> found.add(obj));
+    scenePicker.find(-500 + 7 * 50 + 20, -500 + 3 * 50 + 40);
+    assertEquals(Arrays.asList(3 * 20 + 7, 400), found);
+
+    found.clear();
+    scenePicker.find(-500 + 45, -500 + 45);
+    assertEquals(Collections.singletonList(400), found);
+
+    found.clear();
+    scenePicker.reset();
+    scenePicker.find(0, 0);
+    assertTrue(found.isEmpty());
+  }
+
+  public void testSceneGridIsReindexedAfterReset() {
+    ScenePicker scenePicker = new ScenePicker();
+    List<Object> found = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> found.add(obj));
+    // A grid of components, registered again shifted to the right as when the scene is painted after a change.
+    for (int shift = 0; shift <= 100; shift += 100) {
+      scenePicker.reset();
+      for (int i = 0; i < 30; i++) {
+        int left = (i % 10) * 200 + shift;
+        int top = (i / 10) * 100;
+        scenePicker.addRect(i, 0, left, top, left + 150, top + 60);
+      }
+
+      for (int i = 0; i < 30; i++) {
+        int left = (i % 10) * 200 + shift;
+        int top = (i / 10) * 100;
+        found.clear();
+        scenePicker.find(left + 75, top + 30);
+        assertEquals(Collections.singletonList(i), found);
+
+        // Between two components
+        found.clear();
+        scenePicker.find(left + 175, top + 30);
+        assertTrue(found.isEmpty());
+      }
+    }
+
+    // The first grid is gone
+    found.clear();
+    scenePicker.find(50, 30);
+    assertTrue(found.isEmpty());
+  }
 }
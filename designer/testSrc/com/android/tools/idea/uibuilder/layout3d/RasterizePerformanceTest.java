@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import com.android.tools.idea.testing.Benchmarks;
+import com.android.tools.perflogger.Benchmark;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Measures how long the 3D view of synthetic view hierarchies takes to rasterize with {@link Rasterize} and with
+ * {@link TiledRasterizer} on pools of 1, 2, 4... threads, up to the number of processors, and checks that both give the same image.
+ * <p>
+ * It only runs on the perf buildbot, see {@link com.android.tools.idea.DesignerTestSuite}.
+ */
+public class RasterizePerformanceTest {
+  private static final int SCREEN_WIDTH = 1920;
+  private static final int SCREEN_HEIGHT = 1080;
+  private static final int LAYOUT_WIDTH = 1080;
+  private static final int LAYOUT_HEIGHT = 1920;
+  /**
+   * The depths and number of children per view of the hierarchies, which have 85, 341 and 1365 views.
+   */
+  private static final int[][] HIERARCHIES = {{4, 4}, {5, 4}, {6, 4}};
+  private static final int WARM_UP_ITERATIONS = 2;
+  private static final int ITERATIONS = 10;
+  private static final Benchmark BENCHMARK = new Benchmark.Builder("Layout 3D Rasterization").setProject("Android Studio").build();
+
+  @Test
+  public void rasterizationTime() {
+    for (int[] hierarchy : HIERARCHIES) {
+      Layout.View root = new Layout.View(0, 0, LAYOUT_WIDTH, LAYOUT_HEIGHT);
+      int viewCount = 1 + addChildren(root, hierarchy[0] - 1, hierarchy[1]);
+      Layout layout = new Layout(createTexture(), root);
+      TriData transformed = transform(layout);
+
+      float[] zbuff = new float[SCREEN_WIDTH * SCREEN_HEIGHT];
+      int[] rgb = new int[SCREEN_WIDTH * SCREEN_HEIGHT];
+      long serialTimeNs = time(() -> Rasterize.toZBuff(zbuff, rgb, SCREEN_WIDTH, SCREEN_HEIGHT, transformed, layout.myTexture,
+                                                       layout.myTextureWidth, layout.myTextureHeight, null), zbuff, rgb);
+      report(viewCount + " Views Serial Time (ns)", serialTimeNs);
+      float[] serialZBuff = zbuff.clone();
+      int[] serialRgb = rgb.clone();
+
+      int processors = Runtime.getRuntime().availableProcessors();
+      for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+          TiledRasterizer rasterizer = new TiledRasterizer(pool);
+          long tiledTimeNs = time(() -> rasterizer.toZBuff(zbuff, rgb, SCREEN_WIDTH, SCREEN_HEIGHT, transformed, layout.myTexture,
+                                                           layout.myTextureWidth, layout.myTextureHeight, null), zbuff, rgb);
+          report(viewCount + " Views " + threads + " Threads Time (ns)", tiledTimeNs);
+        }
+        finally {
+          pool.shutdown();
+        }
+        assertArrayEquals(serialZBuff, zbuff, 0);
+        assertArrayEquals(serialRgb, rgb);
+        if (threads == processors) {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the given number of children to the view, each a bit smaller than the previous one, and the same to the children until the
+   * hierarchy has the given depth.
+   *
+   * @return the number of views added
+   */
+  private static int addChildren(@NotNull Layout.View view, int depth, int childCount) {
+    if (depth == 0) {
+      return 0;
+    }
+    int count = 0;
+    float height = view.height / childCount;
+    for (int i = 0; i < childCount; i++) {
+      Layout.View child = new Layout.View(view.x + 10, view.y + i * height + 10, view.width - 20, height - 20);
+      view.addChild(child);
+      count += 1 + addChildren(child, depth - 1, childCount);
+    }
+    return count;
+  }
+
+  @NotNull
+  private static BufferedImage createTexture() {
+    BufferedImage image = new BufferedImage(LAYOUT_WIDTH, LAYOUT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    int[] data = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < data.length; i++) {
+      data[i] = 0xFF000000 | ((i % LAYOUT_WIDTH) * 255 / LAYOUT_WIDTH) << 16 | ((i / LAYOUT_WIDTH) * 255 / LAYOUT_HEIGHT) << 8;
+    }
+    return image;
+  }
+
+  /**
+   * Projects the layout the way {@link Display3D} does, after rotating it like a drag with the mouse would.
+   */
+  @NotNull
+  private static TriData transform(@NotNull Layout layout) {
+    ViewMatrix viewMatrix = new ViewMatrix();
+    viewMatrix.look(ViewMatrix.UP_AT, layout, SCREEN_WIDTH, SCREEN_HEIGHT);
+    viewMatrix.setScreenWidth(1920);
+    viewMatrix.calcMatrix();
+    viewMatrix.trackBallDown(SCREEN_WIDTH / 2, SCREEN_HEIGHT / 2);
+    viewMatrix.trackBallMove(SCREEN_WIDTH / 2 + 200, SCREEN_HEIGHT / 2 + 100);
+    TriData transformed = new TriData(layout);
+    layout.transform(viewMatrix.invers(), transformed);
+    return transformed;
+  }
+
+  private static long time(@NotNull Runnable rasterization, @NotNull float[] zbuff, @NotNull int[] rgb) {
+    return Benchmarks.averageTimeNs(WARM_UP_ITERATIONS, ITERATIONS, () -> clear(zbuff, rgb), rasterization);
+  }
+
+  private static void clear(@NotNull float[] zbuff, @NotNull int[] rgb) {
+    Arrays.fill(zbuff, Float.MAX_VALUE);
+    Arrays.fill(rgb, 0xFF000000);
+  }
+
+  private static void report(@NotNull String metricName, long timeNs) {
+    Benchmarks.report(BENCHMARK, metricName, timeNs);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TiledRasterizerTest {
+  // Not a multiple of the tile size, so that the last tiles of the rows and columns are partial.
+  private static final int WIDTH = 150;
+  private static final int HEIGHT = 100;
+
+  private ForkJoinPool myPool;
+  private TiledRasterizer myRasterizer;
+
+  @Before
+  public void setUp() {
+    myPool = new ForkJoinPool(4);
+    myRasterizer = new TiledRasterizer(myPool);
+  }
+
+  @After
+  public void tearDown() {
+    myPool.shutdown();
+  }
+
+  @Test
+  public void simpleMatchesSerialRasterization() {
+    // Overlapping triangles straddling the tile edges at x = 64, x = 128 and y = 64, one of them partly outside of the image.
+    TriData tri = new TriData();
+    tri.myVert = new float[]{
+      10, 10, 5, 140, 30, 5, 60, 95, 5,
+      50, 5, 2, 80, 90, 8, 20, 70, 2,
+      120, 40, 1, 170, 60, 1, 100, 120, 1,
+      63.5f, 63.5f, 0, 64.5f, 63.5f, 0, 64.5f, 64.5f, 0,
+    };
+    tri.myIndex = new int[]{0, 3, 6, 9, 12, 15, 18, 21, 24, 27, 30, 33};
+    tri.mySurfaceType = new int[]{0, 1, 0, 1};
+
+    float[] zbuff = new float[WIDTH * HEIGHT];
+    int[] rgb = new int[WIDTH * HEIGHT];
+    clear(zbuff, rgb);
+    Rasterize.simple(zbuff, rgb, WIDTH, HEIGHT, tri);
+    float[] serialZBuff = zbuff.clone();
+    int[] serialRgb = rgb.clone();
+
+    clear(zbuff, rgb);
+    myRasterizer.simple(zbuff, rgb, WIDTH, HEIGHT, tri);
+    assertArrayEquals(serialZBuff, zbuff, 0);
+    assertArrayEquals(serialRgb, rgb);
+    assertTrue(zbuff[70 * WIDTH + 70] < Float.MAX_VALUE);
+  }
+
+  @Test
+  public void toZBuffMatchesSerialRasterization() {
+    Layout.View root = new Layout.View(0, 0, 80, 120);
+    root.addChild(new Layout.View(10, 10, 60, 50), new Layout.View(10, 60, 60, 50));
+    BufferedImage texture = new BufferedImage(80, 120, BufferedImage.TYPE_INT_ARGB);
+    int[] data = ((DataBufferInt)texture.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < data.length; i++) {
+      data[i] = 0xFF000000 | (i % 80) * 3 << 16 | (i / 80) * 2 << 8;
+    }
+    Layout layout = new Layout(texture, root);
+
+    ViewMatrix viewMatrix = new ViewMatrix();
+    viewMatrix.look(ViewMatrix.UP_AT, layout, WIDTH, HEIGHT);
+    viewMatrix.calcMatrix();
+    viewMatrix.trackBallDown(WIDTH / 2, HEIGHT / 2);
+    viewMatrix.trackBallMove(WIDTH / 2 + 20, HEIGHT / 2 + 10);
+    TriData transformed = new TriData(layout);
+    layout.transform(viewMatrix.invers(), transformed);
+
+    float[] zbuff = new float[WIDTH * HEIGHT];
+    int[] rgb = new int[WIDTH * HEIGHT];
+    clear(zbuff, rgb);
+    Rasterize.toZBuff(zbuff, rgb, WIDTH, HEIGHT, transformed, layout.myTexture, layout.myTextureWidth, layout.myTextureHeight,
+                      viewMatrix.m);
+    float[] serialZBuff = zbuff.clone();
+    int[] serialRgb = rgb.clone();
+
+    clear(zbuff, rgb);
+    myRasterizer.toZBuff(zbuff, rgb, WIDTH, HEIGHT, transformed, layout.myTexture, layout.myTextureWidth, layout.myTextureHeight,
+                         viewMatrix.m);
+    assertArrayEquals(serialZBuff, zbuff, 0);
+    assertArrayEquals(serialRgb, rgb);
+  }
+
+  private static void clear(@NotNull float[] zbuff, @NotNull int[] rgb) {
+    Arrays.fill(zbuff, Float.MAX_VALUE);
+    Arrays.fill(rgb, 0xFF000000);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_LAYOUT_WEIGHT;
+import static com.android.SdkConstants.ATTR_LAYOUT_WIDTH;
+import static com.android.SdkConstants.ATTR_TEXT;
+import static com.android.SdkConstants.BUTTON;
+import static com.android.SdkConstants.LINEAR_LAYOUT;
+import static com.android.SdkConstants.TEXT_VIEW;
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+
+import android.view.View;
+import android.view.ViewGroup;
+import com.android.tools.idea.common.SyncNlModel;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.common.model.NlModel;
+import com.android.tools.idea.rendering.RenderTask;
+import com.android.tools.idea.uibuilder.LayoutTestCase;
+import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
+import com.intellij.openapi.command.WriteCommandAction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class LayoutParamsUpdateTest extends LayoutTestCase {
+  private NlModel myModel;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myModel = model("linear.xml", component(LINEAR_LAYOUT)
+      .withBounds(0, 0, 1000, 1000)
+      .matchParentWidth()
+      .matchParentHeight()
+      .children(
+        component(TEXT_VIEW)
+          .withBounds(100, 100, 100, 100)
+          .id("@id/text")
+          .width("100dp")
+          .height("100dp"),
+        component(BUTTON)
+          .withBounds(100, 200, 100, 100)
+          .id("@id/button")
+          .width("100dp")
+          .height("100dp")
+          .withAttribute("android:layout_weight", "1.0")
+      )).build();
+  }
+
+  public void testUnchangedModel() {
+    assertThat(LayoutParamsUpdate.create(myModel)).isNull();
+  }
+
+  public void testLayoutParamsAttributesChanged() {
+    setAttribute("text", ATTR_LAYOUT_WIDTH, "200dp");
+    setAttribute("button", ATTR_LAYOUT_WEIGHT, null);
+
+    LayoutParamsUpdate update = LayoutParamsUpdate.create(myModel);
+    assertThat(update).isNotNull();
+    assertThat(update.getChangedAttributes()).containsExactly("TextView layout_width=200dp", "Button layout_weight=null");
+  }
+
+  public void testViewAttributeChanged() {
+    setAttribute("text", ATTR_LAYOUT_WIDTH, "200dp");
+    setAttribute("text", ATTR_TEXT, "Hello");
+
+    assertThat(LayoutParamsUpdate.create(myModel)).isNull();
+  }
+
+  public void testReferenceNeedsInflate() {
+    setAttribute("text", ATTR_LAYOUT_WIDTH, "@dimen/width");
+
+    assertThat(LayoutParamsUpdate.create(myModel)).isNull();
+  }
+
+  public void testNewChildNeedsInflate() {
+    NlComponent layout = myModel.getComponents().get(0);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      layout.getTag().addSubTag(layout.getTag().createChildTag(TEXT_VIEW, null, null, false), false);
+    });
+
+    assertThat(LayoutParamsUpdate.create(myModel)).isNull();
+  }
+
+  public void testApplyUpdatesViewsAndSnapshot() throws Exception {
+    ViewGroup.LayoutParams layoutParams = new ViewGroup.LayoutParams(100, 100);
+    NlModel model = model("linear_views.xml", component(LINEAR_LAYOUT)
+      .withBounds(0, 0, 1000, 1000)
+      .matchParentWidth()
+      .matchParentHeight()
+      .children(
+        component(TEXT_VIEW)
+          .withBounds(100, 100, 100, 100)
+          .id("@id/text")
+          .width("100px")
+          .height("100px")
+          .withMockView()
+          .layoutParamsObject(layoutParams)
+      )).build();
+    setAttribute(model, "text", ATTR_LAYOUT_WIDTH, "200px");
+
+    LayoutParamsUpdate update = LayoutParamsUpdate.create(model);
+    assertThat(update).isNotNull();
+    assertThat(update.apply()).isTrue();
+
+    NlComponent text = model.find("text");
+    assertThat(layoutParams.width).isEqualTo(200);
+    verify((View)NlComponentHelperKt.getViewInfo(text).getViewObject()).setLayoutParams(any());
+    assertThat(text.getSnapshot().getAttribute(ATTR_LAYOUT_WIDTH, ANDROID_URI)).isEqualTo("200px");
+    // The snapshot matches the tag again, so there is nothing left to update
+    assertThat(LayoutParamsUpdate.create(model)).isNull();
+  }
+
+  public void testSceneManagerUpdatesBoundsWithoutInflating() throws Exception {
+    myModel.getConfiguration().setTheme("android:Theme.NoTitleBar.Fullscreen");
+    LayoutlibSceneManager manager = (LayoutlibSceneManager)((SyncNlModel)myModel).getSurface().getSceneManager();
+    manager.requestRender().get();
+    assertThat(manager.getRenderResult().getRenderResult().isSuccess()).isTrue();
+    RenderTask renderTask = manager.getRenderResult().getRenderTask();
+    int width = NlComponentHelperKt.getW(myModel.find("text"));
+
+    setAttribute("text", ATTR_LAYOUT_WIDTH, "200dp");
+    myModel.notifyModified(NlModel.ChangeType.EDIT);
+    manager.requestRender().get();
+
+    assertThat(manager.getRenderResult().getRenderResult().isSuccess()).isTrue();
+    assertThat(manager.getRenderResult().getRenderTask()).isSameAs(renderTask);
+    assertThat(NlComponentHelperKt.getW(myModel.find("text"))).isGreaterThan(width);
+  }
+
+  private void setAttribute(@NotNull String id, @NotNull String name, @Nullable String value) {
+    setAttribute(myModel, id, name, value);
+  }
+
+  private void setAttribute(@NotNull NlModel model, @NotNull String id, @NotNull String name, @Nullable String value) {
+    NlComponent component = model.find(id);
+    assertThat(component).isNotNull();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> component.getTag().setAttribute(name, ANDROID_URI, value));
+  }
+}
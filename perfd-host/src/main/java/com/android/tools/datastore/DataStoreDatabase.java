@@ -15,19 +15,34 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.TimeSeriesStore;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 public class DataStoreDatabase {
+  /**
+   * The open databases by connection, so that the tables initialized on a connection are tracked by its database.
+   */
+  private static final Map<Connection, DataStoreDatabase> ourOpenDatabases = new ConcurrentHashMap<>();
+
   public enum Characteristic {
     // TODO handle potential db file name clashes
     DURABLE,
-    PERFORMANT
+    PERFORMANT,
+    /**
+     * Same as {@link #PERFORMANT}, but sampled data is kept in primitive columns in a {@link TimeSeriesStore} instead of SQL tables.
+     */
+    TIME_SERIES
   }
 
   @NotNull
@@ -39,6 +54,13 @@ public class DataStoreDatabase {
 
   private final Connection myConnection;
 
+  @Nullable private final TimeSeriesStore myTimeSeriesStore;
+
+  /**
+   * The tables initialized on {@link #myConnection}, whose queued rows are written before it is closed.
+   */
+  private final Set<DataStoreTable<?>> myTables = ConcurrentHashMap.newKeySet();
+
   /**
    * @param dbPath the path to the backing DB file, if {@link Characteristic#DURABLE}.
    */
@@ -53,6 +75,7 @@ public class DataStoreDatabase {
                            @NotNull LogService logService,
                            @NotNull Consumer<Throwable> noPiiExceptionHandler) {
     myLogService = logService;
+    myTimeSeriesStore = characteristic == Characteristic.TIME_SERIES ? new TimeSeriesStore() : null;
     Connection connection = null;
     try {
       // For older versions of the JDBC we need to force load the sqlite.JDBC driver to trigger static initializer's and register
@@ -61,6 +84,7 @@ public class DataStoreDatabase {
 
       switch (characteristic) {
         case PERFORMANT:
+        case TIME_SERIES:
           connection = DriverManager.getConnection("jdbc:sqlite::memory:");
           break;
         case DURABLE:
@@ -98,9 +122,34 @@ public class DataStoreDatabase {
       noPiiExceptionHandler.accept(e);
     }
     myConnection = connection;
+    if (connection != null) {
+      ourOpenDatabases.put(connection, this);
+    }
   }
 
+  /**
+   * Called by {@link DataStoreTable#initialize(Connection)} so that {@link #disconnect()} writes the rows the table still has queued.
+   * Connections that don't belong to an open database, like the wrappers of the tests, are ignored.
+   */
+  public static void trackTable(@NotNull Connection connection, @NotNull DataStoreTable<?> table) {
+    DataStoreDatabase database = ourOpenDatabases.get(connection);
+    if (database != null) {
+      database.myTables.add(table);
+    }
+  }
+
+  /**
+   * Writes the rows queued in the tables of the database, commits and closes the connection.
+   */
   public void disconnect() {
+    if (myConnection != null) {
+      ourOpenDatabases.remove(myConnection);
+    }
+    for (DataStoreTable<?> table : myTables) {
+      table.stopFlushTimer();
+      table.flushBatch();
+    }
+    myTables.clear();
     try {
       myConnection.commit();
     }
@@ -122,4 +171,12 @@ public class DataStoreDatabase {
   public Connection getConnection() {
     return myConnection;
   }
+
+  /**
+   * @return the store for sampled data if this database is {@link Characteristic#TIME_SERIES}, null otherwise.
+   */
+  @Nullable
+  public TimeSeriesStore getTimeSeriesStore() {
+    return myTimeSeriesStore;
+  }
 }
@@ -18,6 +18,9 @@ package com.android.tools.datastore;
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.analytics.UsageTracker;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.TimeSeriesStore;
+import com.android.tools.datastore.poller.PollRunner;
+import com.android.tools.datastore.poller.PollScheduler;
 import com.android.tools.datastore.service.*;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.NopSymbolizer;
@@ -39,6 +42,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static com.android.tools.datastore.DataStoreDatabase.Characteristic.DURABLE;
+import static com.android.tools.datastore.DataStoreDatabase.Characteristic.TIME_SERIES;
 
 /**
  * Primary class that initializes the Datastore. This class currently manages connections to perfd and sets up the DataStore service.
@@ -56,6 +60,11 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
 
   public static class BackingNamespace {
     public static final BackingNamespace DEFAULT_SHARED_NAMESPACE = new BackingNamespace("default.sql", DURABLE);
+    /**
+     * Namespace for sampled data (e.g. CPU usage, memory and network samples), only requested by services when
+     * {@link DataStoreService#isTimeSeriesStoreEnabled()}.
+     */
+    public static final BackingNamespace TIME_SERIES_NAMESPACE = new BackingNamespace("timeseries", TIME_SERIES);
 
     @NotNull public final String myNamespace;
     @NotNull public final DataStoreDatabase.Characteristic myCharacteristic;
@@ -92,6 +101,8 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   private final Server myServer;
   private final List<ServicePassThrough> myServices = new ArrayList<>();
   private final Consumer<Runnable> myFetchExecutor;
+  private final boolean myTimeSeriesStoreEnabled;
+  @Nullable private final PollScheduler myPollScheduler;
   @NotNull
   private Consumer<Throwable> myNoPiiExceptionHanlder;
 
@@ -112,7 +123,22 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
                           @NotNull String datastoreDirectory,
                           @NotNull Consumer<Runnable> fetchExecutor,
                           @NotNull LogService logService) {
-    this(serviceName, datastoreDirectory, fetchExecutor, logService, null);
+    this(serviceName, datastoreDirectory, fetchExecutor, logService, null, false, false);
+  }
+
+  /**
+   * @param useTimeSeriesStore     if true, services store their sampled data in a {@link DataStoreDatabase.Characteristic#TIME_SERIES}
+   *                               database instead of the shared SQL database.
+   * @param useSharedPollScheduler if true, all {@link PollRunner}s are driven by one {@link PollScheduler} instead of each being handed
+   *                               to {@code fetchExecutor}, which keeps being used for one-off fetches.
+   */
+  public DataStoreService(@NotNull String serviceName,
+                          @NotNull String datastoreDirectory,
+                          @NotNull Consumer<Runnable> fetchExecutor,
+                          @NotNull LogService logService,
+                          boolean useTimeSeriesStore,
+                          boolean useSharedPollScheduler) {
+    this(serviceName, datastoreDirectory, fetchExecutor, logService, null, useTimeSeriesStore, useSharedPollScheduler);
   }
 
   @VisibleForTesting
@@ -121,8 +147,35 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
                           @NotNull Consumer<Runnable> fetchExecutor,
                           @NotNull LogService logService,
                           @Nullable ServerInterceptor interceptor) {
+    this(serviceName, datastoreDirectory, fetchExecutor, logService, interceptor, false, false);
+  }
+
+  @VisibleForTesting
+  public DataStoreService(@NotNull String serviceName,
+                          @NotNull String datastoreDirectory,
+                          @NotNull Consumer<Runnable> fetchExecutor,
+                          @NotNull LogService logService,
+                          @Nullable ServerInterceptor interceptor,
+                          boolean useTimeSeriesStore,
+                          boolean useSharedPollScheduler) {
     myLogService = logService;
-    myFetchExecutor = fetchExecutor;
+    if (useSharedPollScheduler) {
+      PollScheduler pollScheduler = new PollScheduler("DataStorePollScheduler", PollScheduler.DEFAULT_THREAD_COUNT);
+      myPollScheduler = pollScheduler;
+      myFetchExecutor = runnable -> {
+        if (runnable instanceof PollRunner) {
+          pollScheduler.schedule((PollRunner)runnable);
+        }
+        else {
+          fetchExecutor.accept(runnable);
+        }
+      };
+    }
+    else {
+      myPollScheduler = null;
+      myFetchExecutor = fetchExecutor;
+    }
+    myTimeSeriesStoreEnabled = useTimeSeriesStore;
     myInterceptor = interceptor;
     myDatastoreDirectory = datastoreDirectory;
     myServerBuilder = InProcessServerBuilder.forName(serviceName).directExecutor();
@@ -145,6 +198,21 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     myNoPiiExceptionHanlder = noPiiExceptionHanlder;
   }
 
+  /**
+   * @return true if services should request {@link BackingNamespace#TIME_SERIES_NAMESPACE} for their sampled data.
+   */
+  public boolean isTimeSeriesStoreEnabled() {
+    return myTimeSeriesStoreEnabled;
+  }
+
+  /**
+   * @return the scheduler driving the {@link PollRunner}s, or null if each of them was handed to the fetch executor.
+   */
+  @Nullable
+  public PollScheduler getPollScheduler() {
+    return myPollScheduler;
+  }
+
   @VisibleForTesting
   public Map<BackingNamespace, DataStoreDatabase> getDatabases() {
     return myDatabases;
@@ -186,6 +254,10 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       DataStoreDatabase db = myDatabases.computeIfAbsent(namespace, backingNamespace -> createDatabase(
         myDatastoreDirectory + backingNamespace.myNamespace, backingNamespace.myCharacteristic, myNoPiiExceptionHanlder));
       service.setBackingStore(namespace, db.getConnection());
+      TimeSeriesStore timeSeriesStore = db.getTimeSeriesStore();
+      if (timeSeriesStore != null) {
+        service.setTimeSeriesStore(namespace, timeSeriesStore);
+      }
     });
 
     // Build server and start listening for RPC calls for the registered service
@@ -239,6 +311,9 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       client.shutdownNow();
     }
     myConnectedClients.clear();
+    if (myPollScheduler != null) {
+      myPollScheduler.shutdown();
+    }
     myDatabases.forEach((name, db) -> db.disconnect());
     DataStoreTable.removeDataStoreErrorCallback(this);
   }
@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.database.TimeSeriesStore;
 import io.grpc.ServerServiceDefinition;
 import org.jetbrains.annotations.NotNull;
 
@@ -43,4 +44,14 @@ public interface ServicePassThrough {
    * @param connection {@link Connection} to the backing store
    */
   void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection);
+
+  /**
+   * Called after {@link #setBackingStore(DataStoreService.BackingNamespace, Connection)} for namespaces whose characteristic is
+   * {@link DataStoreDatabase.Characteristic#TIME_SERIES}.
+   *
+   * @param namespace a namespace corresponding to an entry in the list returned from {@link #getBackingNamespaces()}
+   * @param store     {@link TimeSeriesStore} holding the sampled data of that namespace
+   */
+  default void setTimeSeriesStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull TimeSeriesStore store) {
+  }
 }
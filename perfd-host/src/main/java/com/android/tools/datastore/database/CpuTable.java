@@ -40,6 +40,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
   private static final int DATA_COLUMN = 1;
@@ -61,6 +62,35 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
    */
   private final Map<Long, Set<Integer>> mySessionThreadIdsCache = Collections.synchronizedMap(new HashMap<>());
 
+  /**
+   * Series of {@link CpuUsageData}, keyed by end timestamp, with one column per {@link UsageColumn}.
+   */
+  private static final String USAGE_SERIES = "cpu.usage";
+
+  /**
+   * Prefix of the series of the n-th {@link CpuProfiler.CpuCoreUsageData} of each {@link CpuUsageData}, with one column per
+   * {@link CoreColumn}.
+   */
+  private static final String CORE_USAGE_SERIES_PREFIX = "cpu.core.";
+
+  private enum UsageColumn {
+    ELAPSED_TIME,
+    SYSTEM_CPU_TIME,
+    APP_CPU_TIME
+  }
+
+  private enum CoreColumn {
+    CORE,
+    ELAPSED_TIME,
+    SYSTEM_CPU_TIME,
+    FREQUENCY
+  }
+
+  /**
+   * If set, CPU usage samples are stored in and queried from this store instead of the Cpu_Data table.
+   */
+  @Nullable private TimeSeriesStore myTimeSeriesStore;
+
   public enum CpuStatements {
     INSERT_THREAD_ACTIVITY,
     QUERY_ALL_DISTINCT_THREADS,
@@ -164,11 +194,34 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     }
   }
 
+  public void setTimeSeriesStore(@Nullable TimeSeriesStore timeSeriesStore) {
+    myTimeSeriesStore = timeSeriesStore;
+  }
+
   public void insert(Common.Session session, CpuUsageData data) {
-    execute(CpuStatements.INSERT_CPU_DATA, session.getSessionId(), data.getEndTimestamp(), data.toByteArray());
+    if (myTimeSeriesStore != null) {
+      insertTimeSeries(myTimeSeriesStore, session.getSessionId(), data);
+      return;
+    }
+    addBatch(CpuStatements.INSERT_CPU_DATA, session.getSessionId(), data.getEndTimestamp(), data.toByteArray());
+  }
+
+  private static void insertTimeSeries(@NotNull TimeSeriesStore store, long sessionId, @NotNull CpuUsageData data) {
+    long timestamp = data.getEndTimestamp();
+    // Cores go first, so a concurrent query never sees a usage sample without its cores.
+    for (int i = 0; i < data.getCoresCount(); i++) {
+      CpuProfiler.CpuCoreUsageData core = data.getCores(i);
+      store.getOrCreateSeries(sessionId, CORE_USAGE_SERIES_PREFIX + i, CoreColumn.values().length)
+           .add(timestamp, core.getCore(), core.getElapsedTimeInMillisec(), core.getSystemCpuTimeInMillisec(), core.getFrequencyInKhz());
+    }
+    store.getOrCreateSeries(sessionId, USAGE_SERIES, UsageColumn.values().length)
+         .add(timestamp, data.getElapsedTimeInMillisec(), data.getSystemCpuTimeInMillisec(), data.getAppCpuTimeInMillisec());
   }
 
   public List<CpuUsageData> getCpuDataByRequest(CpuDataRequest request) {
+    if (myTimeSeriesStore != null) {
+      return getCpuDataFromTimeSeries(myTimeSeriesStore, request);
+    }
     List<CpuUsageData> cpuData = new ArrayList<>();
     try {
       ResultSet results =
@@ -186,14 +239,55 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     return cpuData;
   }
 
+  @NotNull
+  private static List<CpuUsageData> getCpuDataFromTimeSeries(@NotNull TimeSeriesStore store, @NotNull CpuDataRequest request) {
+    List<CpuUsageData> cpuData = new ArrayList<>();
+    long sessionId = request.getSession().getSessionId();
+    TimeSeries usageSeries = store.getSeries(sessionId, USAGE_SERIES);
+    if (usageSeries == null) {
+      return cpuData;
+    }
+
+    List<TimeSeries> coreSeries = new ArrayList<>();
+    for (TimeSeries series = store.getSeries(sessionId, CORE_USAGE_SERIES_PREFIX + 0);
+         series != null;
+         series = store.getSeries(sessionId, CORE_USAGE_SERIES_PREFIX + coreSeries.size())) {
+      coreSeries.add(series);
+    }
+
+    long[] coreValues = new long[CoreColumn.values().length];
+    usageSeries.query(request.getStartTimestamp(), request.getEndTimestamp(), row -> {
+      long timestamp = row.getTimestamp();
+      CpuUsageData.Builder data = CpuUsageData
+        .newBuilder()
+        .setEndTimestamp(timestamp)
+        .setElapsedTimeInMillisec(row.getLong(UsageColumn.ELAPSED_TIME.ordinal()))
+        .setSystemCpuTimeInMillisec(row.getLong(UsageColumn.SYSTEM_CPU_TIME.ordinal()))
+        .setAppCpuTimeInMillisec(row.getLong(UsageColumn.APP_CPU_TIME.ordinal()));
+      for (TimeSeries series : coreSeries) {
+        if (!series.get(timestamp, coreValues)) {
+          // Cores are stored in order, so a sample never has a core n+1 without core n.
+          break;
+        }
+        data.addCores(CpuProfiler.CpuCoreUsageData
+                        .newBuilder()
+                        .setCore((int)coreValues[CoreColumn.CORE.ordinal()])
+                        .setElapsedTimeInMillisec(coreValues[CoreColumn.ELAPSED_TIME.ordinal()])
+                        .setSystemCpuTimeInMillisec(coreValues[CoreColumn.SYSTEM_CPU_TIME.ordinal()])
+                        .setFrequencyInKhz((int)coreValues[CoreColumn.FREQUENCY.ordinal()]));
+      }
+      cpuData.add(data.build());
+    });
+    return cpuData;
+  }
+
   public void insertActivities(Common.Session session,
                                int tid,
                                String name,
                                List<GetThreadsResponse.ThreadActivity> activities) {
     getThreadIdCacheForSession(session.getSessionId()).add(tid);
     for (GetThreadsResponse.ThreadActivity activity : activities) {
-      // TODO: optimize it by adding the states in batches
-      execute(CpuStatements.INSERT_THREAD_ACTIVITY, session.getSessionId(), tid, activity.getTimestamp(), activity.getNewState().toString(),
+      addBatch(CpuStatements.INSERT_THREAD_ACTIVITY, session.getSessionId(), tid, activity.getTimestamp(), activity.getNewState().toString(),
               name);
     }
   }
@@ -205,8 +299,8 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     // For now, insert it as activity. TODO: differentiate the concepts of snapshot and activity
     for (GetThreadsResponse.ThreadSnapshot.Snapshot snapshot : snapshots) {
       idSet.add(snapshot.getTid());
-      execute(CpuStatements.INSERT_THREAD_ACTIVITY,
-              session.getSessionId(), snapshot.getTid(), timestamp, snapshot.getState().toString(), snapshot.getName());
+      addBatch(CpuStatements.INSERT_THREAD_ACTIVITY,
+               session.getSessionId(), snapshot.getTid(), timestamp, snapshot.getState().toString(), snapshot.getName());
     }
   }
 
@@ -15,11 +15,15 @@
  */
 package com.android.tools.datastore.database;
 
+import com.android.tools.datastore.DataStoreDatabase;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 /**
@@ -29,9 +33,42 @@ import java.util.function.Function;
 public abstract class DataStoreTable<T extends Enum> {
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = ConcurrentHashMap.newKeySet();
 
+  /**
+   * Flushes write queues whose oldest row reached the flush interval while no other row was added to them.
+   */
+  private static final Timer FLUSH_TIMER = new Timer("DataStoreTableFlushTimer", true);
+
+  /**
+   * Default number of queued rows after which {@link #addBatch(Enum, Object...)} flushes the write queue.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * Default maximum age of the oldest queued row before {@link #addBatch(Enum, Object...)} flushes the write queue.
+   */
+  public static final long DEFAULT_BATCH_FLUSH_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(250);
+
   private Connection myConnection;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
 
+  /**
+   * Rows queued via {@link #addBatch(Enum, Object...)}, in insertion order. Guarded by itself.
+   */
+  private final List<PendingWrite<T>> myWriteQueue = new ArrayList<>();
+  private long myOldestPendingWriteNs;
+  /**
+   * The timed flush of the write queue, if one is scheduled. Guarded by {@link #myWriteQueue}.
+   */
+  @Nullable private TimerTask myScheduledFlush;
+  private boolean myIsFlushTimerStopped;
+  private volatile int myBatchSize = DEFAULT_BATCH_SIZE;
+  private volatile long myBatchFlushIntervalNs = DEFAULT_BATCH_FLUSH_INTERVAL_NS;
+
+  private final AtomicLong myRowsWritten = new AtomicLong();
+  private final AtomicLong myBatchesWritten = new AtomicLong();
+  private final AtomicLong myWriteTimeNs = new AtomicLong();
+  private final AtomicLong myRowsDropped = new AtomicLong();
+
   public interface DataStoreTableErrorCallback {
     void onDataStoreError(Throwable t);
   }
@@ -43,6 +80,7 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public void initialize(@NotNull Connection connection) {
     myConnection = connection;
+    DataStoreDatabase.trackTable(connection, this);
   }
 
   /**
@@ -51,6 +89,30 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public abstract void prepareStatements();
 
+  /**
+   * Configures when rows queued with {@link #addBatch(Enum, Object...)} are written to the database. The queue is flushed as soon as it
+   * holds {@code batchSize} rows or its oldest row is older than {@code flushIntervalNs}, whichever comes first; a background timer
+   * enforces the interval when no more rows are added. Queries against this table always flush first, so the policy only affects
+   * throughput and never the visibility of the data.
+   */
+  public void setBatchPolicy(int batchSize, long flushIntervalNs) {
+    assert batchSize > 0 : "Batch size must be positive";
+    myBatchSize = batchSize;
+    myBatchFlushIntervalNs = flushIntervalNs;
+  }
+
+  /**
+   * @return a snapshot of the write counters of this table, which includes both queued batches and bulk inserts.
+   */
+  @NotNull
+  public WriteStats getWriteStats() {
+    int pendingRows;
+    synchronized (myWriteQueue) {
+      pendingRows = myWriteQueue.size();
+    }
+    return new WriteStats(myRowsWritten.get(), myBatchesWritten.get(), myWriteTimeNs.get(), pendingRows, myRowsDropped.get());
+  }
+
   public static void addDataStoreErrorCallback(@NotNull DataStoreTableErrorCallback callback) {
     ERROR_CALLBACKS.add(callback);
   }
@@ -139,6 +201,8 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return;
     }
+    flushBatch();
+    long startNs = System.nanoTime();
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
       batchParams.forEach((object) -> {
@@ -150,21 +214,163 @@ public abstract class DataStoreTable<T extends Enum> {
         }
       });
       int[] results = stmt.executeBatch();
-      for(int i = 0; i < results.length; i++) {
-        if (results[i] == Statement.EXECUTE_FAILED) {
-          throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
-        }
-      }
+      checkBatchResults(results);
+      recordWrite(results.length, System.nanoTime() - startNs);
     }
     catch (SQLException ex) {
       onError(ex);
     }
   }
 
+  /**
+   * Queues a row for {@code statement} instead of executing it right away. Queued rows are written in order, grouping consecutive rows
+   * of the same statement into a single JDBC batch, once the queue exceeds the limits set by {@link #setBatchPolicy(int, long)}, or
+   * before any other statement or query is run against this table.
+   */
+  protected void addBatch(@NotNull T statement, Object... params) {
+    if (isClosed()) {
+      return;
+    }
+    boolean shouldFlush;
+    TimerTask flushToSchedule = null;
+    synchronized (myWriteQueue) {
+      if (myWriteQueue.isEmpty()) {
+        myOldestPendingWriteNs = System.nanoTime();
+      }
+      myWriteQueue.add(new PendingWrite<>(statement, params));
+      shouldFlush = myWriteQueue.size() >= myBatchSize || System.nanoTime() - myOldestPendingWriteNs >= myBatchFlushIntervalNs;
+      if (!shouldFlush && myScheduledFlush == null && !myIsFlushTimerStopped && myBatchFlushIntervalNs != Long.MAX_VALUE) {
+        myScheduledFlush = new TimerTask() {
+          @Override
+          public void run() {
+            synchronized (myWriteQueue) {
+              if (myScheduledFlush == this) {
+                myScheduledFlush = null;
+              }
+            }
+            flushBatch();
+          }
+        };
+        flushToSchedule = myScheduledFlush;
+      }
+    }
+    if (shouldFlush) {
+      flushBatch();
+    }
+    else if (flushToSchedule != null) {
+      scheduleFlush(flushToSchedule);
+    }
+  }
+
+  private void scheduleFlush(@NotNull TimerTask task) {
+    try {
+      FLUSH_TIMER.schedule(task, Math.max(1, TimeUnit.NANOSECONDS.toMillis(myBatchFlushIntervalNs)));
+    }
+    catch (IllegalStateException ex) {
+      // The timer thread died, rows keep being flushed by the next addBatch or query.
+      synchronized (myWriteQueue) {
+        if (myScheduledFlush == task) {
+          myScheduledFlush = null;
+        }
+      }
+      onError(ex);
+    }
+  }
+
+  /**
+   * Cancels the timed flush of the write queue, if one is scheduled, and stops scheduling new ones. Queued rows are then only written by
+   * {@link #flushBatch()}, a full batch or a query, which is what {@link DataStoreDatabase#disconnect()} relies on before it closes the
+   * connection.
+   */
+  public void stopFlushTimer() {
+    synchronized (myWriteQueue) {
+      myIsFlushTimerStopped = true;
+      if (myScheduledFlush != null) {
+        myScheduledFlush.cancel();
+        myScheduledFlush = null;
+      }
+    }
+  }
+
+  /**
+   * Writes all rows queued via {@link #addBatch(Enum, Object...)} to the database.
+   */
+  public void flushBatch() {
+    synchronized (myWriteQueue) {
+      if (myWriteQueue.isEmpty()) {
+        return;
+      }
+      int rowCount = myWriteQueue.size();
+      if (isClosed()) {
+        myWriteQueue.clear();
+        myRowsDropped.addAndGet(rowCount);
+        onError(new SQLException(String.format("Dropped %d queued rows, the connection is closed", rowCount)));
+        return;
+      }
+
+      long startNs = System.nanoTime();
+      int batchCount = 0;
+      boolean succeeded = false;
+      try {
+        Map<T, PreparedStatement> statementMap = getStatementMap();
+        PreparedStatement currentStatement = null;
+        T currentType = null;
+        for (PendingWrite<T> write : myWriteQueue) {
+          if (write.myStatement != currentType) {
+            if (currentStatement != null) {
+              checkBatchResults(currentStatement.executeBatch());
+              batchCount++;
+            }
+            currentType = write.myStatement;
+            currentStatement = statementMap.get(currentType);
+          }
+          applyParams(currentStatement, write.myParams);
+          currentStatement.addBatch();
+        }
+        // Handles last batch after exiting from for-loop.
+        checkBatchResults(currentStatement.executeBatch());
+        batchCount++;
+        succeeded = true;
+      }
+      catch (SQLException ex) {
+        onError(ex);
+      }
+      finally {
+        myWriteQueue.clear();
+        if (succeeded) {
+          myRowsWritten.addAndGet(rowCount);
+        }
+        else {
+          myRowsDropped.addAndGet(rowCount);
+        }
+        myBatchesWritten.addAndGet(batchCount);
+        myWriteTimeNs.addAndGet(System.nanoTime() - startNs);
+      }
+    }
+  }
+
+  private static void checkBatchResults(@NotNull int[] results) throws SQLException {
+    for (int i = 0; i < results.length; i++) {
+      if (results[i] == Statement.EXECUTE_FAILED) {
+        throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
+      }
+    }
+  }
+
+  /**
+   * Accounts for rows that a subclass wrote with its own {@link PreparedStatement#executeBatch()} calls in {@link #getWriteStats()}.
+   */
+  protected void recordWrite(int rowCount, long elapsedNs) {
+    myRowsWritten.addAndGet(rowCount);
+    myBatchesWritten.incrementAndGet();
+    myWriteTimeNs.addAndGet(elapsedNs);
+  }
+
   protected void execute(@NotNull T statement, Object... params) {
     if (isClosed()) {
       return;
     }
+    flushBatch();
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
       applyParams(stmt, params);
@@ -179,6 +385,7 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return new EmptyResultSet();
     }
+    flushBatch();
     PreparedStatement stmt = getStatementMap().get(statement);
     applyParams(stmt, params);
     return stmt.executeQuery();
@@ -188,6 +395,7 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return new EmptyResultSet();
     }
+    flushBatch();
     PreparedStatement statement = myConnection.prepareStatement(sql);
     applyParams(statement, params);
     return statement.executeQuery();
@@ -219,4 +427,63 @@ public abstract class DataStoreTable<T extends Enum> {
       }
     }
   }
+
+  private static final class PendingWrite<T> {
+    @NotNull private final T myStatement;
+    private final Object[] myParams;
+
+    private PendingWrite(@NotNull T statement, Object[] params) {
+      myStatement = statement;
+      myParams = params;
+    }
+  }
+
+  /**
+   * Insert-throughput counters of a {@link DataStoreTable}.
+   */
+  public static final class WriteStats {
+    private final long myRowsWritten;
+    private final long myBatchesWritten;
+    private final long myWriteTimeNs;
+    private final int myPendingRows;
+    private final long myRowsDropped;
+
+    public WriteStats(long rowsWritten, long batchesWritten, long writeTimeNs, int pendingRows, long rowsDropped) {
+      myRowsWritten = rowsWritten;
+      myBatchesWritten = batchesWritten;
+      myWriteTimeNs = writeTimeNs;
+      myPendingRows = pendingRows;
+      myRowsDropped = rowsDropped;
+    }
+
+    public long getRowsWritten() {
+      return myRowsWritten;
+    }
+
+    public long getBatchesWritten() {
+      return myBatchesWritten;
+    }
+
+    public long getWriteTimeNs() {
+      return myWriteTimeNs;
+    }
+
+    public int getPendingRows() {
+      return myPendingRows;
+    }
+
+    /**
+     * @return the number of queued rows that were discarded because the connection was closed or their batch failed.
+     */
+    public long getRowsDropped() {
+      return myRowsDropped;
+    }
+
+    /**
+     * @return the number of rows written per second of time spent writing, or 0 if nothing has been written yet.
+     */
+    public double getRowsPerSecond() {
+      return myWriteTimeNs == 0 ? 0 : myRowsWritten * (double)TimeUnit.SECONDS.toNanos(1) / myWriteTimeNs;
+    }
+  }
 }
@@ -59,6 +59,17 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     QUERY_ALLOC_BY_FREE_TIME(
       "SELECT Tag, ClassTag, AllocTime, FreeTime, Size, Length, ThreadId, StackId, HeapId FROM Memory_AllocationEvents " +
       "WHERE Session = ? AND FreeTime >= ? AND FreeTime < ?"),
+    // The paged queries walk the (Session, AllocTime) and (Session, FreeTime) indices in order, so a page only steps the cursor as far as
+    // it needs to instead of materializing the whole range.
+    QUERY_SNAPSHOT_PAGE(
+      "SELECT Tag, ClassTag, AllocTime, FreeTime, Size, Length, ThreadId, StackId, HeapId FROM Memory_AllocationEvents " +
+      "WHERE Session = ? AND AllocTime >= ? AND AllocTime < ? AND FreeTime > ? ORDER BY AllocTime"),
+    QUERY_ALLOC_PAGE_BY_ALLOC_TIME(
+      "SELECT Tag, ClassTag, AllocTime, FreeTime, Size, Length, ThreadId, StackId, HeapId FROM Memory_AllocationEvents " +
+      "WHERE Session = ? AND AllocTime >= ? AND AllocTime < ? ORDER BY AllocTime"),
+    QUERY_ALLOC_PAGE_BY_FREE_TIME(
+      "SELECT Tag, ClassTag, AllocTime, FreeTime, Size, Length, ThreadId, StackId, HeapId FROM Memory_AllocationEvents " +
+      "WHERE Session = ? AND FreeTime >= ? AND FreeTime < ? ORDER BY FreeTime"),
     QUERY_METHOD_INFO("Select MethodName, ClassName FROM Memory_MethodInfos WHERE Session = ? AND MethodId = ?"),
     QUERY_ENCODED_STACK_INFO_BY_TIME(
       "Select StackData FROM Memory_StackInfos WHERE Session = ? AND AllocTime >= ? AND AllocTime < ?"),
@@ -239,30 +250,14 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
 
       while (allocResult.next()) {
         long allocTime = allocResult.getLong(3);
-        MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent
-          .newBuilder()
-          .setAllocData(
-            MemoryProfiler.AllocationEvent.Allocation
-              .newBuilder().setTag(allocResult.getInt(1)).setClassTag(allocResult.getInt(2)).setSize(allocResult.getLong(5))
-              .setLength(allocResult.getInt(6)).setThreadId(allocResult.getInt(7)).setStackId(allocResult.getInt(8))
-              .setHeapId(allocResult.getInt(9)).build())
-          .setTimestamp(allocTime).build();
-        sampleBuilder.addEvents(event);
+        sampleBuilder.addEvents(createAllocationEvent(allocResult));
         timestamp = Math.max(timestamp, allocTime);
       }
 
       ResultSet freeResult = executeQuery(QUERY_ALLOC_BY_FREE_TIME, session.getSessionId(), startTime, endTime);
       while (freeResult.next()) {
         long freeTime = freeResult.getLong(4);
-        MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent
-          .newBuilder().setFreeData(
-            MemoryProfiler.AllocationEvent.Deallocation
-              .newBuilder().setTag(freeResult.getInt(1)).setClassTag(freeResult.getInt(2)).setSize(freeResult.getLong(5))
-              .setLength(freeResult.getInt(6)).setThreadId(freeResult.getInt(7)).setStackId(freeResult.getInt(8))
-              .setHeapId(freeResult.getInt(9))
-              .build())
-          .setTimestamp(freeTime).build();
-        sampleBuilder.addEvents(event);
+        sampleBuilder.addEvents(createFreeEvent(freeResult));
         timestamp = Math.max(timestamp, freeTime);
       }
 
@@ -274,6 +269,107 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     return sampleBuilder.build();
   }
 
+  /**
+   * Paged variant of {@link #getSnapshot(Common.Session, long)}: returns, in allocation time order, the instances that are alive at
+   * {@code endTime} and were allocated within [startTime, endTime), stopping after about {@code pageSize} events. A page never splits the
+   * events of one timestamp, and its timestamp is the last allocation time it fully covers - endTime - 1 once the range is exhausted - so
+   * the next page can be requested from timestamp + 1.
+   */
+  @NotNull
+  public MemoryProfiler.BatchAllocationSample getSnapshotPage(Common.Session session, long startTime, long endTime, int pageSize) {
+    MemoryProfiler.BatchAllocationSample.Builder sampleBuilder = MemoryProfiler.BatchAllocationSample.newBuilder();
+    try {
+      ResultSet allocResult = executeQuery(QUERY_SNAPSHOT_PAGE, session.getSessionId(), startTime, endTime, endTime);
+      long coveredTimestamp = endTime - 1;
+      long lastTimestamp = Long.MIN_VALUE;
+      while (allocResult.next()) {
+        long allocTime = allocResult.getLong(3);
+        if (sampleBuilder.getEventsCount() >= pageSize && allocTime != lastTimestamp) {
+          coveredTimestamp = lastTimestamp;
+          break;
+        }
+        sampleBuilder.addEvents(createAllocationEvent(allocResult));
+        lastTimestamp = allocTime;
+      }
+      sampleBuilder.setTimestamp(coveredTimestamp);
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+    return sampleBuilder.build();
+  }
+
+  /**
+   * Paged variant of {@link #getAllocations(Common.Session, long, long)}: returns the allocation and free events within
+   * [startTime, endTime) merged in time order, stopping after about {@code pageSize} events. Same as {@link #getSnapshotPage}, the page's
+   * timestamp is the last timestamp it fully covers, endTime - 1 once the range is exhausted.
+   */
+  @NotNull
+  public MemoryProfiler.BatchAllocationSample getAllocationsPage(Common.Session session, long startTime, long endTime, int pageSize) {
+    MemoryProfiler.BatchAllocationSample.Builder sampleBuilder = MemoryProfiler.BatchAllocationSample.newBuilder();
+    try {
+      ResultSet allocResult = executeQuery(QUERY_ALLOC_PAGE_BY_ALLOC_TIME, session.getSessionId(), startTime, endTime);
+      ResultSet freeResult = executeQuery(QUERY_ALLOC_PAGE_BY_FREE_TIME, session.getSessionId(), startTime, endTime);
+      boolean hasAlloc = allocResult.next();
+      boolean hasFree = freeResult.next();
+      long coveredTimestamp = endTime - 1;
+      long lastTimestamp = Long.MIN_VALUE;
+      while (hasAlloc || hasFree) {
+        long allocTime = hasAlloc ? allocResult.getLong(3) : Long.MAX_VALUE;
+        long freeTime = hasFree ? freeResult.getLong(4) : Long.MAX_VALUE;
+        long timestamp = Math.min(allocTime, freeTime);
+        if (sampleBuilder.getEventsCount() >= pageSize && timestamp != lastTimestamp) {
+          coveredTimestamp = lastTimestamp;
+          break;
+        }
+        if (allocTime <= freeTime) {
+          sampleBuilder.addEvents(createAllocationEvent(allocResult));
+          hasAlloc = allocResult.next();
+        }
+        else {
+          sampleBuilder.addEvents(createFreeEvent(freeResult));
+          hasFree = freeResult.next();
+        }
+        lastTimestamp = timestamp;
+      }
+      sampleBuilder.setTimestamp(coveredTimestamp);
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+    return sampleBuilder.build();
+  }
+
+  /**
+   * Creates an allocation event out of the current row of one of the "SELECT Tag, ClassTag, AllocTime, FreeTime, ..." queries.
+   */
+  @NotNull
+  private static MemoryProfiler.AllocationEvent createAllocationEvent(@NotNull ResultSet result) throws SQLException {
+    return MemoryProfiler.AllocationEvent
+      .newBuilder()
+      .setAllocData(
+        MemoryProfiler.AllocationEvent.Allocation
+          .newBuilder().setTag(result.getInt(1)).setClassTag(result.getInt(2)).setSize(result.getLong(5))
+          .setLength(result.getInt(6)).setThreadId(result.getInt(7)).setStackId(result.getInt(8))
+          .setHeapId(result.getInt(9)).build())
+      .setTimestamp(result.getLong(3)).build();
+  }
+
+  /**
+   * Creates a free event out of the current row of one of the "SELECT Tag, ClassTag, AllocTime, FreeTime, ..." queries.
+   */
+  @NotNull
+  private static MemoryProfiler.AllocationEvent createFreeEvent(@NotNull ResultSet result) throws SQLException {
+    return MemoryProfiler.AllocationEvent
+      .newBuilder().setFreeData(
+        MemoryProfiler.AllocationEvent.Deallocation
+          .newBuilder().setTag(result.getInt(1)).setClassTag(result.getInt(2)).setSize(result.getLong(5))
+          .setLength(result.getInt(6)).setThreadId(result.getInt(7)).setStackId(result.getInt(8))
+          .setHeapId(result.getInt(9))
+          .build())
+      .setTimestamp(result.getLong(4)).build();
+  }
+
   @NotNull
   public LatestAllocationTimeResponse getLatestDataTimestamp(Common.Session session) {
     LatestAllocationTimeResponse.Builder builder = LatestAllocationTimeResponse.newBuilder();
@@ -588,6 +684,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     if (isClosed()) {
       return;
     }
+    long startNs = System.nanoTime();
     try {
       for (MemoryProfiler.AllocationEvent event : sample.getEventsList()) {
         if (currentCase != event.getEventCase()) {
@@ -640,6 +737,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
 
       // Handles last batch after exiting from for-loop.
       currentStatement.executeBatch();
+      recordWrite(sample.getEventsCount(), System.nanoTime() - startNs);
 
       if (allocAndFreeCount > 0) {
         pruneAllocations(session);
@@ -86,6 +86,26 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     GC_STATS
   }
 
+  /**
+   * Names of the {@link TimeSeries} used instead of Memory_Samples when a {@link TimeSeriesStore} is set. Alloc stats have a column for
+   * the allocation count and one for the free count, and gc stats are keyed by start time with a column for the end time.
+   */
+  private static final String MEMORY_SERIES = "memory.samples";
+  private static final String ALLOC_STATS_SERIES = "memory.allocStats";
+  private static final String GC_STATS_SERIES = "memory.gcStats";
+
+  private enum MemoryColumn {
+    JAVA,
+    NATIVE,
+    STACK,
+    GRAPHICS,
+    CODE,
+    OTHERS,
+    TOTAL
+  }
+
+  @Nullable private TimeSeriesStore myTimeSeriesStore;
+
   @Override
   public void initialize(@NotNull Connection connection) {
     super.initialize(connection);
@@ -119,17 +139,29 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     }
   }
 
+  public void setTimeSeriesStore(@Nullable TimeSeriesStore timeSeriesStore) {
+    myTimeSeriesStore = timeSeriesStore;
+  }
+
   @NotNull
   public MemoryData getData(@NotNull MemoryRequest request) {
     long sessionId = request.getSession().getSessionId();
     long startTime = request.getStartTime();
     long endTime = request.getEndTime();
-    List<MemoryData.MemorySample> memorySamples =
-      getResultsInfo(QUERY_MEMORY, sessionId, startTime, endTime, MemoryData.MemorySample.getDefaultInstance());
-    List<MemoryData.AllocStatsSample> allocStatsSamples =
-      getResultsInfo(QUERY_ALLOC_STATS, sessionId, startTime, endTime, MemoryData.AllocStatsSample.getDefaultInstance());
-    List<MemoryData.GcStatsSample> gcStatsSamples =
-      getResultsInfo(QUERY_GC_STATS, sessionId, startTime, endTime, MemoryData.GcStatsSample.getDefaultInstance());
+    List<MemoryData.MemorySample> memorySamples;
+    List<MemoryData.AllocStatsSample> allocStatsSamples;
+    List<MemoryData.GcStatsSample> gcStatsSamples;
+    if (myTimeSeriesStore != null) {
+      memorySamples = getMemorySamples(myTimeSeriesStore, sessionId, startTime, endTime);
+      allocStatsSamples = getAllocStatsSamples(myTimeSeriesStore, sessionId, startTime, endTime);
+      gcStatsSamples = getGcStatsSamples(myTimeSeriesStore, sessionId, startTime, endTime);
+    }
+    else {
+      memorySamples = getResultsInfo(QUERY_MEMORY, sessionId, startTime, endTime, MemoryData.MemorySample.getDefaultInstance());
+      allocStatsSamples =
+        getResultsInfo(QUERY_ALLOC_STATS, sessionId, startTime, endTime, MemoryData.AllocStatsSample.getDefaultInstance());
+      gcStatsSamples = getResultsInfo(QUERY_GC_STATS, sessionId, startTime, endTime, MemoryData.GcStatsSample.getDefaultInstance());
+    }
     List<HeapDumpInfo> heapDumpSamples =
       getResultsInfo(QUERY_HEAP_INFO_BY_TIME, sessionId, startTime, endTime, HeapDumpInfo.getDefaultInstance());
     List<AllocationsInfo> allocationSamples =
@@ -144,24 +176,97 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
       .build();
   }
 
+  @NotNull
+  private static List<MemoryData.MemorySample> getMemorySamples(@NotNull TimeSeriesStore store, long sessionId, long startTime,
+                                                                long endTime) {
+    List<MemoryData.MemorySample> samples = new ArrayList<>();
+    TimeSeries series = store.getSeries(sessionId, MEMORY_SERIES);
+    if (series != null) {
+      series.query(startTime, endTime, row -> samples.add(
+        MemoryData.MemorySample
+          .newBuilder()
+          .setTimestamp(row.getTimestamp())
+          .setJavaMem(row.getLong(MemoryColumn.JAVA.ordinal()))
+          .setNativeMem(row.getLong(MemoryColumn.NATIVE.ordinal()))
+          .setStackMem(row.getLong(MemoryColumn.STACK.ordinal()))
+          .setGraphicsMem(row.getLong(MemoryColumn.GRAPHICS.ordinal()))
+          .setCodeMem(row.getLong(MemoryColumn.CODE.ordinal()))
+          .setOthersMem(row.getLong(MemoryColumn.OTHERS.ordinal()))
+          .setTotalMem(row.getLong(MemoryColumn.TOTAL.ordinal()))
+          .build()));
+    }
+    return samples;
+  }
+
+  @NotNull
+  private static List<MemoryData.AllocStatsSample> getAllocStatsSamples(@NotNull TimeSeriesStore store, long sessionId, long startTime,
+                                                                        long endTime) {
+    List<MemoryData.AllocStatsSample> samples = new ArrayList<>();
+    TimeSeries series = store.getSeries(sessionId, ALLOC_STATS_SERIES);
+    if (series != null) {
+      series.query(startTime, endTime, row -> samples.add(
+        MemoryData.AllocStatsSample
+          .newBuilder()
+          .setTimestamp(row.getTimestamp())
+          .setJavaAllocationCount((int)row.getLong(0))
+          .setJavaFreeCount((int)row.getLong(1))
+          .build()));
+    }
+    return samples;
+  }
+
+  @NotNull
+  private static List<MemoryData.GcStatsSample> getGcStatsSamples(@NotNull TimeSeriesStore store, long sessionId, long startTime,
+                                                                  long endTime) {
+    List<MemoryData.GcStatsSample> samples = new ArrayList<>();
+    TimeSeries series = store.getSeries(sessionId, GC_STATS_SERIES);
+    if (series != null) {
+      series.query(startTime, endTime, row -> samples.add(
+        MemoryData.GcStatsSample.newBuilder().setStartTime(row.getTimestamp()).setEndTime(row.getLong(0)).build()));
+    }
+    return samples;
+  }
+
   public void insertMemory(@NotNull Common.Session session, @NotNull List<MemoryData.MemorySample> samples) {
+    if (myTimeSeriesStore != null) {
+      TimeSeries series = myTimeSeriesStore.getOrCreateSeries(session.getSessionId(), MEMORY_SERIES, MemoryColumn.values().length);
+      for (MemoryData.MemorySample sample : samples) {
+        series.add(sample.getTimestamp(), sample.getJavaMem(), sample.getNativeMem(), sample.getStackMem(), sample.getGraphicsMem(),
+                   sample.getCodeMem(), sample.getOthersMem(), sample.getTotalMem());
+      }
+      return;
+    }
     for (MemoryData.MemorySample sample : samples) {
-      execute(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(),
-              sample.toByteArray());
+      addBatch(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(),
+               sample.toByteArray());
     }
   }
 
   public void insertAllocStats(@NotNull Common.Session session, @NotNull List<MemoryData.AllocStatsSample> samples) {
+    if (myTimeSeriesStore != null) {
+      TimeSeries series = myTimeSeriesStore.getOrCreateSeries(session.getSessionId(), ALLOC_STATS_SERIES, 2);
+      for (MemoryData.AllocStatsSample sample : samples) {
+        series.add(sample.getTimestamp(), sample.getJavaAllocationCount(), sample.getJavaFreeCount());
+      }
+      return;
+    }
     for (MemoryData.AllocStatsSample sample : samples) {
-      execute(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.ALLOC_STATS.ordinal(),
-              sample.toByteArray());
+      addBatch(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.ALLOC_STATS.ordinal(),
+               sample.toByteArray());
     }
   }
 
   public void insertGcStats(@NotNull Common.Session session, @NotNull List<MemoryData.GcStatsSample> samples) {
+    if (myTimeSeriesStore != null) {
+      TimeSeries series = myTimeSeriesStore.getOrCreateSeries(session.getSessionId(), GC_STATS_SERIES, 1);
+      for (MemoryData.GcStatsSample sample : samples) {
+        series.add(sample.getStartTime(), sample.getEndTime());
+      }
+      return;
+    }
     for (MemoryData.GcStatsSample sample : samples) {
-      execute(INSERT_SAMPLE, session.getSessionId(), sample.getStartTime(), MemorySamplesType.GC_STATS.ordinal(),
-              sample.toByteArray());
+      addBatch(INSERT_SAMPLE, session.getSessionId(), sample.getStartTime(), MemorySamplesType.GC_STATS.ordinal(),
+               sample.toByteArray());
     }
   }
 
@@ -305,10 +410,9 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
   public void insertLegacyAllocationContext(@NotNull Common.Session session,
                                             @NotNull List<AllocatedClass> classes,
                                             @NotNull List<AllocationStack> stacks) {
-    // TODO: batch insert
-    classes.forEach(klass -> execute(INSERT_LEGACY_ALLOCATED_CLASS, session.getSessionId(), klass.getClassId(), klass.toByteArray()));
+    classes.forEach(klass -> addBatch(INSERT_LEGACY_ALLOCATED_CLASS, session.getSessionId(), klass.getClassId(), klass.toByteArray()));
     stacks
-      .forEach(stack -> execute(INSERT_LEGACY_ALLOCATION_STACK, session.getSessionId(), stack.getStackId(), stack.toByteArray()));
+      .forEach(stack -> addBatch(INSERT_LEGACY_ALLOCATION_STACK, session.getSessionId(), stack.getStackId(), stack.toByteArray()));
   }
 
   @NotNull
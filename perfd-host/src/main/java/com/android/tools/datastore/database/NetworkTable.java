@@ -19,6 +19,7 @@ import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.NetworkProfiler;
 import com.android.tools.profiler.protobuf3jarjar.InvalidProtocolBufferException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -42,6 +43,15 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
   private static final int RESPONSE_BODY_COLUMN = 5;
   private static final int THREADS_COLUMN = 6;
 
+  /**
+   * Names of the {@link TimeSeries} used instead of Network_Data when a {@link TimeSeriesStore} is set. The speed series has a column for
+   * the sent and one for the received bytes, and the connection series has a column for the number of open connections.
+   */
+  private static final String SPEED_SERIES = "network.speed";
+  private static final String CONNECTION_SERIES = "network.connections";
+
+  @Nullable private TimeSeriesStore myTimeSeriesStore;
+
   static {
     DATACASE_REQUEST_TYPE_MAP
       .put(NetworkProfiler.NetworkProfilerData.DataCase.SPEED_DATA, NetworkProfiler.NetworkDataRequest.Type.SPEED.getNumber());
@@ -111,7 +121,65 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
     return datas;
   }
 
+  public void setTimeSeriesStore(@Nullable TimeSeriesStore timeSeriesStore) {
+    myTimeSeriesStore = timeSeriesStore;
+  }
+
   public List<NetworkProfiler.NetworkProfilerData> getNetworkDataByRequest(NetworkProfiler.NetworkDataRequest request) {
+    if (myTimeSeriesStore == null) {
+      return getNetworkDataFromTable(request);
+    }
+
+    long sessionId = request.getSession().getSessionId();
+    List<NetworkProfiler.NetworkProfilerData> datas = new ArrayList<>();
+    switch (request.getType()) {
+      case SPEED:
+        addSpeedData(myTimeSeriesStore, sessionId, request.getStartTimestamp(), request.getEndTimestamp(), datas);
+        break;
+      case CONNECTIONS:
+        addConnectionData(myTimeSeriesStore, sessionId, request.getStartTimestamp(), request.getEndTimestamp(), datas);
+        break;
+      case ALL:
+        // Only connectivity data is kept in the table when a time-series store is set.
+        datas.addAll(getNetworkDataFromTable(request));
+        addSpeedData(myTimeSeriesStore, sessionId, request.getStartTimestamp(), request.getEndTimestamp(), datas);
+        addConnectionData(myTimeSeriesStore, sessionId, request.getStartTimestamp(), request.getEndTimestamp(), datas);
+        datas.sort(Comparator.comparingLong(NetworkProfiler.NetworkProfilerData::getEndTimestamp));
+        break;
+      default:
+        datas.addAll(getNetworkDataFromTable(request));
+        break;
+    }
+    return datas;
+  }
+
+  private static void addSpeedData(@NotNull TimeSeriesStore store, long sessionId, long startTime, long endTime,
+                                   @NotNull List<NetworkProfiler.NetworkProfilerData> datas) {
+    TimeSeries series = store.getSeries(sessionId, SPEED_SERIES);
+    if (series != null) {
+      series.query(startTime, endTime, row -> datas.add(
+        NetworkProfiler.NetworkProfilerData
+          .newBuilder()
+          .setEndTimestamp(row.getTimestamp())
+          .setSpeedData(NetworkProfiler.SpeedData.newBuilder().setSent(row.getLong(0)).setReceived(row.getLong(1)))
+          .build()));
+    }
+  }
+
+  private static void addConnectionData(@NotNull TimeSeriesStore store, long sessionId, long startTime, long endTime,
+                                        @NotNull List<NetworkProfiler.NetworkProfilerData> datas) {
+    TimeSeries series = store.getSeries(sessionId, CONNECTION_SERIES);
+    if (series != null) {
+      series.query(startTime, endTime, row -> datas.add(
+        NetworkProfiler.NetworkProfilerData
+          .newBuilder()
+          .setEndTimestamp(row.getTimestamp())
+          .setConnectionData(NetworkProfiler.ConnectionData.newBuilder().setConnectionNumber((int)row.getLong(0)))
+          .build()));
+    }
+  }
+
+  private List<NetworkProfiler.NetworkProfilerData> getNetworkDataFromTable(NetworkProfiler.NetworkDataRequest request) {
     List<NetworkProfiler.NetworkProfilerData> datas = new ArrayList<>();
     ResultSet results;
     try {
@@ -138,6 +206,21 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
   }
 
   public void insert(@NotNull Common.Session session, NetworkProfiler.NetworkProfilerData data) {
+    if (myTimeSeriesStore != null) {
+      switch (data.getDataCase()) {
+        case SPEED_DATA:
+          myTimeSeriesStore.getOrCreateSeries(session.getSessionId(), SPEED_SERIES, 2)
+                           .add(data.getEndTimestamp(), data.getSpeedData().getSent(), data.getSpeedData().getReceived());
+          return;
+        case CONNECTION_DATA:
+          myTimeSeriesStore.getOrCreateSeries(session.getSessionId(), CONNECTION_SERIES, 1)
+                           .add(data.getEndTimestamp(), data.getConnectionData().getConnectionNumber());
+          return;
+        default:
+          // Connectivity changes are rare and are kept in the table.
+          break;
+      }
+    }
     execute(NetworkStatements.INSERT_NETWORK_DATA, session.getSessionId(), DATACASE_REQUEST_TYPE_MAP.get(data.getDataCase()),
             data.getEndTimestamp(), data.toByteArray());
   }
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.annotations.VisibleForTesting;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A single time-series stored as a primitive {@code long} timestamp column plus a fixed number of primitive {@code long} value columns.
+ * Rows are kept sorted by timestamp in fixed-size chunks, so range queries only binary search the chunk boundaries and then walk the
+ * matching rows, without ever boxing or parsing the values. Adding a row with a timestamp that already exists replaces that row, which
+ * mirrors the "INSERT OR REPLACE" semantics of the SQL tables.
+ */
+public final class TimeSeries {
+  @VisibleForTesting
+  static final int CHUNK_SIZE = 1024;
+
+  /**
+   * Callback used by {@link #query(long, long, RowVisitor)}. The {@link Row} instance is reused between rows and is only valid for the
+   * duration of the call.
+   */
+  public interface RowVisitor {
+    void visit(@NotNull Row row);
+  }
+
+  private final int myColumnCount;
+  private final List<Chunk> myChunks = new ArrayList<>();
+  private final ReadWriteLock myLock = new ReentrantReadWriteLock();
+  private int mySize;
+
+  public TimeSeries(int columnCount) {
+    myColumnCount = columnCount;
+  }
+
+  public int getColumnCount() {
+    return myColumnCount;
+  }
+
+  public int size() {
+    myLock.readLock().lock();
+    try {
+      return mySize;
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a row, replacing any existing row with the same timestamp. Appending in timestamp order is O(1); out-of-order rows are inserted
+   * into the chunk that covers their timestamp.
+   */
+  public void add(long timestamp, @NotNull long... values) {
+    assert values.length == myColumnCount : "Expected " + myColumnCount + " values, got " + values.length;
+    myLock.writeLock().lock();
+    try {
+      if (myChunks.isEmpty()) {
+        myChunks.add(new Chunk(myColumnCount));
+      }
+      Chunk last = myChunks.get(myChunks.size() - 1);
+      if (last.mySize == 0 || timestamp > last.lastTimestamp()) {
+        if (last.mySize == CHUNK_SIZE) {
+          last = new Chunk(myColumnCount);
+          myChunks.add(last);
+        }
+        last.set(last.mySize++, timestamp, values);
+        mySize++;
+        return;
+      }
+
+      int chunkIndex = findChunkContaining(timestamp);
+      Chunk chunk = myChunks.get(chunkIndex);
+      int index = chunk.search(timestamp);
+      if (index >= 0) {
+        chunk.set(index, timestamp, values);
+        return;
+      }
+      index = -(index + 1);
+      if (chunk.mySize == CHUNK_SIZE) {
+        Chunk upper = chunk.splitUpperHalf();
+        myChunks.add(chunkIndex + 1, upper);
+        if (index > chunk.mySize) {
+          index -= chunk.mySize;
+          chunk = upper;
+        }
+      }
+      chunk.insert(index, timestamp, values);
+      mySize++;
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Visits, in timestamp order, every row such that {@code startExclusive < timestamp <= endInclusive}. This matches the range semantics
+   * of the "Timestamp > ? AND Timestamp <= ?" SQL queries the time-series replaces.
+   */
+  public void query(long startExclusive, long endInclusive, @NotNull RowVisitor visitor) {
+    myLock.readLock().lock();
+    try {
+      Row row = new Row();
+      for (int chunkIndex = findFirstChunkAfter(startExclusive); chunkIndex < myChunks.size(); chunkIndex++) {
+        Chunk chunk = myChunks.get(chunkIndex);
+        int index = chunk.search(startExclusive);
+        index = index >= 0 ? index + 1 : -(index + 1);
+        for (; index < chunk.mySize; index++) {
+          if (chunk.myTimestamps[index] > endInclusive) {
+            return;
+          }
+          row.myChunk = chunk;
+          row.myIndex = index;
+          visitor.visit(row);
+        }
+      }
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Copies the values of the row at exactly {@code timestamp} into {@code values}.
+   *
+   * @return true if such a row exists, false otherwise.
+   */
+  public boolean get(long timestamp, @NotNull long[] values) {
+    myLock.readLock().lock();
+    try {
+      if (myChunks.isEmpty()) {
+        return false;
+      }
+      Chunk chunk = myChunks.get(findChunkContaining(timestamp));
+      int index = chunk.search(timestamp);
+      if (index < 0) {
+        return false;
+      }
+      for (int column = 0; column < myColumnCount; column++) {
+        values[column] = chunk.myColumns[column][index];
+      }
+      return true;
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the index of the last chunk whose first timestamp is <= {@code timestamp}, or 0 if there is none.
+   */
+  private int findChunkContaining(long timestamp) {
+    int low = 0;
+    int high = myChunks.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (myChunks.get(mid).myTimestamps[0] <= timestamp) {
+        low = mid;
+      }
+      else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the first chunk whose last timestamp is > {@code timestamp}, or the chunk count if there is none.
+   */
+  private int findFirstChunkAfter(long timestamp) {
+    int low = 0;
+    int high = myChunks.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myChunks.get(mid).lastTimestamp() > timestamp) {
+        high = mid;
+      }
+      else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Read-only accessor for the row currently being visited by a {@link RowVisitor}.
+   */
+  public static final class Row {
+    private Chunk myChunk;
+    private int myIndex;
+
+    public long getTimestamp() {
+      return myChunk.myTimestamps[myIndex];
+    }
+
+    public long getLong(int column) {
+      return myChunk.myColumns[column][myIndex];
+    }
+  }
+
+  private static final class Chunk {
+    private final long[] myTimestamps;
+    private final long[][] myColumns;
+    private int mySize;
+
+    private Chunk(int columnCount) {
+      myTimestamps = new long[CHUNK_SIZE];
+      myColumns = new long[columnCount][CHUNK_SIZE];
+    }
+
+    private long lastTimestamp() {
+      return myTimestamps[mySize - 1];
+    }
+
+    /**
+     * Same contract as {@link Arrays#binarySearch(long[], int, int, long)}.
+     */
+    private int search(long timestamp) {
+      return Arrays.binarySearch(myTimestamps, 0, mySize, timestamp);
+    }
+
+    private void set(int index, long timestamp, @NotNull long[] values) {
+      myTimestamps[index] = timestamp;
+      for (int column = 0; column < myColumns.length; column++) {
+        myColumns[column][index] = values[column];
+      }
+    }
+
+    private void insert(int index, long timestamp, @NotNull long[] values) {
+      int moveCount = mySize - index;
+      System.arraycopy(myTimestamps, index, myTimestamps, index + 1, moveCount);
+      for (long[] column : myColumns) {
+        System.arraycopy(column, index, column, index + 1, moveCount);
+      }
+      set(index, timestamp, values);
+      mySize++;
+    }
+
+    /**
+     * Moves the upper half of this chunk's rows into a new chunk, which is returned.
+     */
+    @NotNull
+    private Chunk splitUpperHalf() {
+      Chunk upper = new Chunk(myColumns.length);
+      int keep = mySize / 2;
+      int moveCount = mySize - keep;
+      System.arraycopy(myTimestamps, keep, upper.myTimestamps, 0, moveCount);
+      for (int column = 0; column < myColumns.length; column++) {
+        System.arraycopy(myColumns[column], keep, upper.myColumns[column], 0, moveCount);
+      }
+      upper.mySize = moveCount;
+      mySize = keep;
+      return upper;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory columnar backend for sampled profiler data (e.g. CPU usage, memory and network samples). Each session owns a set of named
+ * {@link TimeSeries}, which tables use in place of their "(Session, Timestamp, Data BLOB)" SQL tables when
+ * {@link com.android.tools.datastore.DataStoreDatabase.Characteristic#TIME_SERIES} is selected.
+ */
+public class TimeSeriesStore {
+  private final Map<Long, Map<String, TimeSeries>> mySessionSeries = new ConcurrentHashMap<>();
+
+  /**
+   * @return the series {@code name} of the given session, creating it with {@code columnCount} value columns if it does not exist yet.
+   */
+  @NotNull
+  public TimeSeries getOrCreateSeries(long sessionId, @NotNull String name, int columnCount) {
+    TimeSeries series =
+      mySessionSeries.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).computeIfAbsent(name, n -> new TimeSeries(columnCount));
+    assert series.getColumnCount() == columnCount : "Series " + name + " already exists with a different column count";
+    return series;
+  }
+
+  /**
+   * @return the series {@code name} of the given session, or null if nothing was ever added to it.
+   */
+  @Nullable
+  public TimeSeries getSeries(long sessionId, @NotNull String name) {
+    Map<String, TimeSeries> series = mySessionSeries.get(sessionId);
+    return series == null ? null : series.get(name);
+  }
+}
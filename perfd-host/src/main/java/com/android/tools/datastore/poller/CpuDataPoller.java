@@ -145,6 +145,10 @@ public class CpuDataPoller extends PollRunner {
     }
     myTraceInfoRequestStartTimestampNs = traceInfoResponse.getResponseTimestamp();
 
+    if (response.getDataCount() == 0 && threadsResponse.getThreadsCount() == 0 && traceInfoResponse.getTraceInfoCount() == 0) {
+      reportNoNewData();
+    }
+
     myDataRequestStartTimestampNs = Math.max(Math.max(myDataRequestStartTimestampNs + 1, getDataStartNs), getThreadsStartNs);
   }
 
@@ -83,5 +83,9 @@ public class EventDataPoller extends PollRunner {
       long id = data.getEventId();
       myEventsTable.insertOrReplace(id, mySession, data);
     }
+
+    if (activityResponse.getDataCount() == 0 && systemResponse.getDataCount() == 0) {
+      reportNoNewData();
+    }
   }
 }
@@ -147,6 +147,9 @@ public class MemoryDataPoller extends PollRunner {
     if (response.getEndTimestamp() > myDataRequestStartTimestampNs) {
       myDataRequestStartTimestampNs = response.getEndTimestamp();
     }
+    else {
+      reportNoNewData();
+    }
   }
 
   private void fetchLegacyAllocData(@NotNull List<AllocationsInfo> dumpsToFetch) {
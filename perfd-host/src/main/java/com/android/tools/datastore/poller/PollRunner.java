@@ -16,6 +16,8 @@
 package com.android.tools.datastore.poller;
 
 import io.grpc.StatusRuntimeException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RunnableFuture;
@@ -24,22 +26,37 @@ import java.util.concurrent.TimeUnit;
 /**
  * A {@link RunnableFuture} which, while running, triggers a callback at a specified period
  * (which can be used to poll a target service at some frequency).
+ *
+ * A runner can either be run on its own thread via {@link #run()}, which polls at the fixed period, or be driven by a shared
+ * {@link PollScheduler}. In the latter case the period adapts to the polled stream: pollers call {@link #reportNoNewData()} from
+ * {@link #poll()} when nothing new came back, and the period then doubles (up to {@link #MAX_BACKOFF_MULTIPLIER} times the initial one)
+ * until data shows up again.
  */
 public abstract class PollRunner implements RunnableFuture<Void> {
 
   public static final long POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(250);
 
-  private long myPollPeriodNs;
+  public static final int MAX_BACKOFF_MULTIPLIER = 8;
+
+  private final long myPollPeriodNs;
+
+  private long myCurrentPollPeriodNs;
+
+  private boolean myHasNewData;
+
+  @NotNull private final PollStats myStats = new PollStats();
 
-  private boolean myIsRunning = false;
+  private volatile boolean myIsRunning = false;
 
   private CountDownLatch myRunning = new CountDownLatch(1);
 
   private CountDownLatch myIsDone = new CountDownLatch(1);
 
+  @Nullable private volatile PollScheduler myScheduler;
 
   public PollRunner(long pollPeriodNs) {
     myPollPeriodNs = pollPeriodNs;
+    myCurrentPollPeriodNs = pollPeriodNs;
   }
 
   public void stop() {
@@ -73,9 +90,67 @@ public abstract class PollRunner implements RunnableFuture<Void> {
 
   public abstract void poll();
 
+  /**
+   * Called from {@link #poll()} when the polled stream returned no new data, so the next poll can be delayed.
+   */
+  protected void reportNoNewData() {
+    myHasNewData = false;
+  }
+
+  /**
+   * @return the latency and overrun metrics of this poller, recorded while it is driven by a {@link PollScheduler}.
+   */
+  @NotNull
+  public PollStats getStats() {
+    return myStats;
+  }
+
+  /**
+   * @return the current (possibly backed off) period between two polls.
+   */
+  public long getCurrentPollPeriodNs() {
+    return myCurrentPollPeriodNs;
+  }
+
+  /**
+   * Runs {@link #poll()} once, records its latency and updates the adaptive period.
+   *
+   * @return how long to wait before the next poll.
+   */
+  long pollOnce() {
+    myHasNewData = true;
+    long startTimeNs = System.nanoTime();
+    poll();
+    long elapsedNs = System.nanoTime() - startTimeNs;
+    myStats.record(elapsedNs, myCurrentPollPeriodNs);
+    myCurrentPollPeriodNs =
+      myHasNewData ? myPollPeriodNs : Math.min(myCurrentPollPeriodNs * 2, myPollPeriodNs * MAX_BACKOFF_MULTIPLIER);
+    return Math.max(myCurrentPollPeriodNs - elapsedNs, 0L);
+  }
+
+  /**
+   * Called by the {@link PollScheduler} before this runner's first poll is scheduled.
+   */
+  void onScheduled(@NotNull PollScheduler scheduler) {
+    myScheduler = scheduler;
+    myIsRunning = true;
+  }
+
+  /**
+   * Called by the {@link PollScheduler} once this runner will not be polled anymore.
+   */
+  void onFinished() {
+    myIsDone.countDown();
+  }
+
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
     myRunning.countDown();
+    PollScheduler scheduler = myScheduler;
+    if (scheduler != null) {
+      // Drops the pending poll right away, so stop() does not wait for the next one.
+      scheduler.cancel(this);
+    }
     return true;
   }
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import io.grpc.StatusRuntimeException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives any number of {@link PollRunner}s from one timer thread, instead of parking a thread per runner between polls.
+ * Each runner is re-armed after every poll with its own (adaptive) period, so an idle stream backing off does not affect the others.
+ * <p>
+ * Polls run on a pool which keeps a few threads and grows while polls block, since most pollers wait on a gRPC call to the device:
+ * a poll stalled on a slow call only holds its own thread and does not delay the polls of the other runners.
+ */
+public class PollScheduler {
+  /**
+   * The number of polling threads kept while idle. More are started when that many polls are running at once.
+   */
+  public static final int DEFAULT_THREAD_COUNT = 2;
+  private static final long IDLE_THREAD_KEEP_ALIVE_S = 60;
+
+  @NotNull private final ScheduledExecutorService myTimer;
+  @NotNull private final ThreadPoolExecutor myPollExecutor;
+  @NotNull private final Set<PollRunner> myRunners = ConcurrentHashMap.newKeySet();
+  /**
+   * The next poll of each runner which is not being polled right now. Guarded by itself.
+   */
+  @NotNull private final Map<PollRunner, ScheduledFuture<?>> myPendingPolls = new HashMap<>();
+
+  /**
+   * @param threadCount the number of polling threads kept while idle
+   */
+  public PollScheduler(@NotNull String name, int threadCount) {
+    AtomicInteger threadIndex = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    myTimer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    myPollExecutor = new ThreadPoolExecutor(threadCount, Integer.MAX_VALUE, IDLE_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS,
+                                            new SynchronousQueue<>(), threadFactory);
+  }
+
+  /**
+   * Starts polling {@code runner} right away. The runner keeps being polled until it is cancelled (e.g. via {@link PollRunner#stop()}),
+   * its poll throws a {@link StatusRuntimeException} or this scheduler is shut down.
+   */
+  public void schedule(@NotNull PollRunner runner) {
+    runner.onScheduled(this);
+    myRunners.add(runner);
+    submit(runner, 0);
+  }
+
+  /**
+   * @return the runners currently being polled, whose {@link PollRunner#getStats()} report per-poller latency and overruns.
+   */
+  @NotNull
+  public List<PollRunner> getRunners() {
+    return new ArrayList<>(myRunners);
+  }
+
+  public void shutdown() {
+    myTimer.shutdownNow();
+    myPollExecutor.shutdownNow();
+    for (PollRunner runner : getRunners()) {
+      runner.cancel(true);
+      finish(runner);
+    }
+  }
+
+  /**
+   * Called when {@code runner} is cancelled. A pending poll is dropped and the runner finished right away; a poll in progress finishes
+   * the runner once it returns.
+   */
+  void cancel(@NotNull PollRunner runner) {
+    ScheduledFuture<?> pendingPoll;
+    synchronized (myPendingPolls) {
+      pendingPoll = myPendingPolls.remove(runner);
+    }
+    if (pendingPoll != null) {
+      pendingPoll.cancel(false);
+      finish(runner);
+    }
+  }
+
+  private void submit(@NotNull PollRunner runner, long delayNs) {
+    synchronized (myPendingPolls) {
+      if (!runner.isCancelled()) {
+        try {
+          myPendingPolls.put(runner, myTimer.schedule(() -> dispatch(runner), delayNs, TimeUnit.NANOSECONDS));
+          return;
+        }
+        catch (RejectedExecutionException ignored) {
+        }
+      }
+    }
+    finish(runner);
+  }
+
+  /**
+   * Hands the due poll of {@code runner} from the timer thread to a polling thread.
+   */
+  private void dispatch(@NotNull PollRunner runner) {
+    try {
+      myPollExecutor.execute(() -> tick(runner));
+    }
+    catch (RejectedExecutionException e) {
+      synchronized (myPendingPolls) {
+        if (myPendingPolls.remove(runner) == null) {
+          return;
+        }
+      }
+      finish(runner);
+    }
+  }
+
+  private void tick(@NotNull PollRunner runner) {
+    synchronized (myPendingPolls) {
+      if (myPendingPolls.remove(runner) == null) {
+        // The runner was cancelled, and finished, after this poll was scheduled.
+        return;
+      }
+    }
+    long delayNs = -1;
+    try {
+      if (!runner.isCancelled()) {
+        delayNs = runner.pollOnce();
+      }
+    }
+    catch (StatusRuntimeException ignored) {
+      // Same as PollRunner#run, the runner stops polling once its channel is gone.
+    }
+    finally {
+      if (delayNs >= 0 && !runner.isCancelled()) {
+        submit(runner, delayNs);
+      }
+      else {
+        finish(runner);
+      }
+    }
+  }
+
+  private void finish(@NotNull PollRunner runner) {
+    myRunners.remove(runner);
+    runner.onFinished();
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and overrun metrics of a single {@link PollRunner}. A poll overruns when it takes longer than the period it was scheduled with,
+ * which means the poller cannot keep up with its stream (or is starved by the other pollers sharing a {@link PollScheduler}).
+ */
+public final class PollStats {
+  private final AtomicLong myPollCount = new AtomicLong();
+  private final AtomicLong myTotalLatencyNs = new AtomicLong();
+  private final AtomicLong myMaxLatencyNs = new AtomicLong();
+  private final AtomicLong myLastLatencyNs = new AtomicLong();
+  private final AtomicLong myOverrunCount = new AtomicLong();
+
+  void record(long latencyNs, long periodNs) {
+    myPollCount.incrementAndGet();
+    myTotalLatencyNs.addAndGet(latencyNs);
+    myMaxLatencyNs.accumulateAndGet(latencyNs, Math::max);
+    myLastLatencyNs.set(latencyNs);
+    if (latencyNs > periodNs) {
+      myOverrunCount.incrementAndGet();
+    }
+  }
+
+  public long getPollCount() {
+    return myPollCount.get();
+  }
+
+  public long getLastLatencyNs() {
+    return myLastLatencyNs.get();
+  }
+
+  public long getMaxLatencyNs() {
+    return myMaxLatencyNs.get();
+  }
+
+  public long getAverageLatencyNs() {
+    long count = myPollCount.get();
+    return count == 0 ? 0 : myTotalLatencyNs.get() / count;
+  }
+
+  public long getOverrunCount() {
+    return myOverrunCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("polls=%d, avg=%dns, max=%dns, overruns=%d", getPollCount(), getAverageLatencyNs(), getMaxLatencyNs(),
+                         getOverrunCount());
+  }
+}
@@ -51,5 +51,8 @@ public class UnifiedEventsDataPoller extends PollRunner {
     if (response.getEventsCount() > 0) {
       myLastPollTimestamp = response.getEventsList().get(response.getEventsCount() - 1).getTimestamp();
     }
+    else {
+      reportNoNewData();
+    }
   }
 }
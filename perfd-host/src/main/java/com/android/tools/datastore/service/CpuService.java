@@ -20,6 +20,7 @@ import com.android.tools.datastore.DeviceId;
 import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.CpuTable;
+import com.android.tools.datastore.database.TimeSeriesStore;
 import com.android.tools.datastore.poller.CpuDataPoller;
 import com.android.tools.datastore.poller.PollRunner;
 import com.android.tools.profiler.proto.CpuProfiler.*;
@@ -28,6 +29,7 @@ import io.grpc.stub.StreamObserver;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -255,12 +257,24 @@ public class CpuService extends CpuServiceGrpc.CpuServiceImplBase implements Ser
   @NotNull
   @Override
   public List<DataStoreService.BackingNamespace> getBackingNamespaces() {
+    if (myService.isTimeSeriesStoreEnabled()) {
+      return Arrays.asList(DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE,
+                           DataStoreService.BackingNamespace.TIME_SERIES_NAMESPACE);
+    }
     return Collections.singletonList(DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE);
   }
 
   @Override
   public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
-    assert namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE;
-    myCpuTable.initialize(connection);
+    assert getBackingNamespaces().contains(namespace);
+    if (namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE) {
+      myCpuTable.initialize(connection);
+    }
+  }
+
+  @Override
+  public void setTimeSeriesStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull TimeSeriesStore store) {
+    assert namespace == DataStoreService.BackingNamespace.TIME_SERIES_NAMESPACE;
+    myCpuTable.setTimeSeriesStore(store);
   }
 }
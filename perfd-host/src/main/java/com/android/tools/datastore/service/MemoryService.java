@@ -17,6 +17,7 @@ package com.android.tools.datastore.service;
 
 import static com.android.tools.datastore.DataStoreDatabase.Characteristic.PERFORMANT;
 
+import com.android.annotations.VisibleForTesting;
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.DataStoreService.BackingNamespace;
 import com.android.tools.datastore.DeviceId;
@@ -24,6 +25,7 @@ import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.MemoryLiveAllocationTable;
 import com.android.tools.datastore.database.MemoryStatsTable;
+import com.android.tools.datastore.database.TimeSeriesStore;
 import com.android.tools.datastore.poller.MemoryDataPoller;
 import com.android.tools.datastore.poller.MemoryJvmtiDataPoller;
 import com.android.tools.datastore.poller.NativeSymbolsPoller;
@@ -70,6 +72,14 @@ import com.android.tools.profiler.proto.MemoryProfiler.TriggerHeapDumpRequest;
 import com.android.tools.profiler.proto.MemoryProfiler.TriggerHeapDumpResponse;
 import com.android.tools.profiler.proto.MemoryServiceGrpc;
 import com.android.tools.profiler.protobuf3jarjar.ByteString;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.stub.StreamObserver;
 import java.sql.Connection;
 import java.util.Arrays;
@@ -78,10 +88,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase implements ServicePassThrough {
   private static final BackingNamespace LIVE_ALLOCATION_NAMESPACE = new BackingNamespace("LiveAllocations", PERFORMANT);
 
+  /**
+   * Header with which callers of {@link #getAllocations} ask for pages of at most about that many events instead of the whole range. The
+   * profiler protos are not part of this tree, so the page size can't be a field of {@link AllocationSnapshotRequest}.
+   */
+  public static final Metadata.Key<String> ALLOCATION_PAGE_SIZE_HEADER =
+    Metadata.Key.of("allocation-page-size", Metadata.ASCII_STRING_MARSHALLER);
+  private static final Context.Key<Integer> ALLOCATION_PAGE_SIZE = Context.key("allocation-page-size");
+
   private final Map<Long, PollRunner> myRunners = new HashMap<>();
   private final Map<Long, PollRunner> myJvmtiRunners = new HashMap<>();
   private final Map<Long, PollRunner> mySymbolizationRunners = new HashMap<>();
@@ -350,20 +369,65 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
     responseObserver.onCompleted();
   }
 
+  /**
+   * Returns all the allocation events of the request's range, or only one page of them if the call has an
+   * {@link #ALLOCATION_PAGE_SIZE_HEADER}, see {@link #queryAllocations}.
+   */
   @Override
   public void getAllocations(AllocationSnapshotRequest request, StreamObserver<BatchAllocationSample> responseObserver) {
-    BatchAllocationSample response;
-    if (request.getLiveObjectsOnly()) {
-      response = myAllocationsTable.getSnapshot(request.getSession(), request.getEndTime());
-    }
-    else {
-      response =
-        myAllocationsTable.getAllocations(request.getSession(), request.getStartTime(), request.getEndTime());
-    }
-    responseObserver.onNext(response);
+    responseObserver.onNext(queryAllocations(myAllocationsTable, request, ALLOCATION_PAGE_SIZE.get()));
     responseObserver.onCompleted();
   }
 
+  /**
+   * Without a page size, returns all the events of the request's range, and for live objects only requests all the instances alive at
+   * its end time.
+   * <p>
+   * With a page size, returns one page of at most about that many events. The response's timestamp is the last timestamp the page covers,
+   * so callers keep requesting from timestamp + 1 until it reaches the request's end time - 1. For live objects only requests, the start
+   * time then bounds the allocation time of the returned instances.
+   */
+  @VisibleForTesting
+  @NotNull
+  static BatchAllocationSample queryAllocations(@NotNull MemoryLiveAllocationTable table,
+                                                @NotNull AllocationSnapshotRequest request,
+                                                @Nullable Integer pageSize) {
+    if (pageSize == null) {
+      return request.getLiveObjectsOnly()
+             ? table.getSnapshot(request.getSession(), request.getEndTime())
+             : table.getAllocations(request.getSession(), request.getStartTime(), request.getEndTime());
+    }
+    return request.getLiveObjectsOnly()
+           ? table.getSnapshotPage(request.getSession(), request.getStartTime(), request.getEndTime(), pageSize)
+           : table.getAllocationsPage(request.getSession(), request.getStartTime(), request.getEndTime(), pageSize);
+  }
+
+  /**
+   * Makes the page size of the calls with an {@link #ALLOCATION_PAGE_SIZE_HEADER} available to {@link #getAllocations}.
+   */
+  @Override
+  public ServerServiceDefinition bindService() {
+    return ServerInterceptors.intercept(super.bindService(), new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                   Metadata headers,
+                                                                   ServerCallHandler<ReqT, RespT> next) {
+        String pageSize = headers.get(ALLOCATION_PAGE_SIZE_HEADER);
+        if (pageSize != null) {
+          try {
+            int size = Integer.parseInt(pageSize);
+            if (size > 0) {
+              return Contexts.interceptCall(Context.current().withValue(ALLOCATION_PAGE_SIZE, size), call, headers, next);
+            }
+          }
+          catch (NumberFormatException ignored) {
+          }
+        }
+        return next.startCall(call, headers);
+      }
+    });
+  }
+
   @Override
   public void getJNIGlobalRefsEvents(JNIGlobalRefsEventsRequest request,
                                      StreamObserver<BatchJNIGlobalRefEvent> responseObserver) {
@@ -431,6 +495,9 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
   @NotNull
   @Override
   public List<BackingNamespace> getBackingNamespaces() {
+    if (myService.isTimeSeriesStoreEnabled()) {
+      return Arrays.asList(BackingNamespace.DEFAULT_SHARED_NAMESPACE, LIVE_ALLOCATION_NAMESPACE, BackingNamespace.TIME_SERIES_NAMESPACE);
+    }
     return Arrays.asList(BackingNamespace.DEFAULT_SHARED_NAMESPACE, LIVE_ALLOCATION_NAMESPACE);
   }
 
@@ -440,8 +507,14 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
     if (namespace.equals(BackingNamespace.DEFAULT_SHARED_NAMESPACE)) {
       myStatsTable.initialize(connection);
     }
-    else {
+    else if (namespace.equals(LIVE_ALLOCATION_NAMESPACE)) {
       myAllocationsTable.initialize(connection);
     }
   }
+
+  @Override
+  public void setTimeSeriesStore(@NotNull BackingNamespace namespace, @NotNull TimeSeriesStore store) {
+    assert namespace.equals(BackingNamespace.TIME_SERIES_NAMESPACE);
+    myStatsTable.setTimeSeriesStore(store);
+  }
 }
\ No newline at end of file
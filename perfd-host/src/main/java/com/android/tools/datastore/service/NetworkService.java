@@ -19,6 +19,7 @@ import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.DeviceId;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.NetworkTable;
+import com.android.tools.datastore.database.TimeSeriesStore;
 import com.android.tools.datastore.poller.NetworkDataPoller;
 import com.android.tools.datastore.poller.PollRunner;
 import com.android.tools.profiler.proto.NetworkProfiler;
@@ -27,6 +28,7 @@ import io.grpc.stub.StreamObserver;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -138,12 +140,24 @@ public class NetworkService extends NetworkServiceGrpc.NetworkServiceImplBase im
   @NotNull
   @Override
   public List<DataStoreService.BackingNamespace> getBackingNamespaces() {
+    if (myService.isTimeSeriesStoreEnabled()) {
+      return Arrays.asList(DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE,
+                           DataStoreService.BackingNamespace.TIME_SERIES_NAMESPACE);
+    }
     return Collections.singletonList(DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE);
   }
 
   @Override
   public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
-    assert namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE;
-    myNetworkTable.initialize(connection);
+    assert getBackingNamespaces().contains(namespace);
+    if (namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE) {
+      myNetworkTable.initialize(connection);
+    }
+  }
+
+  @Override
+  public void setTimeSeriesStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull TimeSeriesStore store) {
+    assert namespace == DataStoreService.BackingNamespace.TIME_SERIES_NAMESPACE;
+    myNetworkTable.setTimeSeriesStore(store);
   }
 }
\ No newline at end of file
@@ -24,9 +24,13 @@ import org.junit.Test;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertFalse;
@@ -106,6 +110,86 @@ public class DatabaseTableTest {
     }
   }
 
+  @Test
+  public void testBatchedRowsAreFlushedBeforeQuery() throws Exception {
+    myTable.setBatchPolicy(TEST_DATA_COUNT * 2, Long.MAX_VALUE);
+    for (int i = 0; i < TEST_DATA_COUNT; i++) {
+      myTable.insertDataBatched(i);
+    }
+    assertThat(myTable.getWriteStats().getPendingRows()).isEqualTo(TEST_DATA_COUNT);
+    assertThat(myTable.getWriteStats().getRowsWritten()).isEqualTo(0);
+
+    ResultSet rs = myTable.readDataRaw();
+    int count = 0;
+    while (rs.next()) {
+      assertThat(rs.getInt(1)).isEqualTo(count++);
+    }
+    assertThat(count).isEqualTo(TEST_DATA_COUNT);
+
+    DataStoreTable.WriteStats stats = myTable.getWriteStats();
+    assertThat(stats.getPendingRows()).isEqualTo(0);
+    assertThat(stats.getRowsWritten()).isEqualTo(TEST_DATA_COUNT);
+    assertThat(stats.getBatchesWritten()).isEqualTo(1);
+  }
+
+  @Test
+  public void testBatchIsFlushedWhenFull() throws Exception {
+    myTable.setBatchPolicy(10, Long.MAX_VALUE);
+    for (int i = 0; i < 25; i++) {
+      myTable.insertDataBatched(i);
+    }
+    DataStoreTable.WriteStats stats = myTable.getWriteStats();
+    assertThat(stats.getRowsWritten()).isEqualTo(20);
+    assertThat(stats.getBatchesWritten()).isEqualTo(2);
+    assertThat(stats.getPendingRows()).isEqualTo(5);
+  }
+
+  @Test
+  public void testBatchedRowsDroppedOnClosedConnection() throws Exception {
+    myTable.setBatchPolicy(TEST_DATA_COUNT, Long.MAX_VALUE);
+    myTable.insertDataBatched(1);
+    myDatabase.getConnection().close();
+    myTable.flushBatch();
+    assertThat(myTable.getWriteStats().getPendingRows()).isEqualTo(0);
+    assertThat(myTable.getWriteStats().getRowsWritten()).isEqualTo(0);
+    assertThat(myTable.getWriteStats().getRowsDropped()).isEqualTo(1);
+  }
+
+  @Test
+  public void testBatchIsFlushedAfterIntervalWithoutFurtherWrites() throws Exception {
+    myTable.setBatchPolicy(TEST_DATA_COUNT, TimeUnit.MILLISECONDS.toNanos(10));
+    myTable.insertDataBatched(1);
+    long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (myTable.getWriteStats().getPendingRows() > 0 && System.nanoTime() < deadlineNs) {
+      Thread.sleep(5);
+    }
+    DataStoreTable.WriteStats stats = myTable.getWriteStats();
+    assertThat(stats.getPendingRows()).isEqualTo(0);
+    assertThat(stats.getRowsWritten()).isEqualTo(1);
+    assertThat(stats.getRowsDropped()).isEqualTo(0);
+  }
+
+  @Test
+  public void testBatchedRowsAreWrittenOnDisconnect() throws Exception {
+    myTable.setBatchPolicy(TEST_DATA_COUNT, TimeUnit.SECONDS.toNanos(10));
+    myTable.insertDataBatched(1, 2, 3);
+    myDatabase.disconnect();
+    DataStoreTable.WriteStats stats = myTable.getWriteStats();
+    assertThat(stats.getPendingRows()).isEqualTo(0);
+    assertThat(stats.getRowsWritten()).isEqualTo(3);
+    assertThat(stats.getRowsDropped()).isEqualTo(0);
+
+    // Opening a DataStoreDatabase would delete the file, so it is read back directly.
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + myDbFile.getAbsolutePath());
+         ResultSet results = connection.createStatement().executeQuery("SELECT DataColumn FROM Thread_Table ORDER BY DataColumn")) {
+      List<Integer> values = new ArrayList<>();
+      while (results.next()) {
+        values.add(results.getInt(1));
+      }
+      assertThat(values).containsExactly(1, 2, 3).inOrder();
+    }
+  }
+
   /**
    * Runnable class that handles querying the database as fast as possible.
    */
@@ -184,6 +268,12 @@ public class DatabaseTableTest {
       }
     }
 
+    public void insertDataBatched(int... someData) {
+      for (int i = 0; i < someData.length; i++) {
+        addBatch(ThreadTableStatement.INSERT_DATA, someData[i]);
+      }
+    }
+
     public ResultSet readDataRaw() throws SQLException {
       return executeQuery(ThreadTableStatement.READ_DATA);
     }
@@ -108,6 +108,8 @@ public class MemoryLiveAllocationTableTest extends DatabaseTest<MemoryLiveAlloca
       table.updateSymbolizedNativeFrames(session, frames);
     });
     methodCalls.add((table) -> table.getAllocationContexts(session, 0, 0));
+    methodCalls.add((table) -> table.getAllocationsPage(session, 0, 0, 1));
+    methodCalls.add((table) -> table.getSnapshotPage(session, 0, 0, 1));
     methodCalls.add((table) -> table.getAllocations(session, 0, 0));
     methodCalls.add((table) -> table.getJniReferencesEventsFromRange(session, 0, 0));
     methodCalls.add((table) -> table.getJniReferencesSnapshot(session, 0));
@@ -451,6 +453,52 @@ public class MemoryLiveAllocationTableTest extends DatabaseTest<MemoryLiveAlloca
   }
 
 
+  @Test
+  public void testPagedAllocationQueriesDoNotSplitTimestamps() {
+    // Ten instances allocated two per timestamp (t = 0..4), the even ones freed at t = 10 + tag.
+    BatchAllocationSample.Builder insertSample = BatchAllocationSample.newBuilder();
+    for (int i = 0; i < 10; i++) {
+      insertSample.addEvents(AllocationEvent.newBuilder().setAllocData(
+        AllocationEvent.Allocation.newBuilder().setTag(i).setClassTag(CLASS1).setHeapId(HEAP0)).setTimestamp(i / 2));
+    }
+    for (int i = 0; i < 10; i += 2) {
+      insertSample.addEvents(AllocationEvent.newBuilder().setFreeData(
+        AllocationEvent.Deallocation.newBuilder().setTag(i).setClassTag(CLASS1).setHeapId(HEAP0)).setTimestamp(10 + i));
+    }
+    getTable().insertAllocationData(VALID_SESSION, insertSample.build());
+
+    // A page of 3 events is extended to 4 to not split the events at t = 1, and covers up to t = 1.
+    BatchAllocationSample page = getTable().getAllocationsPage(VALID_SESSION, 0, 20, 3);
+    assertThat(page.getEventsCount()).isEqualTo(4);
+    assertThat(page.getTimestamp()).isEqualTo(1);
+
+    // Paging through the whole range returns the same events as the unpaged query, in time order.
+    List<AllocationEvent> pagedEvents = new ArrayList<>();
+    long startTime = 0;
+    int pageCount = 0;
+    do {
+      page = getTable().getAllocationsPage(VALID_SESSION, startTime, 20, 3);
+      pagedEvents.addAll(page.getEventsList());
+      startTime = page.getTimestamp() + 1;
+      pageCount++;
+    }
+    while (page.getTimestamp() < 19);
+    assertThat(pageCount).isGreaterThan(1);
+    assertThat(pagedEvents).containsExactlyElementsIn(getTable().getAllocations(VALID_SESSION, 0, 20).getEventsList());
+    for (int i = 1; i < pagedEvents.size(); i++) {
+      assertThat(pagedEvents.get(i).getTimestamp()).isAtLeast(pagedEvents.get(i - 1).getTimestamp());
+    }
+
+    // Snapshot at t = 11: instance 0 is freed, the other nine are alive.
+    page = getTable().getSnapshotPage(VALID_SESSION, 0, 11, 5);
+    assertThat(page.getEventsCount()).isEqualTo(5);
+    assertThat(page.getTimestamp()).isEqualTo(2);
+    page = getTable().getSnapshotPage(VALID_SESSION, 3, 11, 5);
+    assertThat(page.getEventsCount()).isEqualTo(4);
+    assertThat(page.getTimestamp()).isEqualTo(10);
+    assertThat(getTable().getSnapshot(VALID_SESSION, 11).getEventsCount()).isEqualTo(9);
+  }
+
   @Test
   public void testInsertAndQueryAllocationData() {
     // A klass1 instance allocation event (t = 0)
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimeSeriesTest {
+
+  @Test
+  public void testQueryRangeIsStartExclusiveEndInclusive() {
+    TimeSeries series = new TimeSeries(1);
+    for (long i = 0; i < 10; i++) {
+      series.add(i, i * 10);
+    }
+
+    assertThat(queryTimestamps(series, 2, 5)).containsExactly(3L, 4L, 5L).inOrder();
+    assertThat(queryTimestamps(series, -1, 0)).containsExactly(0L);
+    assertThat(queryTimestamps(series, 9, 100)).isEmpty();
+  }
+
+  @Test
+  public void testQuerySpansChunks() {
+    TimeSeries series = new TimeSeries(2);
+    int count = TimeSeries.CHUNK_SIZE * 3 + 7;
+    for (long i = 0; i < count; i++) {
+      series.add(i, i, -i);
+    }
+    assertThat(series.size()).isEqualTo(count);
+
+    List<Long> values = new ArrayList<>();
+    series.query(TimeSeries.CHUNK_SIZE - 2, TimeSeries.CHUNK_SIZE * 2 + 1, row -> {
+      assertThat(row.getLong(1)).isEqualTo(-row.getLong(0));
+      values.add(row.getLong(0));
+    });
+    assertThat(values).hasSize(TimeSeries.CHUNK_SIZE + 3);
+    assertThat(values.get(0)).isEqualTo(TimeSeries.CHUNK_SIZE - 1);
+    assertThat(values.get(values.size() - 1)).isEqualTo(TimeSeries.CHUNK_SIZE * 2 + 1);
+  }
+
+  @Test
+  public void testOutOfOrderInsertsStaySorted() {
+    TimeSeries series = new TimeSeries(1);
+    int count = TimeSeries.CHUNK_SIZE * 2;
+    // Even timestamps first, so the odd ones have to be inserted into full chunks.
+    for (long i = 0; i < count; i += 2) {
+      series.add(i, i);
+    }
+    for (long i = count - 1; i > 0; i -= 2) {
+      series.add(i, i);
+    }
+    assertThat(series.size()).isEqualTo(count);
+
+    List<Long> timestamps = queryTimestamps(series, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertThat(timestamps).hasSize(count);
+    for (int i = 0; i < count; i++) {
+      assertThat(timestamps.get(i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void testAddReplacesExistingTimestamp() {
+    TimeSeries series = new TimeSeries(1);
+    series.add(1, 10);
+    series.add(2, 20);
+    series.add(1, 11);
+    assertThat(series.size()).isEqualTo(2);
+
+    long[] values = new long[1];
+    assertThat(series.get(1, values)).isTrue();
+    assertThat(values[0]).isEqualTo(11);
+    assertThat(series.get(3, values)).isFalse();
+  }
+
+  @Test
+  public void testStoreKeepsSessionsSeparate() {
+    TimeSeriesStore store = new TimeSeriesStore();
+    store.getOrCreateSeries(1, "series", 1).add(1, 1);
+    assertThat(store.getSeries(1, "series").size()).isEqualTo(1);
+    assertThat(store.getSeries(2, "series")).isNull();
+    assertThat(store.getSeries(1, "other")).isNull();
+  }
+
+  private static List<Long> queryTimestamps(TimeSeries series, long startExclusive, long endInclusive) {
+    List<Long> timestamps = new ArrayList<>();
+    series.query(startExclusive, endInclusive, row -> timestamps.add(row.getTimestamp()));
+    return timestamps;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PollSchedulerTest {
+  private static final long TEST_PERIOD_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final PollScheduler myScheduler = new PollScheduler("PollSchedulerTest", 1);
+
+  @After
+  public void tearDown() {
+    myScheduler.shutdown();
+  }
+
+  @Test
+  public void testRunnersSharingOneThreadAreAllPolled() throws Exception {
+    CountingRunner first = new CountingRunner(5);
+    CountingRunner second = new CountingRunner(5);
+    myScheduler.schedule(first);
+    myScheduler.schedule(second);
+    assertThat(first.myLatch.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(second.myLatch.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(myScheduler.getRunners()).containsExactly(first, second);
+
+    first.stop();
+    assertThat(first.isDone()).isTrue();
+    assertThat(myScheduler.getRunners()).containsExactly(second);
+    assertThat(first.getStats().getPollCount()).isAtLeast(5L);
+  }
+
+  @Test
+  public void testStalledPollDoesNotDelayOtherRunners() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountingRunner stalled = new CountingRunner(1) {
+      @Override
+      public void poll() {
+        super.poll();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    CountingRunner other = new CountingRunner(5);
+    try {
+      myScheduler.schedule(stalled);
+      assertThat(stalled.myLatch.await(10, TimeUnit.SECONDS)).isTrue();
+      // The only idle thread of the scheduler is now blocked in the stalled poll.
+      myScheduler.schedule(other);
+      assertThat(other.myLatch.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+    finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testStopDoesNotWaitForNextPoll() throws Exception {
+    CountingRunner runner = new CountingRunner(1, TimeUnit.HOURS.toNanos(1));
+    myScheduler.schedule(runner);
+    assertThat(runner.myLatch.await(10, TimeUnit.SECONDS)).isTrue();
+
+    long startTimeNs = System.nanoTime();
+    runner.stop();
+    assertThat(System.nanoTime() - startTimeNs).isLessThan(TimeUnit.SECONDS.toNanos(10));
+    assertThat(runner.isDone()).isTrue();
+    assertThat(myScheduler.getRunners()).isEmpty();
+  }
+
+  @Test
+  public void testPeriodBacksOffWithoutNewData() {
+    CountingRunner runner = new CountingRunner(0);
+    runner.myHasData = false;
+    for (int i = 0; i < 10; i++) {
+      runner.pollOnce();
+    }
+    assertThat(runner.getCurrentPollPeriodNs()).isEqualTo(TEST_PERIOD_NS * PollRunner.MAX_BACKOFF_MULTIPLIER);
+
+    runner.myHasData = true;
+    runner.pollOnce();
+    assertThat(runner.getCurrentPollPeriodNs()).isEqualTo(TEST_PERIOD_NS);
+  }
+
+  @Test
+  public void testSlowPollIsCountedAsOverrun() {
+    CountingRunner runner = new CountingRunner(0);
+    runner.myPollTimeMs = 5;
+    runner.pollOnce();
+    runner.myPollTimeMs = 0;
+    runner.pollOnce();
+
+    PollStats stats = runner.getStats();
+    assertThat(stats.getPollCount()).isEqualTo(2);
+    assertThat(stats.getOverrunCount()).isEqualTo(1);
+    assertThat(stats.getMaxLatencyNs()).isAtLeast(TimeUnit.MILLISECONDS.toNanos(5));
+  }
+
+  @Test
+  public void testRunnerFinishesWhenStreamFails() throws Exception {
+    CountingRunner runner = new CountingRunner(1);
+    runner.myFail = true;
+    myScheduler.schedule(runner);
+    runner.get(10, TimeUnit.SECONDS);
+    assertThat(runner.isDone()).isTrue();
+    assertThat(myScheduler.getRunners()).isEmpty();
+  }
+
+  @Test
+  public void testShutdownFinishesScheduledRunners() throws Exception {
+    CountingRunner runner = new CountingRunner(1);
+    myScheduler.schedule(runner);
+    assertThat(runner.myLatch.await(10, TimeUnit.SECONDS)).isTrue();
+    myScheduler.shutdown();
+    assertThat(runner.isCancelled()).isTrue();
+    assertThat(runner.isDone()).isTrue();
+  }
+
+  private static class CountingRunner extends PollRunner {
+    private final CountDownLatch myLatch;
+    private volatile boolean myHasData = true;
+    private volatile boolean myFail;
+    private volatile long myPollTimeMs;
+
+    CountingRunner(int expectedPolls) {
+      this(expectedPolls, TEST_PERIOD_NS);
+    }
+
+    CountingRunner(int expectedPolls, long pollPeriodNs) {
+      super(pollPeriodNs);
+      myLatch = new CountDownLatch(expectedPolls);
+    }
+
+    @Override
+    public void poll() {
+      myLatch.countDown();
+      if (myFail) {
+        throw Status.UNAVAILABLE.asRuntimeException();
+      }
+      if (myPollTimeMs > 0) {
+        try {
+          Thread.sleep(myPollTimeMs);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (!myHasData) {
+        reportNoNewData();
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.service;
+
+import com.android.tools.datastore.DataStoreDatabase;
+import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.FakeLogService;
+import com.android.tools.datastore.database.MemoryLiveAllocationTable;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationEvent;
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationSnapshotRequest;
+import com.android.tools.profiler.proto.MemoryProfiler.BatchAllocationSample;
+import com.android.tools.profiler.proto.MemoryServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.UUID;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class MemoryServiceTest {
+  private static final Common.Session SESSION = Common.Session.newBuilder().setSessionId(1L).setDeviceId(1234).setPid(1).build();
+
+  private File myDbFile;
+  private DataStoreDatabase myDatabase;
+  private MemoryLiveAllocationTable myTable;
+
+  @Before
+  public void setUp() throws Exception {
+    myDbFile = File.createTempFile("MemoryServiceTest", "sql");
+    myDatabase = new DataStoreDatabase(myDbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE, new FakeLogService());
+    myTable = new MemoryLiveAllocationTable(new FakeLogService());
+    myTable.initialize(myDatabase.getConnection());
+
+    // Ten instances allocated at t = 0..9, the even ones freed at t = 10 + tag.
+    BatchAllocationSample.Builder sample = BatchAllocationSample.newBuilder();
+    for (int i = 0; i < 10; i++) {
+      sample.addEvents(AllocationEvent.newBuilder().setAllocData(AllocationEvent.Allocation.newBuilder().setTag(i)).setTimestamp(i));
+    }
+    for (int i = 0; i < 10; i += 2) {
+      sample.addEvents(AllocationEvent.newBuilder().setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(i)).setTimestamp(10 + i));
+    }
+    myTable.insertAllocationData(SESSION, sample.build());
+  }
+
+  @After
+  public void tearDown() {
+    myDatabase.disconnect();
+    myDbFile.delete();
+  }
+
+  @Test
+  public void allocationsAreNotPagedWithoutPageSize() {
+    AllocationSnapshotRequest request = AllocationSnapshotRequest.newBuilder().setSession(SESSION).setStartTime(0).setEndTime(20).build();
+    assertThat(MemoryService.queryAllocations(myTable, request, null).getEventsCount()).isEqualTo(15);
+
+    // Live objects only requests return the instances alive at the end time, whatever the start time.
+    request = request.toBuilder().setStartTime(5).setEndTime(13).setLiveObjectsOnly(true).build();
+    BatchAllocationSample snapshot = MemoryService.queryAllocations(myTable, request, null);
+    assertThat(snapshot.getEventsCount()).isEqualTo(8);
+    assertThat(snapshot.getTimestamp()).isEqualTo(9);
+  }
+
+  @Test
+  public void allocationsArePagedWithPageSize() {
+    AllocationSnapshotRequest request = AllocationSnapshotRequest.newBuilder().setSession(SESSION).setStartTime(0).setEndTime(20).build();
+    BatchAllocationSample page = MemoryService.queryAllocations(myTable, request, 4);
+    assertThat(page.getEventsCount()).isEqualTo(4);
+    assertThat(page.getTimestamp()).isEqualTo(3);
+
+    request = request.toBuilder().setStartTime(5).setEndTime(13).setLiveObjectsOnly(true).build();
+    page = MemoryService.queryAllocations(myTable, request, 4);
+    assertThat(page.getEventsCount()).isEqualTo(4);
+    assertThat(page.getTimestamp()).isEqualTo(8);
+  }
+
+  @Test
+  public void pageSizeIsReadFromHeader() throws Exception {
+    MemoryService service = new MemoryService(mock(DataStoreService.class), Runnable::run, new FakeLogService());
+    service.getBackingNamespaces().forEach(namespace -> service.setBackingStore(namespace, myDatabase.getConnection()));
+    String name = UUID.randomUUID().toString();
+    Server server = InProcessServerBuilder.forName(name).addService(service.bindService()).directExecutor().build().start();
+    ManagedChannel channel = InProcessChannelBuilder.forName(name).usePlaintext(true).directExecutor().build();
+    try {
+      MemoryServiceGrpc.MemoryServiceBlockingStub client = MemoryServiceGrpc.newBlockingStub(channel);
+      AllocationSnapshotRequest request =
+        AllocationSnapshotRequest.newBuilder().setSession(SESSION).setStartTime(0).setEndTime(20).build();
+
+      // The service's table shares the test database, so it serves the events inserted in setUp.
+      assertThat(client.getAllocations(request).getEventsCount()).isEqualTo(15);
+      Metadata headers = new Metadata();
+      headers.put(MemoryService.ALLOCATION_PAGE_SIZE_HEADER, "4");
+      BatchAllocationSample page = MetadataUtils.attachHeaders(client, headers).getAllocations(request);
+      assertThat(page.getEventsCount()).isEqualTo(4);
+      assertThat(page.getTimestamp()).isEqualTo(3);
+    }
+    finally {
+      channel.shutdownNow();
+      server.shutdownNow();
+    }
+  }
+}
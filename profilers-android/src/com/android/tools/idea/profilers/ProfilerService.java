@@ -17,6 +17,7 @@ package com.android.tools.idea.profilers;
 
 import com.android.annotations.concurrency.GuardedBy;
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.sdk.IdeSdks;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.NativeSymbolizerKt;
@@ -85,7 +86,8 @@ public class ProfilerService implements Disposable {
 
     String datastoreName = DATASTORE_NAME_PREFIX + project.getLocationHash();
     myDataStoreService = new DataStoreService(datastoreName, datastoreDirectory, ApplicationManager.getApplication()::executeOnPooledThread,
-                                              new IntellijLogService());
+                                              new IntellijLogService(), StudioFlags.PROFILER_TIME_SERIES_STORE.get(),
+                                              StudioFlags.PROFILER_SHARED_POLL_SCHEDULER.get());
     Disposer.register(this, () -> myDataStoreService.shutdown());
     myDataStoreService.setNativeSymbolizer(symbolizer);
 
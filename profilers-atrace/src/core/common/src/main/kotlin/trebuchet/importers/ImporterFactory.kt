@@ -20,5 +20,8 @@ import trebuchet.io.GenericByteBuffer
 
 
 interface ImporterFactory {
-    fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback): Importer?
+    /**
+     * @param processFilter accepts the ids of the processes whose slices and counters should be imported.
+     */
+    fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback, processFilter: (Int) -> Boolean): Importer?
 }
\ No newline at end of file
@@ -27,9 +27,9 @@ import trebuchet.model.fragments.ModelFragment
 import trebuchet.util.contains
 import java.util.regex.Pattern
 
-class FtraceImporter(val feedback: ImportFeedback) : Importer {
+class FtraceImporter(val feedback: ImportFeedback, val processFilter: (Int) -> Boolean = { true }) : Importer {
     var foundHeader = false
-    var state = FtraceImporterState(feedback)
+    var state = FtraceImporterState(feedback, processFilter)
     val parser = FtraceLine.Parser(state.stringCache)
 
     // Create captured lambads here to avoid extra kotlin-generated overhead
@@ -57,7 +57,7 @@ class FtraceImporter(val feedback: ImportFeedback) : Importer {
             //  The circular buffers are kept per CPU, so it is not guaranteed that the
             //  beginning of a slice is overwritten before the end. To work around this, we
             //  throw away the prefix of the trace where not all CPUs have events yet.
-            state = FtraceImporterState(feedback)
+            state = FtraceImporterState(feedback, processFilter)
             ftraceParserCallback = state::importLine
         }
         else if (line[0] == '#'.toByte()) {
@@ -75,9 +75,9 @@ class FtraceImporter(val feedback: ImportFeedback) : Importer {
     }
 
     object Factory : ImporterFactory {
-        override fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback): Importer? {
+        override fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback, processFilter: (Int) -> Boolean): Importer? {
             if (buffer.contains("# tracer: nop\n", 1000)) {
-                return FtraceImporter(feedback)
+                return FtraceImporter(feedback, processFilter)
             }
             return null
         }
@@ -25,7 +25,7 @@ import trebuchet.model.fragments.ProcessModelFragment
 import trebuchet.model.fragments.ThreadModelFragment
 import trebuchet.util.StringCache
 
-class FtraceImporterState(feedback: ImportFeedback) {
+class FtraceImporterState(feedback: ImportFeedback, private val processFilter: (Int) -> Boolean = { true }) {
     private val pidMap = SparseArray<ThreadModelFragment>(50)
     private val cpuMap = SparseArray<CpuModelFragment>(6)
     private val handlers = FunctionRegistry.create()
@@ -98,6 +98,11 @@ class FtraceImporterState(feedback: ImportFeedback) {
 
     fun threadFor(line: FtraceLine) = threadFor(line.pid, line.tgid, line.task)
 
+    /**
+     * Whether the slices and counters of [process] are imported. The other processes only keep their threads and scheduling data.
+     */
+    fun importsSlicesOf(process: ProcessModelFragment) = processFilter(process.id)
+
     fun cpuFor(cid: Int): CpuModelFragment {
         var cpu = cpuMap[cid]
         if (cpu == null) {
@@ -68,6 +68,9 @@ object TracingMarkerWrite : FunctionHandlerRegistry() {
         data.line.tgid = readInt()
         skip()
         val thread = data.importer.threadFor(data.line)
+        if (!data.importer.importsSlicesOf(thread.process)) {
+            return
+        }
         val name = stringTo { end() }
         thread.slicesBuilder.beginSlice {
             it.startTime = data.line.timestamp
@@ -77,10 +80,14 @@ object TracingMarkerWrite : FunctionHandlerRegistry() {
 
     fun handleEnd(data: ImportData) {
         // End format: E
-        val slices = data.thread.slicesBuilder
+        val thread = data.thread
+        if (!data.importer.importsSlicesOf(thread.process)) {
+            return
+        }
+        val slices = thread.slicesBuilder
         slices.endSlice {
             it.endTime = data.line.timestamp
-            it.populateScheduledSlices(data.thread.schedulingStateBuilder.slices)
+            it.populateScheduledSlices(thread.schedulingStateBuilder.slices)
         }
     }
 
@@ -93,6 +100,9 @@ object TracingMarkerWrite : FunctionHandlerRegistry() {
         skip()
         val value = readInt()
         data.line.tgid = tgid
-        data.importer.threadFor(data.line).process.addCounterSample(name, data.line.timestamp, value)
+        val process = data.importer.threadFor(data.line).process
+        if (data.importer.importsSlicesOf(process)) {
+            process.addCounterSample(name, data.line.timestamp, value)
+        }
     }
 }
\ No newline at end of file
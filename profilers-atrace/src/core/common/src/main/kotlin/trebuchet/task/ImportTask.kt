@@ -25,7 +25,13 @@ import trebuchet.model.Model
 import trebuchet.model.fragments.ModelFragment
 import kotlin.system.measureTimeMillis
 
-class ImportTask(private val importFeedback: ImportFeedback) {
+/**
+ * Imports a trace into a [Model]. Only the slices and counters of the processes accepted by [processFilter] are imported, so that the
+ * model of a large trace can be limited to the processes that are looked at. The processes, threads and scheduling data of the trace are
+ * always imported.
+ */
+class ImportTask @JvmOverloads constructor(private val importFeedback: ImportFeedback,
+                                           private val processFilter: (Int) -> Boolean = { true }) {
     private val fragments = mutableListOf<ModelFragment>()
 
     fun importBuffer(source: BufferProducer): Model {
@@ -60,7 +66,7 @@ class ImportTask(private val importFeedback: ImportFeedback) {
     }
 
     private fun addImporterSource(reader: StreamingReader) {
-        val importer = ImporterRegistry.importerFor(reader, importFeedback)
+        val importer = ImporterRegistry.importerFor(reader, importFeedback, processFilter)
         if (importer != null) {
             val result = importer.import(reader)
             if (result != null) {
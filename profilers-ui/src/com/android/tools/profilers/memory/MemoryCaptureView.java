@@ -46,6 +46,7 @@ public final class MemoryCaptureView extends AspectObserver {
     myStage = stage;
     myStage.getAspect().addDependency(this)
       .onChange(MemoryProfilerAspect.CURRENT_LOADING_CAPTURE, this::reset)
+      .onChange(MemoryProfilerAspect.CURRENT_LOADING_CAPTURE_PROGRESS, this::updateLoadingProgress)
       .onChange(MemoryProfilerAspect.CURRENT_LOADED_CAPTURE, this::refresh);
 
     myPanel = new JPanel(createToolbarLayout());
@@ -71,6 +72,18 @@ public final class MemoryCaptureView extends AspectObserver {
     myCaptureObject = myStage.getSelectedCapture();
   }
 
+  private void updateLoadingProgress() {
+    CaptureObject captureObject = myStage.getSelectedCapture();
+    if (captureObject == null || captureObject != myCaptureObject || captureObject.isDoneLoading()) {
+      return;
+    }
+
+    myLabel.setText(String.format("%s (%d%%)", myStage.getCaptureLoadingMessage(), Math.round(myStage.getCaptureLoadingProgress() * 100)));
+    if (myLabel.getParent() != myPanel) {
+      myPanel.add(myLabel);
+    }
+  }
+
   private void refresh() {
     CaptureObject captureObject = myStage.getSelectedCapture();
     boolean validCapture = captureObject == myCaptureObject && myCaptureObject != null;
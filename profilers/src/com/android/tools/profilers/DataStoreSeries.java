@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.tools.adtui.model.LongDataBuffer;
+import com.android.tools.adtui.model.LongDataRange;
+import com.android.tools.adtui.model.PrimitiveLongDataSeries;
+import com.android.tools.adtui.model.Range;
+import com.android.tools.adtui.model.SeriesData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of the data series of longs that query the datastore for the samples of every range they are asked for. Subclasses only
+ * write the samples into a buffer, from which both the boxed and the primitive {@link PrimitiveLongDataSeries} queries are served, so
+ * the charts can read them without boxing.
+ */
+public abstract class DataStoreSeries implements PrimitiveLongDataSeries {
+  /**
+   * Samples of the last primitive query, which the {@link LongDataRange} returned by it points to.
+   */
+  @NotNull private final LongDataBuffer myData = new LongDataBuffer();
+
+  /**
+   * Queries the datastore for the samples of {@code xRange}, in microseconds, and adds them to {@code data} in x order.
+   */
+  protected abstract void fetchData(@NotNull Range xRange, @NotNull LongDataBuffer data);
+
+  @Override
+  public List<SeriesData<Long>> getDataForXRange(@NotNull Range xRange) {
+    LongDataBuffer data = new LongDataBuffer();
+    fetchData(xRange, data);
+    List<SeriesData<Long>> seriesData = new ArrayList<>(data.size());
+    for (int i = 0; i < data.size(); i++) {
+      seriesData.add(new SeriesData<>(data.getX(i), data.getY(i)));
+    }
+    return seriesData;
+  }
+
+  @Override
+  public void getDataForXRange(@NotNull Range xRange, @NotNull LongDataRange range) {
+    myData.clear();
+    fetchData(xRange, myData);
+    myData.getDataForIndexRange(0, myData.size(), range);
+  }
+}
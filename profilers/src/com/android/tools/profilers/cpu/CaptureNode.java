@@ -22,165 +22,256 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
 
-import static com.android.tools.profilers.cpu.CaptureNode.FilterType.MATCH;
-
+/**
+ * A call of a capture tree. Nodes are views of a {@link CaptureNodeTree}, which keeps the data of all the nodes of a tree: they are
+ * created as they are accessed, and two views of the same node are equal, so compare nodes with {@link #equals(Object)}.
+ */
 public class CaptureNode implements HNode<CaptureNode> {
-
   /**
-   * Start time with GLOBAL clock.
+   * The tree the node was created in, and its index there. Views are immutable so that they can be shared between threads; when the tree
+   * is moved into another one, {@link #resolve()} finds where the node is now.
    */
-  private long myStartGlobal;
+  @NotNull
+  private final CaptureNodeTree myTree;
 
-  /**
-   * End time with GLOBAL clock.
-   */
-  private long myEndGlobal;
+  private final int myIndex;
 
   /**
-   * Start time with THREAD clock.
+   * The view of this node in the tree it was last found to have been moved to, so the moves are only followed once.
    */
-  private long myStartThread;
+  @Nullable
+  private volatile CaptureNode myMovedTo;
 
   /**
-   * End time with THREAD clock.
+   * Creates a node with no parent, in a tree of its own. Prefer {@link #addChild(CaptureNodeModel)} to build a tree, as adding this node
+   * to another tree with {@link #addChild(CaptureNode)} has to move the nodes of its tree to the other one.
    */
-  private long myEndThread;
+  public CaptureNode(@NotNull CaptureNodeModel model) {
+    myTree = new CaptureNodeTree();
+    myIndex = myTree.addNode(model);
+  }
 
-  @NotNull
-  private final List<CaptureNode> myChildren;
+  private CaptureNode(@NotNull CaptureNodeTree tree, int index) {
+    myTree = tree;
+    myIndex = index;
+  }
 
+  /**
+   * @return the view of this node in the tree holding it, following the tree if it has been moved to another one.
+   */
   @NotNull
-  private ClockType myClockType;
+  private CaptureNode resolve() {
+    CaptureNode movedTo = myMovedTo;
+    CaptureNode node = movedTo != null ? movedTo : this;
+    CaptureNodeTree tree = node.myTree;
+    if (tree.myMergedInto == null) {
+      return node;
+    }
+    int index = node.myIndex;
+    while (tree.myMergedInto != null) {
+      index += tree.myMergeOffset;
+      tree = tree.myMergedInto;
+    }
+    node = new CaptureNode(tree, index);
+    myMovedTo = node;
+    return node;
+  }
 
   /**
-   * The parent of its child is set to it when it is added {@link #addChild(CaptureNode)}
+   * Makes {@code child}, which must not have a parent, the last child of this node.
    */
-  private CaptureNode myParent;
+  public void addChild(@NotNull CaptureNode child) {
+    CaptureNode node = resolve();
+    CaptureNode resolvedChild = child.resolve();
+    if (resolvedChild.myTree != node.myTree) {
+      int offset = node.myTree.merge(resolvedChild.myTree);
+      resolvedChild = new CaptureNode(node.myTree, resolvedChild.myIndex + offset);
+    }
+    node.myTree.addChild(node.myIndex, resolvedChild.myIndex);
+  }
 
   /**
-   * see {@link FilterType}.
+   * Creates a node for {@code model} as the last child of this node.
    */
   @NotNull
-  private FilterType myFilterType;
+  public CaptureNode addChild(@NotNull CaptureNodeModel model) {
+    CaptureNode node = resolve();
+    int child = node.myTree.addNode(model);
+    node.myTree.addChild(node.myIndex, child);
+    return new CaptureNode(node.myTree, child);
+  }
 
   /**
-   * The shortest distance from the root.
+   * Creates a node for {@code model} with no parent, in the same tree as this node, so it can be added to that tree without moving it.
    */
-  private int myDepth;
-
   @NotNull
-  private final CaptureNodeModel myData;
-
-  public CaptureNode(@NotNull CaptureNodeModel model) {
-    myChildren = new ArrayList<>();
-    myClockType = ClockType.GLOBAL;
-    myFilterType = MATCH;
-    myDepth = 0;
-    myData = model;
-  }
-
-  public void addChild(CaptureNode node) {
-    myChildren.add(node);
-    node.myParent = this;
+  public CaptureNode createNode(@NotNull CaptureNodeModel model) {
+    CaptureNodeTree tree = resolve().myTree;
+    return new CaptureNode(tree, tree.addNode(model));
   }
 
   @NotNull
   public List<CaptureNode> getChildren() {
-    return myChildren;
+    return new AbstractList<CaptureNode>() {
+      @Override
+      public CaptureNode get(int index) {
+        return getChildAt(index);
+      }
+
+      @Override
+      public int size() {
+        return getChildCount();
+      }
+    };
   }
 
   @NotNull
   public CaptureNodeModel getData() {
-    return myData;
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    return tree.getModel(tree.myMethodIds[node.myIndex]);
+  }
+
+  /**
+   * Returns the id of {@link #getData()} in the tree of this node, which is the same for all the nodes of the tree with the same model.
+   */
+  public int getMethodId() {
+    CaptureNode node = resolve();
+    return node.myTree.myMethodIds[node.myIndex];
   }
 
   @Override
   public int getChildCount() {
-    return myChildren.size();
+    CaptureNode node = resolve();
+    return node.myTree.myChildCounts[node.myIndex];
   }
 
   @NotNull
   @Override
   public CaptureNode getChildAt(int index) {
-    return myChildren.get(index);
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    if (index < 0 || index >= tree.myChildCounts[node.myIndex]) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + tree.myChildCounts[node.myIndex]);
+    }
+    return new CaptureNode(tree, tree.getChildAt(node.myIndex, index));
+  }
+
+  @Nullable
+  @Override
+  public CaptureNode getFirstChild() {
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    int child = tree.myFirstChildren[node.myIndex];
+    return child == CaptureNodeTree.NO_NODE ? null : new CaptureNode(tree, child);
+  }
+
+  @Nullable
+  @Override
+  public CaptureNode getLastChild() {
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    int child = tree.myLastChildren[node.myIndex];
+    return child == CaptureNodeTree.NO_NODE ? null : new CaptureNode(tree, child);
   }
 
   @Nullable
   @Override
   public CaptureNode getParent() {
-    return myParent;
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    int parent = tree.myParents[node.myIndex];
+    return parent == CaptureNodeTree.NO_NODE ? null : new CaptureNode(tree, parent);
   }
 
   @Override
   public long getStart() {
-    return myClockType == ClockType.THREAD ? myStartThread : myStartGlobal;
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    return tree.isThreadClock(node.myIndex) ? tree.myStartThread[node.myIndex] : tree.myStartGlobal[node.myIndex];
   }
 
   @Override
   public long getEnd() {
-    return myClockType == ClockType.THREAD ? myEndThread : myEndGlobal;
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    return tree.isThreadClock(node.myIndex) ? tree.myEndThread[node.myIndex] : tree.myEndGlobal[node.myIndex];
   }
 
   @Override
   public int getDepth() {
-    return myDepth;
+    CaptureNode node = resolve();
+    return node.myTree.myDepths[node.myIndex];
   }
 
   public void setStartGlobal(long startGlobal) {
-    myStartGlobal = startGlobal;
+    CaptureNode node = resolve();
+    node.myTree.myStartGlobal[node.myIndex] = startGlobal;
   }
 
   public long getStartGlobal() {
-    return myStartGlobal;
+    CaptureNode node = resolve();
+    return node.myTree.myStartGlobal[node.myIndex];
   }
 
   public void setEndGlobal(long endGlobal) {
-    myEndGlobal = endGlobal;
+    CaptureNode node = resolve();
+    node.myTree.myEndGlobal[node.myIndex] = endGlobal;
   }
 
   public long getEndGlobal() {
-    return myEndGlobal;
+    CaptureNode node = resolve();
+    return node.myTree.myEndGlobal[node.myIndex];
   }
 
   public void setStartThread(long startThread) {
-    myStartThread = startThread;
+    CaptureNode node = resolve();
+    node.myTree.myStartThread[node.myIndex] = startThread;
   }
 
   public long getStartThread() {
-    return myStartThread;
+    CaptureNode node = resolve();
+    return node.myTree.myStartThread[node.myIndex];
   }
 
   public void setEndThread(long endThread) {
-    myEndThread = endThread;
+    CaptureNode node = resolve();
+    node.myTree.myEndThread[node.myIndex] = endThread;
   }
 
   public long getEndThread() {
-    return myEndThread;
+    CaptureNode node = resolve();
+    return node.myTree.myEndThread[node.myIndex];
   }
 
   public void setClockType(@NotNull ClockType clockType) {
-    myClockType = clockType;
+    CaptureNode node = resolve();
+    node.myTree.setThreadClock(node.myIndex, clockType == ClockType.THREAD);
   }
 
   /**
    * Returns the proportion of time the method was using CPU relative to the total (wall-clock) time that passed.
    */
   public double threadGlobalRatio() {
-    long durationThread = myEndThread - myStartThread;
-    long durationGlobal = myEndGlobal - myStartGlobal;
+    CaptureNode node = resolve();
+    CaptureNodeTree tree = node.myTree;
+    long durationThread = tree.myEndThread[node.myIndex] - tree.myStartThread[node.myIndex];
+    long durationGlobal = tree.myEndGlobal[node.myIndex] - tree.myStartGlobal[node.myIndex];
     return (double)durationThread / durationGlobal;
   }
 
   @NotNull
   public ClockType getClockType() {
-    return myClockType;
+    CaptureNode node = resolve();
+    return node.myTree.isThreadClock(node.myIndex) ? ClockType.THREAD : ClockType.GLOBAL;
   }
 
   public void setDepth(int depth) {
-    myDepth = depth;
+    CaptureNode node = resolve();
+    node.myTree.myDepths[node.myIndex] = depth;
   }
 
   /**
@@ -193,17 +284,38 @@ public class CaptureNode implements HNode<CaptureNode> {
 
   @NotNull
   public FilterType getFilterType() {
-    return myFilterType;
+    CaptureNode node = resolve();
+    return node.myTree.getFilterType(node.myIndex);
   }
 
   public void setFilterType(@NotNull FilterType type) {
-    myFilterType = type;
+    CaptureNode node = resolve();
+    node.myTree.setFilterType(node.myIndex, type);
   }
 
   public boolean isUnmatched() {
     return getFilterType() == FilterType.UNMATCH;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CaptureNode)) {
+      return false;
+    }
+    CaptureNode node = resolve();
+    CaptureNode other = ((CaptureNode)o).resolve();
+    return node.myTree == other.myTree && node.myIndex == other.myIndex;
+  }
+
+  @Override
+  public int hashCode() {
+    CaptureNode node = resolve();
+    return 31 * System.identityHashCode(node.myTree) + node.myIndex;
+  }
+
   public enum FilterType {
     /**
      * This {@link CaptureNode} matches to the filter, i.e {@link #matchesToFilter(Filter)} is true.
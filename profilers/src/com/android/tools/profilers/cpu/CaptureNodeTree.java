@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of the nodes of a call tree, of which {@link CaptureNode}s are views. Traces can have tens of millions of calls, so rather than
+ * an object per call, each with a list of children, a node is an index into parallel arrays: its start and end times, the indices of its
+ * parent, first and last children and next sibling, its depth, flags, and the id of its {@link CaptureNodeModel}. Models are interned, so
+ * the calls of the same method share an id.
+ */
+final class CaptureNodeTree {
+  static final int NO_NODE = -1;
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  // Flags of a node: the clock type, then the filter type
+  private static final int THREAD_CLOCK_FLAG = 1;
+  private static final int FILTER_TYPE_SHIFT = 1;
+  private static final int FILTER_TYPE_MASK = 3 << FILTER_TYPE_SHIFT;
+  private static final CaptureNode.FilterType[] FILTER_TYPES = CaptureNode.FilterType.values();
+
+  @NotNull long[] myStartGlobal = new long[INITIAL_CAPACITY];
+  @NotNull long[] myEndGlobal = new long[INITIAL_CAPACITY];
+  @NotNull long[] myStartThread = new long[INITIAL_CAPACITY];
+  @NotNull long[] myEndThread = new long[INITIAL_CAPACITY];
+  @NotNull int[] myParents = new int[INITIAL_CAPACITY];
+  @NotNull int[] myFirstChildren = new int[INITIAL_CAPACITY];
+  @NotNull int[] myLastChildren = new int[INITIAL_CAPACITY];
+  @NotNull int[] myNextSiblings = new int[INITIAL_CAPACITY];
+  @NotNull int[] myChildCounts = new int[INITIAL_CAPACITY];
+  @NotNull int[] myDepths = new int[INITIAL_CAPACITY];
+  @NotNull int[] myMethodIds = new int[INITIAL_CAPACITY];
+  @NotNull byte[] myFlags = new byte[INITIAL_CAPACITY];
+  int mySize;
+
+  @NotNull private final List<CaptureNodeModel> myModels = new ArrayList<>();
+  @NotNull private final Map<CaptureNodeModel, Integer> myModelIds = new IdentityHashMap<>();
+
+  /**
+   * Index of the children of every node, built when a child is first accessed by index: the children of node i are at
+   * [myChildOffsets[i], myChildOffsets[i + 1]) in myChildIndex. It is dropped when a node is added.
+   */
+  @Nullable private int[] myChildOffsets;
+  @Nullable private int[] myChildIndex;
+
+  /**
+   * Set once the nodes of this tree have been moved to another one, with node i becoming node i + myMergeOffset there. The offset is
+   * written first, so it is visible to whoever sees myMergedInto set.
+   */
+  @Nullable volatile CaptureNodeTree myMergedInto;
+  int myMergeOffset;
+
+  /**
+   * @return the index of a new node, without parent, for {@code model}.
+   */
+  int addNode(@NotNull CaptureNodeModel model) {
+    ensureCapacity(mySize + 1);
+    int node = mySize++;
+    myParents[node] = NO_NODE;
+    myFirstChildren[node] = NO_NODE;
+    myLastChildren[node] = NO_NODE;
+    myNextSiblings[node] = NO_NODE;
+    myMethodIds[node] = getMethodId(model);
+    myFlags[node] = (byte)(CaptureNode.FilterType.MATCH.ordinal() << FILTER_TYPE_SHIFT);
+    myChildOffsets = null;
+    myChildIndex = null;
+    return node;
+  }
+
+  /**
+   * Makes {@code child}, which must not have a parent, the last child of {@code parent}.
+   */
+  void addChild(int parent, int child) {
+    assert myParents[child] == NO_NODE && myNextSiblings[child] == NO_NODE;
+    myParents[child] = parent;
+    if (myLastChildren[parent] == NO_NODE) {
+      myFirstChildren[parent] = child;
+    }
+    else {
+      myNextSiblings[myLastChildren[parent]] = child;
+    }
+    myLastChildren[parent] = child;
+    myChildCounts[parent]++;
+    myChildOffsets = null;
+    myChildIndex = null;
+  }
+
+  int getChildAt(int node, int index) {
+    if (index == 0) {
+      return myFirstChildren[node];
+    }
+    if (index == myChildCounts[node] - 1) {
+      return myLastChildren[node];
+    }
+    if (myChildOffsets == null || myChildIndex == null) {
+      buildChildIndex();
+    }
+    return myChildIndex[myChildOffsets[node] + index];
+  }
+
+  int getMethodId(@NotNull CaptureNodeModel model) {
+    Integer id = myModelIds.get(model);
+    if (id == null) {
+      id = myModels.size();
+      myModels.add(model);
+      myModelIds.put(model, id);
+    }
+    return id;
+  }
+
+  @NotNull
+  CaptureNodeModel getModel(int methodId) {
+    return myModels.get(methodId);
+  }
+
+  boolean isThreadClock(int node) {
+    return (myFlags[node] & THREAD_CLOCK_FLAG) != 0;
+  }
+
+  void setThreadClock(int node, boolean threadClock) {
+    myFlags[node] = (byte)(threadClock ? myFlags[node] | THREAD_CLOCK_FLAG : myFlags[node] & ~THREAD_CLOCK_FLAG);
+  }
+
+  @NotNull
+  CaptureNode.FilterType getFilterType(int node) {
+    return FILTER_TYPES[(myFlags[node] & FILTER_TYPE_MASK) >> FILTER_TYPE_SHIFT];
+  }
+
+  void setFilterType(int node, @NotNull CaptureNode.FilterType type) {
+    myFlags[node] = (byte)((myFlags[node] & ~FILTER_TYPE_MASK) | (type.ordinal() << FILTER_TYPE_SHIFT));
+  }
+
+  /**
+   * Moves the nodes of {@code other} to the end of this tree, and makes {@code other} forward to them.
+   *
+   * @return the index in this tree of the first node of {@code other}.
+   */
+  int merge(@NotNull CaptureNodeTree other) {
+    assert other != this && other.myMergedInto == null;
+    int offset = mySize;
+    int size = other.mySize;
+    ensureCapacity(offset + size);
+    System.arraycopy(other.myStartGlobal, 0, myStartGlobal, offset, size);
+    System.arraycopy(other.myEndGlobal, 0, myEndGlobal, offset, size);
+    System.arraycopy(other.myStartThread, 0, myStartThread, offset, size);
+    System.arraycopy(other.myEndThread, 0, myEndThread, offset, size);
+    System.arraycopy(other.myChildCounts, 0, myChildCounts, offset, size);
+    System.arraycopy(other.myDepths, 0, myDepths, offset, size);
+    System.arraycopy(other.myFlags, 0, myFlags, offset, size);
+    copyNodeIndices(other.myParents, myParents, offset, size);
+    copyNodeIndices(other.myFirstChildren, myFirstChildren, offset, size);
+    copyNodeIndices(other.myLastChildren, myLastChildren, offset, size);
+    copyNodeIndices(other.myNextSiblings, myNextSiblings, offset, size);
+    int[] methodIds = new int[other.myModels.size()];
+    for (int i = 0; i < methodIds.length; i++) {
+      methodIds[i] = getMethodId(other.myModels.get(i));
+    }
+    for (int i = 0; i < size; i++) {
+      myMethodIds[offset + i] = methodIds[other.myMethodIds[i]];
+    }
+    mySize += size;
+    myChildOffsets = null;
+    myChildIndex = null;
+
+    other.myMergeOffset = offset;
+    other.myMergedInto = this;
+    other.release();
+    return offset;
+  }
+
+  private static void copyNodeIndices(@NotNull int[] from, @NotNull int[] to, int offset, int size) {
+    for (int i = 0; i < size; i++) {
+      to[offset + i] = from[i] == NO_NODE ? NO_NODE : from[i] + offset;
+    }
+  }
+
+  private void release() {
+    myStartGlobal = myEndGlobal = myStartThread = myEndThread = new long[0];
+    myParents = myFirstChildren = myLastChildren = myNextSiblings = myChildCounts = myDepths = myMethodIds = new int[0];
+    myFlags = new byte[0];
+    mySize = 0;
+    myModels.clear();
+    myModelIds.clear();
+  }
+
+  private void buildChildIndex() {
+    int[] offsets = new int[mySize + 1];
+    for (int node = 0; node < mySize; node++) {
+      offsets[node + 1] = offsets[node] + myChildCounts[node];
+    }
+    int[] index = new int[offsets[mySize]];
+    for (int node = 0; node < mySize; node++) {
+      int offset = offsets[node];
+      for (int child = myFirstChildren[node]; child != NO_NODE; child = myNextSiblings[child]) {
+        index[offset++] = child;
+      }
+    }
+    myChildOffsets = offsets;
+    myChildIndex = index;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= myParents.length) {
+      return;
+    }
+    capacity = Math.max(capacity, myParents.length + (myParents.length >> 1));
+    myStartGlobal = Arrays.copyOf(myStartGlobal, capacity);
+    myEndGlobal = Arrays.copyOf(myEndGlobal, capacity);
+    myStartThread = Arrays.copyOf(myStartThread, capacity);
+    myEndThread = Arrays.copyOf(myEndThread, capacity);
+    myParents = Arrays.copyOf(myParents, capacity);
+    myFirstChildren = Arrays.copyOf(myFirstChildren, capacity);
+    myLastChildren = Arrays.copyOf(myLastChildren, capacity);
+    myNextSiblings = Arrays.copyOf(myNextSiblings, capacity);
+    myChildCounts = Arrays.copyOf(myChildCounts, capacity);
+    myDepths = Arrays.copyOf(myDepths, capacity);
+    myMethodIds = Arrays.copyOf(myMethodIds, capacity);
+    myFlags = Arrays.copyOf(myFlags, capacity);
+  }
+}
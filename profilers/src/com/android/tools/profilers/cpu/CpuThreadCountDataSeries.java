@@ -15,16 +15,14 @@
  */
 package com.android.tools.profilers.cpu;
 
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataBuffer;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.CpuProfiler;
 import com.android.tools.profiler.proto.CpuServiceGrpc;
+import com.android.tools.profilers.DataStoreSeries;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
@@ -32,7 +30,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * This class is responsible for making an RPC call to perfd/datastore and converting the resulting proto into UI data.
  */
-public class CpuThreadCountDataSeries implements DataSeries<Long> {
+public class CpuThreadCountDataSeries extends DataStoreSeries {
   @NotNull
   private CpuServiceGrpc.CpuServiceBlockingStub myClient;
 
@@ -44,7 +42,7 @@ public class CpuThreadCountDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForXRange(@NotNull Range timeCurrentRangeUs) {
+  protected void fetchData(@NotNull Range timeCurrentRangeUs, @NotNull LongDataBuffer data) {
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
     CpuProfiler.GetThreadsRequest.Builder request = CpuProfiler.GetThreadsRequest.newBuilder()
       .setSession(mySession)
@@ -67,26 +65,23 @@ public class CpuThreadCountDataSeries implements DataSeries<Long> {
       }
     }
 
-    List<SeriesData<Long>> data = new ArrayList<>();
     long total = 0;
     for (Map.Entry<Long, Long> entry : count.entrySet()) {
       total += entry.getValue();
-      data.add(new SeriesData<>(TimeUnit.NANOSECONDS.toMicros(entry.getKey()), total));
+      data.add(TimeUnit.NANOSECONDS.toMicros(entry.getKey()), total);
     }
     // When no threads are found within the requested range, we add the threads count (0)
     // to both range's min and max. Otherwise we wouldn't add any information to the data series
     // within timeCurrentRangeUs and nothing would be added to the chart.
     if (count.isEmpty()) {
-      data.add(new SeriesData<>((long)timeCurrentRangeUs.getMin(), total));
-      data.add(new SeriesData<>((long)timeCurrentRangeUs.getMax(), total));
+      data.add((long)timeCurrentRangeUs.getMin(), total);
+      data.add((long)timeCurrentRangeUs.getMax(), total);
     }
     // If the last timestamp added to the data series is less than timeCurrentRangeUs.getMax(),
     // we need to replicate the last value in timeCurrentRangeUs.getMax(), so the chart renders this value
     // until the end of the selected range.
-    else if (data.get(data.size() - 1).x < timeCurrentRangeUs.getMax()) {
-      data.add(new SeriesData<>((long)timeCurrentRangeUs.getMax(), total));
+    else if (data.getX(data.size() - 1) < timeCurrentRangeUs.getMax()) {
+      data.add((long)timeCurrentRangeUs.getMax(), total);
     }
-
-    return data;
   }
 }
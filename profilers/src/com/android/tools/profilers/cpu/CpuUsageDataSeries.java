@@ -15,24 +15,22 @@
  */
 package com.android.tools.profilers.cpu;
 
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataBuffer;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.CpuProfiler.CpuDataRequest;
 import com.android.tools.profiler.proto.CpuProfiler.CpuDataResponse;
 import com.android.tools.profiler.proto.CpuProfiler.CpuUsageData;
 import com.android.tools.profiler.proto.CpuServiceGrpc;
+import com.android.tools.profilers.DataStoreSeries;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
  * This class is responsible for making an RPC call to perfd/datastore and converting the resulting proto into UI data.
  */
-public class CpuUsageDataSeries implements DataSeries<Long> {
+public class CpuUsageDataSeries extends DataStoreSeries {
   @NotNull
   private CpuServiceGrpc.CpuServiceBlockingStub myClient;
 
@@ -46,8 +44,7 @@ public class CpuUsageDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForXRange(@NotNull Range timeCurrentRangeUs) {
-    List<SeriesData<Long>> seriesData = new ArrayList<>();
+  protected void fetchData(@NotNull Range timeCurrentRangeUs, @NotNull LongDataBuffer data) {
     // Get an extra padding on each side, to have a smooth rendering at the edges.
     // TODO: Change the CPU API to allow specifying this padding in the request as number of samples.
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
@@ -57,24 +54,23 @@ public class CpuUsageDataSeries implements DataSeries<Long> {
       .setEndTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMax()) + bufferNs);
     CpuDataResponse response = myClient.getData(dataRequestBuilder.build());
     CpuUsageData lastCpuData = null;
-    for (CpuUsageData data : response.getDataList()) {
-      long dataTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getEndTimestamp());
+    for (CpuUsageData cpuData : response.getDataList()) {
+      long dataTimestamp = TimeUnit.NANOSECONDS.toMicros(cpuData.getEndTimestamp());
 
       // If lastCpuData is null, it means the first CPU usage data was read. Assign it to lastCpuData and go to the next iteration.
       if (lastCpuData == null) {
-        lastCpuData = data;
+        lastCpuData = cpuData;
         continue;
       }
-      CpuUsageDataSeries.UsageData usageData = getCpuUsageData(data, lastCpuData);
+      CpuUsageDataSeries.UsageData usageData = getCpuUsageData(cpuData, lastCpuData);
       if (myOtherProcesses) {
-        seriesData.add(new SeriesData<>(dataTimestamp, (long)usageData.getOtherProcessesUsage()));
+        data.add(dataTimestamp, (long)usageData.getOtherProcessesUsage());
       }
       else {
-        seriesData.add(new SeriesData<>(dataTimestamp, (long)usageData.getAppUsage()));
+        data.add(dataTimestamp, (long)usageData.getAppUsage());
       }
-      lastCpuData = data;
+      lastCpuData = cpuData;
     }
-    return seriesData;
   }
 
   private static UsageData getCpuUsageData(CpuUsageData data, CpuUsageData lastData) {
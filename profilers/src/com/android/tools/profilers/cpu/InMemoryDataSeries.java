@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Implementers of this class should implement {@link #inMemoryDataList}, which should return all the {@link DataSeries} that would be
@@ -38,7 +39,10 @@ abstract class InMemoryDataSeries<T> implements DataSeries<T> {
     if (seriesDataList.isEmpty()) {
       return series;
     }
-    for (int i = 0; i < seriesDataList.size() - 1; i++) {
+    // The data is sorted by x, so a list with random access can skip the elements ending before the range, i.e. the ones before the last
+    // element whose x is not greater than min. This matters for lists creating their elements when read, like CPU scheduling series.
+    int start = seriesDataList instanceof RandomAccess ? Math.max(firstAfter(seriesDataList, min) - 1, 0) : 0;
+    for (int i = start; i < seriesDataList.size() - 1; i++) {
       SeriesData<T> data = seriesDataList.get(i);
       SeriesData<T> nextData = seriesDataList.get(i + 1);
       // If our series overlaps with the start of the range upto excluding the end. We add the series.
@@ -61,6 +65,24 @@ abstract class InMemoryDataSeries<T> implements DataSeries<T> {
     return series;
   }
 
+  /**
+   * @return the index of the first element whose x is greater than {@code x}, or the size of the list if there is none.
+   */
+  private static <T> int firstAfter(@NotNull List<SeriesData<T>> seriesDataList, long x) {
+    int low = 0;
+    int high = seriesDataList.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (seriesDataList.get(mid).x > x) {
+        high = mid;
+      }
+      else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
   /**
    * Returns all the {@link SeriesData} stored in memory, to be filtered by range in {@link #getDataForXRange(Range)}
    */
@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.cpu.art;
 
+import com.android.annotations.VisibleForTesting;
 import com.android.tools.perflib.vmtrace.*;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
@@ -24,8 +25,14 @@ import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 
 public class ArtTraceHandler implements VmTraceHandler {
   private static final String MAIN_THREAD_NAME = "main";
@@ -51,6 +58,20 @@ public class ArtTraceHandler implements VmTraceHandler {
   @Nullable
   private Map<CpuThreadInfo, CaptureNode> myThreadsGraph;
 
+  /**
+   * Runs the tasks finishing the call stacks of each thread but the main one.
+   */
+  @NotNull private final Executor myExecutor;
+
+  public ArtTraceHandler() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  @VisibleForTesting
+  ArtTraceHandler(@NotNull Executor executor) {
+    myExecutor = executor;
+  }
+
   @Override
   public void addThread(int id, String name) {
     myThreads.put(id, name);
@@ -103,6 +124,13 @@ public class ArtTraceHandler implements VmTraceHandler {
   private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
     Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
 
+    // The call stacks of every thread are independent, so they are finished on the fork-join pool, apart from the ones of the main thread,
+    // which are finished on this thread once the other tasks are submitted, rather than queued behind them. The graphs are only returned
+    // together, once all of them are done, as the capture is built from the complete map.
+    List<FutureTask<CaptureNode>> tasks = new ArrayList<>(myThreads.size());
+    List<CpuThreadInfo> taskThreads = new ArrayList<>(myThreads.size());
+    CpuThreadInfo mainThread = null;
+    CaptureNodeConstructor mainThreadConstructor = null;
     for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
       final int id = entry.getKey();
       final String name = entry.getValue();
@@ -112,17 +140,58 @@ public class ArtTraceHandler implements VmTraceHandler {
         continue;
       }
 
-      CaptureNode topLevelCall = constructor.getTopLevel();
-      assert topLevelCall != null;
       CpuThreadInfo info = new CpuThreadInfo(id, name, name.equals(MAIN_THREAD_NAME));
+      if (info.isMainThread()) {
+        mainThread = info;
+        mainThreadConstructor = constructor;
+      }
+      else {
+        FutureTask<CaptureNode> task = new FutureTask<>(() -> createThreadGraph(constructor));
+        myExecutor.execute(task);
+        tasks.add(task);
+        taskThreads.add(info);
+      }
+    }
 
-      long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
-      adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart, 0);
+    if (mainThread != null) {
+      threadsGraph.put(mainThread, createThreadGraph(mainThreadConstructor));
+    }
+    for (int i = 0; i < tasks.size(); i++) {
+      threadsGraph.put(taskThreads.get(i), join(tasks.get(i)));
+    }
+    return threadsGraph;
+  }
 
-      threadsGraph.put(info, topLevelCall);
+  /**
+   * Waits for {@code task} and rethrows its exceptions as they were thrown, e.g. the {@link IllegalStateException} of a malformed trace.
+   */
+  private static <T> T join(@NotNull FutureTask<T> task) {
+    try {
+      return task.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException)e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error)e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
     }
+  }
 
-    return threadsGraph;
+  @NotNull
+  private CaptureNode createThreadGraph(@NotNull CaptureNodeConstructor constructor) {
+    CaptureNode topLevelCall = constructor.getTopLevel();
+    assert topLevelCall != null;
+
+    long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
+    adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart, 0);
+    return topLevelCall;
   }
 
   /**
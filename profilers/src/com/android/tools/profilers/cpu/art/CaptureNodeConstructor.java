@@ -62,15 +62,15 @@ class CaptureNodeConstructor {
   }
 
   private void enterMethod(CaptureNodeModel captureNodeModel, int threadTime, int globalTime) {
-    CaptureNode node = new CaptureNode(captureNodeModel);
-    node.setStartGlobal(globalTime);
-    node.setStartThread(threadTime);
-
+    CaptureNode node;
     if (myCurrentNode == null) {
+      node = createTopLevelNode(captureNodeModel);
       myTopLevelNodes.add(node);
     } else {
-      myCurrentNode.addChild(node);
+      node = myCurrentNode.addChild(captureNodeModel);
     }
+    node.setStartGlobal(globalTime);
+    node.setStartThread(threadTime);
 
     myCurrentNode = node;
   }
@@ -90,7 +90,7 @@ class CaptureNodeConstructor {
     } else {
       // We are exiting out of a method that was entered into before tracing was started.
       // In such a case, create this method
-      CaptureNode node = new CaptureNode(captureNodeModel);
+      CaptureNode node = createTopLevelNode(captureNodeModel);
       // All the previous nodes at the top level are now assumed to have been called from
       // this method. So mark this method as having called all of those methods, and reset
       // the top level to only include this method
@@ -121,6 +121,14 @@ class CaptureNodeConstructor {
     }
   }
 
+  /**
+   * Creates a node without parent, in the same tree as the other top level nodes so that they can be nested under each other without
+   * being moved.
+   */
+  private CaptureNode createTopLevelNode(CaptureNodeModel captureNodeModel) {
+    return myTopLevelNodes.isEmpty() ? new CaptureNode(captureNodeModel) : myTopLevelNodes.get(0).createNode(captureNodeModel);
+  }
+
   /**
    * Generates a trace action equivalent to exiting from the given method
    * @param captureNodeModel model of the method from which we are exiting
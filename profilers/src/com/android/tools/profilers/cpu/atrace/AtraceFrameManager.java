@@ -21,10 +21,12 @@ import com.intellij.util.Function;
 import org.jetbrains.annotations.NotNull;
 import trebuchet.model.ProcessModel;
 import trebuchet.model.ThreadModel;
+import trebuchet.model.base.SliceGroup;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -35,11 +37,14 @@ public class AtraceFrameManager {
   @NotNull
   private final Function<Double, Long> myBootClockSecondsToMonoUs;
 
+  private final int myProcessId;
+
   /**
-   * Container to hold UI and thread threads for processing.
+   * Slices of the threads of the process by thread id. Only the slices are kept rather than the {@link ProcessModel}, as the model of a
+   * process references the model of the whole trace.
    */
   @NotNull
-  private final ProcessModel myProcessModel;
+  private final Map<Integer, List<SliceGroup>> myThreadSlices;
 
   private final int myRenderThreadId;
 
@@ -54,11 +59,25 @@ public class AtraceFrameManager {
    * @param renderThreadId The id of the render thread
    */
   public AtraceFrameManager(@NotNull ProcessModel process, @NotNull Function<Double, Long> bootClockSecondsToMonoUs, int renderThreadId) {
+    this(process.getId(), getThreadSlices(process), bootClockSecondsToMonoUs, renderThreadId);
+  }
+
+  /**
+   * @param processId Id of the process, which is the id of its main thread.
+   * @param threadSlices Slices of the threads of the process by thread id.
+   * @param bootClockSecondsToMonoUs function to convert trace boot time in seconds to mono time micros.
+   * @param renderThreadId The id of the render thread
+   */
+  public AtraceFrameManager(int processId,
+                            @NotNull Map<Integer, List<SliceGroup>> threadSlices,
+                            @NotNull Function<Double, Long> bootClockSecondsToMonoUs,
+                            int renderThreadId) {
     myBootClockSecondsToMonoUs = bootClockSecondsToMonoUs;
-    myProcessModel = process;
+    myProcessId = processId;
+    myThreadSlices = threadSlices;
     myRenderThreadId = renderThreadId;
     myMainThreadFrames =
-      getFramesList(AtraceFrameFilterConfig.APP_MAIN_THREAD_FRAME_ID_MPLUS, myProcessModel.getId(), CpuFramesModel.SLOW_FRAME_RATE_US,
+      getFramesList(AtraceFrameFilterConfig.APP_MAIN_THREAD_FRAME_ID_MPLUS, myProcessId, CpuFramesModel.SLOW_FRAME_RATE_US,
                     AtraceFrame.FrameThread.MAIN);
     myRenderThreadFrames =
       getFramesList(AtraceFrameFilterConfig.APP_RENDER_THREAD_FRAME_ID_MPLUS, myRenderThreadId, CpuFramesModel.SLOW_FRAME_RATE_US,
@@ -66,6 +85,19 @@ public class AtraceFrameManager {
     findAssociatedFrames();
   }
 
+  /**
+   * @return the slices of the threads of {@code process} by thread id.
+   */
+  @NotNull
+  public static Map<Integer, List<SliceGroup>> getThreadSlices(@NotNull ProcessModel process) {
+    Map<Integer, List<SliceGroup>> threadSlices = new HashMap<>();
+    for (ThreadModel thread : process.getThreads()) {
+      // Like the first thread found by id before, in case a process has several threads with the same id
+      threadSlices.putIfAbsent(thread.getId(), thread.getSlices());
+    }
+    return threadSlices;
+  }
+
   /**
    * Finds main thread and render thread frames that are associated with each other and adds a link to each one in the other.
    */
@@ -98,12 +130,12 @@ public class AtraceFrameManager {
                                           long longFrameTimingUs,
                                           AtraceFrame.FrameThread frameThread) {
     List<AtraceFrame> frames = new ArrayList<>();
-    Optional<ThreadModel> activeThread = myProcessModel.getThreads().stream().filter((thread) -> thread.getId() == threadId).findFirst();
-    if (!activeThread.isPresent()) {
+    List<SliceGroup> slices = myThreadSlices.get(threadId);
+    if (slices == null) {
       return frames;
     }
-    new SliceStream(activeThread.get().getSlices()).matchPattern(Pattern.compile(identifierRegEx)).enumerate((sliceGroup) -> {
-      AtraceFrame frame = new AtraceFrame(activeThread.get().getId(), myBootClockSecondsToMonoUs, longFrameTimingUs, frameThread);
+    new SliceStream(slices).matchPattern(Pattern.compile(identifierRegEx)).enumerate((sliceGroup) -> {
+      AtraceFrame frame = new AtraceFrame(threadId, myBootClockSecondsToMonoUs, longFrameTimingUs, frameThread);
       double startTime = sliceGroup.getStartTime();
       double endTime = sliceGroup.getEndTime();
       frame.addSlice(sliceGroup, new Range(startTime, endTime));
@@ -118,7 +150,7 @@ public class AtraceFrameManager {
    */
   @NotNull
   public List<AtraceFrame> buildFramesList(@NotNull AtraceFrameFilterConfig filter) {
-    if (filter.getThreadId() == myProcessModel.getId() &&
+    if (filter.getThreadId() == myProcessId &&
         filter.getIdentifierRegEx() == AtraceFrameFilterConfig.APP_MAIN_THREAD_FRAME_ID_MPLUS &&
         filter.getLongFrameTimingUs() ==
         CpuFramesModel.SLOW_FRAME_RATE_US) {
@@ -131,7 +163,7 @@ public class AtraceFrameManager {
       return myRenderThreadFrames;
     }
     return getFramesList(filter.getIdentifierRegEx(), filter.getThreadId(), filter.getLongFrameTimingUs(),
-                         filter.getThreadId() == myProcessModel.getId()
+                         filter.getThreadId() == myProcessId
                          ? AtraceFrame.FrameThread.MAIN
                          : (filter.getThreadId() == myRenderThreadId ? AtraceFrame.FrameThread.RENDER : AtraceFrame.FrameThread.OTHER));
   }
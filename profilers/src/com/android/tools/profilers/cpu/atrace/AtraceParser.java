@@ -36,6 +36,10 @@ import java.util.stream.Stream;
  * The class looks for the first and last lines in the file to get the total time, as well as
  * populates a minimal data structure to pass to the UI.
  * Trebuchet is our parser for atrace (systrace) raw data.
+ * <p>
+ * Only the slices of the selected process are imported from the file, and only the data of that process is kept once parsed: its call
+ * trees, thread states and frames, along with a compact summary of the scheduling of every CPU. The Trebuchet model, which still holds
+ * the threads and scheduling data of every process of the trace, is released, so selecting another process imports the file again.
  */
 public class AtraceParser implements TraceParser {
   /**
@@ -61,6 +65,12 @@ public class AtraceParser implements TraceParser {
    */
   private final Map<Integer, List<SeriesData<CpuThreadSliceInfo>>> myCpuSchedulingToCpuData;
 
+  /**
+   * Names of the threads and processes scheduled on the CPUs, shared by the {@link CpuSchedulingSeries} of all CPUs.
+   */
+  private final List<String> myCpuSchedulingNames;
+  private final Map<String, Integer> myCpuSchedulingNameIndices;
+
   /**
    * Map between thread id, and the thread state for each state transition on that thread.
    */
@@ -77,11 +87,22 @@ public class AtraceParser implements TraceParser {
    * The device boot time captured at the beginning of the trace.
    */
   private double myMonoTimeAtBeginningSeconds = 0;
+  /**
+   * Timestamps of the model, kept once it is released.
+   */
+  private double myBeginTimestampSeconds;
+  private double myEndTimestampSeconds;
+  private double myRealtimeTimestamp;
+  /**
+   * Processes of the model, kept once it is released.
+   */
+  private final Map<Integer, ProcessSummary> myProcesses;
   private ProcessModel myProcessModel;
-  // Trebuchet.Model is what Trebuchet uses to represent all captured data.
+  // Trebuchet.Model is what Trebuchet uses to represent all captured data. It is only set while parsing, as it holds every process.
   private Model myModel;
   private Range myRange;
   private AtraceFrameManager myFrameInfo;
+  private int myRenderThreadId = INVALID_PROCESS;
 
   /**
    * This constructor parses the atrace model from the file and should be used for getting the list
@@ -90,7 +111,9 @@ public class AtraceParser implements TraceParser {
    */
   public AtraceParser(@NotNull File file) throws IOException {
     this(INVALID_PROCESS);
-    parseModelIfNeeded(file);
+    // No process is selected yet, so the model has no slices and is only kept until the process list is read from it.
+    importModel(file);
+    myModel = null;
   }
 
   /**
@@ -102,43 +125,68 @@ public class AtraceParser implements TraceParser {
     myCaptureTreeNodes = new HashMap<>();
     myThreadStateData = new HashMap<>();
     myCpuSchedulingToCpuData = new HashMap<>();
+    myCpuSchedulingNames = new ArrayList<>();
+    myCpuSchedulingNameIndices = new HashMap<>();
     myCpuUtilizationSeries = new LinkedList<>();
+    myProcesses = new HashMap<>();
   }
 
   @Override
   public CpuCapture parse(File file, int traceId) throws IOException {
-    parseModelIfNeeded(file);
-    double startTimestampUs = convertToUserTimeUs(myModel.getBeginTimestamp());
-    double endTimestampUs = convertToUserTimeUs(myModel.getEndTimestamp());
-    myRange = new Range(startTimestampUs, endTimestampUs);
-    myProcessModel = myModel.getProcesses().get(myProcessId);
-    // TODO (b/69910215): Handle case capture does not contain process we are looking for.
-    // Throw an exception instead of assert as the caller expects we will throw an exception if we failed to parse.
-    if (myProcessModel == null) {
-      throw new IllegalArgumentException(String.format("A process with the id %s was not found while parsing the capture.", myProcessId));
+    importModel(file);
+    try {
+      double startTimestampUs = convertToUserTimeUs(myBeginTimestampSeconds);
+      double endTimestampUs = convertToUserTimeUs(myEndTimestampSeconds);
+      myRange = new Range(startTimestampUs, endTimestampUs);
+      myProcessModel = myModel.getProcesses().get(myProcessId);
+      // TODO (b/69910215): Handle case capture does not contain process we are looking for.
+      // Throw an exception instead of assert as the caller expects we will throw an exception if we failed to parse.
+      if (myProcessModel == null) {
+        throw new IllegalArgumentException(String.format("A process with the id %s was not found while parsing the capture.", myProcessId));
+      }
+      myCaptureTreeNodes.clear();
+      myThreadStateData.clear();
+      myCpuSchedulingToCpuData.clear();
+      myCpuSchedulingNames.clear();
+      myCpuSchedulingNameIndices.clear();
+      myCpuUtilizationSeries.clear();
+      buildCaptureTreeNodes();
+      buildThreadStateData();
+      buildCpuStateData();
+      myRenderThreadId = findRenderThreadId(myProcessModel);
+      myFrameInfo = new AtraceFrameManager(myProcessId, AtraceFrameManager.getThreadSlices(myProcessModel), this::convertToUserTimeUs,
+                                           myRenderThreadId);
+    }
+    finally {
+      // The data of the selected process has been copied, so the processes that are not shown can be collected.
+      myProcessModel = null;
+      myModel = null;
     }
-    buildCaptureTreeNodes();
-    buildThreadStateData();
-    buildCpuStateData();
-    myFrameInfo = new AtraceFrameManager(myProcessModel, this::convertToUserTimeUs, findRenderThreadId(myProcessModel));
     return new AtraceCpuCapture(this, traceId);
   }
 
   /**
-   * Parses the input file and caches off the model to prevent parsing multiple times.
+   * Imports the input file into {@link #myModel}. Only the slices and counters of the selected process are imported, the other processes
+   * only keep their threads and scheduling data, so the file is imported again to parse another process.
    */
-  private void parseModelIfNeeded(@NotNull File file) throws IOException {
-    if (myModel == null) {
-      AtraceDecompressor reader = new AtraceDecompressor(file);
-      ImportTask task = new ImportTask(new PrintlnImportFeedback());
-      myModel = task.importBuffer(reader);
-      // We check if we have a parent timestamp. If not this could be from an imported trace.
-      // In the case it is 0, we use the first timestamp of our capture as a reference point.
-      if (Double.compare(myModel.getParentTimestamp(),0.0) == 0) {
-        myMonoTimeAtBeginningSeconds = myModel.getBeginTimestamp();
-      } else {
-        myMonoTimeAtBeginningSeconds = myModel.getParentTimestamp() - (myModel.getParentTimestampBootTime() - myModel.getBeginTimestamp());
-      }
+  private void importModel(@NotNull File file) throws IOException {
+    AtraceDecompressor reader = new AtraceDecompressor(file);
+    int processId = myProcessId;
+    ImportTask task = new ImportTask(new PrintlnImportFeedback(), id -> id == processId);
+    myModel = task.importBuffer(reader);
+    // We check if we have a parent timestamp. If not this could be from an imported trace.
+    // In the case it is 0, we use the first timestamp of our capture as a reference point.
+    if (Double.compare(myModel.getParentTimestamp(),0.0) == 0) {
+      myMonoTimeAtBeginningSeconds = myModel.getBeginTimestamp();
+    } else {
+      myMonoTimeAtBeginningSeconds = myModel.getParentTimestamp() - (myModel.getParentTimestampBootTime() - myModel.getBeginTimestamp());
+    }
+    myBeginTimestampSeconds = myModel.getBeginTimestamp();
+    myEndTimestampSeconds = myModel.getEndTimestamp();
+    myRealtimeTimestamp = myModel.getRealtimeTimestamp();
+    myProcesses.clear();
+    for (ProcessModel process : myModel.getProcesses().values()) {
+      myProcesses.put(process.getId(), new ProcessSummary(process.getId(), getMainThreadForProcess(process), process.getThreads().size()));
     }
   }
 
@@ -151,7 +199,7 @@ public class AtraceParser implements TraceParser {
    * more data than the size of the existing buffer.
    */
   public boolean isMissingData() {
-    return myModel.getRealtimeTimestamp() == 0;
+    return myRealtimeTimestamp == 0;
   }
 
   /**
@@ -163,14 +211,13 @@ public class AtraceParser implements TraceParser {
    */
   @NotNull
   public CpuThreadSliceInfo[] getProcessList(String hint) {
-    assert myModel != null;
-    CpuThreadSliceInfo[] processList = new CpuThreadSliceInfo[myModel.getProcesses().size()];
-    Stream<ProcessModel> processStream = myModel.getProcesses().values().stream();
+    CpuThreadSliceInfo[] processList = new CpuThreadSliceInfo[myProcesses.size()];
+    Stream<ProcessSummary> processStream = myProcesses.values().stream();
     int index = 0;
     String hintLower = hint.toLowerCase(Locale.getDefault());
     processStream = processStream.sorted((a, b) -> {
-      String aNameLower = getMainThreadForProcess(a).toLowerCase(Locale.getDefault());
-      String bNameLower = getMainThreadForProcess(b).toLowerCase(Locale.getDefault());
+      String aNameLower = a.myName.toLowerCase(Locale.getDefault());
+      String bNameLower = b.myName.toLowerCase(Locale.getDefault());
 
       // If either the left or right names overlap with our hint we want to bubble those elements
       // to the top.
@@ -200,7 +247,7 @@ public class AtraceParser implements TraceParser {
       // If our project names don't match either our hint, or our <> name then we sort the elements within
       // by count of threads.
       // Note: This also applies if we have multiple projects that match our hint, or don't have a name.
-      int threadsGreater = b.getThreads().size() - a.getThreads().size();
+      int threadsGreater = b.myThreadCount - a.myThreadCount;
       if (threadsGreater != 0) {
         return threadsGreater;
       }
@@ -208,21 +255,19 @@ public class AtraceParser implements TraceParser {
       // Finally we sort our projects by name.
       int name = aNameLower.compareTo(bNameLower);
       if (name == 0) {
-        return b.getId() - a.getId();
+        return b.myId - a.myId;
       }
       return name;
     });
-    List<ProcessModel> processes = processStream.collect(Collectors.toList());
-    for (ProcessModel process : processes) {
-      String name = getMainThreadForProcess(process);
-      processList[index++] = new CpuThreadSliceInfo(process.getId(), name, process.getId(), name);
+    List<ProcessSummary> processes = processStream.collect(Collectors.toList());
+    for (ProcessSummary process : processes) {
+      processList[index++] = new CpuThreadSliceInfo(process.myId, process.myName, process.myId, process.myName);
     }
     return processList;
   }
 
   public void setSelectProcess(@NotNull CpuThreadSliceInfo process) {
-    assert myModel != null;
-    assert myModel.getProcesses().containsKey(process.getProcessId());
+    assert myProcesses.containsKey(process.getProcessId());
     myProcessId = process.getProcessId();
   }
 
@@ -261,7 +306,7 @@ public class AtraceParser implements TraceParser {
   }
 
   public int getRenderThreadId() {
-    return findRenderThreadId(myProcessModel);
+    return myRenderThreadId;
   }
 
   /**
@@ -309,9 +354,9 @@ public class AtraceParser implements TraceParser {
       root.setStartGlobal((long)range.getMin());
       root.setEndGlobal((long)range.getMax());
       myCaptureTreeNodes.put(threadInfo, root);
+      Map<String, AtraceNodeModel> models = new HashMap<>();
       for (SliceGroup slice : thread.getSlices()) {
-        CaptureNode node = populateCaptureNode(slice, 1);
-        root.addChild(node);
+        populateCaptureNode(root, slice, 1, models);
       }
     }
   }
@@ -319,21 +364,21 @@ public class AtraceParser implements TraceParser {
   /**
    * Recursive function that builds a tree of {@link CaptureNode} from a {@link SliceGroup}
    *
+   * @param parent node to add the {@link CaptureNode} of the slice to.
    * @param slice to convert to a {@link CaptureNode}. This method will be recursively called on all children.
    * @param depth to current node. Depth starts at 0
-   * @return The {@link CaptureNode} that mirrors the {@link SliceGroup} passed in.
+   * @param models the models of the slices of the thread by name, so that slices with the same name share their model.
    */
-  private CaptureNode populateCaptureNode(SliceGroup slice, int depth) {
-    CaptureNode node = new CaptureNode(new AtraceNodeModel(slice.getName()));
+  private void populateCaptureNode(CaptureNode parent, SliceGroup slice, int depth, Map<String, AtraceNodeModel> models) {
+    CaptureNode node = parent.addChild(models.computeIfAbsent(slice.getName(), AtraceNodeModel::new));
     node.setStartGlobal(convertToUserTimeUs(slice.getStartTime()));
     node.setEndGlobal(convertToUserTimeUs(slice.getEndTime()));
     node.setStartThread(convertToUserTimeUs(slice.getStartTime()));
     node.setEndThread(convertToUserTimeUs(slice.getStartTime() + slice.getCpuTime()));
     node.setDepth(depth);
     for (SliceGroup child : slice.getChildren()) {
-      node.addChild(populateCaptureNode(child, depth + 1));
+      populateCaptureNode(node, child, depth + 1, models);
     }
-    return node;
   }
 
   /**
@@ -360,22 +405,20 @@ public class AtraceParser implements TraceParser {
    */
   private void buildCpuStateData() {
     // Add initial value to start of series for proper visualization.
-    myCpuUtilizationSeries.add(new SeriesData<>(convertToUserTimeUs(myModel.getBeginTimestamp()), 0L));
+    myCpuUtilizationSeries.add(new SeriesData<>(convertToUserTimeUs(myBeginTimestampSeconds), 0L));
     for (CpuModel cpu : myModel.getCpus()) {
       ListIterator<SeriesData<Long>> cpuSeriesIt = myCpuUtilizationSeries.listIterator();
-      List<SeriesData<CpuThreadSliceInfo>> processList = new ArrayList<>();
+      CpuSchedulingSeries processList = new CpuSchedulingSeries(myCpuSchedulingNames, myCpuSchedulingNameIndices);
       CpuProcessSlice lastSlice = cpu.getSlices().get(0);
       for (CpuProcessSlice slice : cpu.getSlices()) {
         long sliceStartTimeUs = convertToUserTimeUs(slice.getStartTime());
         long sliceEndTimeUs = convertToUserTimeUs(slice.getEndTime());
         long durationUs = sliceEndTimeUs - sliceStartTimeUs;
         if (slice.getStartTime() > lastSlice.getEndTime()) {
-          processList.add(new SeriesData<>(sliceEndTimeUs, CpuThreadSliceInfo.NULL_THREAD));
+          processList.addIdle(sliceEndTimeUs);
         }
 
-        processList.add(
-          new SeriesData<>(sliceStartTimeUs,
-                           new CpuThreadSliceInfo(slice.getThreadId(), slice.getThreadName(), slice.getId(), slice.getName(), durationUs)));
+        processList.addSlice(sliceStartTimeUs, slice.getThreadId(), slice.getThreadName(), slice.getId(), slice.getName(), durationUs);
         lastSlice = slice;
 
         // While looping the process slices we build our CPU utilization graph so we don't need to loop the same data twice.
@@ -385,7 +428,8 @@ public class AtraceParser implements TraceParser {
       }
 
       // We are done with this Cpu so we add a null process at the end to properly render this segment.
-      processList.add(new SeriesData<>(convertToUserTimeUs(myModel.getEndTimestamp()), CpuThreadSliceInfo.NULL_THREAD));
+      processList.addIdle(convertToUserTimeUs(myEndTimestampSeconds));
+      processList.trimToSize();
       myCpuSchedulingToCpuData.put(cpu.getId(), processList);
     }
 
@@ -502,7 +546,7 @@ public class AtraceParser implements TraceParser {
   }
 
   private long convertToUserTimeUs(double timestampInSeconds) {
-    return (long)secondsToUs((timestampInSeconds - myModel.getBeginTimestamp()) + myMonoTimeAtBeginningSeconds);
+    return (long)secondsToUs((timestampInSeconds - myBeginTimestampSeconds) + myMonoTimeAtBeginningSeconds);
   }
 
   /**
@@ -534,4 +578,19 @@ public class AtraceParser implements TraceParser {
       process.getThreads().stream().filter((thread) -> thread.getName().equalsIgnoreCase(RENDER_THREAD_NAME)).findFirst();
     return renderThread.map(ThreadModel::getId).orElse(INVALID_PROCESS);
   }
+
+  /**
+   * What {@link #getProcessList} needs to know of a process of the trace.
+   */
+  private static final class ProcessSummary {
+    private final int myId;
+    @NotNull private final String myName;
+    private final int myThreadCount;
+
+    private ProcessSummary(int id, @NotNull String name, int threadCount) {
+      myId = id;
+      myName = name;
+      myThreadCount = threadCount;
+    }
+  }
 }
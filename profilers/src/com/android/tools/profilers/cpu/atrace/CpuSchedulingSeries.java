@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.atrace;
+
+import com.android.tools.adtui.model.SeriesData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Compact summary of what a CPU scheduled over a trace, as a series of {@link CpuThreadSliceInfo}. The CPUs of a trace schedule the threads
+ * of every process, so rather than a {@link SeriesData} and a {@link CpuThreadSliceInfo} per slice, a slice is a row of parallel arrays:
+ * its start time, duration, thread and process ids, and the indices of the thread and process names in a table shared by all CPUs. The
+ * series data are created when read, and range queries of {@link com.android.tools.profilers.cpu.InMemoryDataSeries} binary search the
+ * slices, so only the ones in the range are created.
+ */
+final class CpuSchedulingSeries extends AbstractList<SeriesData<CpuThreadSliceInfo>> implements RandomAccess {
+  private static final int INITIAL_CAPACITY = 16;
+  /**
+   * Name index of the slices where the CPU is idle, which read as {@link CpuThreadSliceInfo#NULL_THREAD}.
+   */
+  private static final int NULL_THREAD_NAME = -1;
+
+  /**
+   * Names of the threads and processes of all CPUs, and their indices in that list.
+   */
+  @NotNull private final List<String> myNames;
+  @NotNull private final Map<String, Integer> myNameIndices;
+
+  @NotNull private long[] myTimesUs = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myDurationsUs = new long[INITIAL_CAPACITY];
+  @NotNull private int[] myThreadIds = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myProcessIds = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myThreadNames = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myProcessNames = new int[INITIAL_CAPACITY];
+  private int mySize;
+
+  /**
+   * @param names       the name table shared by the series of all CPUs of a trace.
+   * @param nameIndices the indices of the names in {@code names}.
+   */
+  CpuSchedulingSeries(@NotNull List<String> names, @NotNull Map<String, Integer> nameIndices) {
+    myNames = names;
+    myNameIndices = nameIndices;
+  }
+
+  void addSlice(long timeUs, int threadId, @NotNull String threadName, int processId, @NotNull String processName, long durationUs) {
+    int row = addRow(timeUs);
+    myDurationsUs[row] = durationUs;
+    myThreadIds[row] = threadId;
+    myProcessIds[row] = processId;
+    myThreadNames[row] = getNameIndex(threadName);
+    myProcessNames[row] = getNameIndex(processName);
+  }
+
+  /**
+   * Adds an entry for the CPU being idle from {@code timeUs}.
+   */
+  void addIdle(long timeUs) {
+    int row = addRow(timeUs);
+    myThreadNames[row] = NULL_THREAD_NAME;
+  }
+
+  /**
+   * Drops the spare capacity once all slices are added.
+   */
+  void trimToSize() {
+    myTimesUs = Arrays.copyOf(myTimesUs, mySize);
+    myDurationsUs = Arrays.copyOf(myDurationsUs, mySize);
+    myThreadIds = Arrays.copyOf(myThreadIds, mySize);
+    myProcessIds = Arrays.copyOf(myProcessIds, mySize);
+    myThreadNames = Arrays.copyOf(myThreadNames, mySize);
+    myProcessNames = Arrays.copyOf(myProcessNames, mySize);
+  }
+
+  @Override
+  public SeriesData<CpuThreadSliceInfo> get(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    }
+    if (myThreadNames[index] == NULL_THREAD_NAME) {
+      return new SeriesData<>(myTimesUs[index], CpuThreadSliceInfo.NULL_THREAD);
+    }
+    return new SeriesData<>(myTimesUs[index],
+                            new CpuThreadSliceInfo(myThreadIds[index], myNames.get(myThreadNames[index]), myProcessIds[index],
+                                                   myNames.get(myProcessNames[index]), myDurationsUs[index]));
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  private int addRow(long timeUs) {
+    if (mySize == myTimesUs.length) {
+      int capacity = mySize + (mySize >> 1);
+      myTimesUs = Arrays.copyOf(myTimesUs, capacity);
+      myDurationsUs = Arrays.copyOf(myDurationsUs, capacity);
+      myThreadIds = Arrays.copyOf(myThreadIds, capacity);
+      myProcessIds = Arrays.copyOf(myProcessIds, capacity);
+      myThreadNames = Arrays.copyOf(myThreadNames, capacity);
+      myProcessNames = Arrays.copyOf(myProcessNames, capacity);
+    }
+    int row = mySize++;
+    myTimesUs[row] = timeUs;
+    return row;
+  }
+
+  private int getNameIndex(@NotNull String name) {
+    return myNameIndices.computeIfAbsent(name, n -> {
+      myNames.add(n);
+      return myNames.size() - 1;
+    });
+  }
+}
@@ -21,6 +21,7 @@ import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -29,17 +30,27 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
   private final List<CaptureNode> myPathNodes = new ArrayList<>();
   private final boolean myIsRoot;
   private boolean myChildrenBuilt;
+  @NotNull private final MethodKeys myKeys;
 
-  private BottomUpNode(String id) {
+  /**
+   * Index of the time spent by the nodes outside of their children, built when this node is first updated. It stays null if the children
+   * of a node overlap each other or are not within it, which a well-formed trace does not have.
+   */
+  @Nullable private NodeTimeIndex mySelfIndex;
+  private boolean mySelfIndexBuilt;
+
+  private BottomUpNode(String id, @NotNull MethodKeys keys) {
     super(id);
     myIsRoot = false;
     myChildrenBuilt = false;
+    myKeys = keys;
   }
 
   public BottomUpNode(@NotNull CaptureNode node) {
     super("Root");
     myIsRoot = true;
     myChildrenBuilt = true;
+    myKeys = new MethodKeys();
 
     List<CaptureNode> allNodes = new ArrayList<>();
     // Pre-order traversal with Stack.
@@ -57,21 +68,20 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
     // We use a separate map for unmatched children, because we can not merge unmatched with matched,
     // i.e all merged children should have the same {@link CaptureNode.FilterType};
-    Map<String, BottomUpNode> children = new HashMap<>();
-    Map<String, BottomUpNode> unmatchedChildren = new HashMap<>();
+    Map<Integer, BottomUpNode> children = new HashMap<>();
+    Map<Integer, BottomUpNode> unmatchedChildren = new HashMap<>();
 
     for (CaptureNode curNode : allNodes) {
-      assert curNode.getData() != null;
-      String curId = curNode.getData().getId();
+      int curKey = myKeys.getKey(curNode);
 
-      BottomUpNode child = curNode.isUnmatched() ? unmatchedChildren.get(curId) : children.get(curId);
+      BottomUpNode child = curNode.isUnmatched() ? unmatchedChildren.get(curKey) : children.get(curKey);
       if (child == null) {
-        child = new BottomUpNode(curId);
+        child = new BottomUpNode(curNode.getData().getId(), myKeys);
         if (curNode.isUnmatched()) {
-          unmatchedChildren.put(curId, child);
+          unmatchedChildren.put(curKey, child);
         }
         else {
-          children.put(curId, child);
+          children.put(curKey, child);
         }
         addChild(child);
       }
@@ -97,8 +107,8 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
     // We use a separate map for unmatched children, because we can not merge unmatched with matched,
     // i.e all merged children should have the same {@link CaptureNode.FilterType};
-    Map<String, BottomUpNode> children = new HashMap<>();
-    Map<String, BottomUpNode> unmatchedChildren = new HashMap<>();
+    Map<Integer, BottomUpNode> children = new HashMap<>();
+    Map<Integer, BottomUpNode> unmatchedChildren = new HashMap<>();
 
     assert myPathNodes.size() == getNodes().size();
     for (int i = 0; i < myPathNodes.size(); ++i) {
@@ -106,16 +116,15 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
       if (parent == null) {
         continue;
       }
-      assert parent.getData() != null;
-      String parentId = parent.getData().getId();
-      BottomUpNode child = parent.isUnmatched() ? unmatchedChildren.get(parentId) : children.get(parentId);
+      int parentKey = myKeys.getKey(parent);
+      BottomUpNode child = parent.isUnmatched() ? unmatchedChildren.get(parentKey) : children.get(parentKey);
       if (child == null) {
-        child = new BottomUpNode(parentId);
+        child = new BottomUpNode(parent.getData().getId(), myKeys);
         if (parent.isUnmatched()) {
-          unmatchedChildren.put(parentId, child);
+          unmatchedChildren.put(parentKey, child);
         }
         else {
-          children.put(parentId, child);
+          children.put(parentKey, child);
         }
         addChild(child);
       }
@@ -127,41 +136,94 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     return true;
   }
 
+  @Override
+  protected void addNode(@NotNull CaptureNode node) {
+    super.addNode(node);
+    mySelfIndex = null;
+    mySelfIndexBuilt = false;
+  }
+
   @Override
   public void update(@NotNull Range range) {
     // how much time was spent in this call stack path, and in the functions it called
-    myGlobalTotal = 0;
+    myGlobalTotal = getNodeIndex(ClockType.GLOBAL).getTotal(range);
     // how much time was spent doing work directly in this call stack path
-    double self = 0;
+    double self = getSelfTotal(range);
+    myGlobalChildrenTotal = myGlobalTotal - self;
+  }
+
+  /**
+   * Only the nodes at the top of the call stack are indexed, e.g if the call stack looks like B [0..30] -> B [1..20], then the second
+   * method isn't, as its time is already counted by the first one.
+   */
+  @NotNull
+  @Override
+  protected NodeTimeIndex createNodeIndex(@NotNull ClockType clockType) {
+    return NodeTimeIndex.of(myNodes, clockType, true);
+  }
+
+  private double getSelfTotal(@NotNull Range range) {
+    if (!mySelfIndexBuilt) {
+      mySelfIndex = createSelfIndex();
+      mySelfIndexBuilt = true;
+    }
+    if (mySelfIndex != null) {
+      return mySelfIndex.getTotal(range);
+    }
 
-    // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-    // then the second method can't be outerSoFar.
-    // It's used to exclude nodes which aren't at the top of the
-    // call stack from the total time calculation.
-    CaptureNode outerSoFar = null;
+    double self = 0;
+    for (CaptureNode node : myNodes) {
+      self += getIntersection(range, node.getStartGlobal(), node.getEndGlobal());
+      for (CaptureNode child : node.getChildren()) {
+        self -= getIntersection(range, child.getStartGlobal(), child.getEndGlobal());
+      }
+    }
+    return self;
+  }
 
-    // myNodes is sorted by CaptureNode#getStart() in increasing order,
-    // if they are equal then ancestor comes first
+  /**
+   * Creates the index of the self time of the nodes, i.e. of the time between their children, which is never within the self time of
+   * another node, or returns null if the children of a node overlap.
+   */
+  @Nullable
+  private NodeTimeIndex createSelfIndex() {
+    int count = 0;
+    for (CaptureNode node : myNodes) {
+      count += node.getChildCount() + 1;
+    }
+    long[] starts = new long[count];
+    long[] ends = new long[count];
+    int index = 0;
     for (CaptureNode node : myNodes) {
-      if (outerSoFar == null || node.getEnd() > outerSoFar.getEnd()) {
-        if (outerSoFar != null) {
-          // |outerSoFar| is at the top of the call stack
-          myGlobalTotal += getIntersection(range, outerSoFar, ClockType.GLOBAL);
+      long start = node.getStartGlobal();
+      for (CaptureNode child : getChildrenByStart(node)) {
+        if (child.getStartGlobal() < start) {
+          return null;
         }
-        outerSoFar = node;
+        starts[index] = start;
+        ends[index++] = child.getStartGlobal();
+        start = child.getEndGlobal();
       }
-
-      self += getIntersection(range, node, ClockType.GLOBAL);
-      for (CaptureNode child : node.getChildren()) {
-        self -= getIntersection(range, child, ClockType.GLOBAL);
+      if (node.getEndGlobal() < start) {
+        return null;
       }
+      starts[index] = start;
+      ends[index++] = node.getEndGlobal();
     }
+    return new NodeTimeIndex(starts, ends, false);
+  }
 
-    if (outerSoFar != null) {
-      // |outerSoFar| is at the top of the call stack
-      myGlobalTotal += getIntersection(range, outerSoFar, ClockType.GLOBAL);
+  @NotNull
+  private static List<CaptureNode> getChildrenByStart(@NotNull CaptureNode node) {
+    List<CaptureNode> children = node.getChildren();
+    for (int i = 1; i < children.size(); i++) {
+      if (children.get(i).getStartGlobal() < children.get(i - 1).getStartGlobal()) {
+        children = new ArrayList<>(children);
+        children.sort(Comparator.comparingLong(CaptureNode::getStartGlobal));
+        break;
+      }
     }
-    myGlobalChildrenTotal = myGlobalTotal - self;
+    return children;
   }
 
   @NotNull
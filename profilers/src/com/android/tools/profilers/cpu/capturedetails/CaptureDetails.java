@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu.capturedetails;
 import com.android.tools.adtui.model.AspectModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -153,7 +154,7 @@ public interface CaptureDetails {
       myTopDownNode.update(mySelectionRange);
       if (myTopDownNode.getGlobalTotal() > 0) {
         double start = Math.max(myTopDownNode.getNodes().get(0).getStart(), mySelectionRange.getMin());
-        myFlameNode = convertToFlameChart(myTopDownNode, start, 0);
+        myFlameNode = convertToFlameChart(myTopDownNode, start, 0, null);
       }
       else {
         myFlameNode = null;
@@ -188,11 +189,14 @@ public interface CaptureDetails {
      * Produces a flame chart that is similar to {@link CallChart}, but the identical methods with the same sequence of callers
      * are combined into one wider bar. It converts it from {@link TopDownNode} as it's similar to FlameChart and
      * building a {@link TopDownNode} instance only on creation gives a performance improvement in every update.
+     *
+     * @param parent the node to add the converted node to, or null to convert the root.
      */
-    private CaptureNode convertToFlameChart(@NotNull TopDownNode topDown, double start, int depth) {
+    private CaptureNode convertToFlameChart(@NotNull TopDownNode topDown, double start, int depth, @Nullable CaptureNode parent) {
       assert topDown.getGlobalTotal() > 0;
 
-      CaptureNode node = new CaptureNode(topDown.getNodes().get(0).getData());
+      CaptureNodeModel model = topDown.getNodes().get(0).getData();
+      CaptureNode node = parent == null ? new CaptureNode(model) : parent.addChild(model);
       node.setFilterType(topDown.getNodes().get(0).getFilterType());
       node.setStartGlobal((long)start);
       node.setStartThread((long)start);
@@ -201,8 +205,9 @@ public interface CaptureDetails {
 
       node.setDepth(depth);
 
+      // The whole tree is updated on every range change, so indexing every node would only take memory.
       for (TopDownNode child : topDown.getChildren()) {
-        child.update(mySelectionRange);
+        child.updateWithoutIndexing(mySelectionRange);
       }
 
       List<TopDownNode> sortedChildren = new ArrayList<>(topDown.getChildren());
@@ -219,7 +224,7 @@ public interface CaptureDetails {
           // Sorted in descending order, so starting from now every child's total is zero.
           continue;
         }
-        node.addChild(convertToFlameChart(child, start, depth + 1));
+        convertToFlameChart(child, start, depth + 1, node);
         start += child.getGlobalTotal();
       }
 
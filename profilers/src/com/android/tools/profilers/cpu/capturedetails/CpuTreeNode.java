@@ -20,6 +20,7 @@ import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -38,6 +39,15 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   protected double myThreadTotal = 0;
   protected double myThreadChildrenTotal = 0;
 
+  /**
+   * Indexes of the times of {@link #myNodes} and of their children, built when this node is first updated, so that moving the range only
+   * queries them rather than walking all the nodes again.
+   */
+  @Nullable private NodeTimeIndex myGlobalIndex;
+  @Nullable private NodeTimeIndex myThreadIndex;
+  @Nullable private NodeTimeIndex myGlobalChildrenIndex;
+  @Nullable private NodeTimeIndex myThreadChildrenIndex;
+
   public CpuTreeNode(String id) {
     myId = id;
   }
@@ -48,6 +58,10 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
 
   protected void addNode(@NotNull CaptureNode node) {
     myNodes.add(node);
+    myGlobalIndex = null;
+    myThreadIndex = null;
+    myGlobalChildrenIndex = null;
+    myThreadChildrenIndex = null;
   }
 
   protected void addNodes(@NotNull List<CaptureNode> nodes) {
@@ -84,34 +98,67 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   }
 
   public void update(@NotNull Range range) {
-    myGlobalTotal = 0.0;
-    myGlobalChildrenTotal = 0;
-    myThreadTotal = 0.0;
-    myThreadChildrenTotal = 0;
+    myGlobalTotal = getNodeIndex(ClockType.GLOBAL).getTotal(range);
+    myThreadTotal = getNodeIndex(ClockType.THREAD).getTotal(range);
+    myGlobalChildrenTotal = getChildrenIndex(ClockType.GLOBAL).getTotal(range);
+    myThreadChildrenTotal = getChildrenIndex(ClockType.THREAD).getTotal(range);
+  }
 
-    for (CaptureNode node : myNodes) {
-      myGlobalTotal += getIntersection(range, node, ClockType.GLOBAL);
-      myThreadTotal += getIntersection(range, node, ClockType.THREAD);
-      for (CaptureNode child : node.getChildren()) {
-        myGlobalChildrenTotal += getIntersection(range, child, ClockType.GLOBAL);
-        myThreadChildrenTotal += getIntersection(range, child, ClockType.THREAD);
+  /**
+   * @return the index of the times of {@link #myNodes} in {@code clockType}.
+   */
+  @NotNull
+  protected NodeTimeIndex getNodeIndex(@NotNull ClockType clockType) {
+    if (clockType == ClockType.GLOBAL) {
+      if (myGlobalIndex == null) {
+        myGlobalIndex = createNodeIndex(clockType);
       }
+      return myGlobalIndex;
     }
+    if (myThreadIndex == null) {
+      myThreadIndex = createNodeIndex(clockType);
+    }
+    return myThreadIndex;
   }
 
-  protected static double getIntersection(@NotNull Range range, @NotNull CaptureNode node, @NotNull ClockType type) {
-    Range intersection;
-    if (type == ClockType.GLOBAL) {
-      intersection = range.getIntersection(new Range(node.getStartGlobal(), node.getEndGlobal()));
+  /**
+   * Creates the index of the times of {@link #myNodes}, which are summed as they are: the nodes of a {@link TopDownNode} are the calls at
+   * the same depth, so none of them is within another.
+   */
+  @NotNull
+  protected NodeTimeIndex createNodeIndex(@NotNull ClockType clockType) {
+    return NodeTimeIndex.of(myNodes, clockType, false);
+  }
+
+  @NotNull
+  private NodeTimeIndex getChildrenIndex(@NotNull ClockType clockType) {
+    if (clockType == ClockType.GLOBAL) {
+      if (myGlobalChildrenIndex == null) {
+        myGlobalChildrenIndex = NodeTimeIndex.ofChildren(myNodes, clockType);
+      }
+      return myGlobalChildrenIndex;
     }
-    else {
-      intersection = range.getIntersection(new Range(node.getStartThread(), node.getEndThread()));
+    if (myThreadChildrenIndex == null) {
+      myThreadChildrenIndex = NodeTimeIndex.ofChildren(myNodes, clockType);
     }
-    return intersection.isEmpty() ? 0.0 : intersection.getLength();
+    return myThreadChildrenIndex;
+  }
+
+  /**
+   * @return whether the indexes used by {@link #update(Range)} have all been built.
+   */
+  protected boolean isIndexed() {
+    return myGlobalIndex != null && myThreadIndex != null && myGlobalChildrenIndex != null && myThreadChildrenIndex != null;
+  }
+
+  protected static double getIntersection(@NotNull Range range, long start, long end) {
+    double min = Math.max(range.getMin(), start);
+    double max = Math.min(range.getMax(), end);
+    return range.isEmpty() || max < min ? 0.0 : max - min;
   }
 
   public boolean inRange(Range range) {
-    return myNodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
+    return !myNodes.isEmpty() && getNodeIndex(myNodes.get(0).getClockType()).intersects(range);
   }
 
   public void reset() {
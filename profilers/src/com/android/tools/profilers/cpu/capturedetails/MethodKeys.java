@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import com.android.tools.profilers.cpu.CaptureNode;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keys by which the calls of a capture tree are merged into {@link CpuTreeNode}s: calls get the same key when their methods have the same
+ * id. The key of a call is looked up by {@link CaptureNode#getMethodId()}, so the id of a method is only hashed the first time one of its
+ * calls is seen rather than for every call.
+ */
+final class MethodKeys {
+  private static final int NO_KEY = -1;
+
+  @NotNull private int[] myKeysByMethodId = new int[0];
+  @NotNull private final Map<String, Integer> myKeysById = new HashMap<>();
+
+  int getKey(@NotNull CaptureNode node) {
+    int methodId = node.getMethodId();
+    if (methodId >= myKeysByMethodId.length) {
+      int length = myKeysByMethodId.length;
+      myKeysByMethodId = Arrays.copyOf(myKeysByMethodId, Math.max(methodId + 1, 2 * length));
+      Arrays.fill(myKeysByMethodId, length, myKeysByMethodId.length, NO_KEY);
+    }
+
+    int key = myKeysByMethodId[methodId];
+    if (key == NO_KEY) {
+      key = myKeysById.computeIfAbsent(node.getData().getId(), id -> myKeysById.size());
+      myKeysByMethodId[methodId] = key;
+    }
+    return key;
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.CaptureNode;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Time intervals, e.g. of the calls merged into a {@link CpuTreeNode}, indexed so that the time they spend in a range is a range query
+ * rather than a walk over all of them: the intervals are sorted by start, along with the prefix sums of their lengths. As the calls at the
+ * same depth of a thread never overlap, neither their starts nor their ends decrease, so the first and last intervals in a range are found
+ * with binary searches, and the time of the ones in between is the difference of two prefix sums.
+ * <p/>
+ * Intervals that overlap, which a well-formed trace does not have, are summed one by one as before.
+ */
+final class NodeTimeIndex {
+  @NotNull private final long[] myStarts;
+  @NotNull private final long[] myEnds;
+  /**
+   * Sum of the lengths of the intervals before each of them, and of all of them at the end.
+   */
+  @NotNull private final long[] myPrefixSums;
+  /**
+   * Whether no interval overlaps the next one, so that the binary searches can be used.
+   */
+  private final boolean myDisjoint;
+
+  /**
+   * Indexes the intervals [starts[i], ends[i]], taking ownership of the arrays.
+   *
+   * @param outermost whether to only keep the intervals which are not within another one, as the time of nested calls, e.g. recursive
+   *                  calls of the same method, is already counted by their outermost call.
+   */
+  NodeTimeIndex(@NotNull long[] starts, @NotNull long[] ends, boolean outermost) {
+    assert starts.length == ends.length;
+    int count = starts.length;
+    if (!isSorted(starts, ends)) {
+      // Ancestors come first, so that the calls they contain can be dropped
+      long[] unsortedStarts = starts;
+      long[] unsortedEnds = ends;
+      Integer[] order = IntStream.range(0, count).boxed().toArray(Integer[]::new);
+      Arrays.sort(order, Comparator.<Integer>comparingLong(i -> unsortedStarts[i])
+        .thenComparing(i -> unsortedEnds[i], Comparator.reverseOrder()));
+      starts = new long[count];
+      ends = new long[count];
+      for (int i = 0; i < count; i++) {
+        starts[i] = unsortedStarts[order[i]];
+        ends[i] = unsortedEnds[order[i]];
+      }
+    }
+
+    if (outermost) {
+      int kept = 0;
+      for (int i = 0; i < count; i++) {
+        if (kept == 0 || ends[i] > ends[kept - 1]) {
+          starts[kept] = starts[i];
+          ends[kept] = ends[i];
+          kept++;
+        }
+      }
+      count = kept;
+    }
+
+    boolean disjoint = true;
+    myPrefixSums = new long[count + 1];
+    for (int i = 0; i < count; i++) {
+      disjoint &= starts[i] <= ends[i] && (i == 0 || ends[i - 1] <= starts[i]);
+      myPrefixSums[i + 1] = myPrefixSums[i] + ends[i] - starts[i];
+    }
+    myStarts = count == starts.length ? starts : Arrays.copyOf(starts, count);
+    myEnds = count == ends.length ? ends : Arrays.copyOf(ends, count);
+    myDisjoint = disjoint;
+  }
+
+  /**
+   * @return an index of the times of {@code nodes} in {@code clockType}.
+   */
+  @NotNull
+  static NodeTimeIndex of(@NotNull List<CaptureNode> nodes, @NotNull ClockType clockType, boolean outermost) {
+    long[] starts = new long[nodes.size()];
+    long[] ends = new long[nodes.size()];
+    for (int i = 0; i < starts.length; i++) {
+      CaptureNode node = nodes.get(i);
+      starts[i] = clockType == ClockType.GLOBAL ? node.getStartGlobal() : node.getStartThread();
+      ends[i] = clockType == ClockType.GLOBAL ? node.getEndGlobal() : node.getEndThread();
+    }
+    return new NodeTimeIndex(starts, ends, outermost);
+  }
+
+  /**
+   * @return an index of the times of the children of {@code nodes} in {@code clockType}.
+   */
+  @NotNull
+  static NodeTimeIndex ofChildren(@NotNull List<CaptureNode> nodes, @NotNull ClockType clockType) {
+    int count = 0;
+    for (CaptureNode node : nodes) {
+      count += node.getChildCount();
+    }
+    long[] starts = new long[count];
+    long[] ends = new long[count];
+    int i = 0;
+    for (CaptureNode node : nodes) {
+      for (CaptureNode child : node.getChildren()) {
+        starts[i] = clockType == ClockType.GLOBAL ? child.getStartGlobal() : child.getStartThread();
+        ends[i++] = clockType == ClockType.GLOBAL ? child.getEndGlobal() : child.getEndThread();
+      }
+    }
+    return new NodeTimeIndex(starts, ends, false);
+  }
+
+  /**
+   * @return the time of the intervals within {@code range}.
+   */
+  double getTotal(@NotNull Range range) {
+    if (range.isEmpty()) {
+      return 0;
+    }
+    double min = range.getMin();
+    double max = range.getMax();
+    if (!myDisjoint) {
+      double total = 0;
+      for (int i = 0; i < myStarts.length; i++) {
+        if (myStarts[i] <= myEnds[i] && myStarts[i] <= max && min <= myEnds[i]) {
+          total += Math.min(max, myEnds[i]) - Math.max(min, myStarts[i]);
+        }
+      }
+      return total;
+    }
+
+    int first = firstEndingAfter(min);
+    int last = firstStartingFrom(max) - 1;
+    if (first > last) {
+      return 0;
+    }
+    double total = myPrefixSums[last + 1] - myPrefixSums[first];
+    total -= Math.max(0, min - myStarts[first]);
+    total -= Math.max(0, myEnds[last] - max);
+    return Math.max(0, total);
+  }
+
+  /**
+   * @return whether an interval starts before the end of {@code range} and ends after its start.
+   */
+  boolean intersects(@NotNull Range range) {
+    double min = range.getMin();
+    double max = range.getMax();
+    if (!myDisjoint) {
+      for (int i = 0; i < myStarts.length; i++) {
+        if (myStarts[i] < max && min < myEnds[i]) {
+          return true;
+        }
+      }
+      return false;
+    }
+    int first = firstEndingAfter(min);
+    return first < myStarts.length && myStarts[first] < max;
+  }
+
+  private int firstEndingAfter(double time) {
+    int low = 0;
+    int high = myEnds.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myEnds[mid] > time) {
+        high = mid;
+      }
+      else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private int firstStartingFrom(double time) {
+    int low = 0;
+    int high = myStarts.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myStarts[mid] >= time) {
+        high = mid;
+      }
+      else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static boolean isSorted(@NotNull long[] starts, @NotNull long[] ends) {
+    for (int i = 1; i < starts.length; i++) {
+      if (starts[i] < starts[i - 1] || (starts[i] == starts[i - 1] && ends[i] > ends[i - 1])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
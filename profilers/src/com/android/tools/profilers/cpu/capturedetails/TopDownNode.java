@@ -15,83 +15,89 @@
  */
 package com.android.tools.profilers.cpu.capturedetails;
 
+import com.android.tools.adtui.model.Range;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * A top-down CPU usage tree. This is a node on that tree and represents all the calls that share the same callstack upto a point.
  * It's created from an execution tree by merging the nodes with the same path from the root.
  */
 public class TopDownNode extends CpuTreeNode<TopDownNode> {
-  private static final String INVALID_ID = "";
-
   public TopDownNode(@NotNull CaptureNode node) {
-    super(node.getData() == null ? INVALID_ID : node.getData().getId());
-    addNode(node);
+    this(Collections.singletonList(node), new MethodKeys());
+  }
+
+  /**
+   * Creates the node of {@param nodes}, which are the calls with the same path from the root, and of their children.
+   */
+  private TopDownNode(@NotNull List<CaptureNode> nodes, @NotNull MethodKeys keys) {
+    super(nodes.get(0).getData().getId());
+    addNodes(nodes);
 
-    // We're adding unmatched children separately, because we don't want to merge unmatched with matched,
-    // i.e all merged children should have the same {@link CaptureNode.FilterType}.
-    addChildren(node, false);
-    addChildren(node, true);
+    // The children of all the nodes are grouped by method, in the order they are first seen, before building the node of each group,
+    // rather than building the nodes of the children of every call and merging them. We're grouping unmatched children separately,
+    // because we don't want to merge unmatched with matched, i.e all merged children should have the same {@link CaptureNode.FilterType}.
+    Map<Integer, List<CaptureNode>> children = new HashMap<>();
+    Map<Integer, List<CaptureNode>> unmatchedChildren = new HashMap<>();
+    List<List<CaptureNode>> groups = new ArrayList<>();
+    for (CaptureNode node : nodes) {
+      groupChildren(node, false, keys, children, groups);
+      groupChildren(node, true, keys, unmatchedChildren, groups);
+    }
+    for (List<CaptureNode> group : groups) {
+      addChild(new TopDownNode(group, keys));
+    }
   }
 
   /**
-   * Adds children of {@param node} whose filter type matches to the flag {@param unmatched}.
+   * Adds the children of {@param node} whose filter type matches to the flag {@param unmatched} to the group of their method.
    */
-  private void addChildren(@NotNull CaptureNode node, boolean unmatched) {
-    Map<String, TopDownNode> children = new TreeMap<>();
+  private static void groupChildren(@NotNull CaptureNode node,
+                                    boolean unmatched,
+                                    @NotNull MethodKeys keys,
+                                    @NotNull Map<Integer, List<CaptureNode>> groupsByKey,
+                                    @NotNull List<List<CaptureNode>> groups) {
     for (CaptureNode child : node.getChildren()) {
-      assert child.getData() != null;
-
       if (unmatched != child.isUnmatched()) {
         continue;
       }
 
-      TopDownNode prev = children.get(child.getData().getId());
-      TopDownNode other = new TopDownNode(child);
-      if (prev == null) {
-        children.put(child.getData().getId(), other);
-        addChild(other);
-      }
-      else {
-        prev.merge(other);
+      int key = keys.getKey(child);
+      List<CaptureNode> group = groupsByKey.get(key);
+      if (group == null) {
+        group = new ArrayList<>();
+        groupsByKey.put(key, group);
+        groups.add(group);
       }
+      group.add(child);
     }
   }
 
-  private void merge(TopDownNode other) {
-    addNodes(other.getNodes());
-
-    // We use a separate map for unmatched children, because we can not merge unmatched with matched,
-    // i.e all merged children should have the same {@link CaptureNode.FilterType};
-    Map<String, TopDownNode> children = new TreeMap<>();
-    Map<String, TopDownNode> unmatchedChildren = new TreeMap<>();
-
-    for (TopDownNode child : getChildren()) {
-      if (child.isUnmatched()) {
-        unmatchedChildren.put(child.getId(), child);
-      } else {
-        children.put(child.getId(), child);
-      }
+  /**
+   * Same as {@link #update(Range)}, but sums up the times of the nodes as they are when the indexes are not built yet, rather than building
+   * indexes that this node would keep for as long as it lives. Meant for callers updating each node once per range, such as the flame
+   * chart, which updates the whole tree.
+   */
+  public void updateWithoutIndexing(@NotNull Range range) {
+    if (isIndexed()) {
+      update(range);
+      return;
     }
-
-    for (TopDownNode otherChild : other.getChildren()) {
-      TopDownNode existing;
-
-      if (otherChild.isUnmatched()) {
-        existing = unmatchedChildren.get(otherChild.getId());
-      } else {
-        existing = children.get(otherChild.getId());
-      }
-      if (existing != null) {
-        existing.merge(otherChild);
-      }
-      else {
-        addChild(otherChild);
+    reset();
+    for (CaptureNode node : myNodes) {
+      myGlobalTotal += getIntersection(range, node.getStartGlobal(), node.getEndGlobal());
+      myThreadTotal += getIntersection(range, node.getStartThread(), node.getEndThread());
+      for (CaptureNode child : node.getChildren()) {
+        myGlobalChildrenTotal += getIntersection(range, child.getStartGlobal(), child.getEndGlobal());
+        myThreadChildrenTotal += getIntersection(range, child.getStartThread(), child.getEndThread());
       }
     }
   }
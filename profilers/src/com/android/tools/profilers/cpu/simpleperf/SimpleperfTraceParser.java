@@ -29,6 +29,7 @@ import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -38,6 +39,11 @@ import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -77,6 +83,18 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private final Map<Integer, SimpleperfReport.Thread> myThreads;
 
+  /**
+   * Maps a file id and a symbol id, as (fileId << 32 | symbolId), to the model of the symbol, so that the nodes of the same method share
+   * a model rather than each parsing the symbol into a model of its own. Threads are parsed concurrently, so the models are shared
+   * through concurrent maps.
+   */
+  private final Map<Long, CaptureNodeModel> mySymbolModels;
+
+  /**
+   * Maps the name of a call chain entry without symbol to its model.
+   */
+  private final Map<String, CaptureNodeModel> myNoSymbolModels;
+
   /**
    * List of samples containing method trace data.
    */
@@ -116,11 +134,24 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private String myAppDataFolderPrefix;
 
+  /**
+   * Runs the tasks building the call tree of each thread but the main one.
+   */
+  @NotNull private final Executor myExecutor;
+
   public SimpleperfTraceParser() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  @VisibleForTesting
+  SimpleperfTraceParser(@NotNull Executor executor) {
+    myExecutor = executor;
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
     myCaptureTrees = new HashMap<>();
     myThreads = new HashMap<>();
+    mySymbolModels = new ConcurrentHashMap<>();
+    myNoSymbolModels = new ConcurrentHashMap<>();
   }
 
   /**
@@ -299,12 +330,71 @@ public class SimpleperfTraceParser implements TraceParser {
     // Split the samples per thread.
     Map<Integer, List<SimpleperfReport.Sample>> threadSamples = splitSamplesPerThread();
 
-    // Process the samples for each thread
+    // The tree of every thread is independent of the others, so build them on the fork-join pool, apart from the tree of the main thread,
+    // which is built on this thread once the other tasks are submitted, rather than queued behind them. The trees are only published
+    // together, once all of them are built: CpuCapture picks the main thread and the clock type from the complete map, so the main thread's
+    // tree is not shown any earlier than the others.
+    List<FutureTask<Map.Entry<CpuThreadInfo, CaptureNode>>> tasks = new ArrayList<>(threadSamples.size());
+    Map.Entry<CpuThreadInfo, CaptureNode> mainThreadTree = null;
+    int mainThreadId = findMainThreadId(threadSamples.keySet());
     for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : threadSamples.entrySet()) {
-      parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue());
+      if (threadSamplesEntry.getKey() != mainThreadId) {
+        FutureTask<Map.Entry<CpuThreadInfo, CaptureNode>> task =
+          new FutureTask<>(() -> parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue()));
+        myExecutor.execute(task);
+        tasks.add(task);
+      }
+    }
+    if (threadSamples.containsKey(mainThreadId)) {
+      mainThreadTree = parseThreadSamples(mainThreadId, threadSamples.get(mainThreadId));
+    }
+
+    if (mainThreadTree != null) {
+      myCaptureTrees.put(mainThreadTree.getKey(), mainThreadTree.getValue());
+    }
+    for (FutureTask<Map.Entry<CpuThreadInfo, CaptureNode>> task : tasks) {
+      Map.Entry<CpuThreadInfo, CaptureNode> tree = join(task);
+      if (tree != null) {
+        myCaptureTrees.put(tree.getKey(), tree.getValue());
+      }
     }
   }
 
+  /**
+   * Waits for {@code task} and rethrows its exceptions as they were thrown, e.g. the {@link IllegalStateException} of a malformed trace.
+   */
+  private static <T> T join(@NotNull FutureTask<T> task) {
+    try {
+      return task.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException)e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error)e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * @return the id of the main thread of the process, i.e. the thread whose id is the process id, or -1 if it has no samples.
+   */
+  private int findMainThreadId(Set<Integer> threadIds) {
+    for (int threadId : threadIds) {
+      SimpleperfReport.Thread thread = myThreads.get(threadId);
+      if (thread != null && threadId == thread.getProcessId()) {
+        return threadId;
+      }
+    }
+    return -1;
+  }
+
   /**
    * Group the samples collected by thread.
    */
@@ -333,12 +423,16 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   /**
-   * Parses the list of samples of a thread into a {@link CaptureNode} tree.
+   * Parses the list of samples of a thread into a {@link CaptureNode} tree. This is called concurrently for different threads, so it must
+   * only read the state of the parser, apart from the model maps.
+   *
+   * @return the thread and its tree, or null if the thread has no samples.
    */
-  private void parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
+  @Nullable
+  private Map.Entry<CpuThreadInfo, CaptureNode> parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
     if (threadSamples.isEmpty()) {
       getLog().warn(String.format("Warning: No samples read for thread %s (%d)", myThreads.get(threadId), threadId));
-      return;
+      return null;
     }
 
     if (!myThreads.containsKey(threadId)) {
@@ -350,7 +444,7 @@ public class SimpleperfTraceParser implements TraceParser {
     SimpleperfReport.Thread thread = myThreads.get(threadId);
     CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), firstTimestamp);
     root.setDepth(0);
-    myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
+    CpuThreadInfo threadInfo = new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId());
 
     // Parse the first call chain so we have a value for lastCallchain
     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = Lists.reverse(threadSamples.get(0).getCallchainList());
@@ -374,6 +468,7 @@ public class SimpleperfTraceParser implements TraceParser {
     updateAncestorsEndTime(lastTimestamp, lastVisitedNode);
     // update the root timestamp
     setNodeEndTime(root, lastTimestamp);
+    return new AbstractMap.SimpleImmutableEntry<>(threadInfo, root);
   }
 
   /**
@@ -444,8 +539,8 @@ public class SimpleperfTraceParser implements TraceParser {
                                   CaptureNode node, int startIndex, long startTimestamp) {
     assert node != null;
     for (int i = startIndex; i < callChain.size(); i++) {
-      CaptureNode child = createCaptureNode(methodModelFromCallchainEntry(callChain.get(i)), startTimestamp);
-      node.addChild(child);
+      CaptureNode child = node.addChild(methodModelFromCallchainEntry(callChain.get(i)));
+      setNodeStartTime(child, startTimestamp);
       child.setDepth(node.getDepth() + 1);
       node = child;
     }
@@ -463,11 +558,14 @@ public class SimpleperfTraceParser implements TraceParser {
       // if symbol_id is -1, we report the method as fileName+vAddress (e.g. program.so+0x3039)
       String hexAddress = "0x" + Long.toHexString(callChainEntry.getVaddrInFile());
       String methodName = fileNameFromPath(symbolFile.getPath()) + "+" + hexAddress;
-      return new NoSymbolModel(methodName);
+      return myNoSymbolModels.computeIfAbsent(methodName, NoSymbolModel::new);
     }
     // Otherwise, read the method from the symbol table and parse it into a CaptureNodeModel. User's code symbols come from
     // files located inside the app's directory, therefore we check if the symbol path has the same prefix of such directory.
-    boolean isUserWritten = symbolFile.getPath().startsWith(myAppDataFolderPrefix);
-    return NodeNameParser.parseNodeName(symbolFile.getSymbol(symbolId), isUserWritten);
+    long symbolKey = ((long)callChainEntry.getFileId() << 32) | (symbolId & 0xFFFFFFFFL);
+    return mySymbolModels.computeIfAbsent(symbolKey, key -> {
+      boolean isUserWritten = symbolFile.getPath().startsWith(myAppDataFolderPrefix);
+      return NodeNameParser.parseNodeName(symbolFile.getSymbol(symbolId), isUserWritten);
+    });
   }
 }
@@ -13,6 +13,7 @@
 // limitations under the License.
 package com.android.tools.profilers.energy;
 
+import com.android.tools.adtui.model.DownsamplingDataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
@@ -27,7 +28,8 @@ public class EnergyUsage extends LineChartModel {
   public EnergyUsage(@NotNull StudioProfilers profilers) {
     myUsageRange = new Range(0, EnergyMonitor.MAX_EXPECTED_USAGE);
     EnergyUsageDataSeries dataSeries = new EnergyUsageDataSeries(profilers.getClient(), profilers.getSession());
-    myUsageSeries = new RangedContinuousSeries(getSeriesLabel(), profilers.getTimeline().getViewRange(), myUsageRange, dataSeries);
+    myUsageSeries = new RangedContinuousSeries(getSeriesLabel(), profilers.getTimeline().getViewRange(), myUsageRange,
+                                               new DownsamplingDataSeries(dataSeries));
     add(myUsageSeries);
   }
 
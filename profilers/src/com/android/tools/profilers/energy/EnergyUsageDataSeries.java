@@ -13,22 +13,20 @@
 // limitations under the License.
 package com.android.tools.profilers.energy;
 
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataBuffer;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.EnergyProfiler;
 import com.android.tools.profiler.proto.EnergyProfiler.EnergyRequest;
 import com.android.tools.profiler.proto.EnergyProfiler.EnergySample;
+import com.android.tools.profilers.DataStoreSeries;
 import com.android.tools.profilers.ProfilerClient;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
-public class EnergyUsageDataSeries implements DataSeries<Long> {
+public class EnergyUsageDataSeries extends DataStoreSeries {
 
   @NotNull private final ProfilerClient myClient;
   private final Common.Session mySession;
@@ -52,15 +50,15 @@ public class EnergyUsageDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForXRange(Range range) {
+  protected void fetchData(@NotNull Range range, @NotNull LongDataBuffer data) {
     EnergyRequest.Builder builder = EnergyRequest.newBuilder().setSession(mySession);
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
     builder.setStartTimestamp(TimeUnit.MICROSECONDS.toNanos((long) range.getMin()) - bufferNs);
     builder.setEndTimestamp(TimeUnit.MICROSECONDS.toNanos((long) range.getMax()) + bufferNs);
     EnergyProfiler.EnergySamplesResponse samples = myClient.getEnergyClient().getSamples(builder.build());
 
-    return samples.getSamplesList().stream()
-      .map(data -> new SeriesData<>(TimeUnit.NANOSECONDS.toMicros(data.getTimestamp()), (long)mySampleToUsage.apply(data)))
-      .collect(Collectors.toList());
+    for (EnergySample sample : samples.getSamplesList()) {
+      data.add(TimeUnit.NANOSECONDS.toMicros(sample.getTimestamp()), mySampleToUsage.apply(sample));
+    }
   }
 }
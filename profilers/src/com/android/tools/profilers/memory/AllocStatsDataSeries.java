@@ -16,24 +16,21 @@
 package com.android.tools.profilers.memory;
 
 import com.android.tools.adtui.model.AspectObserver;
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataBuffer;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.MemoryProfiler;
 import com.android.tools.profiler.proto.MemoryServiceGrpc;
+import com.android.tools.profilers.DataStoreSeries;
 import com.android.tools.profilers.ProfilerAspect;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-public final class AllocStatsDataSeries implements DataSeries<Long> {
+public final class AllocStatsDataSeries extends DataStoreSeries {
   @NotNull private final StudioProfilers myProfilers;
   @NotNull private final MemoryServiceGrpc.MemoryServiceBlockingStub myClient;
   @NotNull private final Common.Session mySession;
@@ -57,9 +54,9 @@ public final class AllocStatsDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForXRange(@NotNull Range timeCurrentRangeUs) {
+  protected void fetchData(@NotNull Range timeCurrentRangeUs, @NotNull LongDataBuffer data) {
     if (!myIsAgentAttached) {
-      return Collections.emptyList();
+      return;
     }
 
     // TODO: Change the Memory API to allow specifying padding in the request as number of samples.
@@ -70,12 +67,10 @@ public final class AllocStatsDataSeries implements DataSeries<Long> {
       .setEndTime(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMax()) + bufferNs);
     MemoryProfiler.MemoryData response = myClient.getData(dataRequestBuilder.build());
 
-    List<SeriesData<Long>> seriesData = new ArrayList<>();
     for (MemoryProfiler.MemoryData.AllocStatsSample sample : response.getAllocStatsSamplesList()) {
       long dataTimestamp = TimeUnit.NANOSECONDS.toMicros(sample.getTimestamp());
-      seriesData.add(new SeriesData<>(dataTimestamp, myFilter.apply(sample)));
+      data.add(dataTimestamp, myFilter.apply(sample));
     }
-    return seriesData;
   }
 
   private void agentStatusChanged() {
@@ -111,6 +111,8 @@ public class MemoryProfilerStage extends Stage implements CodeNavigator.Listener
   private final CaptureElapsedTimeUpdatable myCaptureElapsedTimeUpdatable = new CaptureElapsedTimeUpdatable();
   private long myPendingCaptureStartTime = INVALID_START_TIME;
   private long myPendingLegacyAllocationStartTimeNs = INVALID_START_TIME;
+  private volatile double myCaptureLoadingProgress = 0;
+  @NotNull private volatile String myCaptureLoadingMessage = "";
 
   @NotNull private final AllocationSamplingRateDataSeries myAllocationSamplingRateDataSeries;
   @NotNull private final DurationDataModel<AllocationSamplingRateDurationData> myAllocationSamplingRateDurations;
@@ -530,6 +532,27 @@ public class MemoryProfilerStage extends Stage implements CodeNavigator.Listener
     return mySelection.getClassSet();
   }
 
+  /**
+   * Reports how far along the loading of the selected capture is, as a fraction between 0 and 1, along with a short description of the
+   * current loading step. This is meant to be called from the thread loading the capture; listeners of
+   * {@link MemoryProfilerAspect#CURRENT_LOADING_CAPTURE_PROGRESS} are notified on the main thread.
+   */
+  public void setCaptureLoadingProgress(double progress, @NotNull String message) {
+    myCaptureLoadingProgress = progress;
+    myCaptureLoadingMessage = message;
+    getStudioProfilers().getIdeServices().getMainExecutor()
+      .execute(() -> myAspect.changed(MemoryProfilerAspect.CURRENT_LOADING_CAPTURE_PROGRESS));
+  }
+
+  public double getCaptureLoadingProgress() {
+    return myCaptureLoadingProgress;
+  }
+
+  @NotNull
+  public String getCaptureLoadingMessage() {
+    return myCaptureLoadingMessage;
+  }
+
   public void refreshSelectedHeap() {
     myAspect.changed(MemoryProfilerAspect.CURRENT_HEAP_CONTENTS);
     myFilterHandler.refreshFilterContent();
@@ -76,7 +76,17 @@ public class ClassSet extends ClassifierSet {
     @Nullable
     @Override
     public ClassifierSet getClassifierSet(@NotNull InstanceObject instance, boolean createIfAbsent) {
-      ClassDb.ClassEntry classEntry = instance.getClassEntry();
+      return getClassifierSet(instance.getClassEntry(), createIfAbsent);
+    }
+
+    @Nullable
+    @Override
+    public ClassifierSet getClassifierSet(@NotNull DeferredInstances instances, boolean createIfAbsent) {
+      return getClassifierSet(instances.getClassEntry(), createIfAbsent);
+    }
+
+    @Nullable
+    private ClassifierSet getClassifierSet(@NotNull ClassDb.ClassEntry classEntry, boolean createIfAbsent) {
       ClassSet classSet = myClassMap.get(classEntry);
       if (classSet == null && createIfAbsent) {
         classSet = new ClassSet(classEntry);
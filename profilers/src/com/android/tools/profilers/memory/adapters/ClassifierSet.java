@@ -22,6 +22,7 @@ import org.jetbrains.annotations.Nullable;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -39,6 +40,9 @@ public abstract class ClassifierSet implements MemoryObject {
   // Note that instances here can also appear in the set of snapshot instances (e.g. when a instance is allocated before the selection
   // and deallocation within the selection).
   @NotNull protected final Set<InstanceObject> myDeltaInstances = new LinkedHashSet<>(0);
+  // Groups of delta instances that are already accounted for in the totals below, but whose InstanceObjects have not been created yet.
+  // They are loaded into myDeltaInstances on demand, or handed down to the child ClassifierSet they belong to when this node is partitioned.
+  @NotNull private final List<DeferredInstances> myDeferredInstances = new ArrayList<>(0);
 
   // Lazily create the Classifier, as it is configurable and isn't necessary until nodes under this node needs to be classified.
   @Nullable protected Classifier myClassifier = null;
@@ -130,6 +134,7 @@ public abstract class ClassifierSet implements MemoryObject {
       myClassifier.getClassifierSet(instanceObject, true).addSnapshotInstanceObject(instanceObject);
     }
     else {
+      loadDeferredInstances();
       assert !mySnapshotInstances.contains(instanceObject);
       mySnapshotInstances.add(instanceObject);
     }
@@ -154,6 +159,7 @@ public abstract class ClassifierSet implements MemoryObject {
       classifierSet.removeSnapshotInstanceObject(instanceObject);
     }
     else {
+      loadDeferredInstances();
       assert mySnapshotInstances.contains(instanceObject);
       mySnapshotInstances.remove(instanceObject);
     }
@@ -174,6 +180,33 @@ public abstract class ClassifierSet implements MemoryObject {
     return addDeltaInstanceInformation(instanceObject, true);
   }
 
+  /**
+   * Add a group of delta instances without creating their {@link InstanceObject}s. The group is accounted for in the totals right away, and
+   * its instance objects are only created once the ClassifierSet that ends up holding it needs its instances (e.g. when it is expanded).
+   * The instances of the group must not already be part of this set.
+   */
+  public void addDeferredDeltaInstances(@NotNull DeferredInstances instances) {
+    if (myClassifier != null && !myClassifier.isTerminalClassifier()) {
+      ClassifierSet classifierSet = myClassifier.getClassifierSet(instances, true);
+      if (classifierSet == null) {
+        // The classifier cannot place the group as a whole, so the instances have to be classified one by one.
+        instances.load().forEach(this::addDeltaInstanceObject);
+        return;
+      }
+      classifierSet.addDeferredDeltaInstances(instances);
+    }
+    else {
+      myDeferredInstances.add(instances);
+    }
+
+    myDeltaAllocations += instances.getCount();
+    myTotalNativeSize += instances.getTotalNativeSize();
+    myTotalShallowSize += instances.getTotalShallowSize();
+    myTotalRetainedSize += instances.getTotalRetainedSize();
+    myInstancesWithStackInfoCount += instances.getInstancesWithStackInfoCount();
+    myNeedsRefiltering = true;
+  }
+
   // Add delta dealloc information into the ClassifierSet
   // Return true if the set did not contain the instance prior to invocation
   public boolean freeDeltaInstanceObject(@NotNull InstanceObject instanceObject) {
@@ -203,6 +236,7 @@ public abstract class ClassifierSet implements MemoryObject {
       instanceAdded = myClassifier.getClassifierSet(instanceObject, true).addDeltaInstanceInformation(instanceObject, isAllocation);
     }
     else {
+      loadDeferredInstances();
       if (!myDeltaInstances.contains(instanceObject)) {
         instanceAdded = true;
         myDeltaInstances.add(instanceObject);
@@ -242,6 +276,7 @@ public abstract class ClassifierSet implements MemoryObject {
       instanceRemoved = classifierSet.removeDeltaInstanceInformation(instanceObject, isAllocation);
     }
     else {
+      loadDeferredInstances();
       if (!instanceObject.hasTimeData() && myDeltaInstances.contains(instanceObject)) {
         myDeltaInstances.remove(instanceObject);
         instanceRemoved = true;
@@ -273,6 +308,7 @@ public abstract class ClassifierSet implements MemoryObject {
   public void clearClassifierSets() {
     mySnapshotInstances.clear();
     myDeltaInstances.clear();
+    myDeferredInstances.clear();
     myClassifier = createSubClassifier();
     mySnapshotObjectCount = 0;
     myDeltaAllocations = 0;
@@ -286,14 +322,23 @@ public abstract class ClassifierSet implements MemoryObject {
   }
 
   public int getInstancesCount() {
+    // Deferred instances are counted without being loaded, as they never overlap with the other instances of the set.
     if (myClassifier == null) {
       Set<InstanceObject> total = new HashSet<>(mySnapshotInstances);
       total.addAll(myDeltaInstances);
-      return total.size();
+      return total.size() + getDeferredInstancesCount();
     }
     else {
-      return (int)getInstancesStream().count();
+      return (int)getInstancesStream(instances -> false).count() + getDeferredInstancesCount();
+    }
+  }
+
+  private int getDeferredInstancesCount() {
+    int count = myDeferredInstances.stream().mapToInt(DeferredInstances::getCount).sum();
+    if (myClassifier != null) {
+      count += myClassifier.getAllClassifierSets().stream().mapToInt(ClassifierSet::getDeferredInstancesCount).sum();
     }
+    return count;
   }
 
   /**
@@ -301,17 +346,28 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   @NotNull
   public Stream<InstanceObject> getInstancesStream() {
+    return getInstancesStream(instances -> true);
+  }
+
+  /**
+   * Gets a stream of the instances (including all descendants) in this ClassifierSet, only loading the deferred instances accepted by
+   * {@code loadFilter}. The deferred instances that are not accepted are left out of the stream.
+   */
+  @NotNull
+  private Stream<InstanceObject> getInstancesStream(@NotNull Predicate<DeferredInstances> loadFilter) {
+    loadDeferredInstances(loadFilter);
     Stream<InstanceObject> total = Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).distinct();
     if (myClassifier == null) {
       return total;
     }
     else {
-      return Stream.concat(myClassifier.getAllClassifierSets().stream().flatMap(ClassifierSet::getInstancesStream), total);
+      return Stream
+        .concat(myClassifier.getAllClassifierSets().stream().flatMap(classifierSet -> classifierSet.getInstancesStream(loadFilter)), total);
     }
   }
 
   /**
-   * Return the stream of instance objects that contribute to the delta.
+   * Return the stream of instance objects that contribute to the delta, excluding the {@link #getDeferredInstanceStream() deferred} ones.
    * Note that there can be duplicated entries as {@link #getSnapshotInstanceStream()}.
    */
   @NotNull
@@ -341,6 +397,50 @@ public abstract class ClassifierSet implements MemoryObject {
     }
   }
 
+  /**
+   * Return the stream of deferred instance groups (including those of all descendants) whose instance objects have not been created yet.
+   */
+  @NotNull
+  protected Stream<DeferredInstances> getDeferredInstanceStream() {
+    if (myClassifier == null) {
+      return myDeferredInstances.stream();
+    }
+    else {
+      return Stream.concat(myClassifier.getAllClassifierSets().stream().flatMap(ClassifierSet::getDeferredInstanceStream),
+                           myDeferredInstances.stream());
+    }
+  }
+
+  /**
+   * Re-adds deferred instance groups gathered from {@link #getDeferredInstanceStream()} to this node, without touching the totals, which
+   * still account for them.
+   */
+  protected void restoreDeferredInstances(@NotNull Collection<DeferredInstances> instances) {
+    assert myClassifier == null;
+    myDeferredInstances.clear();
+    myDeferredInstances.addAll(instances);
+  }
+
+  /**
+   * Creates the instance objects of the deferred groups held by this node, which are then treated as regular delta instances.
+   */
+  private void loadDeferredInstances() {
+    loadDeferredInstances(instances -> true);
+  }
+
+  private void loadDeferredInstances(@NotNull Predicate<DeferredInstances> filter) {
+    if (myDeferredInstances.isEmpty()) {
+      return;
+    }
+    for (Iterator<DeferredInstances> iterator = myDeferredInstances.iterator(); iterator.hasNext(); ) {
+      DeferredInstances instances = iterator.next();
+      if (filter.test(instances)) {
+        myDeltaInstances.addAll(instances.load());
+        iterator.remove();
+      }
+    }
+  }
+
   public boolean hasStackInfo() {
     return myInstancesWithStackInfoCount > 0;
   }
@@ -361,6 +461,8 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   @Nullable
   public ClassifierSet findContainingClassifierSet(@NotNull InstanceObject target) {
+    // Only deferred instances of the target's class can contain it.
+    loadDeferredInstances(instances -> instances.getClassEntry().equals(target.getClassEntry()));
     boolean instancesContainsTarget =
       Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).filter(instance -> target.equals(instance)).findAny()
         .isPresent();
@@ -397,8 +499,12 @@ public abstract class ClassifierSet implements MemoryObject {
       return false;
     }
 
-    Set<InstanceObject> instances = getInstancesStream().collect(Collectors.toSet());
-    return targetSet.getInstancesStream().allMatch(instances::contains);
+    Set<InstanceObject> targetInstances = targetSet.getInstancesStream().collect(Collectors.toSet());
+    // Only load the deferred instances of classes that the target set actually contains.
+    Set<ClassDb.ClassEntry> targetClasses = targetInstances.stream().map(InstanceObject::getClassEntry).collect(Collectors.toSet());
+    Set<InstanceObject> instances =
+      getInstancesStream(deferred -> targetClasses.contains(deferred.getClassEntry())).collect(Collectors.toSet());
+    return instances.containsAll(targetInstances);
   }
 
   /**
@@ -407,10 +513,29 @@ public abstract class ClassifierSet implements MemoryObject {
   protected void ensurePartition() {
     if (myClassifier == null) {
       myClassifier = createSubClassifier();
+      partitionDeferredInstances();
       myClassifier.partition(mySnapshotInstances, myDeltaInstances);
     }
   }
 
+  /**
+   * Hands the deferred instance groups down to the child ClassifierSet they belong to, so that they stay deferred until that child needs
+   * them. Groups the classifier cannot place as a whole are loaded, and partitioned along with the other instances.
+   */
+  private void partitionDeferredInstances() {
+    assert myClassifier != null;
+    for (DeferredInstances instances : myDeferredInstances) {
+      ClassifierSet classifierSet = myClassifier.isTerminalClassifier() ? null : myClassifier.getClassifierSet(instances, true);
+      if (classifierSet != null) {
+        classifierSet.addDeferredDeltaInstances(instances);
+      }
+      else {
+        myDeltaInstances.addAll(instances.load());
+      }
+    }
+    myDeferredInstances.clear();
+  }
+
   /**
    * Gets the classifier this class will use to classify its instances.
    */
@@ -519,6 +644,15 @@ public abstract class ClassifierSet implements MemoryObject {
     @Nullable
     public abstract ClassifierSet getClassifierSet(@NotNull InstanceObject instance, boolean createIfAbsent);
 
+    /**
+     * Retrieve the next-level ClassifierSet that all the given deferred {@code instances} belong to, without loading them. Classifiers
+     * that need to look at each instance return null, in which case the instances are loaded and classified one by one.
+     */
+    @Nullable
+    public ClassifierSet getClassifierSet(@NotNull DeferredInstances instances, boolean createIfAbsent) {
+      return null;
+    }
+
     /**
      * Gets a {@link List} of the child ClassifierSets.
      */
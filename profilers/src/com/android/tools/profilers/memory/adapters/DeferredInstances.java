@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A group of instances of the same class, without time data, whose {@link InstanceObject}s have not been created yet. A
+ * {@link ClassifierSet} accounts for the group in its totals right away, but only asks the loader for the instance objects once they are
+ * actually needed, e.g. when the node holding them is expanded or its instances are listed. This keeps captures with millions of
+ * instances (e.g. heap dumps) from having to wrap every one of them up front.
+ */
+public final class DeferredInstances {
+  @NotNull private final ClassDb.ClassEntry myClassEntry;
+  private final int myCount;
+  private final long myTotalNativeSize;
+  private final long myTotalShallowSize;
+  private final long myTotalRetainedSize;
+  private final int myInstancesWithStackInfoCount;
+  @NotNull private final Supplier<List<InstanceObject>> myLoader;
+
+  public DeferredInstances(@NotNull ClassDb.ClassEntry classEntry,
+                           int count,
+                           long totalNativeSize,
+                           long totalShallowSize,
+                           long totalRetainedSize,
+                           int instancesWithStackInfoCount,
+                           @NotNull Supplier<List<InstanceObject>> loader) {
+    myClassEntry = classEntry;
+    myCount = count;
+    myTotalNativeSize = totalNativeSize;
+    myTotalShallowSize = totalShallowSize;
+    myTotalRetainedSize = totalRetainedSize;
+    myInstancesWithStackInfoCount = instancesWithStackInfoCount;
+    myLoader = loader;
+  }
+
+  /**
+   * @return the class entry shared by all the instances of the group.
+   */
+  @NotNull
+  public ClassDb.ClassEntry getClassEntry() {
+    return myClassEntry;
+  }
+
+  public int getCount() {
+    return myCount;
+  }
+
+  public long getTotalNativeSize() {
+    return myTotalNativeSize;
+  }
+
+  public long getTotalShallowSize() {
+    return myTotalShallowSize;
+  }
+
+  public long getTotalRetainedSize() {
+    return myTotalRetainedSize;
+  }
+
+  public int getInstancesWithStackInfoCount() {
+    return myInstancesWithStackInfoCount;
+  }
+
+  /**
+   * Creates the instance objects of the group. The loader may be invoked more than once, so it should return the same instance objects
+   * (or equal ones) every time.
+   */
+  @NotNull
+  public List<InstanceObject> load() {
+    List<InstanceObject> instances = myLoader.get();
+    assert instances.size() == myCount;
+    return instances;
+  }
+}
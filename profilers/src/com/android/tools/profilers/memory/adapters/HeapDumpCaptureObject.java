@@ -16,34 +16,58 @@
 package com.android.tools.profilers.memory.adapters;
 
 import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.captures.DataBuffer;
+import com.android.tools.perflib.captures.MemoryMappedFileBuffer;
 import com.android.tools.perflib.heap.ClassObj;
 import com.android.tools.perflib.heap.Heap;
 import com.android.tools.perflib.heap.Instance;
 import com.android.tools.perflib.heap.Snapshot;
+import com.android.tools.perflib.heap.StackFrame;
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor;
 import com.android.tools.perflib.heap.io.InMemoryBuffer;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.MemoryProfiler.DumpDataRequest;
 import com.android.tools.profiler.proto.MemoryProfiler.DumpDataResponse;
 import com.android.tools.profiler.proto.MemoryProfiler.HeapDumpInfo;
+import com.android.tools.profiler.proto.MemoryServiceGrpc;
 import com.android.tools.profiler.proto.MemoryServiceGrpc.MemoryServiceBlockingStub;
+import com.android.tools.profiler.protobuf3jarjar.CodedInputStream;
+import com.android.tools.profiler.protobuf3jarjar.WireFormat;
 import com.android.tools.profilers.analytics.FeatureTracker;
 import com.android.tools.profilers.memory.MemoryProfiler;
 import com.android.tools.profilers.memory.MemoryProfilerStage;
 import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCalls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.android.tools.profilers.memory.adapters.CaptureObject.ClassifierAttribute.*;
 
 public class HeapDumpCaptureObject implements CaptureObject {
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
+  }
 
   @NotNull
   private final MemoryServiceBlockingStub myClient;
@@ -60,6 +84,8 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @NotNull
   private final Map<ClassObj, InstanceObject> myClassObjectIndex = new HashMap<>();
 
+  // Instance objects are created on demand (see DeferredInstances), so this only holds the ones that have been needed so far, plus the
+  // class objects. Accessed under its own lock, as instance objects can be created from any thread once the capture is loaded.
   @NotNull
   private final Map<Instance, InstanceObject> myInstanceIndex = new HashMap<>();
 
@@ -75,6 +101,12 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  @Nullable
+  private DataBuffer myBuffer;
+
+  @Nullable
+  private File myDumpFile;
+
   private volatile boolean myIsLoadingError = false;
 
   private boolean myHasNativeAllocations;
@@ -166,31 +198,14 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Override
   public boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner) {
-    DumpDataResponse response;
-    while (true) {
-      // TODO move this to another thread and complete before we notify
-      response = myClient.getHeapDump(DumpDataRequest.newBuilder()
-                                        .setSession(mySession)
-                                        .setDumpTime(myHeapDumpInfo.getStartTime()).build());
-      if (response.getStatus() == DumpDataResponse.Status.SUCCESS) {
-        break;
-      }
-      else if (response.getStatus() == DumpDataResponse.Status.NOT_READY) {
-        try {
-          Thread.sleep(50L);
-        }
-        catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          myIsLoadingError = true;
-          return false;
-        }
-        continue;
-      }
+    myStage.setCaptureLoadingProgress(0, "Fetching heap dump");
+    DataBuffer buffer = fetchBuffer();
+    if (buffer == null) {
       myIsLoadingError = true;
       return false;
     }
 
-    InMemoryBuffer buffer = new InMemoryBuffer(response.getData().asReadOnlyByteBuffer());
+    myStage.setCaptureLoadingProgress(0.1, "Reading heap dump");
     Snapshot snapshot;
     NativeRegistryPostProcessor nativeRegistryPostProcessor = new NativeRegistryPostProcessor();
     if (myProguardMap != null) {
@@ -199,9 +214,12 @@ public class HeapDumpCaptureObject implements CaptureObject {
     else {
       snapshot = Snapshot.createSnapshot(buffer, new ProguardMap(), Arrays.asList(nativeRegistryPostProcessor));
     }
-    snapshot.computeDominators();
     myHasNativeAllocations = nativeRegistryPostProcessor.getHasNativeAllocations();
-    mySnapshot = snapshot;
+
+    // Only the retained sizes depend on the dominators, so compute them on the fork-join pool while the classes are indexed here. Nothing
+    // that reads a retained size, such as adding instances to a heap set, may run before the task is joined.
+    myStage.setCaptureLoadingProgress(0.4, "Computing dominators");
+    ForkJoinTask<?> dominatorsTask = ForkJoinPool.commonPool().submit(snapshot::computeDominators);
 
     Map<Heap, HeapSet> heapSets = new HashMap<>(snapshot.getHeaps().size());
     InstanceObject javaLangClassObject = null;
@@ -218,28 +236,56 @@ public class HeapDumpCaptureObject implements CaptureObject {
     }
 
     InstanceObject finalJavaLangClassObject = javaLangClassObject;
+    List<ClassObj> classes = new ArrayList<>();
+    Map<HeapSet, List<InstanceObject>> classObjects = new HashMap<>(heapSets.size());
     for (Heap heap : snapshot.getHeaps()) {
-      HeapSet heapSet = heapSets.get(heap);
+      List<InstanceObject> heapClassObjects = classObjects.computeIfAbsent(heapSets.get(heap), key -> new ArrayList<>());
       heap.getClasses().forEach(classObj -> {
         InstanceObject classObject = createClassObjectInstance(finalJavaLangClassObject, classObj);
-        myInstanceIndex.put(classObj, classObject);
-        heapSet.addDeltaInstanceObject(classObject);
+        synchronized (myInstanceIndex) {
+          myInstanceIndex.put(classObj, classObject);
+        }
+        heapClassObjects.add(classObject);
+        classes.add(classObj);
       });
     }
 
+    // Group the instances of each heap by class, without creating their instance objects.
+    List<InstanceGroup> groups = new ArrayList<>();
     for (Heap heap : snapshot.getHeaps()) {
-      HeapSet heapSet = heapSets.get(heap);
-      heap.forEachInstance(instance -> {
-        assert !ClassDb.JAVA_LANG_CLASS.equals(getName());
-        ClassObj classObj = instance.getClassObj();
-        InstanceObject instanceObject =
-          new HeapDumpInstanceObject(this, getClassObjectInstance(instance), instance,
-                                     myClassDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName()), null);
-        myInstanceIndex.put(instance, instanceObject);
-        heapSet.addDeltaInstanceObject(instanceObject);
-        return true;
-      });
+      for (ClassObj classObj : classes) {
+        List<Instance> instances = classObj.getHeapInstances(heap.getId());
+        if (!instances.isEmpty()) {
+          groups.add(new InstanceGroup(heapSets.get(heap), myClassDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName()),
+                                       instances));
+        }
+      }
+    }
+
+    try {
+      dominatorsTask.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      releaseBuffer(buffer);
+      myIsLoadingError = true;
+      return false;
     }
+    catch (ExecutionException e) {
+      releaseBuffer(buffer);
+      throw new RuntimeException(e.getCause());
+    }
+
+    // Adding an instance to a heap set sums up its retained size, which is only known now.
+    classObjects.forEach((heapSet, heapClassObjects) -> heapClassObjects.forEach(heapSet::addDeltaInstanceObject));
+
+    // Summing up the sizes is the only pass over all the instances, so spread it over the fork-join pool as well.
+    myStage.setCaptureLoadingProgress(0.8, "Classifying instances");
+    List<DeferredInstances> deferredInstances = groups.parallelStream().map(this::createDeferredInstances).collect(Collectors.toList());
+    for (int i = 0; i < groups.size(); i++) {
+      groups.get(i).myHeapSet.addDeferredDeltaInstances(deferredInstances.get(i));
+    }
+
     heapSets.forEach((key, value) -> {
       if ("default".equals(key.getName())) {
         if (heapSets.size() == 1 || key.getInstancesCount() > 0) {
@@ -251,6 +297,10 @@ public class HeapDumpCaptureObject implements CaptureObject {
       }
     });
 
+    myBuffer = buffer;
+    mySnapshot = snapshot;
+    myStage.setCaptureLoadingProgress(1, "Heap dump loaded");
+
     myStage.refreshSelectedHeap();
 
     return true;
@@ -268,7 +318,224 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Override
   public void unload() {
+    // Release the snapshot and the mapped dump file. The capture is loaded again from scratch if it gets selected again.
+    mySnapshot = null;
+    myHeapSets.clear();
+    myClassObjectIndex.clear();
+    synchronized (myInstanceIndex) {
+      myInstanceIndex.clear();
+    }
+    if (myBuffer != null) {
+      releaseBuffer(myBuffer);
+      myBuffer = null;
+    }
+  }
+
+  /**
+   * Disposes a buffer created by {@link #fetchBuffer()} and deletes the dump file it maps, if any.
+   */
+  private void releaseBuffer(@NotNull DataBuffer buffer) {
+    buffer.dispose();
+    if (myDumpFile != null) {
+      deleteDumpFile(myDumpFile);
+      myDumpFile = null;
+    }
+  }
+
+  private static void deleteDumpFile(@NotNull File file) {
+    if (!file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Streams the heap dump into a temporary file and maps it into memory, so that the dump is never held in a byte array on the Java heap
+   * while it is received, parsed and browsed. Falls back to an in-memory buffer if the file cannot be mapped. Returns null if the dump
+   * could not be fetched.
+   */
+  @Nullable
+  private DataBuffer fetchBuffer() {
+    File file;
+    try {
+      file = File.createTempFile("heapdump", ".hprof");
+      file.deleteOnExit();
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to create a file for the heap dump", e);
+      return null;
+    }
+
+    DumpDataRequest request = DumpDataRequest.newBuilder().setSession(mySession).setDumpTime(myHeapDumpInfo.getStartTime()).build();
+    while (true) {
+      // TODO move this to another thread and complete before we notify
+      DumpDataResponse.Status status;
+      try {
+        status = fetchHeapDump(myClient, request, file);
+      }
+      catch (StatusRuntimeException e) {
+        getLogger().warn("Unable to fetch the heap dump", e);
+        deleteDumpFile(file);
+        return null;
+      }
+      if (status == DumpDataResponse.Status.SUCCESS) {
+        break;
+      }
+      else if (status == DumpDataResponse.Status.NOT_READY) {
+        try {
+          Thread.sleep(50L);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          deleteDumpFile(file);
+          return null;
+        }
+        continue;
+      }
+      deleteDumpFile(file);
+      return null;
+    }
 
+    try {
+      DataBuffer buffer = new MemoryMappedFileBuffer(file);
+      myDumpFile = file;
+      return buffer;
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to map the heap dump into memory, falling back to an in-memory buffer", e);
+      try {
+        return new InMemoryBuffer(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+      }
+      catch (IOException readException) {
+        getLogger().warn("Unable to read the heap dump", readException);
+        return null;
+      }
+      finally {
+        deleteDumpFile(file);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link MemoryServiceBlockingStub#getHeapDump}, except that the dump data is written into {@code file} as it is read off the
+   * response stream rather than materialized as a {@link DumpDataResponse} first. Returns the status of the response.
+   */
+  @NotNull
+  private static DumpDataResponse.Status fetchHeapDump(@NotNull MemoryServiceBlockingStub client,
+                                                       @NotNull DumpDataRequest request,
+                                                       @NotNull File file) {
+    MethodDescriptor<DumpDataRequest, DumpDataResponse.Status> method =
+      MethodDescriptor.<DumpDataRequest, DumpDataResponse.Status>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName(MethodDescriptor.generateFullMethodName(MemoryServiceGrpc.SERVICE_NAME, "GetHeapDump"))
+        .setRequestMarshaller(new DumpDataRequestMarshaller())
+        .setResponseMarshaller(new HeapDumpFileMarshaller(file))
+        .build();
+    return ClientCalls.blockingUnaryCall(client.getChannel(), method, client.getCallOptions(), request);
+  }
+
+  private static class DumpDataRequestMarshaller implements MethodDescriptor.Marshaller<DumpDataRequest> {
+    @Override
+    public InputStream stream(DumpDataRequest request) {
+      return request.toByteString().newInput();
+    }
+
+    @Override
+    public DumpDataRequest parse(InputStream stream) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Reads a serialized {@link DumpDataResponse} field by field, copying the dump data into a file in chunks and only keeping the status.
+   */
+  private static class HeapDumpFileMarshaller implements MethodDescriptor.Marshaller<DumpDataResponse.Status> {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @NotNull private final File myFile;
+
+    HeapDumpFileMarshaller(@NotNull File file) {
+      myFile = file;
+    }
+
+    @Override
+    public InputStream stream(DumpDataResponse.Status status) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DumpDataResponse.Status parse(InputStream stream) {
+      DumpDataResponse.Status status = DumpDataResponse.getDefaultInstance().getStatus();
+      CodedInputStream input = CodedInputStream.newInstance(stream);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      try (OutputStream output = new FileOutputStream(myFile)) {
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+          switch (WireFormat.getTagFieldNumber(tag)) {
+            case DumpDataResponse.STATUS_FIELD_NUMBER:
+              DumpDataResponse.Status value = DumpDataResponse.Status.forNumber(input.readEnum());
+              status = value != null ? value : DumpDataResponse.Status.UNRECOGNIZED;
+              break;
+            case DumpDataResponse.DATA_FIELD_NUMBER:
+              for (int remaining = input.readRawVarint32(); remaining > 0; remaining -= CHUNK_SIZE) {
+                output.write(input.readRawBytes(Math.min(remaining, CHUNK_SIZE)));
+              }
+              break;
+            default:
+              input.skipField(tag);
+              break;
+          }
+        }
+      }
+      catch (IOException e) {
+        throw Status.INTERNAL.withDescription("Unable to write the heap dump").withCause(e).asRuntimeException();
+      }
+      return status;
+    }
+  }
+
+  /**
+   * Sums up the sizes of a group of instances, which requires the dominators to be computed. Safe to call concurrently for different
+   * groups.
+   */
+  @NotNull
+  private DeferredInstances createDeferredInstances(@NotNull InstanceGroup group) {
+    long nativeSize = 0;
+    long shallowSize = 0;
+    long retainedSize = 0;
+    int instancesWithStackInfoCount = 0;
+    for (Instance instance : group.myInstances) {
+      nativeSize += instance.getNativeSize();
+      shallowSize += instance.getSize();
+      retainedSize += instance.getTotalRetainedSize();
+      if (hasStackFrames(instance)) {
+        instancesWithStackInfoCount++;
+      }
+    }
+    ClassDb.ClassEntry classEntry = group.myClassEntry;
+    List<Instance> instances = group.myInstances;
+    return new DeferredInstances(classEntry, instances.size(), nativeSize, shallowSize, retainedSize, instancesWithStackInfoCount,
+                                 () -> instances.stream().map(instance -> getOrCreateInstanceObject(instance, classEntry))
+                                   .collect(Collectors.toList()));
+  }
+
+  /**
+   * @return true if the instance has an allocation call stack, i.e. if its {@link InstanceObject#getCallStackDepth()} would be non-zero.
+   */
+  private static boolean hasStackFrames(@NotNull Instance instance) {
+    if (instance.getStack() == null) {
+      return false;
+    }
+    for (StackFrame ignored : instance.getStack().getFrames()) {
+      return true;
+    }
+    return false;
+  }
+
+  @NotNull
+  private InstanceObject getOrCreateInstanceObject(@NotNull Instance instance, @NotNull ClassDb.ClassEntry classEntry) {
+    synchronized (myInstanceIndex) {
+      return myInstanceIndex
+        .computeIfAbsent(instance, key -> new HeapDumpInstanceObject(this, getClassObjectInstance(instance), instance, classEntry, null));
+    }
   }
 
   @NotNull
@@ -295,7 +562,14 @@ public class HeapDumpCaptureObject implements CaptureObject {
       return null;
     }
 
-    return myInstanceIndex.get(instance);
+    synchronized (myInstanceIndex) {
+      InstanceObject instanceObject = myInstanceIndex.get(instance);
+      if (instanceObject != null) {
+        return instanceObject;
+      }
+      ClassObj classObj = instance.getClassObj();
+      return getOrCreateInstanceObject(instance, myClassDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName()));
+    }
   }
 
   @NotNull
@@ -323,4 +597,19 @@ public class HeapDumpCaptureObject implements CaptureObject {
     ClassObj classObj = instance.getClassObj();
     return myClassObjectIndex.get(classObj);
   }
+
+  /**
+   * The instances of one class on one heap.
+   */
+  private static final class InstanceGroup {
+    @NotNull private final HeapSet myHeapSet;
+    @NotNull private final ClassDb.ClassEntry myClassEntry;
+    @NotNull private final List<Instance> myInstances;
+
+    private InstanceGroup(@NotNull HeapSet heapSet, @NotNull ClassDb.ClassEntry classEntry, @NotNull List<Instance> instances) {
+      myHeapSet = heapSet;
+      myClassEntry = classEntry;
+      myInstances = instances;
+    }
+  }
 }
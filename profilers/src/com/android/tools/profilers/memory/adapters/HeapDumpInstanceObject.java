@@ -53,7 +53,7 @@ class HeapDumpInstanceObject implements InstanceObject {
   @Nullable private final InstanceObject myClassInstanceObject;
   @NotNull private final Instance myInstance;
   @NotNull private final ClassDb.ClassEntry myClassEntry;
-  @NotNull private final String myMemoizedLabel;
+  @Nullable private String myMemoizedLabel;
 
   @VisibleForTesting(visibility = VisibleForTesting.Visibility.PACKAGE)
   HeapDumpInstanceObject(@NotNull HeapDumpCaptureObject captureObject,
@@ -66,8 +66,6 @@ class HeapDumpInstanceObject implements InstanceObject {
     myInstance = instance;
     myClassEntry = classEntry;
 
-    myMemoizedLabel =
-      String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
     if (precomputedValueType != null) {
       myValueType = precomputedValueType;
       return;
@@ -113,6 +111,11 @@ class HeapDumpInstanceObject implements InstanceObject {
   @Override
   public String getValueText() {
     // TODO show length of array instance
+    // Formatted on first use, as most instances of a heap dump are never displayed.
+    if (myMemoizedLabel == null) {
+      myMemoizedLabel =
+        String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
+    }
     return myMemoizedLabel;
   }
 
@@ -51,11 +51,13 @@ public class HeapSet extends ClassifierSet {
     // Subsequent calls to getChildrenClassifierSets will re-partition them to the correct child ClassifierSet.
     List<InstanceObject> snapshotStream = getSnapshotInstanceStream().collect(Collectors.toList());
     List<InstanceObject> deltaStream = getDeltaInstanceStream().collect(Collectors.toList());
+    List<DeferredInstances> deferredStream = getDeferredInstanceStream().collect(Collectors.toList());
     myDeltaInstances.clear();
     mySnapshotInstances.clear();
     myClassifier = null;
     myDeltaInstances.addAll(deltaStream);
     mySnapshotInstances.addAll(snapshotStream);
+    restoreDeferredInstances(deferredStream);
     myNeedsRefiltering = true;
   }
 
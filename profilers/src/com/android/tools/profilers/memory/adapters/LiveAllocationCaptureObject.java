@@ -31,6 +31,8 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.intellij.openapi.diagnostic.Logger;
 import gnu.trove.TIntObjectHashMap;
 import gnu.trove.TLongObjectHashMap;
+import io.grpc.Metadata;
+import io.grpc.stub.MetadataUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
@@ -39,6 +41,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -51,6 +54,22 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     return Logger.getInstance(LiveAllocationCaptureObject.class);
   }
 
+  /**
+   * Events this close to the latest allocation time may still be added to the datastore, so they are queried again on the next update
+   * instead of being replayed from {@link #myEventIndex}.
+   */
+  private static final long LIVE_EDGE_NS = TimeUnit.SECONDS.toNanos(1);
+  /**
+   * Beyond this many events, {@link #myEventIndex} only keeps the current selection.
+   */
+  private static final int MAX_INDEXED_EVENT_COUNT = 1_000_000;
+  /**
+   * The number of events per page of the allocation queries, sent in the header the datastore's MemoryService reads as
+   * ALLOCATION_PAGE_SIZE_HEADER. Datastores which don't know the header answer with the whole range at once.
+   */
+  private static final int ALLOCATION_PAGE_SIZE = 20000;
+  private static final Metadata.Key<String> ALLOCATION_PAGE_SIZE_HEADER =
+    Metadata.Key.of("allocation-page-size", Metadata.ASCII_STRING_MARSHALLER);
   @VisibleForTesting static final String SAMPLING_INFO_MESSAGE = "Selected region does not have full tracking. Data may be inaccurate.";
 
   @Nullable private MemoryProfilerStage myStage;
@@ -62,8 +81,10 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   private final TIntObjectHashMap<AllocationStack> myCallstackMap;
   private final TIntObjectHashMap<ThreadId> myThreadIdMap;
   private final TLongObjectHashMap<StackFrameInfoResponse> myFrameInfoResponseMap;
+  private final LiveAllocationEventIndex myEventIndex;
 
   private final MemoryServiceBlockingStub myClient;
+  private final MemoryServiceBlockingStub myPagedClient;
   private final Common.Session mySession;
   private final long myCaptureStartTime;
   private final List<HeapSet> myHeapSets;
@@ -98,8 +119,12 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     myCallstackMap = new TIntObjectHashMap<>();
     myThreadIdMap = new TIntObjectHashMap<>();
     myFrameInfoResponseMap = new TLongObjectHashMap<>();
+    myEventIndex = new LiveAllocationEventIndex();
 
     myClient = client;
+    Metadata pageSizeHeaders = new Metadata();
+    pageSizeHeaders.put(ALLOCATION_PAGE_SIZE_HEADER, Integer.toString(ALLOCATION_PAGE_SIZE));
+    myPagedClient = MetadataUtils.attachHeaders(client, pageSizeHeaders);
     mySession = session;
     myCaptureStartTime = captureStartTime;
     myAspectObserver = new AspectObserver();
@@ -332,12 +357,23 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         boolean clear = myPreviousQueryEndTimeNs <= newStartTimeNs || newEndTimeNs <= myPreviousQueryStartTimeNs;
         if (clear) {
           myInstanceMap.clear();
+          // The index refers to the instances that were just dropped, start over from the new range.
+          myEventIndex.clear();
+          joiner.execute(() -> {
+            myHeapSets.forEach(heap -> heap.clearClassifierSets());
+            if (myStage.getSelectedClassSet() != null) {
+              myStage.selectClassSet(ClassSet.EMPTY_SET);
+            }
+          });
+          // The heap sets start out empty, so whatever was queried so far can be shown while the remaining pages are being fetched.
+          Runnable publishLoadedPages = () -> publishLoadedInstances(joiner, snapshotList, deltaAllocationList, deltaFreeList);
+
           // If we are resetting, then first establish the object snapshot at the query range's start point.
-          queryJavaInstanceSnapshot(newStartTimeNs, snapshotList);
+          queryJavaInstanceSnapshot(newStartTimeNs, snapshotList, publishLoadedPages);
           queryJniReferencesSnapshot(newStartTimeNs, snapshotList);
 
           // Update the delta allocations and deallocations within the selection range on the snapshot.
-          queryJavaInstanceDelta(newStartTimeNs, newEndTimeNs, deltaAllocationList, deltaFreeList, false);
+          queryJavaInstanceDelta(newStartTimeNs, newEndTimeNs, deltaAllocationList, deltaFreeList, false, publishLoadedPages);
           queryJniReferencesDelta(newStartTimeNs, newEndTimeNs, deltaAllocationList, deltaFreeList, false);
         }
         else {
@@ -346,7 +382,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           List<InstanceObject> leftDeallocations = new ArrayList<>();
           if (newStartTimeNs < myPreviousQueryStartTimeNs) {
             // Selection's min shifts left
-            queryJavaInstanceDelta(newStartTimeNs, myPreviousQueryStartTimeNs, leftAllocations, leftDeallocations, false);
+            queryJavaInstanceDelta(newStartTimeNs, myPreviousQueryStartTimeNs, leftAllocations, leftDeallocations, false, null);
             queryJniReferencesDelta(newStartTimeNs, myPreviousQueryStartTimeNs, leftAllocations, leftDeallocations, false);
             // add data within this range to the deltas
             deltaAllocationList.addAll(leftAllocations);
@@ -358,7 +394,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           }
           else if (newStartTimeNs > myPreviousQueryStartTimeNs) {
             // Selection's min shifts right
-            queryJavaInstanceDelta(myPreviousQueryStartTimeNs, newStartTimeNs, leftAllocations, leftDeallocations, true);
+            queryJavaInstanceDelta(myPreviousQueryStartTimeNs, newStartTimeNs, leftAllocations, leftDeallocations, true, null);
             queryJniReferencesDelta(myPreviousQueryStartTimeNs, newStartTimeNs, leftAllocations, leftDeallocations, true);
             // Remove data within this range from the deltas
             resetDeltaAllocationList.addAll(leftAllocations);
@@ -374,14 +410,14 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           List<InstanceObject> rightDeallocations = new ArrayList<>();
           if (newEndTimeNs < myPreviousQueryEndTimeNs) {
             // Selection's max shifts left: remove data within this range from the deltas
-            queryJavaInstanceDelta(newEndTimeNs, myPreviousQueryEndTimeNs, rightAllocations, rightDeallocations, true);
+            queryJavaInstanceDelta(newEndTimeNs, myPreviousQueryEndTimeNs, rightAllocations, rightDeallocations, true, null);
             queryJniReferencesDelta(newEndTimeNs, myPreviousQueryEndTimeNs, rightAllocations, rightDeallocations, true);
             resetDeltaAllocationList.addAll(rightAllocations);
             resetDeltaFreeList.addAll(rightDeallocations);
           }
           else if (newEndTimeNs > myPreviousQueryEndTimeNs) {
             // Selection's max shifts right: add data within this range to the deltas
-            queryJavaInstanceDelta(myPreviousQueryEndTimeNs, newEndTimeNs, rightAllocations, rightDeallocations, false);
+            queryJavaInstanceDelta(myPreviousQueryEndTimeNs, newEndTimeNs, rightAllocations, rightDeallocations, false, null);
             queryJniReferencesDelta(myPreviousQueryEndTimeNs, newEndTimeNs, rightAllocations, rightDeallocations, false);
             deltaAllocationList.addAll(rightAllocations);
             deltaFreeList.addAll(rightDeallocations);
@@ -390,17 +426,14 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
         myPreviousQueryStartTimeNs = newStartTimeNs;
         myPreviousQueryEndTimeNs = newEndTimeNs;
+        if (myEventIndex.size() > MAX_INDEXED_EVENT_COUNT) {
+          myEventIndex.retain(newStartTimeNs, newEndTimeNs);
+        }
 
         joiner.execute(() -> {
           myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
           if (clear ||
               deltaAllocationList.size() + deltaFreeList.size() + resetDeltaAllocationList.size() + resetDeltaFreeList.size() > 0) {
-            if (clear) {
-              myHeapSets.forEach(heap -> heap.clearClassifierSets());
-              if (myStage.getSelectedClassSet() != null) {
-                myStage.selectClassSet(ClassSet.EMPTY_SET);
-              }
-            }
             if (myStage.getStudioProfilers().getIdeServices().getFeatureConfig().isMemorySnapshotEnabled()) {
               snapshotList.forEach(instance -> myHeapSets.get(instance.getHeapId()).addSnapshotInstanceObject(instance));
               resetSnapshotList.forEach(instance -> myHeapSets.get(instance.getHeapId()).removeSnapshotInstanceObject(instance));
@@ -460,27 +493,76 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     return result;
   }
 
-  private void queryJavaInstanceSnapshot(long newTimeNs, @NotNull List<InstanceObject> setAllocationList) {
+  /**
+   * Publishes the instances queried so far to the heap sets, ahead of the final update of {@link #loadTimeRange}. The lists are drained,
+   * so the final update only applies what was queried after this call.
+   */
+  private void publishLoadedInstances(@NotNull Executor joiner,
+                                      @NotNull List<InstanceObject> snapshotList,
+                                      @NotNull List<InstanceObject> deltaAllocationList,
+                                      @NotNull List<InstanceObject> deltaFreeList) {
+    List<InstanceObject> snapshots = new ArrayList<>(snapshotList);
+    List<InstanceObject> deltaAllocations = new ArrayList<>(deltaAllocationList);
+    List<InstanceObject> deltaFrees = new ArrayList<>(deltaFreeList);
+    snapshotList.clear();
+    deltaAllocationList.clear();
+    deltaFreeList.clear();
+    joiner.execute(() -> {
+      if (myStage.getStudioProfilers().getIdeServices().getFeatureConfig().isMemorySnapshotEnabled()) {
+        snapshots.forEach(instance -> myHeapSets.get(instance.getHeapId()).addSnapshotInstanceObject(instance));
+      }
+      deltaAllocations.forEach(instance -> myHeapSets.get(instance.getHeapId()).addDeltaInstanceObject(instance));
+      deltaFrees.forEach(instance -> myHeapSets.get(instance.getHeapId()).freeDeltaInstanceObject(instance));
+      myStage.refreshSelectedHeap();
+    });
+  }
+
+  /**
+   * Fetches the allocation events of {@code request}'s range one page at a time (see the datastore's MemoryService#getAllocations),
+   * handing each page to {@code pageConsumer} as soon as it arrives. {@code beforeNextPage}, if any, runs between two pages.
+   */
+  private void queryAllocationPages(@NotNull AllocationSnapshotRequest request,
+                                    @NotNull Consumer<BatchAllocationSample> pageConsumer,
+                                    @Nullable Runnable beforeNextPage) {
+    long pageStartTimeNs = request.getStartTime();
+    while (true) {
+      BatchAllocationSample page = myPagedClient.getAllocations(request.toBuilder().setStartTime(pageStartTimeNs).build());
+      pageConsumer.accept(page);
+      // Stop once the range is covered, or if the page made no progress (e.g. an older datastore that does not page).
+      if (page.getEventsCount() == 0 || page.getTimestamp() >= request.getEndTime() - 1 || page.getTimestamp() < pageStartTimeNs) {
+        return;
+      }
+      pageStartTimeNs = page.getTimestamp() + 1;
+      if (beforeNextPage != null) {
+        beforeNextPage.run();
+      }
+    }
+  }
+
+  private void queryJavaInstanceSnapshot(long newTimeNs,
+                                         @NotNull List<InstanceObject> setAllocationList,
+                                         @Nullable Runnable beforeNextPage) {
     if (!myStage.getStudioProfilers().getIdeServices().getFeatureConfig().isMemorySnapshotEnabled()) {
       return;
     }
 
-    BatchAllocationSample sampleResponse = myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setSession(mySession)
-                                                                     .setEndTime(newTimeNs).setLiveObjectsOnly(true).build());
-
-    for (AllocationEvent event : sampleResponse.getEventsList()) {
-      if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
-        AllocationEvent.Allocation allocation = event.getAllocData();
-        LiveAllocationInstanceObject instance =
-          getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
-                                    allocation.getSize(), allocation.getHeapId());
-        instance.setAllocationTime(event.getTimestamp());
-        setAllocationList.add(instance);
-      }
-      else {
-        assert false;
+    AllocationSnapshotRequest request =
+      AllocationSnapshotRequest.newBuilder().setSession(mySession).setEndTime(newTimeNs).setLiveObjectsOnly(true).build();
+    queryAllocationPages(request, page -> {
+      for (AllocationEvent event : page.getEventsList()) {
+        if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+          AllocationEvent.Allocation allocation = event.getAllocData();
+          LiveAllocationInstanceObject instance =
+            getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+                                      allocation.getSize(), allocation.getHeapId());
+          instance.setAllocationTime(event.getTimestamp());
+          setAllocationList.add(instance);
+        }
+        else {
+          assert false;
+        }
       }
-    }
+    }, beforeNextPage);
   }
 
   private void queryJniReferencesSnapshot(long newTimeNs, @NotNull List<InstanceObject> setAllocationList) {
@@ -525,40 +607,107 @@ public class LiveAllocationCaptureObject implements CaptureObject {
    *                         deallocation event has occurred. The {@link ClassifierSet} rely on the presence (or absence) of these time data
    *                         to determine whether the InstanceObject should be added (or removed) from the ClassifierSet. Also see {@link
    *                         ClassifierSet#removeDeltaInstanceInformation(InstanceObject, boolean)}.
+   * @param beforeNextPage   If not null, runs whenever more events remain to be fetched after the ones added to the lists so far.
    */
   private void queryJavaInstanceDelta(long startTimeNs,
                                       long endTimeNs,
                                       @NotNull List<InstanceObject> allocationList,
                                       @NotNull List<InstanceObject> deallocatoinList,
-                                      boolean resetInstance) {
+                                      boolean resetInstance,
+                                      @Nullable Runnable beforeNextPage) {
     if (startTimeNs == endTimeNs) {
       return;
     }
 
-    BatchAllocationSample sampleResponse = myClient.getAllocations(
-      AllocationSnapshotRequest.newBuilder().setSession(mySession).setStartTime(startTimeNs).setEndTime(endTimeNs).build());
-
-    for (AllocationEvent event : sampleResponse.getEventsList()) {
-      if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
-        AllocationEvent.Allocation allocation = event.getAllocData();
-        LiveAllocationInstanceObject instance =
-          getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
-                                    allocation.getSize(), allocation.getHeapId());
-        instance.setAllocationTime(resetInstance ? Long.MIN_VALUE : event.getTimestamp());
+    LiveAllocationEventIndex.EventVisitor applyEvent = (timestamp, instance, isAllocation) -> {
+      if (isAllocation) {
+        instance.setAllocationTime(resetInstance ? Long.MIN_VALUE : timestamp);
         allocationList.add(instance);
       }
-      else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
-        AllocationEvent.Deallocation deallocation = event.getFreeData();
-        LiveAllocationInstanceObject instance =
-          getOrCreateInstanceObject(deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
-                                    deallocation.getThreadId(), deallocation.getSize(), deallocation.getHeapId());
-        instance.setDeallocTime(resetInstance ? Long.MAX_VALUE : event.getTimestamp());
+      else {
+        instance.setDeallocTime(resetInstance ? Long.MAX_VALUE : timestamp);
         deallocatoinList.add(instance);
       }
-      else {
-        assert false;
+    };
+
+    // Only the part of the range that the index has never covered is queried. When starting from scratch, the events are applied as the
+    // pages arrive so they can be published early, otherwise they are replayed from the index once it covers the whole range.
+    boolean applyWhileQuerying = myEventIndex.isEmpty();
+    if (applyWhileQuerying) {
+      myEventIndex.reset(startTimeNs);
+    }
+    else {
+      myEventIndex.dropUnstableEnd();
+    }
+    if (startTimeNs < myEventIndex.getStartNs()) {
+      LiveAllocationEventIndex leftEvents = new LiveAllocationEventIndex();
+      queryJavaInstanceEvents(startTimeNs, myEventIndex.getStartNs(), leftEvents, null, null);
+      myEventIndex.prepend(startTimeNs, leftEvents);
+    }
+    if (endTimeNs > myEventIndex.getEndNs()) {
+      queryJavaInstanceEvents(myEventIndex.getEndNs(), endTimeNs, myEventIndex, applyWhileQuerying ? applyEvent : null, beforeNextPage);
+      long stableEndNs = myEventsEndTimeNs < Long.MIN_VALUE + LIVE_EDGE_NS ? Long.MIN_VALUE : myEventsEndTimeNs - LIVE_EDGE_NS;
+      myEventIndex.extendEnd(endTimeNs, stableEndNs);
+    }
+    if (!applyWhileQuerying) {
+      myEventIndex.forEachEvent(startTimeNs, endTimeNs, applyEvent);
+    }
+  }
+
+  /**
+   * Queries the allocation and free events within [startTimeNs, endTimeNs) and appends them to {@code events}.
+   *
+   * @param eventVisitor   If not null, also visits each event as its page arrives.
+   * @param beforeNextPage If not null, runs whenever more events remain to be fetched.
+   */
+  private void queryJavaInstanceEvents(long startTimeNs,
+                                       long endTimeNs,
+                                       @NotNull LiveAllocationEventIndex events,
+                                       @Nullable LiveAllocationEventIndex.EventVisitor eventVisitor,
+                                       @Nullable Runnable beforeNextPage) {
+    AllocationSnapshotRequest request =
+      AllocationSnapshotRequest.newBuilder().setSession(mySession).setStartTime(startTimeNs).setEndTime(endTimeNs).build();
+    queryAllocationPages(request, page -> {
+      List<AllocationEvent> pageEvents = page.getEventsList();
+      if (!isSortedByTimestamp(pageEvents)) {
+        // Older datastores return all allocations of a page before its frees.
+        pageEvents = new ArrayList<>(pageEvents);
+        pageEvents.sort(Comparator.comparingLong(AllocationEvent::getTimestamp));
+      }
+      for (AllocationEvent event : pageEvents) {
+        LiveAllocationInstanceObject instance;
+        boolean isAllocation;
+        if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+          AllocationEvent.Allocation allocation = event.getAllocData();
+          instance = getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
+                                               allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
+          isAllocation = true;
+        }
+        else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
+          AllocationEvent.Deallocation deallocation = event.getFreeData();
+          instance = getOrCreateInstanceObject(deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
+                                               deallocation.getThreadId(), deallocation.getSize(), deallocation.getHeapId());
+          isAllocation = false;
+        }
+        else {
+          assert false;
+          continue;
+        }
+        events.append(event.getTimestamp(), instance, isAllocation);
+        if (eventVisitor != null) {
+          eventVisitor.visit(event.getTimestamp(), instance, isAllocation);
+        }
+      }
+    }, beforeNextPage);
+  }
+
+  private static boolean isSortedByTimestamp(@NotNull List<AllocationEvent> events) {
+    for (int i = 1; i < events.size(); i++) {
+      if (events.get(i).getTimestamp() < events.get(i - 1).getTimestamp()) {
+        return false;
       }
     }
+    return true;
   }
 
   private void queryJniReferencesDelta(long startTimeNs,
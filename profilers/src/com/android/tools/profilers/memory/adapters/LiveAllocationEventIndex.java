@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Time-sorted log of the allocation and free events of {@link LiveAllocationInstanceObject}s over one contiguous time range
+ * [{@link #getStartNs()}, {@link #getEndNs()}) that has already been queried from the datastore. {@link LiveAllocationCaptureObject} uses it
+ * to replay the events entering or leaving its selection when the range moves, so each update costs a binary search plus the number of
+ * events in the changed part of the range, and only time that was never covered before is queried again.
+ *
+ * The range grows on either side as more time is queried. Its end may be marked as unstable when it is close to the live edge, where
+ * events can still be added to the datastore; {@link #dropUnstableEnd()} then shrinks the range so that part is queried again. Events are
+ * kept in a double-ended array so both prepending and appending are amortized O(1) per event.
+ */
+final class LiveAllocationEventIndex {
+  interface EventVisitor {
+    void visit(long timestamp, @NotNull LiveAllocationInstanceObject instance, boolean isAllocation);
+  }
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private long[] myTimestamps = new long[INITIAL_CAPACITY];
+  private LiveAllocationInstanceObject[] myInstances = new LiveAllocationInstanceObject[INITIAL_CAPACITY];
+  private boolean[] myIsAllocation = new boolean[INITIAL_CAPACITY];
+  // Events are stored in [myHead, myTail) of the arrays above.
+  private int myHead = INITIAL_CAPACITY / 2;
+  private int myTail = INITIAL_CAPACITY / 2;
+
+  private boolean myIsEmpty = true;
+  private long myStartNs;
+  private long myEndNs;
+  // The events in [myStableEndNs, myEndNs) may not be complete yet.
+  private long myStableEndNs;
+
+  /**
+   * @return true if no range has been covered since the last {@link #reset(long)}.
+   */
+  boolean isEmpty() {
+    return myIsEmpty;
+  }
+
+  long getStartNs() {
+    return myStartNs;
+  }
+
+  long getEndNs() {
+    return myEndNs;
+  }
+
+  int size() {
+    return myTail - myHead;
+  }
+
+  /**
+   * Drops all events; the index then covers the empty range [timeNs, timeNs).
+   */
+  void reset(long timeNs) {
+    Arrays.fill(myInstances, myHead, myTail, null);
+    myHead = myTimestamps.length / 2;
+    myTail = myHead;
+    myStartNs = timeNs;
+    myEndNs = timeNs;
+    myStableEndNs = timeNs;
+    myIsEmpty = false;
+  }
+
+  /**
+   * Drops all events and the covered range.
+   */
+  void clear() {
+    reset(0);
+    myIsEmpty = true;
+  }
+
+  /**
+   * Appends an event, which must not be older than the last one. Callers append all events of [{@link #getEndNs()}, endNs) in time order
+   * and then {@link #extendEnd(long)}.
+   */
+  void append(long timestamp, @NotNull LiveAllocationInstanceObject instance, boolean isAllocation) {
+    assert myTail == myHead || timestamp >= myTimestamps[myTail - 1];
+    if (myTail == myTimestamps.length) {
+      grow();
+    }
+    myTimestamps[myTail] = timestamp;
+    myInstances[myTail] = instance;
+    myIsAllocation[myTail] = isAllocation;
+    myTail++;
+  }
+
+  /**
+   * Extends the covered range to {@code endNs}, once all events before it have been appended.
+   */
+  void extendEnd(long endNs) {
+    extendEnd(endNs, endNs);
+  }
+
+  /**
+   * Extends the covered range to {@code endNs}, once all events before it have been appended. Only the events before
+   * {@code stableEndNs} are final, the ones after it are dropped by the next {@link #dropUnstableEnd()}.
+   */
+  void extendEnd(long endNs, long stableEndNs) {
+    long previousEndNs = myEndNs;
+    myEndNs = Math.max(myEndNs, endNs);
+    myStableEndNs = Math.max(previousEndNs, Math.min(stableEndNs, myEndNs));
+  }
+
+  /**
+   * Shrinks the covered range to the part whose events are final.
+   */
+  void dropUnstableEnd() {
+    truncateEnd(myStableEndNs);
+  }
+
+  /**
+   * Shrinks the covered range to [{@code startNs}, {@code endNs}), dropping the events outside of it.
+   */
+  void retain(long startNs, long endNs) {
+    truncateEnd(endNs);
+    if (startNs <= myStartNs) {
+      return;
+    }
+    startNs = Math.min(startNs, myEndNs);
+    int head = lowerBound(startNs);
+    Arrays.fill(myInstances, myHead, head, null);
+    myHead = head;
+    myStartNs = startNs;
+  }
+
+  private void truncateEnd(long endNs) {
+    if (endNs >= myEndNs) {
+      return;
+    }
+    endNs = Math.max(endNs, myStartNs);
+    int tail = lowerBound(endNs);
+    Arrays.fill(myInstances, tail, myTail, null);
+    myTail = tail;
+    myEndNs = endNs;
+    myStableEndNs = Math.min(myStableEndNs, endNs);
+  }
+
+  /**
+   * Prepends the events of {@code events}, which must cover [{@code startNs}, {@link #getStartNs()}), and extends the covered range to
+   * {@code startNs}.
+   */
+  void prepend(long startNs, @NotNull LiveAllocationEventIndex events) {
+    int count = events.size();
+    while (myHead < count) {
+      grow();
+    }
+    myHead -= count;
+    System.arraycopy(events.myTimestamps, events.myHead, myTimestamps, myHead, count);
+    System.arraycopy(events.myInstances, events.myHead, myInstances, myHead, count);
+    System.arraycopy(events.myIsAllocation, events.myHead, myIsAllocation, myHead, count);
+    myStartNs = Math.min(myStartNs, startNs);
+  }
+
+  /**
+   * Visits, in time order, the events with timestamps in [{@code startNs}, {@code endNs}). The range must be covered by the index.
+   */
+  void forEachEvent(long startNs, long endNs, @NotNull EventVisitor visitor) {
+    assert startNs >= myStartNs && endNs <= myEndNs;
+    for (int i = lowerBound(startNs); i < myTail && myTimestamps[i] < endNs; i++) {
+      visitor.visit(myTimestamps[i], myInstances[i], myIsAllocation[i]);
+    }
+  }
+
+  /**
+   * @return the index of the first event whose timestamp is >= {@code timeNs}, or myTail if there is none.
+   */
+  private int lowerBound(long timeNs) {
+    int low = myHead;
+    int high = myTail;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myTimestamps[mid] < timeNs) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Doubles the capacity, re-centering the events so there is room to grow on both ends.
+   */
+  private void grow() {
+    int size = size();
+    int capacity = myTimestamps.length * 2;
+    int head = (capacity - size) / 2;
+    long[] timestamps = new long[capacity];
+    LiveAllocationInstanceObject[] instances = new LiveAllocationInstanceObject[capacity];
+    boolean[] isAllocation = new boolean[capacity];
+    System.arraycopy(myTimestamps, myHead, timestamps, head, size);
+    System.arraycopy(myInstances, myHead, instances, head, size);
+    System.arraycopy(myIsAllocation, myHead, isAllocation, head, size);
+    myTimestamps = timestamps;
+    myInstances = instances;
+    myIsAllocation = isAllocation;
+    myHead = head;
+    myTail = head + size;
+  }
+}
@@ -15,19 +15,17 @@
  */
 package com.android.tools.profilers.network;
 
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataBuffer;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.NetworkProfiler.ConnectionData;
 import com.android.tools.profiler.proto.NetworkProfiler.NetworkDataRequest;
 import com.android.tools.profiler.proto.NetworkProfiler.NetworkDataResponse;
 import com.android.tools.profiler.proto.NetworkProfiler.NetworkProfilerData;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.android.tools.profilers.DataStoreSeries;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -35,7 +33,7 @@ import java.util.concurrent.TimeUnit;
  *
  * It is responsible for making an RPC call to perfd/datastore and converting the resulting proto into UI data.
  */
-public class NetworkOpenConnectionsDataSeries implements DataSeries<Long> {
+public class NetworkOpenConnectionsDataSeries extends DataStoreSeries {
   @NotNull private NetworkServiceGrpc.NetworkServiceBlockingStub myClient;
   private final Common.Session mySession;
 
@@ -45,9 +43,7 @@ public class NetworkOpenConnectionsDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForXRange(@NotNull Range timeCurrentRangeUs) {
-    List<SeriesData<Long>> seriesData = new ArrayList<>();
-
+  protected void fetchData(@NotNull Range timeCurrentRangeUs, @NotNull LongDataBuffer data) {
     // TODO: Change the Network API to allow specifying padding in the request as number of samples.
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
     NetworkDataRequest.Builder dataRequestBuilder = NetworkDataRequest.newBuilder()
@@ -56,11 +52,10 @@ public class NetworkOpenConnectionsDataSeries implements DataSeries<Long> {
       .setStartTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMin()) - bufferNs)
       .setEndTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMax()) + bufferNs);
     NetworkDataResponse response = myClient.getData(dataRequestBuilder.build());
-    for (NetworkProfilerData data : response.getDataList()) {
-      long xTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getEndTimestamp());
-      ConnectionData connectionData = data.getConnectionData();
-      seriesData.add(new SeriesData<>(xTimestamp, (long)connectionData.getConnectionNumber()));
+    for (NetworkProfilerData networkData : response.getDataList()) {
+      long xTimestamp = TimeUnit.NANOSECONDS.toMicros(networkData.getEndTimestamp());
+      ConnectionData connectionData = networkData.getConnectionData();
+      data.add(xTimestamp, connectionData.getConnectionNumber());
     }
-    return seriesData;
   }
 }
@@ -15,16 +15,14 @@
  */
 package com.android.tools.profilers.network;
 
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataBuffer;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.NetworkProfiler;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.android.tools.profilers.DataStoreSeries;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -33,7 +31,7 @@ import java.util.concurrent.TimeUnit;
  *
  * It is responsible for making an RPC call to perfd/datastore and converting the resulting proto into UI data.
  */
-public class NetworkTrafficDataSeries implements DataSeries<Long> {
+public class NetworkTrafficDataSeries extends DataStoreSeries {
   public enum Type {
     BYTES_RECEIVED("Receiving", "Received") {
       @Override
@@ -76,9 +74,7 @@ public class NetworkTrafficDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForXRange(@NotNull Range timeCurrentRangeUs) {
-    List<SeriesData<Long>> seriesData = new ArrayList<>();
-
+  protected void fetchData(@NotNull Range timeCurrentRangeUs, @NotNull LongDataBuffer data) {
     // TODO: Change the Network API to allow specifying padding in the request as number of samples.
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
     NetworkProfiler.NetworkDataRequest.Builder dataRequestBuilder = NetworkProfiler.NetworkDataRequest.newBuilder()
@@ -87,11 +83,10 @@ public class NetworkTrafficDataSeries implements DataSeries<Long> {
       .setStartTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMin()) - bufferNs)
       .setEndTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMax()) + bufferNs);
     NetworkProfiler.NetworkDataResponse response = myClient.getData(dataRequestBuilder.build());
-    for (NetworkProfiler.NetworkProfilerData data : response.getDataList()) {
-      long xTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getEndTimestamp());
-      NetworkProfiler.SpeedData speedData = data.getSpeedData();
-      seriesData.add(new SeriesData<>(xTimestamp, myType.getBytes(speedData)));
+    for (NetworkProfiler.NetworkProfilerData networkData : response.getDataList()) {
+      long xTimestamp = TimeUnit.NANOSECONDS.toMicros(networkData.getEndTimestamp());
+      NetworkProfiler.SpeedData speedData = networkData.getSpeedData();
+      data.add(xTimestamp, myType.getBytes(speedData));
     }
-    return seriesData;
   }
 }
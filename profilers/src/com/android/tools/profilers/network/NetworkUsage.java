@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.network;
 
+import com.android.tools.adtui.model.DownsamplingDataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
@@ -38,11 +39,13 @@ public class NetworkUsage extends LineChartModel {
     myRxSeries = new RangedContinuousSeries(NetworkTrafficDataSeries.Type.BYTES_RECEIVED.getLabel(false),
                                             viewRange,
                                             myTrafficRange,
-                                            createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_RECEIVED));
+                                            new DownsamplingDataSeries(
+                                              createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_RECEIVED)));
     myTxSeries = new RangedContinuousSeries(NetworkTrafficDataSeries.Type.BYTES_SENT.getLabel(false),
                                             viewRange,
                                             myTrafficRange,
-                                            createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_SENT));
+                                            new DownsamplingDataSeries(
+                                              createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_SENT)));
 
     add(myRxSeries);
     add(myTxSeries);
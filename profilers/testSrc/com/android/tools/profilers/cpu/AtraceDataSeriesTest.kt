@@ -126,6 +126,20 @@ class AtraceDataSeriesTest {
     assertThat(seriesData).hasSize(0)
   }
 
+  @Test
+  fun testRangeQueryMatchesScanOfWholeList() {
+    val testSeriesData = listOf(0L, 10L, 10L, 20L, 30L, 30L, 30L, 40L).map { SeriesData(it, CpuProfilerStage.ThreadState.RUNNING) }
+    // Ranges are binary searched in lists with random access, and scanned from the start in the others.
+    val searchedSeries = AtraceDataSeries<CpuProfilerStage.ThreadState>(myStage, { _ -> ArrayList(testSeriesData) })
+    val scannedSeries = AtraceDataSeries<CpuProfilerStage.ThreadState>(myStage, { _ -> LinkedList(testSeriesData) })
+    for (min in -5L..45L step 5) {
+      for (max in min..50L step 5) {
+        val range = Range(min.toDouble(), max.toDouble())
+        assertThat(searchedSeries.getDataForXRange(range)).containsExactlyElementsIn(scannedSeries.getDataForXRange(range)).inOrder()
+      }
+    }
+  }
+
   private fun verifySeriesDataMatches(
     seriesData: List<SeriesData<CpuProfilerStage.ThreadState>>,
     testSeriesData: List<SeriesData<CpuProfilerStage.ThreadState>>,
@@ -21,6 +21,8 @@ import org.junit.Test;
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 
 public class CaptureNodeTest {
 
@@ -62,4 +64,49 @@ public class CaptureNodeTest {
     assertEquals(10, node.getEnd());
     assertEquals(10, node.getDuration());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void childrenAreViewsOfTheSameTree() {
+    StubCaptureNodeModel model = new StubCaptureNodeModel();
+    CaptureNode root = new CaptureNode(model);
+    for (int i = 0; i < 5; i++) {
+      CaptureNode child = root.addChild(model);
+      child.setStartGlobal(i);
+      child.addChild(new StubCaptureNodeModel()).setStartGlobal(10 + i);
+    }
+
+    assertEquals(5, root.getChildCount());
+    for (int i = 0; i < 5; i++) {
+      CaptureNode child = root.getChildAt(i);
+      assertEquals(i, child.getStartGlobal());
+      assertEquals(root, child.getParent());
+      assertEquals(10 + i, child.getChildAt(0).getStartGlobal());
+      // Nodes of the same model share their method id.
+      assertEquals(root.getMethodId(), child.getMethodId());
+      assertNotEquals(root.getMethodId(), child.getChildAt(0).getMethodId());
+    }
+    assertEquals(root.getChildAt(2), root.getChildren().get(2));
+    assertEquals(root.getChildAt(2).hashCode(), root.getChildren().get(2).hashCode());
+    assertNotEquals(root.getChildAt(2), root.getChildAt(3));
+    assertEquals(root.getChildAt(4), root.getLastChild());
+    assertNull(root.getParent());
+  }
+
+  @Test
+  public void addingANodeOfAnotherTreeMovesItsSubtree() {
+    CaptureNode root = new CaptureNode(new StubCaptureNodeModel());
+    root.addChild(new StubCaptureNodeModel());
+
+    CaptureNode other = new CaptureNode(new StubCaptureNodeModel());
+    CaptureNode grandChild = other.addChild(new StubCaptureNodeModel());
+    grandChild.setEndGlobal(42);
+    root.addChild(other);
+
+    // Views of the moved nodes keep working.
+    assertEquals(root, other.getParent());
+    assertEquals(other, grandChild.getParent());
+    assertEquals(42, root.getChildAt(1).getChildAt(0).getEndGlobal());
+    grandChild.setEndGlobal(43);
+    assertEquals(43, root.getLastChild().getFirstChild().getEndGlobal());
+  }
+}
@@ -19,6 +19,8 @@ import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -26,6 +28,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -97,6 +100,26 @@ public class ArtTraceHandlerTest {
     }
   }
 
+  @Test
+  public void testThreadsBuiltInParallelMatchSerialResult() throws IOException {
+    Map<CpuThreadInfo, CaptureNode> serialTrees = parseThreadsGraph(new ArtTraceHandler(Runnable::run));
+    assertTrue(serialTrees.size() > 1);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertTreesEqual(serialTrees, parseThreadsGraph(new ArtTraceHandler(pool)));
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  @NotNull
+  private static Map<CpuThreadInfo, CaptureNode> parseThreadsGraph(@NotNull ArtTraceHandler handler) throws IOException {
+    new VmTraceParser(CpuProfilerTestUtils.getTraceFile("valid_trace.trace"), handler).parse();
+    return handler.getThreadsGraph();
+  }
+
   private static CaptureNode parseCaptureNode() throws IOException {
     ArtTraceHandler handler = new ArtTraceHandler();
     VmTraceParser parser = new VmTraceParser(CpuProfilerTestUtils.getTraceFile("basic.trace"), handler);
@@ -117,4 +140,25 @@ public class ArtTraceHandlerTest {
       assertEquals(ids[i], node.getChildren().get(i).getData().getId());
     }
   }
-}
\ No newline at end of file
+
+  private static void assertTreesEqual(@NotNull Map<CpuThreadInfo, CaptureNode> expected, @NotNull Map<CpuThreadInfo, CaptureNode> actual) {
+    Map<Integer, CaptureNode> actualById = new HashMap<>();
+    actual.forEach((thread, tree) -> actualById.put(thread.getId(), tree));
+    assertEquals(expected.size(), actualById.size());
+    expected.forEach((thread, tree) -> assertNodesEqual(tree, actualById.get(thread.getId())));
+  }
+
+  private static void assertNodesEqual(@NotNull CaptureNode expected, @Nullable CaptureNode actual) {
+    assertNotNull(actual);
+    assertEquals(expected.getData().getId(), actual.getData().getId());
+    assertEquals(expected.getDepth(), actual.getDepth());
+    assertEquals(expected.getStartGlobal(), actual.getStartGlobal());
+    assertEquals(expected.getEndGlobal(), actual.getEndGlobal());
+    assertEquals(expected.getStartThread(), actual.getStartThread());
+    assertEquals(expected.getEndThread(), actual.getEndThread());
+    assertEquals(expected.getChildCount(), actual.getChildCount());
+    for (int i = 0; i < expected.getChildCount(); i++) {
+      assertNodesEqual(expected.getChildren().get(i), actual.getChildren().get(i));
+    }
+  }
+}
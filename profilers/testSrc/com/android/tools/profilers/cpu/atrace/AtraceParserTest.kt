@@ -25,6 +25,8 @@ import com.google.common.collect.Iterables
 import com.google.common.truth.Truth.assertThat
 import org.junit.Before
 import org.junit.Test
+import trebuchet.task.ImportTask
+import trebuchet.util.PrintlnImportFeedback
 import java.util.concurrent.TimeUnit
 
 class AtraceParserTest {
@@ -208,6 +210,34 @@ class AtraceParserTest {
     assertThat(parsedFile.mainThreadId).isEqualTo(parser.getProcessList("")[0].id)
   }
 
+  @Test
+  fun selectingAnotherProcessAfterParsingParsesTheFileAgain() {
+    val parser = AtraceParser(CpuProfilerTestUtils.getTraceFile("atrace.ctrace"))
+    val processes = parser.getProcessList("")
+    parser.setSelectProcess(processes[0])
+    parser.parse(CpuProfilerTestUtils.getTraceFile("atrace.ctrace"), 0)
+
+    parser.setSelectProcess(processes[1])
+    val parsedFile = parser.parse(CpuProfilerTestUtils.getTraceFile("atrace.ctrace"), 0)
+    assertThat(parsedFile.mainThreadId).isEqualTo(processes[1].id)
+    assertThat(parser.captureTrees.keys.map { (it as CpuThreadSliceInfo).processId }.distinct()).containsExactly(processes[1].id)
+  }
+
+  @Test
+  fun importOnlyKeepsSlicesOfSelectedProcess() {
+    val file = CpuProfilerTestUtils.getTraceFile("atrace.ctrace")
+    val fullModel = ImportTask(PrintlnImportFeedback()).importBuffer(AtraceDecompressor(file))
+    val model = ImportTask(PrintlnImportFeedback()) { it == TEST_PID }.importBuffer(AtraceDecompressor(file))
+
+    // Every process and thread is still imported, along with the scheduling data.
+    assertThat(model.processes.keys).containsExactlyElementsIn(fullModel.processes.keys)
+    assertThat(model.cpus.map { it.slices.size }).containsExactlyElementsIn(fullModel.cpus.map { it.slices.size }).inOrder()
+    assertThat(model.processes[TEST_PID]!!.threads.sumBy { it.slices.size })
+      .isEqualTo(fullModel.processes[TEST_PID]!!.threads.sumBy { it.slices.size })
+    assertThat(fullModel.processes.values.filter { it.id != TEST_PID }.flatMap { it.threads }.any { it.slices.isNotEmpty() }).isTrue()
+    assertThat(model.processes.values.filter { it.id != TEST_PID }.flatMap { it.threads }.all { it.slices.isEmpty() }).isTrue()
+  }
+
   @Test
   fun processNameThatWouldBePidUsesThreadNameInstead() {
     val parser = AtraceParser(CpuProfilerTestUtils.getTraceFile("atrace.ctrace"))
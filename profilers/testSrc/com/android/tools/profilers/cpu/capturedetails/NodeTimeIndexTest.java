@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import com.android.tools.adtui.model.Range;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NodeTimeIndexTest {
+  private final static double EPS = 1e-5;
+
+  @Test
+  public void testTotalOfDisjointIntervals() {
+    NodeTimeIndex index = new NodeTimeIndex(new long[]{0, 10, 20, 30}, new long[]{5, 15, 25, 35}, false);
+
+    assertEquals(20, index.getTotal(new Range(0, 40)), EPS);
+    assertEquals(9, index.getTotal(new Range(3, 22)), EPS);
+    assertEquals(1, index.getTotal(new Range(11, 12)), EPS);
+    assertEquals(0, index.getTotal(new Range(6, 9)), EPS);
+    assertEquals(0, index.getTotal(new Range(40, 50)), EPS);
+
+    assertTrue(index.intersects(new Range(4, 6)));
+    assertFalse(index.intersects(new Range(5, 10)));
+  }
+
+  @Test
+  public void testOutermostIntervalsCountNestedOnesOnce() {
+    // Recursive calls: [0..30] -> [5..20] -> [10..15], then [40..50]
+    NodeTimeIndex index = new NodeTimeIndex(new long[]{0, 5, 10, 40}, new long[]{30, 20, 15, 50}, true);
+
+    assertEquals(40, index.getTotal(new Range(0, 50)), EPS);
+    assertEquals(25, index.getTotal(new Range(10, 45)), EPS);
+  }
+
+  @Test
+  public void testIntervalsAreSortedByStart() {
+    NodeTimeIndex index = new NodeTimeIndex(new long[]{20, 0, 10}, new long[]{25, 5, 15}, false);
+
+    assertEquals(15, index.getTotal(new Range(0, 30)), EPS);
+    assertEquals(7, index.getTotal(new Range(4, 21)), EPS);
+  }
+
+  @Test
+  public void testOverlappingIntervalsAreSummed() {
+    NodeTimeIndex index = new NodeTimeIndex(new long[]{0, 5}, new long[]{10, 15}, false);
+
+    assertEquals(20, index.getTotal(new Range(0, 20)), EPS);
+    assertEquals(8, index.getTotal(new Range(6, 10)), EPS);
+  }
+}
@@ -142,6 +142,25 @@ public class TopDownNodeTest {
     assertEquals(0, topDown.getThreadTotal(), 0);
   }
 
+  @Test
+  public void testUpdateWithoutIndexingMatchesUpdate() {
+    TopDownNode indexed = new TopDownNode(createTree());
+    TopDownNode walked = new TopDownNode(createTree());
+    for (Range range : new Range[]{new Range(0, 30), new Range(4, 23), new Range(14, 14), new Range(30, 40)}) {
+      indexed.update(range);
+      walked.updateWithoutIndexing(range);
+      assertEquals(indexed.getGlobalTotal(), walked.getGlobalTotal(), 0);
+      assertEquals(indexed.getThreadTotal(), walked.getThreadTotal(), 0);
+      assertEquals(indexed.getSelf(), walked.getSelf(), 0);
+      for (int i = 0; i < indexed.getChildren().size(); i++) {
+        indexed.getChildren().get(i).update(range);
+        walked.getChildren().get(i).updateWithoutIndexing(range);
+        assertEquals(indexed.getChildren().get(i).getGlobalTotal(), walked.getChildren().get(i).getGlobalTotal(), 0);
+        assertEquals(indexed.getChildren().get(i).getSelf(), walked.getChildren().get(i).getSelf(), 0);
+      }
+    }
+  }
+
   /**
    * Creates a test to be used for testing. The shape of the tree is as follows:
    *              0123456789012345678901234567890
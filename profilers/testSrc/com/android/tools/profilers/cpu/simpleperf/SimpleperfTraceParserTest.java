@@ -21,13 +21,17 @@ import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
 import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import static com.android.tools.profilers.cpu.CpuProfilerTestUtils.traceFileToByteString;
@@ -117,6 +121,23 @@ public class SimpleperfTraceParserTest {
     assertEquals(2, jvmtiAgentCount);
   }
 
+  @Test
+  public void treesBuiltInParallelShouldMatchSerialResult() throws IOException {
+    SimpleperfTraceParser serialParser = new SimpleperfTraceParser(Runnable::run);
+    serialParser.parse(myTraceFile, 0);
+    assertTrue(serialParser.getCaptureTrees().size() > 1);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      SimpleperfTraceParser parallelParser = new SimpleperfTraceParser(pool);
+      parallelParser.parse(myTraceFile, 0);
+      assertTreesEqual(serialParser.getCaptureTrees(), parallelParser.getCaptureTrees());
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
   @Test
   public void nodeDepthsShouldBeCoherent() throws IOException {
     myParser.parse(myTraceFile, 0);
@@ -186,4 +207,25 @@ public class SimpleperfTraceParserTest {
     assertTrue(pThreadStart.getData().getFullName().startsWith("__pthread_start"));
     assertTrue(pThreadStart.getChildAt(0).getData().getFullName().startsWith(entryPoint));
   }
+
+  private static void assertTreesEqual(@NotNull Map<CpuThreadInfo, CaptureNode> expected, @NotNull Map<CpuThreadInfo, CaptureNode> actual) {
+    Map<Integer, CaptureNode> actualById = new HashMap<>();
+    actual.forEach((thread, tree) -> actualById.put(thread.getId(), tree));
+    assertEquals(expected.size(), actualById.size());
+    expected.forEach((thread, tree) -> assertNodesEqual(tree, actualById.get(thread.getId())));
+  }
+
+  private static void assertNodesEqual(@NotNull CaptureNode expected, @Nullable CaptureNode actual) {
+    assertNotNull(actual);
+    assertEquals(expected.getData().getId(), actual.getData().getId());
+    assertEquals(expected.getDepth(), actual.getDepth());
+    assertEquals(expected.getStartGlobal(), actual.getStartGlobal());
+    assertEquals(expected.getEndGlobal(), actual.getEndGlobal());
+    assertEquals(expected.getStartThread(), actual.getStartThread());
+    assertEquals(expected.getEndThread(), actual.getEndThread());
+    assertEquals(expected.getChildCount(), actual.getChildCount());
+    for (int i = 0; i < expected.getChildCount(); i++) {
+      assertNodesEqual(expected.getChildren().get(i), actual.getChildren().get(i));
+    }
+  }
 }
@@ -283,7 +283,8 @@ public class FakeMemoryService extends MemoryServiceGrpc.MemoryServiceImplBase {
     long startTime = Math.max(0, request.getStartTime());
     startTime = (long)Math.ceil(startTime / (float)US_TO_NS) * US_TO_NS;
     long endTime = request.getEndTime();
-    BatchAllocationSample sample = getAllocationSample(liveObjectsOnly, startTime, endTime);
+    // Like the datastore, report the whole requested range as covered since everything fits in one page.
+    BatchAllocationSample sample = getAllocationSample(liveObjectsOnly, startTime, endTime).toBuilder().setTimestamp(endTime - 1).build();
     responseObserver.onNext(sample);
     responseObserver.onCompleted();
   }
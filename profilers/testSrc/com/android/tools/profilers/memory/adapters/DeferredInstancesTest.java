@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profilers.memory.MemoryProfilerConfiguration.ClassGrouping;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class DeferredInstancesTest {
+  private final FakeCaptureObject myCaptureObject = new FakeCaptureObject.Builder().build();
+
+  @Test
+  public void testDeferredInstancesAreOnlyLoadedWhenTheirClassSetNeedsThem() {
+    AtomicInteger fooLoads = new AtomicInteger();
+    AtomicInteger barLoads = new AtomicInteger();
+    HeapSet heapSet = new HeapSet(myCaptureObject, "default", 0);
+    heapSet.addDeferredDeltaInstances(createDeferredInstances("com.example.Foo", 3, fooLoads));
+    heapSet.addDeferredDeltaInstances(createDeferredInstances("com.example.Bar", 2, barLoads));
+
+    assertThat(heapSet.getDeltaAllocationCount()).isEqualTo(5);
+    assertThat(heapSet.getTotalShallowSize()).isEqualTo(50);
+    assertThat(heapSet.getTotalRetainedSize()).isEqualTo(500);
+    assertThat(heapSet.getInstancesCount()).isEqualTo(5);
+
+    // Partitioning the heap hands the groups down to their class sets without loading them.
+    List<ClassifierSet> classSets = heapSet.getChildrenClassifierSets();
+    assertThat(classSets).hasSize(2);
+    assertThat(fooLoads.get()).isEqualTo(0);
+    assertThat(barLoads.get()).isEqualTo(0);
+
+    ClassSet fooSet = (ClassSet)classSets.stream().filter(set -> set.getName().equals("Foo")).findFirst().orElse(null);
+    assertThat(fooSet).isNotNull();
+    assertThat(fooSet.getTotalObjectCount()).isEqualTo(3);
+    assertThat(fooSet.getInstancesStream().count()).isEqualTo(3);
+    assertThat(fooLoads.get()).isEqualTo(1);
+    assertThat(barLoads.get()).isEqualTo(0);
+
+    // Regrouping carries the groups that have not been loaded yet over as they are.
+    heapSet.setClassGrouping(ClassGrouping.ARRANGE_BY_PACKAGE);
+    assertThat(heapSet.getInstancesCount()).isEqualTo(5);
+    heapSet.getChildrenClassifierSets();
+    assertThat(barLoads.get()).isEqualTo(0);
+    assertThat(heapSet.getInstancesStream().count()).isEqualTo(5);
+    assertThat(barLoads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFindContainingClassifierSetOnlyLoadsMatchingClass() {
+    AtomicInteger fooLoads = new AtomicInteger();
+    AtomicInteger barLoads = new AtomicInteger();
+    DeferredInstances foo = createDeferredInstances("com.example.Foo", 3, fooLoads);
+    HeapSet heapSet = new HeapSet(myCaptureObject, "default", 0);
+    heapSet.addDeferredDeltaInstances(foo);
+    heapSet.addDeferredDeltaInstances(createDeferredInstances("com.example.Bar", 2, barLoads));
+
+    InstanceObject target = foo.load().get(1);
+    ClassifierSet containingSet = heapSet.findContainingClassifierSet(target);
+    assertThat(containingSet).isInstanceOf(ClassSet.class);
+    assertThat(((ClassSet)containingSet).getClassEntry().getClassName()).isEqualTo("com.example.Foo");
+    assertThat(barLoads.get()).isEqualTo(0);
+  }
+
+  @NotNull
+  private DeferredInstances createDeferredInstances(@NotNull String className, int count, @NotNull AtomicInteger loadCount) {
+    List<InstanceObject> instances = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      instances.add(new FakeInstanceObject.Builder(myCaptureObject, className).setName(className + i).setShallowSize(10)
+                      .setRetainedSize(100).build());
+    }
+    ClassDb.ClassEntry classEntry = instances.get(0).getClassEntry();
+    return new DeferredInstances(classEntry, count, 0, count * 10, count * 100, 0, () -> {
+      loadCount.incrementAndGet();
+      return instances;
+    });
+  }
+}
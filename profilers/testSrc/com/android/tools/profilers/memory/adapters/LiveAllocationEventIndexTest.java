@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class LiveAllocationEventIndexTest {
+  private final LiveAllocationInstanceObject myInstance = mock(LiveAllocationInstanceObject.class);
+
+  @Test
+  public void testAppendAndPrependKeepTimeOrder() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    assertThat(index.isEmpty()).isTrue();
+
+    index.reset(5000);
+    // Enough events on both sides to force the arrays to grow and re-center.
+    for (long i = 5000; i < 10000; i++) {
+      index.append(i, myInstance, i % 2 == 0);
+    }
+    index.extendEnd(10000);
+
+    LiveAllocationEventIndex older = new LiveAllocationEventIndex();
+    older.reset(0);
+    for (long i = 0; i < 5000; i++) {
+      older.append(i, myInstance, i % 2 == 0);
+    }
+    older.extendEnd(5000);
+    index.prepend(0, older);
+
+    assertThat(index.isEmpty()).isFalse();
+    assertThat(index.getStartNs()).isEqualTo(0);
+    assertThat(index.getEndNs()).isEqualTo(10000);
+    assertThat(index.size()).isEqualTo(10000);
+
+    List<Long> timestamps = visitTimestamps(index, 0, 10000);
+    assertThat(timestamps).hasSize(10000);
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertThat(timestamps.get(i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void testForEachEventIsEndExclusive() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    index.reset(0);
+    index.append(1, myInstance, true);
+    index.append(3, myInstance, true);
+    index.append(3, myInstance, false);
+    index.append(7, myInstance, false);
+    index.extendEnd(10);
+
+    assertThat(visitTimestamps(index, 3, 7)).containsExactly(3L, 3L).inOrder();
+    assertThat(visitTimestamps(index, 0, 10)).containsExactly(1L, 3L, 3L, 7L).inOrder();
+    assertThat(visitTimestamps(index, 8, 10)).isEmpty();
+
+    List<Boolean> isAllocation = new ArrayList<>();
+    index.forEachEvent(3, 4, (timestamp, instance, allocation) -> isAllocation.add(allocation));
+    assertThat(isAllocation).containsExactly(true, false).inOrder();
+  }
+
+  @Test
+  public void testUnstableEndIsDropped() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    index.reset(0);
+    index.append(1, myInstance, true);
+    index.append(5, myInstance, true);
+    index.append(8, myInstance, false);
+    index.extendEnd(10, 4);
+
+    index.dropUnstableEnd();
+    assertThat(index.getEndNs()).isEqualTo(4);
+    assertThat(visitTimestamps(index, 0, 4)).containsExactly(1L);
+
+    // Re-querying the dropped part brings back its events, now including a late one.
+    index.append(5, myInstance, true);
+    index.append(6, myInstance, false);
+    index.append(8, myInstance, false);
+    index.extendEnd(10);
+    index.dropUnstableEnd();
+    assertThat(index.getEndNs()).isEqualTo(10);
+    assertThat(visitTimestamps(index, 0, 10)).containsExactly(1L, 5L, 6L, 8L).inOrder();
+  }
+
+  @Test
+  public void testRetainDropsEventsOutsideOfRange() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    index.reset(0);
+    for (long i = 0; i < 10; i++) {
+      index.append(i, myInstance, true);
+    }
+    index.extendEnd(10);
+
+    index.retain(3, 7);
+    assertThat(index.getStartNs()).isEqualTo(3);
+    assertThat(index.getEndNs()).isEqualTo(7);
+    assertThat(index.size()).isEqualTo(4);
+    assertThat(visitTimestamps(index, 3, 7)).containsExactly(3L, 4L, 5L, 6L).inOrder();
+  }
+
+  @Test
+  public void testClear() {
+    LiveAllocationEventIndex index = new LiveAllocationEventIndex();
+    index.reset(0);
+    index.append(1, myInstance, true);
+    index.extendEnd(2);
+    index.clear();
+    assertThat(index.isEmpty()).isTrue();
+    assertThat(index.size()).isEqualTo(0);
+  }
+
+  private static List<Long> visitTimestamps(LiveAllocationEventIndex index, long startNs, long endNs) {
+    List<Long> timestamps = new ArrayList<>();
+    index.forEachEvent(startNs, endNs, (timestamp, instance, isAllocation) -> timestamps.add(timestamp));
+    return timestamps;
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Low overhead alternative to the {@link MethodStat} call trees: instrumented methods call {@link #enter()} and {@link #exit}, which
+ * write a fixed-size record into a ring of the calling thread, without allocating or locking. A background drain then moves the records of
+ * all threads into a byte array with {@link #drain()}.
+ * <p>
+ * A record is {@link #RECORD_SIZE} little endian bytes: int method id, int component id, long thread id, long start and end nanos. Each
+ * drain ends with an {@link #OVERHEAD_METHOD_ID} record, which reports what recording cost so far instead: the number of dropped records
+ * as its component id, the number of records as its thread id, the estimated time spent recording on the recorded threads as its start,
+ * and the time spent draining as its end.
+ */
+public final class BinaryStatsRecorder {
+  public static final int RECORD_SIZE = 4 + 4 + 8 + 8 + 8;
+
+  public static final int OVERHEAD_METHOD_ID = 0;
+  public static final int PAINT_COMPONENT_METHOD_ID = 1;
+  public static final int PAINT_CHILDREN_METHOD_ID = 2;
+  public static final int PAINT_IMMEDIATELY_METHOD_ID = 3;
+  public static final int WINDOW_PAINT_METHOD_ID = 4;
+  public static final int BUFFER_STRATEGY_PAINT_METHOD_ID = 5;
+  public static final int OTHER_METHOD_ID = 6;
+
+  /**
+   * Number of records a thread can have waiting for the drain before new ones are dropped.
+   */
+  private static final int RING_CAPACITY = 1 << 14;
+  private static final int CALIBRATION_RECORD_COUNT = 1 << 12;
+
+  private static final ConcurrentLinkedQueue<RecordRingBuffer> ourRings = new ConcurrentLinkedQueue<>();
+  private static final ThreadLocal<RecordRingBuffer> ourRing = new ThreadLocal<RecordRingBuffer>() {
+    @Override
+    protected RecordRingBuffer initialValue() {
+      RecordRingBuffer ring = new RecordRingBuffer(Thread.currentThread(), RING_CAPACITY);
+      ourRings.add(ring);
+      return ring;
+    }
+  };
+
+  private static volatile boolean ourIsRecording = false;
+
+  /**
+   * Records and drops of the rings of the threads which have ended, and cost of the drains so far. Only updated by the drain.
+   */
+  private static long ourEndedThreadsWrittenCount;
+  private static long ourEndedThreadsDroppedCount;
+  private static long ourDrainTimeNs;
+  private static double ourRecordCostNs = -1;
+
+  private BinaryStatsRecorder() {
+  }
+
+  static void setIsRecording(boolean isRecording) {
+    ourIsRecording = isRecording;
+  }
+
+  public static boolean isRecording() {
+    return ourIsRecording;
+  }
+
+  /**
+   * Called at the start of an instrumented method.
+   *
+   * @return the start time to pass to {@link #exit}.
+   */
+  public static long enter() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Called at the end of an instrumented method.
+   *
+   * @param component the component the method paints, which is recorded by identity hash code.
+   */
+  public static void exit(@NotNull Object component, int methodId, long startTimeNs) {
+    if (!ourIsRecording) {
+      return;
+    }
+    ourRing.get().write(methodId, System.identityHashCode(component), startTimeNs, System.nanoTime());
+  }
+
+  /**
+   * Moves the records of all threads into a byte array, followed by the overhead record.
+   *
+   * @return the records, or an empty array if there were none.
+   */
+  @NotNull
+  public static synchronized byte[] drain() {
+    long startTime = System.nanoTime();
+    if (ourRecordCostNs < 0) {
+      ourRecordCostNs = calibrateRecordCost();
+    }
+
+    int pendingCount = 0;
+    for (RecordRingBuffer ring : ourRings) {
+      pendingCount += ring.getPendingCount();
+    }
+    if (pendingCount == 0) {
+      removeEndedThreads();
+      return new byte[0];
+    }
+
+    // Records written after the count was taken are left for the next drain.
+    ByteBuffer buffer = ByteBuffer.allocate((pendingCount + 1) * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    for (RecordRingBuffer ring : ourRings) {
+      if (buffer.remaining() <= RECORD_SIZE) {
+        break;
+      }
+      ByteBuffer ringBuffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+      ringBuffer.limit(Math.min(ringBuffer.limit() - RECORD_SIZE, ring.getPendingCount() * RECORD_SIZE));
+      ring.drainTo(ringBuffer);
+      buffer.position(buffer.position() + ringBuffer.position());
+    }
+    removeEndedThreads();
+
+    long writtenCount = ourEndedThreadsWrittenCount;
+    long droppedCount = ourEndedThreadsDroppedCount;
+    for (RecordRingBuffer ring : ourRings) {
+      writtenCount += ring.getWrittenCount();
+      droppedCount += ring.getDroppedCount();
+    }
+    ourDrainTimeNs += System.nanoTime() - startTime;
+    buffer.putInt(OVERHEAD_METHOD_ID);
+    buffer.putInt((int)Math.min(droppedCount, Integer.MAX_VALUE));
+    buffer.putLong(writtenCount);
+    buffer.putLong((long)(writtenCount * ourRecordCostNs));
+    buffer.putLong(ourDrainTimeNs);
+
+    byte[] records = new byte[buffer.position()];
+    System.arraycopy(buffer.array(), 0, records, 0, records.length);
+    return records;
+  }
+
+  /**
+   * Drops the rings of the threads which have ended once they have been drained.
+   */
+  private static void removeEndedThreads() {
+    Iterator<RecordRingBuffer> rings = ourRings.iterator();
+    while (rings.hasNext()) {
+      RecordRingBuffer ring = rings.next();
+      Thread thread = ring.getThread();
+      if ((thread == null || !thread.isAlive()) && ring.getPendingCount() == 0) {
+        ourEndedThreadsWrittenCount += ring.getWrittenCount();
+        ourEndedThreadsDroppedCount += ring.getDroppedCount();
+        rings.remove();
+      }
+    }
+  }
+
+  /**
+   * @return the time an {@link #enter()} and {@link #exit} pair takes, measured on a ring of its own.
+   */
+  private static double calibrateRecordCost() {
+    RecordRingBuffer ring = new RecordRingBuffer(Thread.currentThread(), CALIBRATION_RECORD_COUNT);
+    Object component = new Object();
+    long startTime = System.nanoTime();
+    for (int i = 0; i < CALIBRATION_RECORD_COUNT; i++) {
+      ring.write(OTHER_METHOD_ID, System.identityHashCode(component), enter(), System.nanoTime());
+    }
+    return (System.nanoTime() - startTime) / (double)CALIBRATION_RECORD_COUNT;
+  }
+}
@@ -29,4 +29,9 @@ public class BufferStrategyPaintMethodStat extends MethodStat {
     super(owner);
     myIsBufferStrategy = isBufferStrategy;
   }
+
+  @Override
+  protected int getMethodId() {
+    return BinaryStatsRecorder.BUFFER_STRATEGY_PAINT_METHOD_ID;
+  }
 }
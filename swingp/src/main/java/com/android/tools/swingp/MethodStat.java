@@ -44,6 +44,11 @@ public abstract class MethodStat {
   @SerializedName("endTime")
   private long myEndTime;
 
+  /**
+   * Whether this call is recorded by the {@link BinaryStatsRecorder} instead of being part of a call tree.
+   */
+  private final boolean myIsBinary = BinaryStatsRecorder.isRecording();
+
   @SerializedName("classType")
   private String getClassType() {
     return getClass().getSimpleName();
@@ -51,6 +56,9 @@ public abstract class MethodStat {
 
   public MethodStat(@NotNull Object owner) {
     myOwner = new SoftReference<>(owner);
+    if (myIsBinary) {
+      return;
+    }
     // TODO: instrument caller with try-catch as well.
     RenderStatsManager.push(this);
   }
@@ -59,10 +67,22 @@ public abstract class MethodStat {
    * This method HAS to be called at the end of the function that created this object.
    */
   public void endMethod() {
+    if (myIsBinary) {
+      Object owner = myOwner.get();
+      BinaryStatsRecorder.exit(owner == null ? this : owner, getMethodId(), myStartTime);
+      return;
+    }
     myEndTime = System.nanoTime();
     RenderStatsManager.pop(this);
   }
 
+  /**
+   * @return the id of the method in the records of the {@link BinaryStatsRecorder}.
+   */
+  protected int getMethodId() {
+    return BinaryStatsRecorder.OTHER_METHOD_ID;
+  }
+
   /**
    * Adds a {@MethodStat} as a descendant in the call tree.
    */
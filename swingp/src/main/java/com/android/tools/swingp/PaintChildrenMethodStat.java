@@ -55,4 +55,9 @@ public class PaintChildrenMethodStat extends MethodStat {
     JComponentTreeManager.popJComponent(myOwnerReference);
     super.endMethod();
   }
+
+  @Override
+  protected int getMethodId() {
+    return BinaryStatsRecorder.PAINT_CHILDREN_METHOD_ID;
+  }
 }
@@ -60,4 +60,9 @@ public class PaintComponentMethodStat extends MethodStat {
       myIsImage = false;
     }
   }
+
+  @Override
+  protected int getMethodId() {
+    return BinaryStatsRecorder.PAINT_COMPONENT_METHOD_ID;
+  }
 }
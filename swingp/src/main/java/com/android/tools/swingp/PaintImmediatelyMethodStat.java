@@ -67,4 +67,9 @@ public class PaintImmediatelyMethodStat extends MethodStat {
     }
     myBounds = new int[]{x, y, w, h};
   }
+
+  @Override
+  protected int getMethodId() {
+    return BinaryStatsRecorder.PAINT_IMMEDIATELY_METHOD_ID;
+  }
 }
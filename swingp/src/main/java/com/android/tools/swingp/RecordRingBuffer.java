@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring of the {@link BinaryStatsRecorder} records of a single thread. Only that thread writes records and only the drain reads
+ * them, so neither needs a lock: each side publishes how far it got with an ordered write of its own index. When the ring is full, records
+ * are dropped and counted rather than blocking the painting thread.
+ */
+final class RecordRingBuffer {
+  /**
+   * A record takes three longs: the method and component ids, then the start and end times.
+   */
+  private static final int RECORD_LONGS = 3;
+
+  @NotNull private final WeakReference<Thread> myThread;
+  private final long myThreadId;
+  @NotNull private final long[] myRecords;
+  private final int myMask;
+
+  /**
+   * Number of records written, which only the owning thread updates.
+   */
+  @NotNull private final AtomicLong myWriteIndex = new AtomicLong();
+  /**
+   * Number of records read, which only the drain updates.
+   */
+  @NotNull private final AtomicLong myReadIndex = new AtomicLong();
+  @NotNull private final AtomicLong myDroppedCount = new AtomicLong();
+
+  /**
+   * @param capacity the number of records the ring holds, which must be a power of 2.
+   */
+  RecordRingBuffer(@NotNull Thread thread, int capacity) {
+    assert Integer.bitCount(capacity) == 1;
+    myThread = new WeakReference<>(thread);
+    myThreadId = thread.getId();
+    myRecords = new long[capacity * RECORD_LONGS];
+    myMask = capacity - 1;
+  }
+
+  @Nullable
+  Thread getThread() {
+    return myThread.get();
+  }
+
+  /**
+   * Called by the owning thread only.
+   *
+   * @return false if the ring is full, in which case the record is dropped.
+   */
+  boolean write(int methodId, int componentId, long startTimeNs, long endTimeNs) {
+    long writeIndex = myWriteIndex.get();
+    if (writeIndex - myReadIndex.get() > myMask) {
+      myDroppedCount.lazySet(myDroppedCount.get() + 1);
+      return false;
+    }
+    int offset = (int)(writeIndex & myMask) * RECORD_LONGS;
+    myRecords[offset] = ((long)methodId << 32) | (componentId & 0xFFFFFFFFL);
+    myRecords[offset + 1] = startTimeNs;
+    myRecords[offset + 2] = endTimeNs;
+    myWriteIndex.lazySet(writeIndex + 1);
+    return true;
+  }
+
+  /**
+   * @return the number of records that can be drained.
+   */
+  int getPendingCount() {
+    return (int)(myWriteIndex.get() - myReadIndex.get());
+  }
+
+  long getWrittenCount() {
+    return myWriteIndex.get();
+  }
+
+  long getDroppedCount() {
+    return myDroppedCount.get();
+  }
+
+  /**
+   * Moves as many records as {@code buffer} has room for into it, each as {@link BinaryStatsRecorder#RECORD_SIZE} bytes. Called by the
+   * drain only.
+   */
+  void drainTo(@NotNull ByteBuffer buffer) {
+    long readIndex = myReadIndex.get();
+    long writeIndex = myWriteIndex.get();
+    while (readIndex < writeIndex && buffer.remaining() >= BinaryStatsRecorder.RECORD_SIZE) {
+      int offset = (int)(readIndex & myMask) * RECORD_LONGS;
+      long ids = myRecords[offset];
+      buffer.putInt((int)(ids >>> 32));
+      buffer.putInt((int)ids);
+      buffer.putLong(myThreadId);
+      buffer.putLong(myRecords[offset + 1]);
+      buffer.putLong(myRecords[offset + 2]);
+      readIndex++;
+    }
+    myReadIndex.lazySet(readIndex);
+  }
+}
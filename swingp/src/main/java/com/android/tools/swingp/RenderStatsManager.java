@@ -52,6 +52,7 @@ public final class RenderStatsManager {
   };
 
   private static volatile boolean ourIsEnabled = false;
+  private static volatile boolean ourIsBinary = false;
 
   /**
    * Enables/disables swingp's collection of stats.
@@ -61,9 +62,22 @@ public final class RenderStatsManager {
   public static void setIsEnabled(boolean isEnabled) {
     ourIsEnabled = isEnabled;
     ourGlobalThreadStats.forEach(threadStat -> threadStat.setIsRecording(ourIsEnabled));
+    BinaryStatsRecorder.setIsRecording(isEnabled && ourIsBinary);
     JComponentTreeManager.setEnabled(isEnabled);
   }
 
+  /**
+   * Selects whether stats are written as {@link BinaryStatsRecorder} records rather than kept as call trees for {@link #getJson()}.
+   * This should match how the agent instrumented the paint methods, and takes effect the next time swingp is enabled.
+   */
+  public static void setIsBinary(boolean isBinary) {
+    ourIsBinary = isBinary;
+  }
+
+  public static boolean isBinary() {
+    return ourIsBinary;
+  }
+
   @VisibleForTesting
   @NotNull
   public static Gson createSwingpGson() {
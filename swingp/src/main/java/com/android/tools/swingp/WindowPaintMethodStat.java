@@ -57,4 +57,9 @@ public class WindowPaintMethodStat extends MethodStat {
       }
     }
   }
+
+  @Override
+  protected int getMethodId() {
+    return BinaryStatsRecorder.WINDOW_PAINT_METHOD_ID;
+  }
 }
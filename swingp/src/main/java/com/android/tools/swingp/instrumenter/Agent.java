@@ -15,11 +15,19 @@
  */
 package com.android.tools.swingp.instrumenter;
 
+import com.android.tools.swingp.BinaryStatsRecorder;
+import com.android.tools.swingp.RenderStatsManager;
+
 import javax.swing.*;
 import java.awt.*;
 import java.lang.instrument.Instrumentation;
 
 public class Agent {
+  /**
+   * Agent argument selecting the {@link BinaryStatsRecorder} instead of the {@link com.android.tools.swingp.MethodStat} call trees.
+   */
+  public static final String BINARY_ARGUMENT = "binary";
+
   public static void premain(String agentArgs, Instrumentation instrumentation) {
     System.out.println("Starting instrumentation agent.");
     agentmain(agentArgs, instrumentation);
@@ -28,8 +36,10 @@ public class Agent {
 
   public static void agentmain(String agentArgs, Instrumentation instrumentation) {
     try {
-      instrumentation.addTransformer(new JComponentClassTransformer(), true);
-      instrumentation.addTransformer(new RepaintManagerClassTransformer(), true);
+      boolean isBinary = BINARY_ARGUMENT.equals(agentArgs);
+      RenderStatsManager.setIsBinary(isBinary);
+      instrumentation.addTransformer(new JComponentClassTransformer(isBinary), true);
+      instrumentation.addTransformer(new RepaintManagerClassTransformer(isBinary), true);
       instrumentation.addTransformer(new WindowClassTransformer(), true);
       instrumentation.addTransformer(new BufferStrategyPaintManagerClassTransform(), true);
       instrumentation.retransformClasses(JComponent.class);
@@ -15,6 +15,7 @@
  */
 package com.android.tools.swingp.instrumenter;
 
+import com.android.tools.swingp.BinaryStatsRecorder;
 import com.android.tools.swingp.PaintChildrenMethodStat;
 import com.android.tools.swingp.PaintComponentMethodStat;
 import org.jetbrains.org.objectweb.asm.*;
@@ -31,6 +32,20 @@ import java.security.ProtectionDomain;
 public class JComponentClassTransformer implements ClassFileTransformer {
   private static final String JCOMPONENT_NAME = JComponent.class.getCanonicalName().replace('.', '/');
 
+  private final boolean myIsBinary;
+
+  public JComponentClassTransformer() {
+    this(false);
+  }
+
+  /**
+   * @param isBinary whether to record paints with the {@link BinaryStatsRecorder} rather than with {@link PaintComponentMethodStat}s and
+   *                 {@link PaintChildrenMethodStat}s.
+   */
+  public JComponentClassTransformer(boolean isBinary) {
+    myIsBinary = isBinary;
+  }
+
   @Override
   public byte[] transform(ClassLoader loader,
                           String className,
@@ -44,7 +59,7 @@ public class JComponentClassTransformer implements ClassFileTransformer {
     System.out.println("Transforming JComponent...");
     ClassReader reader = new ClassReader(classfileBuffer);
     ClassWriter defaultWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-    ClassVisitor visitor = new JComponentVisitor(defaultWriter);
+    ClassVisitor visitor = new JComponentVisitor(defaultWriter, myIsBinary);
 
     try {
       reader.accept(visitor, ClassReader.EXPAND_FRAMES);
@@ -57,10 +72,12 @@ public class JComponentClassTransformer implements ClassFileTransformer {
   }
 
   private static class JComponentVisitor extends ClassVisitor {
+    private final boolean myIsBinary;
     private boolean myIsJComponent = false;
 
-    public JComponentVisitor(ClassVisitor visitor) {
+    public JComponentVisitor(ClassVisitor visitor, boolean isBinary) {
       super(Opcodes.ASM5, visitor);
+      myIsBinary = isBinary;
     }
 
     @Override
@@ -81,7 +98,7 @@ public class JComponentClassTransformer implements ClassFileTransformer {
 
       if ("paintToOffscreen".equals(name) && "(Ljava/awt/Graphics;IIIIII)V".equals(desc) ||
           "paint".equals(name) && "(Ljava/awt/Graphics;)V".equals(desc)) {
-        return new JComponentPaintMethodVisitor(defaultVisitor, access, name, desc);
+        return new JComponentPaintMethodVisitor(defaultVisitor, access, name, desc, myIsBinary);
       }
 
       return defaultVisitor;
@@ -95,21 +112,32 @@ public class JComponentClassTransformer implements ClassFileTransformer {
     private static final String PAINT_COMPONENT_METHOD_STAT_NAME = PaintComponentMethodStat.class.getCanonicalName().replace('.', '/');
 
     private final Type paintChildrenMethodStatType = Type.getType(PaintChildrenMethodStat.class);
+    private final Type binaryStatsRecorderType = Type.getType(BinaryStatsRecorder.class);
 
+    /**
+     * Whether to only record start times with {@link BinaryStatsRecorder#enter()}, in which case the locals of the method stats below hold
+     * those times instead.
+     */
+    private final boolean myIsBinary;
     private int myPaintChildrenMethodStatLocalIndex = -1;
     private int myPaintComponentMethodStatLocalIndex = -1;
     private int myTransformLocalIndex = -1;
     private CaptureClipStateMachine myClipStateMachine = CaptureClipStateMachine.NOT_MATCHED;
     private int myXIdx, myYIdx, myWIdx, myHIdx;
 
-    public JComponentPaintMethodVisitor(MethodVisitor mv, int access, String name, String desc) {
+    public JComponentPaintMethodVisitor(MethodVisitor mv, int access, String name, String desc, boolean isBinary) {
       super(Opcodes.ASM5, mv, access, name, desc);
-      System.out.println("\t...instrumenting " + name);
+      myIsBinary = isBinary;
+      System.out.println("\t...instrumenting " + name + (isBinary ? " for binary records" : ""));
     }
 
     @Override
     public void visitCode() {
       super.visitCode();
+      if (myIsBinary) {
+        // Binary records don't need the transform.
+        return;
+      }
 
       // Generate code to store the current transform of Graphics2D.
       myTransformLocalIndex = newLocal(Type.getType(AffineTransform.class));
@@ -181,7 +209,15 @@ public class JComponentClassTransformer implements ClassFileTransformer {
 
       // The calls to paintComponent should always be followed by paintBorder, whereas the calls to paintChildren are always by themselves.
       // Therefore, we enter prior to paintComponent/paintChildren, and exit after paintBorder/paintChildren.
-      if (PAINT_DESCRIPTOR.equals(descriptor)) {
+      if (PAINT_DESCRIPTOR.equals(descriptor) && myIsBinary) {
+        if ("paintComponent".equals(name) && myClipStateMachine == CaptureClipStateMachine.INVOKEVIRTUAL) {
+          myPaintComponentMethodStatLocalIndex = storeStartTime();
+        }
+        else if ("paintChildren".equals(name)) {
+          myPaintChildrenMethodStatLocalIndex = storeStartTime();
+        }
+      }
+      else if (PAINT_DESCRIPTOR.equals(descriptor)) {
         if ("paintComponent".equals(name) && myClipStateMachine == CaptureClipStateMachine.INVOKEVIRTUAL) {
           // At this moment in the instruction stream, the "co" Graphics object is at the top of the stack. Dupe it and store it off.
           dup();
@@ -228,7 +264,19 @@ public class JComponentClassTransformer implements ClassFileTransformer {
         System.out.println("Unexpected method call when waiting for end of paintBorder/paintChildren");
         assert false;
       }
-      if (PAINT_DESCRIPTOR.equals(descriptor)) {
+      if (PAINT_DESCRIPTOR.equals(descriptor) && myIsBinary) {
+        if (myPaintComponentMethodStatLocalIndex != -1 &&
+            "paintBorder".equals(name) &&
+            myClipStateMachine == CaptureClipStateMachine.INVOKEVIRTUAL) {
+          recordEndTime(BinaryStatsRecorder.PAINT_COMPONENT_METHOD_ID, myPaintComponentMethodStatLocalIndex);
+          myPaintComponentMethodStatLocalIndex = -1;
+        }
+        else if (myPaintChildrenMethodStatLocalIndex != -1 && "paintChildren".equals(name)) {
+          recordEndTime(BinaryStatsRecorder.PAINT_CHILDREN_METHOD_ID, myPaintChildrenMethodStatLocalIndex);
+          myPaintChildrenMethodStatLocalIndex = -1;
+        }
+      }
+      else if (PAINT_DESCRIPTOR.equals(descriptor)) {
         if (myPaintComponentMethodStatLocalIndex != -1 &&
             "paintBorder".equals(name) &&
             myClipStateMachine == CaptureClipStateMachine.INVOKEVIRTUAL) {
@@ -245,6 +293,28 @@ public class JComponentClassTransformer implements ClassFileTransformer {
       }
     }
 
+    /**
+     * Generates code to store the current time in a new local.
+     *
+     * @return the index of the local.
+     */
+    private int storeStartTime() {
+      invokeStatic(binaryStatsRecorderType, new Method("enter", "()J"));
+      int startTimeLocalIndex = newLocal(Type.LONG_TYPE);
+      storeLocal(startTimeLocalIndex);
+      return startTimeLocalIndex;
+    }
+
+    /**
+     * Generates code to record the call of {@code methodId} on "this" which started at the time stored in {@code startTimeLocalIndex}.
+     */
+    private void recordEndTime(int methodId, int startTimeLocalIndex) {
+      loadThis();
+      push(methodId);
+      loadLocal(startTimeLocalIndex);
+      invokeStatic(binaryStatsRecorderType, new Method("exit", "(Ljava/lang/Object;IJ)V"));
+    }
+
     // Below overrides are just to reset the clip state machine.
     @Override
     public void visitInsn(int opcode) {
@@ -15,6 +15,7 @@
  */
 package com.android.tools.swingp.instrumenter;
 
+import com.android.tools.swingp.BinaryStatsRecorder;
 import com.android.tools.swingp.PaintImmediatelyMethodStat;
 import org.jetbrains.org.objectweb.asm.*;
 import org.jetbrains.org.objectweb.asm.commons.GeneratorAdapter;
@@ -27,6 +28,19 @@ import java.security.ProtectionDomain;
 public class RepaintManagerClassTransformer implements ClassFileTransformer {
   private static final String REPAINT_MANAGER_NAME = RepaintManager.class.getCanonicalName().replace('.', '/');
 
+  private final boolean myIsBinary;
+
+  public RepaintManagerClassTransformer() {
+    this(false);
+  }
+
+  /**
+   * @param isBinary whether to record paints with the {@link BinaryStatsRecorder} rather than with {@link PaintImmediatelyMethodStat}s.
+   */
+  public RepaintManagerClassTransformer(boolean isBinary) {
+    myIsBinary = isBinary;
+  }
+
   @Override
   public byte[] transform(ClassLoader loader,
                           String className,
@@ -40,7 +54,7 @@ public class RepaintManagerClassTransformer implements ClassFileTransformer {
     System.out.println("Transforming RepaintManager...");
     ClassReader reader = new ClassReader(classfileBuffer);
     ClassWriter defaultWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-    ClassVisitor visitor = new RepaintManagerVisitor(defaultWriter);
+    ClassVisitor visitor = new RepaintManagerVisitor(defaultWriter, myIsBinary);
 
     try {
       reader.accept(visitor, ClassReader.EXPAND_FRAMES);
@@ -53,10 +67,12 @@ public class RepaintManagerClassTransformer implements ClassFileTransformer {
   }
 
   private static class RepaintManagerVisitor extends ClassVisitor {
+    private final boolean myIsBinary;
     private boolean myIsRepaintManager = false;
 
-    public RepaintManagerVisitor(ClassVisitor visitor) {
+    public RepaintManagerVisitor(ClassVisitor visitor, boolean isBinary) {
       super(Opcodes.ASM5, visitor);
+      myIsBinary = isBinary;
     }
 
     @Override
@@ -76,7 +92,9 @@ public class RepaintManagerClassTransformer implements ClassFileTransformer {
       }
 
       if ("paint".equals(name) && "(Ljavax/swing/JComponent;Ljavax/swing/JComponent;Ljava/awt/Graphics;IIII)V".equals(desc)) {
-        return new PaintMethodVisitor(defaultVisitor, access, name, desc);
+        return myIsBinary
+               ? new BinaryPaintMethodVisitor(defaultVisitor, access, name, desc)
+               : new PaintMethodVisitor(defaultVisitor, access, name, desc);
       }
 
       return defaultVisitor;
@@ -132,4 +150,51 @@ public class RepaintManagerClassTransformer implements ClassFileTransformer {
       super.visitInsn(opcode);
     }
   }
+
+  /**
+   * Records the paint with {@link BinaryStatsRecorder#enter()} and {@link BinaryStatsRecorder#exit}, which neither allocate nor capture the
+   * graphics state.
+   */
+  private static class BinaryPaintMethodVisitor extends GeneratorAdapter {
+    private final Type binaryStatsRecorderType = Type.getType(BinaryStatsRecorder.class);
+    private int myStartTimeIndex = -1;
+
+    public BinaryPaintMethodVisitor(MethodVisitor mv, int access, String name, String desc) {
+      super(Opcodes.ASM5, mv, access, name, desc);
+      System.out.println("\t...instrumenting " + name + " for binary records");
+    }
+
+    @Override
+    public void visitCode() {
+      super.visitCode();
+
+      invokeStatic(binaryStatsRecorderType, new Method("enter", "()J"));
+      myStartTimeIndex = newLocal(Type.LONG_TYPE);
+      storeLocal(myStartTimeIndex);
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+      switch (opcode) {
+        case Opcodes.IRETURN:
+        case Opcodes.LRETURN:
+        case Opcodes.FRETURN:
+        case Opcodes.DRETURN:
+        case Opcodes.ARETURN:
+        case Opcodes.RETURN:
+        case Opcodes.ATHROW:
+          assert myStartTimeIndex > 0;
+          super.visitVarInsn(Opcodes.ALOAD, 2); // Load the bufferComponent, the heavy weight component we're really painting into.
+          push(BinaryStatsRecorder.PAINT_IMMEDIATELY_METHOD_ID);
+          loadLocal(myStartTimeIndex);
+          invokeStatic(binaryStatsRecorderType, new Method("exit", "(Ljava/lang/Object;IJ)V"));
+          break;
+
+        default:
+          // Do nothing special.
+          break;
+      }
+      super.visitInsn(opcode);
+    }
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.android.tools.swingp.server;
 
+import com.android.tools.swingp.BinaryStatsRecorder;
 import com.android.tools.swingp.RenderStatsManager;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
@@ -31,10 +32,15 @@ import org.apache.http.impl.bootstrap.ServerBootstrap;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestHandler;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -48,6 +54,8 @@ import java.util.concurrent.TimeUnit;
  * Stats poller and serializer.
  * This class effectively moves blocking queue out of the stats generators such that the generators can run as fast as possible.
  * There is also a busy-wait polling mechanism to allow for streaming reads from a web service.
+ * In binary mode, the payloads are batches of {@link BinaryStatsRecorder} records instead of JSON, and can be appended to a file rather
+ * than served.
  */
 public class StatsSerializer {
   private static final String POLLING_THREAD_NAME = "Stats Monitor Collector";
@@ -61,14 +69,30 @@ public class StatsSerializer {
   @NotNull private final LinkedBlockingQueue<byte[]> mySerializedStats;
   @NotNull private final PollingSerializer myPollingSerializer;
   @NotNull private final HttpServer myHttpServer;
+  private final boolean myIsBinary;
+  @Nullable private final File myRecordFile;
 
   private static Logger getLogger() {
     return Logger.getInstance(StatsSerializer.class);
   }
 
+  /**
+   * Creates a serializer of the mode the instrumentation agent was loaded with, see {@link RenderStatsManager#isBinary()}.
+   */
   public StatsSerializer() {
+    this(RenderStatsManager.isBinary(), null);
+  }
+
+  /**
+   * @param isBinary   whether to serialize {@link BinaryStatsRecorder} records rather than JSON.
+   * @param recordFile the file to append the binary records to instead of serving them, if any.
+   */
+  public StatsSerializer(boolean isBinary, @Nullable File recordFile) {
+    assert isBinary || recordFile == null;
+    myIsBinary = isBinary;
+    myRecordFile = recordFile;
     mySerializedStats = new LinkedBlockingQueue<>();
-    myPollingSerializer = new PollingSerializer(mySerializedStats);
+    myPollingSerializer = new PollingSerializer(mySerializedStats, isBinary);
 
     myHttpServer = ServerBootstrap
       .bootstrap()
@@ -89,18 +113,28 @@ public class StatsSerializer {
    * @return true if the serializer started successfully, false otherwise.
    */
   public boolean start() {
-    Thread pollingThread = new Thread(myPollingSerializer, POLLING_THREAD_NAME);
-    pollingThread.start();
-
+    // The mode is chosen by the instrumentation agent when it is loaded, and the recorders of the other mode are never fed.
+    if (myIsBinary != RenderStatsManager.isBinary()) {
+      getLogger().warn("Swing monitor serializer is " + (myIsBinary ? "binary" : "JSON") + " but the agent records the other mode");
+      return false;
+    }
     try {
-      myHttpServer.start();
-      getLogger().info("Swing Monitor Server on port: " + myHttpServer.getLocalPort());
+      if (myRecordFile != null) {
+        myPollingSerializer.setRecordStream(new BufferedOutputStream(new FileOutputStream(myRecordFile, true)));
+      }
+      else {
+        myHttpServer.start();
+        getLogger().info("Swing Monitor Server on port: " + myHttpServer.getLocalPort());
+      }
     }
     catch (IOException e) {
       getLogger().warn("Swing monitor server did not start", e);
       return false;
     }
 
+    Thread pollingThread = new Thread(myPollingSerializer, POLLING_THREAD_NAME);
+    pollingThread.start();
+
     RenderStatsManager.setIsEnabled(true);
     return true;
   }
@@ -108,7 +142,12 @@ public class StatsSerializer {
   public void stop() throws InterruptedException {
     RenderStatsManager.setIsEnabled(false);
     myPollingSerializer.stop();
-    myHttpServer.shutdown(33, TimeUnit.MILLISECONDS);
+    if (myRecordFile == null) {
+      myHttpServer.shutdown(33, TimeUnit.MILLISECONDS);
+    }
+    if (myIsBinary) {
+      getLogger().info("Swing monitor overhead: " + myPollingSerializer.getOverheadSummary());
+    }
   }
 
   /**
@@ -168,9 +207,23 @@ public class StatsSerializer {
     @NotNull private final CountDownLatch myStopLatch = new CountDownLatch(1);
     @NotNull private final CountDownLatch myStoppedLatch = new CountDownLatch(1);
     @NotNull private final LinkedBlockingQueue<byte[]> myResultQueue;
+    private final boolean myIsBinary;
+    /**
+     * Where the binary records go instead of {@link #myResultQueue}, if set.
+     */
+    @Nullable private OutputStream myRecordStream;
+    /**
+     * The last overhead record drained, if any.
+     */
+    @Nullable private volatile ByteBuffer myLastOverheadRecord;
 
-    private PollingSerializer(@NotNull LinkedBlockingQueue<byte[]> resultQueue) {
+    private PollingSerializer(@NotNull LinkedBlockingQueue<byte[]> resultQueue, boolean isBinary) {
       myResultQueue = resultQueue;
+      myIsBinary = isBinary;
+    }
+
+    private void setRecordStream(@NotNull OutputStream recordStream) {
+      myRecordStream = recordStream;
     }
 
     @Override
@@ -179,18 +232,13 @@ public class StatsSerializer {
         while (myStopLatch.getCount() > 0) {
           long startTime = System.nanoTime();
 
-          try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
-            JsonElement element = RenderStatsManager.getJson();
-            if (element != JsonNull.INSTANCE) {
-              try (BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(stream))) {
-                JsonWriter jsonWriter = new JsonWriter(bufferedWriter);
-                jsonWriter.setLenient(true);
-                Streams.write(element, jsonWriter);
-                jsonWriter.flush();
+          try {
+            byte[] bytes = myIsBinary ? serializeBinary() : serializeJson();
+            if (bytes.length > 0) {
+              if (myRecordStream != null) {
+                myRecordStream.write(bytes);
               }
-              stream.flush();
-              byte[] bytes = stream.toByteArray();
-              if (bytes.length > 0) {
+              else {
                 myResultQueue.add(bytes);
               }
             }
@@ -211,10 +259,71 @@ public class StatsSerializer {
         }
       }
       finally {
+        closeRecordStream();
         myStoppedLatch.countDown();
       }
     }
 
+    @NotNull
+    private static byte[] serializeJson() throws IOException {
+      try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+        JsonElement element = RenderStatsManager.getJson();
+        if (element == JsonNull.INSTANCE) {
+          return new byte[0];
+        }
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(stream))) {
+          JsonWriter jsonWriter = new JsonWriter(bufferedWriter);
+          jsonWriter.setLenient(true);
+          Streams.write(element, jsonWriter);
+          jsonWriter.flush();
+        }
+        stream.flush();
+        return stream.toByteArray();
+      }
+    }
+
+    @NotNull
+    private byte[] serializeBinary() {
+      byte[] bytes = BinaryStatsRecorder.drain();
+      if (bytes.length > 0) {
+        // The drain always ends with the overhead record.
+        myLastOverheadRecord =
+          ByteBuffer.wrap(bytes, bytes.length - BinaryStatsRecorder.RECORD_SIZE, BinaryStatsRecorder.RECORD_SIZE).slice()
+            .order(ByteOrder.LITTLE_ENDIAN);
+      }
+      return bytes;
+    }
+
+    /**
+     * Writes the records left since the last poll, and closes the record stream.
+     */
+    private void closeRecordStream() {
+      if (myRecordStream == null) {
+        return;
+      }
+      try {
+        myRecordStream.write(serializeBinary());
+        myRecordStream.close();
+      }
+      catch (IOException e) {
+        Logger.getInstance(getClass()).warn(e);
+      }
+    }
+
+    @NotNull
+    private String getOverheadSummary() {
+      ByteBuffer record = myLastOverheadRecord;
+      if (record == null) {
+        return "nothing recorded";
+      }
+      int droppedCount = record.getInt(4);
+      long recordCount = record.getLong(8);
+      long recordingTimeNs = record.getLong(16);
+      long drainTimeNs = record.getLong(24);
+      return String.format("%d records (%d dropped), ~%d ms recording on the painting threads, %d ms draining", recordCount, droppedCount,
+                           TimeUnit.NANOSECONDS.toMillis(recordingTimeNs), TimeUnit.NANOSECONDS.toMillis(drainTimeNs));
+    }
+
     public void stop() throws InterruptedException {
       myStopLatch.countDown();
       myStoppedLatch.await();
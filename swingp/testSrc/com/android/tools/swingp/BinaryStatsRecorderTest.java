@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import com.google.gson.JsonNull;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class BinaryStatsRecorderTest {
+  @Before
+  public void setUp() {
+    RenderStatsManager.setIsBinary(true);
+    RenderStatsManager.setIsEnabled(true);
+    BinaryStatsRecorder.drain(); // Drop the records of other tests.
+  }
+
+  @After
+  public void tearDown() {
+    RenderStatsManager.setIsEnabled(false);
+    RenderStatsManager.setIsBinary(false);
+  }
+
+  @Test
+  public void drainsRecordsFollowedByOverhead() {
+    Object component = new Object();
+    long startTime = BinaryStatsRecorder.enter();
+    BinaryStatsRecorder.exit(component, BinaryStatsRecorder.PAINT_COMPONENT_METHOD_ID, startTime);
+
+    ByteBuffer records = ByteBuffer.wrap(BinaryStatsRecorder.drain()).order(ByteOrder.LITTLE_ENDIAN);
+    assertThat(records.remaining()).isEqualTo(2 * BinaryStatsRecorder.RECORD_SIZE);
+
+    assertThat(records.getInt()).isEqualTo(BinaryStatsRecorder.PAINT_COMPONENT_METHOD_ID);
+    assertThat(records.getInt()).isEqualTo(System.identityHashCode(component));
+    assertThat(records.getLong()).isEqualTo(Thread.currentThread().getId());
+    assertThat(records.getLong()).isEqualTo(startTime);
+    assertThat(records.getLong()).isAtLeast(startTime);
+
+    assertThat(records.getInt()).isEqualTo(BinaryStatsRecorder.OVERHEAD_METHOD_ID);
+    assertThat(records.getInt()).isEqualTo(0); // Dropped records
+    assertThat(records.getLong()).isAtLeast(1L); // Records
+
+    assertThat(BinaryStatsRecorder.drain()).isEmpty();
+  }
+
+  @Test
+  public void methodStatsAreRecordedInsteadOfCallTrees() throws InterruptedException {
+    Thread thread = new Thread("Painting Thread") {
+      @Override
+      public void run() {
+        MethodStat stat = new TestMethodStat(this);
+        stat.endMethod();
+      }
+    };
+    thread.start();
+    thread.join();
+
+    assertThat(RenderStatsManager.getJson()).isSameAs(JsonNull.INSTANCE);
+    ByteBuffer records = ByteBuffer.wrap(BinaryStatsRecorder.drain()).order(ByteOrder.LITTLE_ENDIAN);
+    assertThat(records.remaining()).isEqualTo(2 * BinaryStatsRecorder.RECORD_SIZE);
+    assertThat(records.getInt()).isEqualTo(BinaryStatsRecorder.OTHER_METHOD_ID);
+    assertThat(records.getInt()).isEqualTo(System.identityHashCode(thread));
+    assertThat(records.getLong()).isEqualTo(thread.getId());
+  }
+
+  @Test
+  public void nothingIsRecordedWhenDisabled() {
+    RenderStatsManager.setIsEnabled(false);
+    BinaryStatsRecorder.exit(this, BinaryStatsRecorder.PAINT_CHILDREN_METHOD_ID, BinaryStatsRecorder.enter());
+    assertThat(BinaryStatsRecorder.drain()).isEmpty();
+  }
+
+  private static final class TestMethodStat extends MethodStat {
+    public TestMethodStat(@NotNull Object owner) {
+      super(owner);
+    }
+  }
+}